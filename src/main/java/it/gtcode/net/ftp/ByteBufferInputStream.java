@@ -0,0 +1,72 @@
+package it.gtcode.net.ftp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link InputStream} che legge i byte rimanenti di un {@link ByteBuffer} senza copiarli preventivamente.<br>
+ * La lettura avanza la posizione del buffer fornito: per non alterare quello dell'utilizzatore è sufficiente fornirne
+ * un {@link ByteBuffer#duplicate()}.
+ * @since 2.1
+ * @see FTPSession#upload(java.nio.file.Path, ByteBuffer, java.nio.file.Path)
+ * @author Giorgio Testa
+ */
+class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Costruttore.
+     * @param buffer buffer dal quale leggere i byte
+     */
+    ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) return 0;
+        if (!buffer.hasRemaining()) return -1;
+        int read = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, read);
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        int skipped = (int) Math.max(Math.min(n, buffer.remaining()), 0);
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Scrive i byte rimanenti nello stream fornito.<br>
+     * Se il buffer è basato su un array i byte vengono scritti direttamente da quest'ultimo, senza copie intermedie.
+     * @param out stream nel quale scrivere i byte
+     * @return il numero di byte scritti
+     * @throws IOException se non è stato possibile scrivere nello stream
+     */
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        int remaining = buffer.remaining();
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), remaining);
+            buffer.position(buffer.limit());
+            return remaining;
+        }
+        return super.transferTo(out);
+    }
+
+}
@@ -0,0 +1,302 @@
+package it.gtcode.net.ftp;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Risolve gli indirizzi dei server FTP mantenendoli in una cache a scadenza e stabilisce le connessioni di
+ * controllo tentando in parallelo i diversi indirizzi, secondo l'algoritmo <i>Happy Eyeballs</i> (RFC 8305).<br>
+ * Gli indirizzi restituiti dalla risoluzione vengono alternati per famiglia (IPv6 e IPv4, a partire dalla famiglia
+ * del primo indirizzo) e tentati uno dopo l'altro: un nuovo tentativo parte quando il precedente fallisce o quando
+ * è trascorso il ritardo configurato senza che si sia concluso. Vince la prima connessione stabilita, le altre
+ * vengono interrotte.<br>
+ * L'indirizzo dell'ultima connessione riuscita verso un server viene tentato per primo; gli indirizzi la cui
+ * connessione è fallita vengono tentati per ultimi fino allo scadere della penalizzazione o fino a una connessione
+ * riuscita. Una stessa istanza può essere condivisa tra più factory.
+ * @since 2.1
+ * @see FTPTransportApache
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPAddressResolver {
+
+    /** Durata di default della validità degli indirizzi risolti. */
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+    /** Ritardo di default tra l'avvio di due tentativi di connessione consecutivi, raccomandato da RFC 8305. */
+    public static final Duration DEFAULT_ATTEMPT_DELAY = Duration.ofMillis(250);
+    /** Durata di default della penalizzazione degli indirizzi la cui connessione è fallita. */
+    public static final Duration DEFAULT_DEMOTION = Duration.ofMinutes(1);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    /** Segnaposto della connessione vincente quando l'attesa dei tentativi è stata abbandonata. */
+    private static final Socket ABANDONED = new Socket();
+
+    /** Durata della validità degli indirizzi risolti. */
+    @Getter
+    private final Duration ttl;
+    /** Ritardo tra l'avvio di due tentativi di connessione consecutivi. */
+    @Getter
+    private final Duration attemptDelay;
+    /** Durata della penalizzazione degli indirizzi la cui connessione è fallita. */
+    @Getter
+    private final Duration demotion;
+    @EqualsAndHashCode.Exclude
+    private final Lookup lookup;
+    @EqualsAndHashCode.Exclude
+    private final LongSupplier clock;
+    @EqualsAndHashCode.Exclude
+    private final ThreadFactory threadFactory;
+    @EqualsAndHashCode.Exclude
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    @EqualsAndHashCode.Exclude
+    private final Map<String, InetAddress> preferred = new ConcurrentHashMap<>();
+    @EqualsAndHashCode.Exclude
+    private final Map<InetAddress, Long> demoted = new ConcurrentHashMap<>();
+
+    /**
+     * Costruttore. Utilizza la validità, il ritardo tra i tentativi e la penalizzazione di default.
+     */
+    public FTPAddressResolver() {
+        this(DEFAULT_TTL, DEFAULT_ATTEMPT_DELAY, DEFAULT_DEMOTION);
+    }
+
+    /**
+     * Costruttore.
+     * @param ttl durata della validità degli indirizzi risolti
+     * @param attemptDelay ritardo tra l'avvio di due tentativi di connessione consecutivi
+     * @param demotion durata della penalizzazione degli indirizzi la cui connessione è fallita
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     * @throws IllegalArgumentException se una delle durate fornite è negativa
+     */
+    public FTPAddressResolver(Duration ttl, Duration attemptDelay, Duration demotion) {
+        this(ttl, attemptDelay, demotion, InetAddress::getAllByName, System::nanoTime,
+                FTPAddressResolver::newDaemonThread);
+    }
+
+    /**
+     * Costruttore.
+     * @param ttl durata della validità degli indirizzi risolti
+     * @param attemptDelay ritardo tra l'avvio di due tentativi di connessione consecutivi
+     * @param demotion durata della penalizzazione degli indirizzi la cui connessione è fallita
+     * @param lookup risoluzione dei nomi dei server
+     * @param clock orologio in nanosecondi
+     * @param threadFactory factory con la quale creare i thread dei tentativi di connessione
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     * @throws IllegalArgumentException se una delle durate fornite è negativa
+     */
+    FTPAddressResolver(Duration ttl, Duration attemptDelay, Duration demotion, Lookup lookup, LongSupplier clock,
+                       ThreadFactory threadFactory) {
+        Objects.requireNonNull(lookup);
+        Objects.requireNonNull(clock);
+        Objects.requireNonNull(threadFactory);
+        if (ttl.isNegative() || attemptDelay.isNegative() || demotion.isNegative())
+            throw new IllegalArgumentException("Durata negativa");
+        this.ttl = ttl;
+        this.attemptDelay = attemptDelay;
+        this.demotion = demotion;
+        this.lookup = lookup;
+        this.clock = clock;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Restituisce gli indirizzi del server fornito nell'ordine in cui verranno tentati, risolvendoli solamente se
+     * non presenti in cache o scaduti.
+     * @param host nome o indirizzo del server
+     * @return gli indirizzi del server, alternati per famiglia e con gli indirizzi penalizzati in coda
+     * @throws UnknownHostException se non è stato possibile risolvere il server
+     */
+    public List<InetAddress> resolve(String host) throws UnknownHostException {
+        long now = clock.getAsLong();
+        var entry = cache.get(host);
+        if (entry == null || entry.expiresAt() - now <= 0) {
+            entry = new Entry(interleave(lookup.lookup(host)), now + ttl.toNanos());
+            cache.put(host, entry);
+        }
+        var first = preferred.get(host);
+        var ordered = new ArrayList<InetAddress>(entry.addresses().size());
+        var penalized = new ArrayList<InetAddress>();
+        if (first != null && entry.addresses().contains(first))
+            (this.isDemoted(first, now) ? penalized : ordered).add(first);
+        for (var address : entry.addresses()) {
+            if (address.equals(first)) continue;
+            (this.isDemoted(address, now) ? penalized : ordered).add(address);
+        }
+        ordered.addAll(penalized);
+        return ordered;
+    }
+
+    /**
+     * Rimuove dalla cache gli indirizzi risolti e le preferenze del server fornito.
+     * @param host nome o indirizzo del server
+     */
+    public void invalidate(String host) {
+        var entry = cache.remove(host);
+        preferred.remove(host);
+        if (entry != null) entry.addresses().forEach(demoted::remove);
+    }
+
+    /**
+     * Stabilisce una connessione con il server fornito tentando in parallelo i suoi indirizzi.
+     * @param host nome o indirizzo del server
+     * @param port porta del server
+     * @param timeout tempo massimo in millisecondi di ogni tentativo di connessione, {@code 0} per non porre limiti
+     * @return la prima connessione stabilita
+     * @throws UnknownHostException se non è stato possibile risolvere il server
+     * @throws InterruptedIOException se l'attesa dei tentativi è stata interrotta
+     * @throws IOException se nessuno degli indirizzi del server ha accettato la connessione
+     */
+    public Socket connect(String host, int port, int timeout) throws IOException {
+        var addresses = this.resolve(host);
+        var results = new LinkedBlockingQueue<Attempt>();
+        var winner = new AtomicReference<Socket>();
+        var sockets = new ArrayList<Socket>(addresses.size());
+        IOException failure = null;
+        Socket connected = null;
+        int finished = 0;
+        try {
+            sockets.add(this.attempt(host, addresses.get(0), port, timeout, winner, results));
+            while (finished < addresses.size()) {
+                boolean remaining = sockets.size() < addresses.size();
+                var attempt = remaining
+                        ? results.poll(attemptDelay.toNanos(), TimeUnit.NANOSECONDS)
+                        : results.take();
+                if (attempt != null && attempt.failure() == null) return connected = attempt.socket();
+                if (attempt != null) {
+                    finished++;
+                    if (failure == null) failure = new ConnectException("Nessun indirizzo di " + host + " raggiungibile");
+                    failure.addSuppressed(attempt.failure());
+                }
+                if (remaining)
+                    sockets.add(this.attempt(host, addresses.get(sockets.size()), port, timeout, winner, results));
+            }
+            throw failure;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Connessione a " + host + " interrotta");
+        } finally {
+            winner.compareAndSet(null, ABANDONED);
+            // un tentativo può aver vinto dopo l'abbandono dell'attesa: solo la connessione restituita resta aperta
+            for (var socket : sockets) if (socket != connected) closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Avvia un tentativo di connessione all'indirizzo fornito.
+     * @param host nome del server
+     * @param address indirizzo da tentare
+     * @param port porta del server
+     * @param timeout tempo massimo in millisecondi del tentativo
+     * @param winner prima connessione stabilita
+     * @param results esiti dei tentativi
+     * @return la connessione in corso di apertura
+     */
+    private Socket attempt(String host, InetAddress address, int port, int timeout, AtomicReference<Socket> winner,
+                           Queue<Attempt> results) {
+        var socket = new Socket();
+        threadFactory.newThread(() -> {
+            try {
+                socket.connect(new InetSocketAddress(address, port), timeout);
+                if (winner.compareAndSet(null, socket)) {
+                    preferred.put(host, address);
+                    demoted.remove(address);
+                    results.add(new Attempt(socket, null));
+                } else {
+                    closeQuietly(socket);
+                }
+            } catch (IOException ioe) {
+                if (winner.get() == null) demoted.put(address, clock.getAsLong() + demotion.toNanos());
+                results.add(new Attempt(socket, ioe));
+            }
+        }).start();
+        return socket;
+    }
+
+    /**
+     * Indica se l'indirizzo fornito è penalizzato.
+     * @param address indirizzo da verificare
+     * @param now istante corrente in nanosecondi
+     * @return {@code true} se una connessione all'indirizzo è fallita e la penalizzazione non è scaduta
+     */
+    private boolean isDemoted(InetAddress address, long now) {
+        var until = demoted.get(address);
+        if (until == null) return false;
+        if (until - now > 0) return true;
+        demoted.remove(address, until);
+        return false;
+    }
+
+    /**
+     * Alterna gli indirizzi forniti per famiglia, a partire dalla famiglia del primo indirizzo.
+     * @param addresses indirizzi restituiti dalla risoluzione
+     * @return gli indirizzi alternati per famiglia
+     * @throws UnknownHostException se non è stato restituito alcun indirizzo
+     */
+    static List<InetAddress> interleave(InetAddress[] addresses) throws UnknownHostException {
+        if (addresses.length == 0) throw new UnknownHostException("Nessun indirizzo restituito");
+        var first = new ArrayDeque<InetAddress>();
+        var second = new ArrayDeque<InetAddress>();
+        for (var address : addresses)
+            (address.getClass() == addresses[0].getClass() ? first : second).add(address);
+        var interleaved = new ArrayList<InetAddress>(addresses.length);
+        while (!first.isEmpty() || !second.isEmpty()) {
+            if (!first.isEmpty()) interleaved.add(first.poll());
+            if (!second.isEmpty()) interleaved.add(second.poll());
+        }
+        return List.copyOf(interleaved);
+    }
+
+    /**
+     * Chiude la connessione fornita ignorando eventuali errori.
+     * @param socket connessione da chiudere
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // la connessione viene comunque abbandonata
+        }
+    }
+
+    /**
+     * Crea un thread daemon dedicato ai tentativi di connessione.
+     * @param task operazione da eseguire
+     * @return il thread creato
+     */
+    private static Thread newDaemonThread(Runnable task) {
+        var thread = new Thread(task, "ftp-connect-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Risoluzione dei nomi dei server.
+     */
+    @FunctionalInterface
+    interface Lookup {
+        InetAddress[] lookup(String host) throws UnknownHostException;
+    }
+
+    /**
+     * Indirizzi risolti di un server e istante di scadenza in nanosecondi.
+     */
+    private record Entry(List<InetAddress> addresses, long expiresAt) { }
+
+    /**
+     * Esito di un tentativo di connessione.
+     */
+    private record Attempt(Socket socket, IOException failure) { }
+
+}
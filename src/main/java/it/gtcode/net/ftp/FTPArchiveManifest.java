@@ -0,0 +1,183 @@
+package it.gtcode.net.ftp;
+
+import lombok.EqualsAndHashCode;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Elenco delle risorse caricate tramite {@link FTPArchiveUpload}.<br>
+ * Per ogni risorsa indica l'archivio che la contiene e la posizione della relativa voce al suo interno, così che
+ * {@link FTPArchiveReader} possa estrarla leggendo dal server solamente l'intervallo di byte necessario. Le risorse
+ * caricate singolarmente non riportano alcun archivio.<br>
+ * Il manifest viene salvato come testo UTF-8, una risorsa per riga con i campi separati da tabulazione; nei nomi
+ * di risorse e archivi i caratteri {@code \}, tabulazione, {@code \r} e {@code \n} vengono preceduti da
+ * {@code \}, così che non possano alterare la struttura del manifest.
+ * @since 2.1
+ * @see FTPArchiveUpload
+ * @see FTPArchiveReader
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPArchiveManifest {
+
+    private static final String HEADER = "# gtcode-ftp-manifest 2";
+    private static final String SEPARATOR = "\t";
+
+    private final Map<String, Entry> entries;
+
+    /**
+     * Costruttore. Crea un manifest vuoto.
+     */
+    public FTPArchiveManifest() {
+        this.entries = new LinkedHashMap<>();
+    }
+
+    /**
+     * Restituisce la voce associata alla risorsa indicata.
+     * @param name nome della risorsa
+     * @return la voce della risorsa, vuota se non presente
+     */
+    public Optional<Entry> get(String name) {
+        return Optional.ofNullable(entries.get(name));
+    }
+
+    /**
+     * Restituisce le voci del manifest nell'ordine di caricamento.
+     * @return le voci del manifest, non modificabili
+     */
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Aggiunge la voce fornita al manifest.
+     * @param entry voce da aggiungere
+     * @throws IllegalArgumentException se il manifest contiene già una risorsa con lo stesso nome
+     */
+    void add(Entry entry) {
+        if (entries.putIfAbsent(entry.name(), entry) != null)
+            throw new IllegalArgumentException("Risorsa duplicata nel manifest: " + entry.name());
+    }
+
+    /**
+     * Scrive il manifest sullo stream fornito, senza chiuderlo.
+     * @param output stream di destinazione
+     * @throws IOException se non è stato possibile scrivere il manifest
+     */
+    public void write(OutputStream output) throws IOException {
+        var writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        writer.write(HEADER);
+        writer.newLine();
+        for (var entry : entries.values()) {
+            writer.write(String.join(SEPARATOR,
+                    entry.archive() == null ? "" : escape(entry.archive()),
+                    Long.toString(entry.offset()),
+                    Long.toString(entry.length()),
+                    Long.toString(entry.size()),
+                    escape(entry.name())
+            ));
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Legge il manifest dallo stream fornito, senza chiuderlo.
+     * @param input stream contenente il manifest
+     * @return il manifest letto
+     * @throws IOException se non è stato possibile leggere il manifest o questo non è valido
+     */
+    public static FTPArchiveManifest read(InputStream input) throws IOException {
+        var reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        var header = reader.readLine();
+        if (!HEADER.equals(header)) throw new IOException("Manifest non valido");
+        var manifest = new FTPArchiveManifest();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) continue;
+            var values = line.split(SEPARATOR, 5);
+            try {
+                manifest.add(new Entry(
+                        unescape(values[4]),
+                        values[0].isEmpty() ? null : unescape(values[0]),
+                        Long.parseLong(values[1]),
+                        Long.parseLong(values[2]),
+                        Long.parseLong(values[3])
+                ));
+            } catch (RuntimeException e) {
+                throw new IOException("Riga del manifest non valida: " + line, e);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Codifica il nome fornito facendo precedere da {@code \} i caratteri che alterano la struttura del manifest.
+     * @param name nome da codificare
+     * @return il nome codificato, privo di tabulazioni e terminatori di riga
+     */
+    private static String escape(String name) {
+        var escaped = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            switch (c) {
+                case '\\' -> escaped.append("\\\\");
+                case '\t' -> escaped.append("\\t");
+                case '\r' -> escaped.append("\\r");
+                case '\n' -> escaped.append("\\n");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Decodifica il nome fornito, codificato tramite {@link #escape(String)}.
+     * @param name nome da decodificare
+     * @return il nome originale
+     * @throws IllegalArgumentException se il nome contiene una sequenza non valida
+     */
+    private static String unescape(String name) {
+        var unescaped = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '\\') {
+                unescaped.append(c);
+                continue;
+            }
+            if (++i == name.length()) throw new IllegalArgumentException("Sequenza non terminata: " + name);
+            switch (name.charAt(i)) {
+                case '\\' -> unescaped.append('\\');
+                case 't' -> unescaped.append('\t');
+                case 'r' -> unescaped.append('\r');
+                case 'n' -> unescaped.append('\n');
+                default -> throw new IllegalArgumentException("Sequenza non valida: " + name);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * Voce del manifest relativa a una risorsa caricata.
+     * @param name nome della risorsa
+     * @param archive nome dell'archivio che contiene la risorsa, {@code null} se caricata singolarmente
+     * @param offset posizione, in byte, della voce all'interno dell'archivio
+     * @param length numero di byte della voce all'interno dell'archivio, intestazione compresa
+     * @param size dimensione in byte della risorsa
+     * @since 2.1
+     */
+    public record Entry(String name, String archive, long offset, long length, long size) {
+
+        /**
+         * Indica se la risorsa è contenuta in un archivio.
+         * @return {@code true} se la risorsa è contenuta in un archivio
+         */
+        public boolean isArchived() {
+            return archive != null;
+        }
+
+    }
+
+}
@@ -0,0 +1,178 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Estrae le risorse caricate tramite {@link FTPArchiveUpload} utilizzando il relativo {@link FTPArchiveManifest}.<br>
+ * Le risorse contenute in un archivio vengono lette riprendendo il trasferimento dalla posizione della voce
+ * ({@code REST}) e trasferendo solamente i byte della voce stessa, senza scaricare l'intero archivio; le risorse
+ * caricate singolarmente vengono scaricate direttamente.
+ * @since 2.1
+ * @see FTPArchiveUpload
+ * @see FTPSession#download(Path, long)
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPArchiveReader {
+
+    private final FTPSession session;
+    /** Directory del server nella quale si trovano archivi, file e manifest. */
+    @Getter
+    private final Path directory;
+    /** Manifest delle risorse caricate. */
+    @Getter
+    private final FTPArchiveManifest manifest;
+
+    /**
+     * Costruttore.
+     * @param session sessione dalla quale leggere le risorse
+     * @param directory directory del server nella quale si trovano archivi e file
+     * @param manifest manifest delle risorse caricate
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     */
+    public FTPArchiveReader(FTPSession session, Path directory, FTPArchiveManifest manifest) {
+        Objects.requireNonNull(session);
+        Objects.requireNonNull(directory);
+        Objects.requireNonNull(manifest);
+        this.session = session;
+        this.directory = directory;
+        this.manifest = manifest;
+    }
+
+    /**
+     * Scarica il manifest indicato e crea il lettore delle risorse in esso elencate.
+     * @param session sessione dalla quale leggere le risorse
+     * @param manifest percorso del manifest sul server; archivi e file vengono cercati nella stessa directory
+     * @return il lettore delle risorse
+     * @throws UncheckedIOException se non è stato possibile scaricare o leggere il manifest
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    public static FTPArchiveReader open(FTPSession session, Path manifest) {
+        var download = session.download(manifest);
+        if (download.getStatus() != Status.SUCCESS)
+            throw new UncheckedIOException(download.getException() != null
+                    ? download.getException()
+                    : new IOException(download.getMessage()));
+        try {
+            var parsed = FTPArchiveManifest.read(download.getStream().orElseThrow());
+            var parent = manifest.getParent();
+            return new FTPArchiveReader(session, parent != null ? parent : session.getRoot(), parsed);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        } finally {
+            download.close();
+        }
+    }
+
+    /**
+     * Fornisce la risorsa indicata.<br>
+     * Per le risorse contenute in un archivio lo stream restituito legge dal server al più i byte della relativa voce:
+     * la transazione con il server resta aperta fino alla chiusura della risposta, che annulla il trasferimento del
+     * resto dell'archivio.
+     * @param name nome della risorsa
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    public FTPStreamResponse read(String name) {
+        var entry = manifest.get(name).orElse(null);
+        if (entry == null) {
+            var response = new FTPStreamResponse(() -> { });
+            response.asError(FTPReplyCode.FILE_UNAVAILABLE.getCode(), "Risorsa non presente nel manifest: " + name, null);
+            return response;
+        }
+        if (!entry.isArchived()) return session.download(directory.resolve(entry.name()));
+
+        var download = session.download(directory.resolve(entry.archive()), entry.offset());
+        if (download.getStatus() != Status.SUCCESS) return download;
+        var response = new FTPStreamResponse(download::close);
+        try {
+            var zip = new ZipInputStream(new BoundedInputStream(download.getStream().orElseThrow(), entry.length()));
+            var zipEntry = zip.getNextEntry();
+            if (zipEntry == null || !zipEntry.getName().equals(entry.name()))
+                throw new IOException("Voce dell'archivio non valida: " + entry.name());
+            response.asSuccess(download.getReplyCode().getCode(), download.getMessage(), zip);
+        } catch (IOException ioe) {
+            this.closeQuietly(download);
+            response.asError(download.getReplyCode().getCode(), download.getMessage(), ioe);
+        }
+        return response;
+    }
+
+    /**
+     * Conclude il download fornito ignorando eventuali errori, già riportati sulla risposta della lettura.
+     * @param download download da concludere
+     */
+    private void closeQuietly(FTPStreamResponse download) {
+        try {
+            download.close();
+        } catch (UncheckedIOException ignored) {
+            // la lettura è già fallita, l'errore riportato è quello della voce
+        }
+    }
+
+    /**
+     * Vista dello stream di un archivio limitata ai byte di una singola voce.<br>
+     * La chiusura della vista non chiude lo stream sottostante, concluso dalla chiusura della risposta del download.
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        BoundedInputStream(InputStream stream, long length) {
+            super(stream);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int read = super.read();
+            if (read >= 0) remaining--;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) return -1;
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // lo stream sottostante viene chiuso dalla risposta del download
+        }
+
+    }
+
+}
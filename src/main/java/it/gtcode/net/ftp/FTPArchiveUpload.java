@@ -0,0 +1,283 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPArchiveResponse;
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Carica un insieme di risorse su una {@link FTPSession} accorpando i file di piccole dimensioni in archivi zip.<br>
+ * Caricare singolarmente molti file di piccole dimensioni è limitato dal costo fisso di ogni trasferimento
+ * ({@code CWD}, {@code PASV}, {@code STOR} e l'attesa della risposta finale): i file inferiori alla soglia indicata
+ * vengono invece scritti al volo in un archivio, trasmesso al server con un unico {@code STOR} tramite un
+ * buffer circolare senza l'utilizzo di file temporanei. Raggiunta la dimensione massima viene avviato un nuovo
+ * archivio; i file superiori alla soglia vengono caricati singolarmente.<br>
+ * Al termine viene caricato un {@link FTPArchiveManifest} che riporta, per ogni risorsa, l'archivio e la posizione
+ * della voce al suo interno, così che {@link FTPArchiveReader} possa estrarla tramite una lettura parziale.
+ * @since 2.1
+ * @see FTPArchiveManifest
+ * @see FTPArchiveReader
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPArchiveUpload {
+
+    /** Soglia di default, in byte, al di sotto della quale i file vengono accorpati. */
+    public static final long DEFAULT_MAX_FILE_SIZE = 64 * 1024;
+    /** Dimensione massima di default, in byte, dei file contenuti in un singolo archivio. */
+    public static final long DEFAULT_MAX_ARCHIVE_SIZE = 64 * 1024 * 1024;
+    /** Estensione del manifest caricato al termine dell'operazione. */
+    public static final String MANIFEST_EXTENSION = ".manifest";
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /** Soglia, in byte, al di sotto della quale i file vengono accorpati. */
+    @Getter
+    private final long maxFileSize;
+    /** Dimensione massima, in byte, dei file contenuti in un singolo archivio. */
+    @Getter
+    private final long maxArchiveSize;
+    @EqualsAndHashCode.Exclude
+    private final ThreadFactory threadFactory;
+
+    /**
+     * Costruttore. Utilizza le soglie di default.
+     */
+    public FTPArchiveUpload() {
+        this(DEFAULT_MAX_FILE_SIZE, DEFAULT_MAX_ARCHIVE_SIZE);
+    }
+
+    /**
+     * Costruttore.
+     * @param maxFileSize soglia, in byte, al di sotto della quale i file vengono accorpati
+     * @param maxArchiveSize dimensione massima, in byte, dei file contenuti in un singolo archivio
+     * @throws IllegalArgumentException se una delle soglie non è positiva o se la soglia dei file supera quella
+     * degli archivi
+     */
+    public FTPArchiveUpload(long maxFileSize, long maxArchiveSize) {
+        if (maxFileSize <= 0 || maxArchiveSize <= 0) throw new IllegalArgumentException("Le soglie devono essere positive");
+        if (maxFileSize > maxArchiveSize)
+            throw new IllegalArgumentException("La soglia dei file non può superare la dimensione degli archivi");
+        this.maxFileSize = maxFileSize;
+        this.maxArchiveSize = maxArchiveSize;
+        this.threadFactory = FTPArchiveUpload::newDaemonThread;
+    }
+
+    /**
+     * Carica i file forniti nella directory indicata, accorpando quelli di piccole dimensioni.<br>
+     * Gli archivi vengono nominati {@code <name>-00001.zip}, {@code <name>-00002.zip}, ... e il manifest
+     * {@code <name>.manifest}. Il caricamento si interrompe al primo errore e in tal caso il manifest non viene caricato.
+     * @param session sessione sulla quale caricare i file
+     * @param files file da caricare, i nomi devono essere univoci
+     * @param target directory nella quale caricare archivi, file e manifest
+     * @param name nome con il quale identificare archivi e manifest
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere uno dei file da caricare
+     * @throws IllegalArgumentException se più file hanno lo stesso nome
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    public FTPArchiveResponse upload(FTPSession session, Collection<Path> files, Path target, String name)
+            throws FileNotFoundException {
+        var manifest = new FTPArchiveManifest();
+        var names = new HashSet<String>();
+        var direct = new ArrayList<Path>();
+        var archives = new ArrayList<List<Path>>();
+        long archiveSize = 0;
+        for (var file : files) {
+            if (!Files.isRegularFile(file)) throw new FileNotFoundException(file.toString());
+            if (!names.add(file.getFileName().toString()))
+                throw new IllegalArgumentException("File duplicato: " + file.getFileName());
+            long size = this.size(file);
+            if (size > maxFileSize) {
+                direct.add(file);
+                continue;
+            }
+            if (archives.isEmpty() || archiveSize + size > maxArchiveSize) {
+                archives.add(new ArrayList<>());
+                archiveSize = 0;
+            }
+            archives.get(archives.size() - 1).add(file);
+            archiveSize += size;
+        }
+
+        var response = new FTPArchiveResponse();
+        for (int i = 0; i < archives.size(); i++) {
+            var archive = String.format("%s-%05d.zip", name, i + 1);
+            var stored = this.store(session, archives.get(i), archive, target, manifest);
+            if (stored.getStatus() != Status.SUCCESS) return this.asError(response, stored);
+        }
+        for (var file : direct) {
+            var stored = session.upload(file, target);
+            if (stored.getStatus() != Status.SUCCESS) return this.asError(response, stored);
+            manifest.add(new FTPArchiveManifest.Entry(file.getFileName().toString(), null, 0, 0, this.size(file)));
+        }
+
+        var content = new ByteArrayOutputStream();
+        try {
+            manifest.write(content);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        var stored = session.upload(Path.of(name + MANIFEST_EXTENSION), new ByteArrayInputStream(content.toByteArray()), target);
+        if (stored.getStatus() != Status.SUCCESS) return this.asError(response, stored);
+        response.asSuccess(stored.getReplyCode().getCode(), stored.getMessage(), archives.size(),
+                manifest.getEntries().size() - direct.size(), direct.size());
+        return response;
+    }
+
+    /**
+     * Scrive i file forniti in un archivio trasmesso in streaming al server, registrandone le voci nel manifest.
+     * @param session sessione sulla quale caricare l'archivio
+     * @param files file da accorpare
+     * @param archive nome dell'archivio
+     * @param target directory nella quale caricare l'archivio
+     * @param manifest manifest nel quale registrare le voci
+     * @return l'esito del caricamento dell'archivio
+     */
+    private FTPResponse store(FTPSession session, List<Path> files, String archive, Path target,
+                              FTPArchiveManifest manifest) {
+        var ring = new FTPRingBuffer(FTPRelay.DEFAULT_BUFFER_SIZE);
+        var entries = new CompletableFuture<List<FTPArchiveManifest.Entry>>();
+        threadFactory.newThread(() -> {
+            try {
+                entries.complete(this.write(files, archive, ring.outputStream()));
+            } catch (IOException ioe) {
+                ring.fail(ioe);
+                entries.completeExceptionally(ioe);
+            } catch (Throwable t) {
+                ring.fail(new IOException("Creazione dell'archivio interrotta in maniera inattesa", t));
+                entries.completeExceptionally(t);
+            }
+        }).start();
+
+        var upload = session.upload(Path.of(archive), ring.inputStream(), target);
+        if (upload.getStatus() != Status.SUCCESS) {
+            ring.fail(upload.getException() != null ? upload.getException() : new IOException(upload.getMessage()));
+            return upload;
+        }
+        try {
+            entries.get().forEach(manifest::add);
+            return upload;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return this.failure(upload, new InterruptedIOException("Creazione dell'archivio interrotta"));
+        } catch (ExecutionException ee) {
+            var cause = ee.getCause() instanceof IOException ioe ? ioe : new IOException(ee.getCause());
+            return this.failure(upload, cause);
+        }
+    }
+
+    /**
+     * Scrive i file forniti in formato zip sullo stream indicato, registrando la posizione di ogni voce.
+     * @param files file da accorpare
+     * @param archive nome dell'archivio
+     * @param output stream di destinazione, viene chiuso al termine
+     * @return le voci scritte nell'archivio
+     * @throws IOException se non è stato possibile leggere un file o scrivere sullo stream
+     */
+    private List<FTPArchiveManifest.Entry> write(List<Path> files, String archive, OutputStream output)
+            throws IOException {
+        var entries = new ArrayList<FTPArchiveManifest.Entry>();
+        var counter = new CountingOutputStream(output);
+        try (var zip = new ZipOutputStream(counter)) {
+            for (var file : files) {
+                long offset = counter.count;
+                var entry = new ZipEntry(file.getFileName().toString());
+                entry.setTime(Files.getLastModifiedTime(file).toMillis());
+                zip.putNextEntry(entry);
+                long size = Files.copy(file, zip);
+                zip.closeEntry();
+                entries.add(new FTPArchiveManifest.Entry(
+                        file.getFileName().toString(), archive, offset, counter.count - offset, size
+                ));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Crea la risposta di errore di un archivio caricato ma non scritto correttamente.
+     * @param upload risposta del caricamento dell'archivio
+     * @param exception errore riscontrato durante la scrittura
+     * @return la risposta di errore
+     */
+    private FTPResponse failure(FTPResponse upload, IOException exception) {
+        var response = new FTPResponse();
+        response.asError(FTPReplyCode.ACTION_ABORTED.getCode(), upload.getMessage(), exception);
+        return response;
+    }
+
+    /**
+     * Riporta sulla risposta complessiva l'errore contenuto nella risposta fornita.
+     * @param response risposta complessiva
+     * @param failure risposta che ha causato il fallimento
+     * @return la risposta complessiva
+     */
+    private FTPArchiveResponse asError(FTPArchiveResponse response, FTPResponse failure) {
+        response.asError(failure.getReplyCode().getCode(), failure.getMessage(), failure.getException());
+        return response;
+    }
+
+    /**
+     * Restituisce la dimensione del file fornito.
+     * @param file file del quale ottenere la dimensione
+     * @return la dimensione in byte del file
+     * @throws UncheckedIOException se non è stato possibile leggere la dimensione
+     */
+    private long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Crea un thread daemon dedicato alla scrittura degli archivi.
+     * @param task operazione da eseguire
+     * @return il thread creato
+     */
+    private static Thread newDaemonThread(Runnable task) {
+        var thread = new Thread(task, "ftp-archive-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Stream che conta i byte scritti, utilizzato per ricavare la posizione delle voci nell'archivio.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+
+    }
+
+}
@@ -0,0 +1,272 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Esegue caricamenti e scaricamenti di insiemi di file in parallelo, adattando il numero di trasferimenti
+ * concorrenti tramite un {@link FTPConcurrencyLimiter}.<br>
+ * Le sessioni vengono create dalla factory fornita e riutilizzate tra i trasferimenti dello stesso insieme; al
+ * termine vengono chiuse. Un trasferimento fallito per sovraccarico del server (risposta {@code 421}, timeout o
+ * connessione rifiutata) chiude la relativa sessione e viene ritentato fino a {@value #MAX_ATTEMPTS} volte, dopo che
+ * il limitatore ha ridotto il parallelismo.
+ * @since 2.1
+ * @see FTPConcurrencyLimiter
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPBatchTransfer {
+
+    /** Numero massimo di tentativi di un trasferimento fallito per sovraccarico del server. */
+    public static final int MAX_ATTEMPTS = 3;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final FTPSessionFactory factory;
+    /** Limitatore dei trasferimenti concorrenti. */
+    @Getter
+    private final FTPConcurrencyLimiter limiter;
+    @EqualsAndHashCode.Exclude
+    private final ThreadFactory threadFactory;
+
+    /**
+     * Costruttore. Utilizza un {@link FTPConcurrencyLimiter} con i limiti di default e thread daemon dedicati.
+     * @param factory factory con la quale creare le sessioni
+     * @throws NullPointerException se la factory fornita è {@code null}
+     */
+    public FTPBatchTransfer(FTPSessionFactory factory) {
+        this(factory, new FTPConcurrencyLimiter());
+    }
+
+    /**
+     * Costruttore. Utilizza thread daemon dedicati.
+     * @param factory factory con la quale creare le sessioni
+     * @param limiter limitatore dei trasferimenti concorrenti, può essere condiviso tra più istanze
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     */
+    public FTPBatchTransfer(FTPSessionFactory factory, FTPConcurrencyLimiter limiter) {
+        this(factory, limiter, FTPBatchTransfer::newDaemonThread);
+    }
+
+    /**
+     * Costruttore.
+     * @param factory factory con la quale creare le sessioni
+     * @param limiter limitatore dei trasferimenti concorrenti, può essere condiviso tra più istanze
+     * @param threadFactory factory con la quale creare i thread dei trasferimenti, ad esempio una factory di
+     *                      virtual thread
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     */
+    public FTPBatchTransfer(FTPSessionFactory factory, FTPConcurrencyLimiter limiter, ThreadFactory threadFactory) {
+        Objects.requireNonNull(factory);
+        Objects.requireNonNull(limiter);
+        Objects.requireNonNull(threadFactory);
+        this.factory = factory;
+        this.limiter = limiter;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Carica i file forniti nella directory indicata.
+     * @param files file da caricare
+     * @param target directory del server nella quale caricare i file
+     * @return l'esito di ogni caricamento, nell'ordine dei file forniti
+     * @throws FileNotFoundException se non è stato possibile raggiungere uno dei file da caricare
+     * @throws UncheckedIOException se l'attesa dei trasferimenti è stata interrotta
+     */
+    public Map<Path, FTPResponse> upload(Collection<Path> files, Path target) throws FileNotFoundException {
+        for (var file : files)
+            if (!Files.isRegularFile(file)) throw new FileNotFoundException(file.toString());
+        return this.run(files, (session, file) -> {
+            var response = session.upload(file, target);
+            return new Outcome(response, response.getStatus() == Status.SUCCESS ? Files.size(file) : 0);
+        });
+    }
+
+    /**
+     * Scarica i file forniti nella directory locale indicata, sostituendo gli eventuali file già presenti.
+     * @param files file del server da scaricare
+     * @param directory directory locale nella quale salvare i file
+     * @return l'esito di ogni scaricamento, nell'ordine dei file forniti
+     * @throws UncheckedIOException se non è stato possibile creare la directory locale o se l'attesa dei
+     * trasferimenti è stata interrotta
+     */
+    public Map<Path, FTPResponse> download(Collection<Path> files, Path directory) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        return this.run(files, (session, file) -> {
+            var response = session.download(file);
+            if (response.getStatus() != Status.SUCCESS) return new Outcome(response, 0);
+            try {
+                long bytes = Files.copy(
+                        response.getStream().orElseThrow(),
+                        directory.resolve(file.getFileName().toString()),
+                        StandardCopyOption.REPLACE_EXISTING
+                );
+                return new Outcome(response, bytes);
+            } catch (IOException ioe) {
+                var failure = new FTPResponse();
+                failure.asError(FTPReplyCode.ACTION_ABORTED.getCode(), response.getMessage(), ioe);
+                return new Outcome(failure, 0);
+            } finally {
+                response.close();
+            }
+        });
+    }
+
+    /**
+     * Esegue l'operazione fornita su ogni file, rispettando il limite corrente di trasferimenti concorrenti.
+     * @param files file sui quali eseguire l'operazione
+     * @param task operazione da eseguire
+     * @return l'esito di ogni operazione, nell'ordine dei file forniti
+     * @throws UncheckedIOException se l'attesa dei trasferimenti è stata interrotta
+     */
+    private Map<Path, FTPResponse> run(Collection<Path> files, Task task) {
+        var results = new ConcurrentHashMap<Path, FTPResponse>();
+        var pending = new LinkedBlockingQueue<Attempt>();
+        var idle = new ConcurrentLinkedDeque<FTPSession>();
+        var sessions = new ConcurrentLinkedQueue<FTPSession>();
+        var done = new CountDownLatch(files.size());
+        files.forEach(file -> pending.add(new Attempt(file, 1)));
+        try {
+            while (done.getCount() > 0) {
+                var attempt = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (attempt == null) continue;
+                limiter.acquire();
+                threadFactory.newThread(() -> {
+                    boolean retried = false;
+                    try {
+                        var outcome = this.execute(attempt.file(), task, idle, sessions);
+                        if (FTPConcurrencyLimiter.isOverloaded(outcome.response()) && attempt.number() < MAX_ATTEMPTS) {
+                            pending.add(new Attempt(attempt.file(), attempt.number() + 1));
+                            retried = true;
+                        } else {
+                            results.put(attempt.file(), outcome.response());
+                        }
+                    } finally {
+                        if (!retried) {
+                            results.computeIfAbsent(attempt.file(), file -> this.interrupted());
+                            done.countDown();
+                        }
+                    }
+                }).start();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Trasferimento interrotto"));
+        } finally {
+            sessions.forEach(this::closeQuietly);
+        }
+        var ordered = new LinkedHashMap<Path, FTPResponse>();
+        files.forEach(file -> ordered.put(file, results.get(file)));
+        return ordered;
+    }
+
+    /**
+     * Crea l'esito di un'operazione terminata in maniera inattesa, senza aver prodotto una risposta.
+     * @return l'esito di errore dell'operazione
+     */
+    private FTPResponse interrupted() {
+        var failure = new FTPResponse();
+        failure.asError(
+                FTPReplyCode.ACTION_ABORTED.getCode(),
+                "Trasferimento interrotto in maniera inattesa",
+                new IOException("Trasferimento interrotto in maniera inattesa")
+        );
+        return failure;
+    }
+
+    /**
+     * Esegue l'operazione su una sessione inattiva o, in assenza, su una nuova sessione, comunicando l'esito al
+     * limitatore.
+     * @param file file sul quale eseguire l'operazione
+     * @param task operazione da eseguire
+     * @param idle sessioni inattive riutilizzabili
+     * @param sessions tutte le sessioni create, da chiudere al termine
+     * @return l'esito dell'operazione
+     */
+    private Outcome execute(Path file, Task task, Deque<FTPSession> idle, Queue<FTPSession> sessions) {
+        FTPSession session = idle.poll();
+        try {
+            if (session == null) {
+                session = factory.openSession();
+                sessions.add(session);
+            }
+            var outcome = task.execute(session, file);
+            limiter.release(outcome.response(), outcome.bytes());
+            if (FTPConcurrencyLimiter.isOverloaded(outcome.response())) this.closeQuietly(session);
+            else if (session.isOpen()) idle.push(session);
+            return outcome;
+        } catch (IOException | RuntimeException e) {
+            var failure = new FTPResponse();
+            boolean overloaded = FTPConcurrencyLimiter.isOverloaded(e);
+            var cause = e instanceof UncheckedIOException uioe ? uioe.getCause() : e;
+            failure.asError(
+                    (overloaded ? FTPReplyCode.SERVICE_NOT_AVAILABLE : FTPReplyCode.ACTION_ABORTED).getCode(),
+                    e.getMessage(),
+                    cause instanceof IOException ioe ? ioe : new IOException(cause)
+            );
+            if (overloaded) limiter.releaseOverloaded();
+            else limiter.releaseFailed();
+            if (session != null) this.closeQuietly(session);
+            return new Outcome(failure, 0);
+        }
+    }
+
+    /**
+     * Chiude la sessione fornita ignorando eventuali errori.
+     * @param session sessione da chiudere
+     */
+    private void closeQuietly(FTPSession session) {
+        try {
+            session.close();
+        } catch (RuntimeException ignored) {
+            // la sessione viene comunque abbandonata
+        }
+    }
+
+    /**
+     * Crea un thread daemon dedicato ai trasferimenti.
+     * @param task operazione da eseguire
+     * @return il thread creato
+     */
+    private static Thread newDaemonThread(Runnable task) {
+        var thread = new Thread(task, "ftp-batch-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Operazione da eseguire su ogni file dell'insieme.
+     */
+    @FunctionalInterface
+    private interface Task {
+        Outcome execute(FTPSession session, Path file) throws IOException;
+    }
+
+    /**
+     * Esito di un trasferimento e byte trasferiti.
+     */
+    private record Outcome(FTPResponse response, long bytes) { }
+
+    /**
+     * Tentativo di trasferimento di un file.
+     */
+    private record Attempt(Path file, int number) { }
+
+}
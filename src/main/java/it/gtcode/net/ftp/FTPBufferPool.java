@@ -0,0 +1,106 @@
+package it.gtcode.net.ftp;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Insieme di {@link ByteBuffer} di dimensione fissa riutilizzabili tra più trasferimenti.<br>
+ * I buffer vengono forniti da {@link #acquire()} e, una volta consumati, possono essere restituiti tramite
+ * {@link #release(ByteBuffer)}; i buffer non restituiti vengono semplicemente raccolti dal garbage collector.<br>
+ * Il pool tiene traccia dei buffer attualmente forniti tramite il relativo array, confrontato per identità e
+ * referenziato debolmente: una seconda restituzione dello stesso buffer o la restituzione di un buffer non fornito
+ * dal pool vengono rifiutate, così che due chiamanti non possano mai ricevere lo stesso buffer.
+ * Il pool può essere condiviso tra più thread.
+ * @since 2.1
+ * @see FTPStreamPublisher
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPBufferPool {
+
+    /** Dimensione di default dei buffer. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /** Numero massimo di default di buffer conservati in attesa di essere riutilizzati. */
+    public static final int DEFAULT_MAX_POOLED = 64;
+
+    /** Dimensione dei buffer forniti. */
+    @Getter
+    private final int bufferSize;
+    /** Numero massimo di buffer conservati in attesa di essere riutilizzati. */
+    @Getter
+    private final int maxPooled;
+    @EqualsAndHashCode.Exclude
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    @EqualsAndHashCode.Exclude
+    private final AtomicInteger pooled = new AtomicInteger();
+    @EqualsAndHashCode.Exclude
+    private final Set<byte[]> leased = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+
+    /**
+     * Costruttore. Utilizza buffer da {@value #DEFAULT_BUFFER_SIZE} byte conservandone al massimo
+     * {@value #DEFAULT_MAX_POOLED}.
+     */
+    public FTPBufferPool() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+    }
+
+    /**
+     * Costruttore.
+     * @param bufferSize dimensione dei buffer forniti
+     * @param maxPooled numero massimo di buffer conservati in attesa di essere riutilizzati
+     * @throws IllegalArgumentException se la dimensione non è positiva o il numero massimo è negativo
+     */
+    public FTPBufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("La dimensione dei buffer deve essere positiva");
+        if (maxPooled < 0) throw new IllegalArgumentException("Il numero massimo di buffer non può essere negativo");
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Fornisce un buffer vuoto, riutilizzandone uno restituito se disponibile.
+     * @return un buffer con posizione {@code 0} e limite pari alla capacità
+     */
+    public ByteBuffer acquire() {
+        var buffer = buffers.poll();
+        if (buffer == null) buffer = ByteBuffer.allocate(bufferSize);
+        else pooled.decrementAndGet();
+        leased.add(buffer.array());
+        return buffer.clear();
+    }
+
+    /**
+     * Restituisce un buffer al pool così che possa essere riutilizzato.<br>
+     * Il buffer non deve più essere utilizzato dopo la restituzione. I buffer non forniti dal pool o già restituiti
+     * vengono rifiutati; quelli eccedenti il numero massimo vengono accettati ma non conservati.
+     * @param buffer buffer da restituire
+     * @return {@code true} se il buffer era stato fornito dal pool e non ancora restituito, {@code false} altrimenti
+     */
+    public boolean release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.hasArray() || buffer.capacity() != bufferSize) return false;
+        if (!leased.remove(buffer.array())) return false;
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return true;
+        }
+        buffers.offer(buffer);
+        return true;
+    }
+
+    /**
+     * Restituisce il numero di buffer attualmente conservati in attesa di essere riutilizzati.
+     * @return il numero di buffer disponibili
+     */
+    public int getPooled() {
+        return pooled.get();
+    }
+
+}
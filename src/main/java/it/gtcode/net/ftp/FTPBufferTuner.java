@@ -0,0 +1,291 @@
+package it.gtcode.net.ftp;
+
+import lombok.EqualsAndHashCode;
+import org.apache.commons.net.ftp.FTPClient;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dimensiona automaticamente i buffer dei socket dati e il buffer di copia di {@link FTPClient} in base al prodotto
+ * banda-ritardo misurato verso ogni server.<br>
+ * Il tempo di andata e ritorno viene misurato alla creazione di ogni sessione cronometrando alcuni {@code NOOP} e
+ * mantenendo il valore minimo osservato; la banda viene ricavata dai trasferimenti effettivamente eseguiti,
+ * mantenendo un massimo che decade di un fattore {@value #THROUGHPUT_DECAY} a ogni nuova misura, così che la stima
+ * segua un eventuale peggioramento della rete invece di restare ferma al picco storico.<br>
+ * Poiché un trasferimento limitato dalla finestra TCP misura una banda pari a {@code buffer / RTT}, i buffer vengono
+ * dimensionati al doppio del prodotto banda-ritardo: finché la finestra rimane il collo di bottiglia la banda
+ * osservata, e con essa i buffer, continua a crescere fino a {@value #MAX_BUFFER_SIZE} byte.<br>
+ * I valori misurati vengono memorizzati per server, porta e utente della {@link FTPConfiguration}, così che le
+ * sessioni successive partano già dimensionate.
+ * @since 2.1
+ * @see FTPOptionsApache#setBufferTuner(FTPBufferTuner)
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPBufferTuner {
+
+    /** Dimensione minima, in byte, dei buffer dei socket dati. */
+    public static final int MIN_BUFFER_SIZE = 64 * 1024;
+    /** Dimensione massima, in byte, dei buffer dei socket dati. */
+    public static final int MAX_BUFFER_SIZE = 16 * 1024 * 1024;
+    /** Dimensione massima, in byte, del buffer di copia utilizzato da {@link FTPClient}. */
+    public static final int MAX_COPY_BUFFER_SIZE = 1024 * 1024;
+    /** Numero di {@code NOOP} cronometrati alla creazione di ogni sessione. */
+    public static final int RTT_PROBES = 3;
+    /** Byte minimi di un trasferimento perché la relativa banda venga considerata. */
+    public static final long MIN_SAMPLE_SIZE = 64 * 1024;
+    /** Fattore applicato alla banda massima osservata prima di confrontarla con ogni nuova misura. */
+    public static final double THROUGHPUT_DECAY = 0.9;
+
+    @EqualsAndHashCode.Exclude
+    private final ConcurrentHashMap<String, Tuning> tunings = new ConcurrentHashMap<>();
+
+    /**
+     * Restituisce i valori misurati per il server indicato dalla configurazione fornita.
+     * @param configuration configurazione del server
+     * @return i valori misurati, vuoti se non è ancora stata creata alcuna sessione verso il server
+     */
+    public Optional<Tuning> getTuning(FTPConfiguration configuration) {
+        return Optional.ofNullable(tunings.get(this.key(configuration)));
+    }
+
+    /**
+     * Misura il tempo di andata e ritorno verso il server tramite {@value #RTT_PROBES} {@code NOOP} e applica al
+     * client i buffer risultanti.
+     * @param client client connesso e autenticato
+     * @param configuration configurazione con la quale è stato connesso il client
+     * @throws IOException se non è stato possibile comunicare con il server
+     */
+    void tune(FTPClient client, FTPConfiguration configuration) throws IOException {
+        long rtt = Long.MAX_VALUE;
+        for (int i = 0; i < RTT_PROBES; i++) {
+            long start = System.nanoTime();
+            client.sendNoOp();
+            rtt = Math.min(rtt, System.nanoTime() - start);
+        }
+        long measured = Math.max(rtt, 1);
+        var tuning = tunings.merge(
+                this.key(configuration),
+                new Tuning(Duration.ofNanos(measured), 0, MIN_BUFFER_SIZE),
+                (current, sample) -> current.withRtt(sample.rtt())
+        );
+        this.apply(client, tuning);
+    }
+
+    /**
+     * Applica al client i buffer attualmente stimati per il server, se presenti.
+     * @param client client al quale applicare i buffer
+     * @param configuration configurazione con la quale è stato connesso il client
+     */
+    void apply(FTPClient client, FTPConfiguration configuration) {
+        var tuning = tunings.get(this.key(configuration));
+        if (tuning != null) this.apply(client, tuning);
+    }
+
+    /**
+     * Avvolge lo stream di un trasferimento così da misurarne la banda.<br>
+     * Il tempo viene misurato dalla prima lettura al raggiungimento della fine dello stream o alla sua chiusura;
+     * i trasferimenti inferiori a {@value #MIN_SAMPLE_SIZE} byte, dominati dalla latenza, vengono ignorati.
+     * @param configuration configurazione del server verso il quale avviene il trasferimento
+     * @param stream stream del trasferimento
+     * @return lo stream misurato
+     */
+    InputStream measure(FTPConfiguration configuration, InputStream stream) {
+        return new MeasuredInputStream(stream, this.key(configuration));
+    }
+
+    /**
+     * Avvolge il canale di un caricamento così da misurarne la banda.<br>
+     * Il tempo viene misurato dalla prima scrittura alla chiusura del canale; i trasferimenti inferiori a
+     * {@value #MIN_SAMPLE_SIZE} byte vengono ignorati.
+     * @param configuration configurazione del server verso il quale avviene il trasferimento
+     * @param channel canale del trasferimento
+     * @return il canale misurato
+     */
+    WritableByteChannel measure(FTPConfiguration configuration, WritableByteChannel channel) {
+        return new MeasuredChannel(channel, this.key(configuration));
+    }
+
+    /**
+     * Registra la banda di un trasferimento misurato dal chiamante, ad esempio un caricamento scritto direttamente
+     * sul canale della connessione dati.
+     * @param configuration configurazione del server verso il quale è avvenuto il trasferimento
+     * @param bytes byte trasferiti
+     * @param nanos durata del trasferimento in nanosecondi
+     */
+    void record(FTPConfiguration configuration, long bytes, long nanos) {
+        this.record(this.key(configuration), bytes, nanos);
+    }
+
+    /**
+     * Registra la banda di un trasferimento aggiornando i buffer stimati per il server.
+     * @param key chiave del server
+     * @param bytes byte trasferiti
+     * @param nanos durata del trasferimento in nanosecondi
+     */
+    private void record(String key, long bytes, long nanos) {
+        if (bytes < MIN_SAMPLE_SIZE || nanos <= 0) return;
+        long bytesPerSecond = (long) (bytes * 1_000_000_000d / nanos);
+        tunings.computeIfPresent(key, (k, current) -> current.withThroughput(bytesPerSecond));
+    }
+
+    /**
+     * Applica al client i buffer indicati.<br>
+     * I buffer vengono impostati sui socket dati, gli unici a trasportare volumi rilevanti, prima della loro
+     * connessione così che il sistema operativo possa negoziare una finestra TCP adeguata.
+     * @param client client al quale applicare i buffer
+     * @param tuning valori da applicare
+     */
+    private void apply(FTPClient client, Tuning tuning) {
+        client.setSendDataSocketBufferSize(tuning.bufferSize());
+        client.setReceieveDataSocketBufferSize(tuning.bufferSize());
+        client.setBufferSize(Math.min(tuning.bufferSize(), MAX_COPY_BUFFER_SIZE));
+    }
+
+    /**
+     * Calcola la dimensione dei buffer come il doppio del prodotto banda-ritardo, limitata tra
+     * {@value #MIN_BUFFER_SIZE} e {@value #MAX_BUFFER_SIZE} byte.
+     * @param bytesPerSecond banda stimata in byte al secondo
+     * @param rtt tempo di andata e ritorno stimato
+     * @return la dimensione dei buffer in byte
+     */
+    static int bufferSize(long bytesPerSecond, Duration rtt) {
+        double product = 2d * bytesPerSecond * rtt.toNanos() / 1_000_000_000d;
+        return (int) Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, product));
+    }
+
+    /**
+     * Restituisce la chiave con la quale memorizzare i valori del server indicato.
+     * @param configuration configurazione del server
+     * @return la chiave del server
+     */
+    private String key(FTPConfiguration configuration) {
+        Objects.requireNonNull(configuration);
+        return configuration.getUsername() + "@" + configuration.getServer() + ":" + configuration.getPort();
+    }
+
+    /**
+     * Valori misurati verso un server.
+     * @param rtt tempo di andata e ritorno minimo osservato
+     * @param bytesPerSecond banda massima osservata in byte al secondo, ridotta di {@value #THROUGHPUT_DECAY} a ogni
+     *                       nuova misura, {@code 0} se non ancora misurata
+     * @param bufferSize dimensione in byte dei buffer dei socket dati
+     * @since 2.1
+     */
+    public record Tuning(Duration rtt, long bytesPerSecond, int bufferSize) {
+
+        private Tuning withRtt(Duration sample) {
+            var min = sample.compareTo(rtt) < 0 ? sample : rtt;
+            return new Tuning(min, bytesPerSecond, FTPBufferTuner.bufferSize(bytesPerSecond, min));
+        }
+
+        private Tuning withThroughput(long sample) {
+            long max = Math.max((long) (bytesPerSecond * THROUGHPUT_DECAY), sample);
+            return new Tuning(rtt, max, FTPBufferTuner.bufferSize(max, rtt));
+        }
+
+    }
+
+    /**
+     * Stream che misura la banda del trasferimento sottostante.
+     */
+    private class MeasuredInputStream extends FilterInputStream {
+
+        private final String key;
+        private long start;
+        private long bytes;
+        private boolean recorded;
+
+        MeasuredInputStream(InputStream stream, String key) {
+            super(stream);
+            this.key = key;
+        }
+
+        @Override
+        public int read() throws IOException {
+            this.begin();
+            int read = super.read();
+            if (read < 0) this.end();
+            else bytes++;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            this.begin();
+            int read = super.read(buffer, offset, length);
+            if (read < 0) this.end();
+            else bytes += read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.end();
+            super.close();
+        }
+
+        private void begin() {
+            if (start == 0) start = System.nanoTime();
+        }
+
+        private void end() {
+            if (recorded || start == 0) return;
+            recorded = true;
+            record(key, bytes, System.nanoTime() - start);
+        }
+
+    }
+
+    /**
+     * Canale che misura la banda del caricamento sottostante.
+     */
+    private class MeasuredChannel implements WritableByteChannel {
+
+        private final WritableByteChannel channel;
+        private final String key;
+        private long start;
+        private long bytes;
+        private boolean recorded;
+
+        MeasuredChannel(WritableByteChannel channel, String key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            if (start == 0) start = System.nanoTime();
+            int written = channel.write(source);
+            bytes += written;
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                channel.close();
+            } finally {
+                if (!recorded && start != 0) {
+                    recorded = true;
+                    record(key, bytes, System.nanoTime() - start);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,112 @@
+package it.gtcode.net.ftp;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCmd;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+
+/**
+ * {@link FTPClient} le cui connessioni sono basate su {@link SocketChannel}.<br>
+ * Le connessioni dati espongono così il proprio canale ({@link Socket#getChannel()}), sul quale è possibile scrivere
+ * direttamente buffer diretti e mappati in memoria o trasferire file con {@link java.nio.channels.FileChannel#transferTo},
+ * senza copiarne il contenuto nell'heap.
+ * @since 2.1
+ * @see FTPSession_ApacheFTPClient#upload(java.nio.file.Path, java.nio.ByteBuffer, java.nio.file.Path)
+ * @author Giorgio Testa
+ */
+class FTPClientChannels extends FTPClient implements FTPConnectableClient {
+
+    /**
+     * Costruttore.
+     */
+    FTPClientChannels() {
+        this.setSocketFactory(new ChannelSocketFactory());
+    }
+
+    /**
+     * Adotta la connessione fornita come canale di controllo, come se fosse stata aperta da
+     * {@link #connect(InetAddress, int)}.
+     * @param hostname nome del server al quale si è connessi
+     * @param socket connessione già stabilita con il server
+     * @throws IOException se non è stato possibile comunicare con il server
+     */
+    @Override
+    public void connect(String hostname, Socket socket) throws IOException {
+        this._hostname_ = hostname;
+        this.remoteInetSocketAddress = (InetSocketAddress) socket.getRemoteSocketAddress();
+        this._socket_ = socket;
+        this._connectAction_();
+    }
+
+    /**
+     * Invia il comando fornito e apre la relativa connessione dati.<br>
+     * Al termine del trasferimento è compito dell'utilizzatore chiudere la connessione e invocare
+     * {@link #completePendingCommand()}.
+     * @param command comando da inviare al server
+     * @param arg argomento del comando
+     * @return la connessione dati, {@code null} se il server ha rifiutato il comando
+     * @throws IOException se non è stato possibile comunicare con il server o aprire la connessione
+     */
+    Socket openDataConnection(FTPCmd command, String arg) throws IOException {
+        return this._openDataConnection_(command, arg);
+    }
+
+    /**
+     * {@link SocketFactory} che crea connessioni basate su {@link SocketChannel} bloccanti.
+     */
+    private static class ChannelSocketFactory extends SocketFactory {
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return SocketChannel.open().socket();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return this.connect(this.createSocket(), new InetSocketAddress(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            var socket = this.createSocket();
+            socket.bind(new InetSocketAddress(localHost, localPort));
+            return this.connect(socket, new InetSocketAddress(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return this.connect(this.createSocket(), new InetSocketAddress(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            var socket = this.createSocket();
+            socket.bind(new InetSocketAddress(localAddress, localPort));
+            return this.connect(socket, new InetSocketAddress(address, port));
+        }
+
+        /**
+         * Connette la connessione fornita, chiudendola in caso di errore.
+         * @param socket connessione da connettere
+         * @param address indirizzo al quale connettersi
+         * @return la connessione connessa
+         * @throws IOException se non è stato possibile connettersi
+         */
+        private Socket connect(Socket socket, InetSocketAddress address) throws IOException {
+            try {
+                socket.connect(address);
+                return socket;
+            } catch (IOException ioe) {
+                socket.close();
+                throw ioe;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,123 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.trace.FTPSpan;
+import it.gtcode.net.ftp.trace.FTPTracer;
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.apache.commons.net.ProtocolCommandListener;
+import org.apache.commons.net.ftp.FTPReply;
+
+/**
+ * Traccia i comandi inviati da un client {@code apache-commons-net} come intervalli figli dell'operazione in corso
+ * sulla sessione.<br>
+ * Ogni comando apre un intervallo concluso dalla relativa risposta; una risposta preliminare ({@code 1xx}) apre
+ * inoltre l'intervallo della fase di trasferimento dati, concluso dalla risposta successiva. Vengono registrati
+ * solamente il nome del comando e il codice di risposta, mai gli argomenti. Comandi e risposte ricevuti al di fuori
+ * di un'operazione vengono ignorati.<br>
+ * Come la sessione alla quale è associato, non è pensato per operazioni concorrenti.
+ * @since 2.1
+ * @see FTPSession_Traced
+ * @author Giorgio Testa
+ */
+class FTPCommandTracer implements ProtocolCommandListener {
+
+    private final FTPTracer tracer;
+    private final FTPConfiguration configuration;
+
+    private volatile FTPSpan operation;
+    private FTPSpan command;
+    private FTPSpan data;
+
+    /**
+     * Costruttore.
+     * @param tracer tracciamento con il quale aprire gli intervalli
+     * @param configuration configurazione della sessione, fornisce gli attributi del server
+     */
+    FTPCommandTracer(FTPTracer tracer, FTPConfiguration configuration) {
+        this.tracer = tracer;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Apre l'intervallo radice di un'operazione, al quale verranno associati i comandi successivi.
+     * @param name nome dell'operazione
+     * @return l'intervallo aperto
+     */
+    FTPSpan begin(String name) {
+        var span = tracer.startSpan("FTP " + name, null);
+        this.describeServer(span);
+        operation = span;
+        return span;
+    }
+
+    /**
+     * Conclude l'intervallo di un'operazione, insieme agli eventuali intervalli figli rimasti aperti.
+     * @param span intervallo restituito da {@link #begin(String)}
+     */
+    void end(FTPSpan span) {
+        if (operation == span) {
+            this.endCommand(-1);
+            this.endData(-1);
+            operation = null;
+        }
+        span.end();
+    }
+
+    @Override
+    public void protocolCommandSent(ProtocolCommandEvent event) {
+        var parent = operation;
+        if (parent == null) return;
+        this.endCommand(-1);
+        command = tracer.startSpan("FTP " + event.getCommand(), parent);
+        command.setAttribute(FTPTracer.COMMAND, event.getCommand());
+        this.describeServer(command);
+    }
+
+    @Override
+    public void protocolReplyReceived(ProtocolCommandEvent event) {
+        var parent = operation;
+        if (parent == null) return;
+        int replyCode = event.getReplyCode();
+        if (command != null) {
+            this.endCommand(replyCode);
+            if (FTPReply.isPositivePreliminary(replyCode)) {
+                this.endData(-1);
+                data = tracer.startSpan("FTP data", parent);
+                this.describeServer(data);
+            }
+        } else {
+            this.endData(replyCode);
+        }
+    }
+
+    /**
+     * Conclude l'intervallo del comando in corso, se presente.
+     * @param replyCode codice di risposta ricevuto, negativo se non disponibile
+     */
+    private void endCommand(int replyCode) {
+        if (command == null) return;
+        if (replyCode >= 0) command.setAttribute(FTPTracer.REPLY_CODE, replyCode);
+        command.end();
+        command = null;
+    }
+
+    /**
+     * Conclude l'intervallo della fase di trasferimento dati, se presente.
+     * @param replyCode codice di risposta ricevuto, negativo se non disponibile
+     */
+    private void endData(int replyCode) {
+        if (data == null) return;
+        if (replyCode >= 0) data.setAttribute(FTPTracer.REPLY_CODE, replyCode);
+        data.end();
+        data = null;
+    }
+
+    /**
+     * Imposta sull'intervallo fornito gli attributi del server.
+     * @param span intervallo da descrivere
+     */
+    private void describeServer(FTPSpan span) {
+        if (configuration.getServer() != null) span.setAttribute(FTPTracer.SERVER_ADDRESS, configuration.getServer());
+        span.setAttribute(FTPTracer.SERVER_PORT, configuration.getPort());
+    }
+
+}
@@ -0,0 +1,362 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Limita il numero di operazioni concorrenti verso un server FTP adattandolo con una politica AIMD
+ * (<i>additive increase, multiplicative decrease</i>).<br>
+ * Le operazioni concluse vengono raggruppate in finestre di ampiezza pari al limite corrente; al termine di ogni
+ * finestra il throughput aggregato viene confrontato con il migliore osservato, che decade di un fattore
+ * {@value #THROUGHPUT_DECAY} a ogni finestra così da seguire un eventuale peggioramento del server:
+ * <ul>
+ *     <li>se l'ultimo incremento del limite ha migliorato il throughput di almeno il
+ *     {@value #IMPROVEMENT_THRESHOLD_PERCENT}% il limite viene incrementato nuovamente di uno;</li>
+ *     <li>se invece l'incremento non ha portato benefici il server è saturo e il limite viene ridotto del fattore
+ *     {@value #PLATEAU_BACKOFF};</li>
+ *     <li>dopo una riduzione il limite viene nuovamente incrementato di uno, così da verificare se la saturazione
+ *     persiste.</li>
+ * </ul>
+ * Un server saturo non riduce quindi il limite finestra dopo finestra, ma lo mantiene attorno al punto di
+ * saturazione.<br>
+ * Una risposta {@code 421} ({@link FTPReplyCode#SERVICE_NOT_AVAILABLE}), un timeout o una connessione rifiutata
+ * indicano invece un server sovraccarico: il limite viene immediatamente ridotto del fattore
+ * {@value #OVERLOAD_BACKOFF}.<br>
+ * Il limite corrente è esposto tramite {@link #getLimit()} così da poter essere raccolto come metrica.
+ * @since 2.1
+ * @see FTPSessionFactoryLimited
+ * @see FTPBatchTransfer
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPConcurrencyLimiter {
+
+    /** Limite iniziale di default. */
+    public static final int DEFAULT_INITIAL_LIMIT = 2;
+    /** Limite massimo di default. */
+    public static final int DEFAULT_MAX_LIMIT = 32;
+    /** Fattore di riduzione del limite in caso di sovraccarico del server. */
+    public static final double OVERLOAD_BACKOFF = 0.5;
+    /** Fattore di riduzione del limite in caso di plateau del throughput. */
+    public static final double PLATEAU_BACKOFF = 0.9;
+    /** Miglioramento percentuale minimo del throughput perché il limite venga incrementato. */
+    public static final int IMPROVEMENT_THRESHOLD_PERCENT = 5;
+    /** Fattore applicato a ogni finestra al miglior throughput osservato. */
+    public static final double THROUGHPUT_DECAY = 0.9;
+
+    /** Limite minimo. */
+    @Getter
+    private final int minLimit;
+    /** Limite massimo. */
+    @Getter
+    private final int maxLimit;
+    @EqualsAndHashCode.Exclude
+    private final LongSupplier clock;
+    @EqualsAndHashCode.Exclude
+    private final ReentrantLock lock = new ReentrantLock();
+    @EqualsAndHashCode.Exclude
+    private final Condition available = lock.newCondition();
+
+    @EqualsAndHashCode.Exclude
+    private double limit;
+    @EqualsAndHashCode.Exclude
+    private int inFlight;
+    @EqualsAndHashCode.Exclude
+    private long overloads;
+    @EqualsAndHashCode.Exclude
+    private long windowStart = -1;
+    @EqualsAndHashCode.Exclude
+    private long windowBytes;
+    @EqualsAndHashCode.Exclude
+    private int windowCompletions;
+    @EqualsAndHashCode.Exclude
+    private double throughput;
+    @EqualsAndHashCode.Exclude
+    private double bestThroughput;
+    @EqualsAndHashCode.Exclude
+    private boolean increased = true;
+
+    /**
+     * Costruttore. Parte da {@value #DEFAULT_INITIAL_LIMIT} operazioni concorrenti fino a un massimo di
+     * {@value #DEFAULT_MAX_LIMIT}.
+     */
+    public FTPConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, 1, DEFAULT_MAX_LIMIT);
+    }
+
+    /**
+     * Costruttore.
+     * @param initialLimit limite iniziale
+     * @param minLimit limite minimo, deve essere almeno {@code 1}
+     * @param maxLimit limite massimo
+     * @throws IllegalArgumentException se i limiti forniti non sono coerenti
+     */
+    public FTPConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, System::nanoTime);
+    }
+
+    /**
+     * Costruttore.
+     * @param initialLimit limite iniziale
+     * @param minLimit limite minimo, deve essere almeno {@code 1}
+     * @param maxLimit limite massimo
+     * @param clock orologio in nanosecondi con il quale misurare il throughput
+     * @throws IllegalArgumentException se i limiti forniti non sono coerenti
+     */
+    FTPConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, LongSupplier clock) {
+        if (minLimit < 1) throw new IllegalArgumentException("Il limite minimo deve essere almeno 1");
+        if (maxLimit < minLimit) throw new IllegalArgumentException("Il limite massimo non può essere inferiore al minimo");
+        if (initialLimit < minLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("Il limite iniziale deve essere compreso tra il minimo e il massimo");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.clock = clock;
+    }
+
+    /**
+     * Restituisce il limite corrente di operazioni concorrenti.
+     * @return il limite corrente
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restituisce il numero di operazioni attualmente in corso.
+     * @return il numero di operazioni in corso
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restituisce il numero di sovraccarichi segnalati dal server.
+     * @return il numero di risposte {@code 421}, timeout e connessioni rifiutate registrati
+     */
+    public long getOverloads() {
+        lock.lock();
+        try {
+            return overloads;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restituisce il throughput aggregato misurato nell'ultima finestra conclusa.
+     * @return il throughput in byte al secondo, {@code 0} se non ancora misurato
+     */
+    public double getThroughput() {
+        lock.lock();
+        try {
+            return throughput;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Attende che il numero di operazioni in corso scenda sotto il limite corrente e registra una nuova operazione.
+     * @throws InterruptedException se il thread viene interrotto durante l'attesa
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) available.await();
+            this.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Attende al massimo il tempo indicato che il numero di operazioni in corso scenda sotto il limite corrente e,
+     * in tal caso, registra una nuova operazione.
+     * @param timeout tempo massimo di attesa
+     * @return {@code true} se l'operazione è stata registrata, {@code false} se il tempo è scaduto
+     * @throws InterruptedException se il thread viene interrotto durante l'attesa
+     */
+    public boolean tryAcquire(Duration timeout) throws InterruptedException {
+        long nanos = timeout.toNanos();
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (nanos <= 0) return false;
+                nanos = available.awaitNanos(nanos);
+            }
+            this.start();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Conclude un'operazione andata a buon fine, registrandone i byte trasferiti.
+     * @param bytes byte trasferiti dall'operazione
+     */
+    public void release(long bytes) {
+        lock.lock();
+        try {
+            this.finish();
+            windowBytes += Math.max(bytes, 0);
+            if (++windowCompletions >= Math.max((int) limit, 1)) this.closeWindow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Conclude un'operazione fallita per un sovraccarico del server, riducendo il limite del fattore
+     * {@value #OVERLOAD_BACKOFF}.
+     */
+    public void releaseOverloaded() {
+        lock.lock();
+        try {
+            this.finish();
+            overloads++;
+            this.backoff(OVERLOAD_BACKOFF);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Conclude un'operazione fallita per motivi non legati al carico del server, senza modificare il limite.
+     */
+    public void releaseFailed() {
+        lock.lock();
+        try {
+            this.finish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Conclude un'operazione in base all'esito fornito.<br>
+     * Solamente le operazioni andate a buon fine contribuiscono al throughput: una risposta negativa del server,
+     * ad esempio {@code 550}, conclude l'operazione come fallita anche in assenza di un errore di comunicazione.
+     * @param response esito dell'operazione
+     * @param bytes byte trasferiti dall'operazione
+     * @see #isOverloaded(FTPResponse)
+     */
+    public void release(FTPResponse response, long bytes) {
+        if (isOverloaded(response)) this.releaseOverloaded();
+        else if (response.getStatus() != Status.SUCCESS) this.releaseFailed();
+        else this.release(bytes);
+    }
+
+    /**
+     * Indica se l'esito fornito segnala un sovraccarico del server: risposta {@code 421}, timeout o connessione
+     * rifiutata.
+     * @param response esito da verificare
+     * @return {@code true} se il server risulta sovraccarico, {@code false} altrimenti
+     */
+    public static boolean isOverloaded(FTPResponse response) {
+        return response.getReplyCode() == FTPReplyCode.SERVICE_NOT_AVAILABLE || isOverloaded(response.getException());
+    }
+
+    /**
+     * Indica se l'errore fornito, o una sua causa, segnala un sovraccarico del server.
+     * @param throwable errore da verificare, può essere {@code null}
+     * @return {@code true} se l'errore è un timeout, una connessione rifiutata o una {@link FTPReplyException} con
+     * codice {@code 421}, {@code false} altrimenti
+     */
+    public static boolean isOverloaded(Throwable throwable) {
+        for (var cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException || cause instanceof ConnectException) return true;
+            if (cause instanceof FTPReplyException fre && fre.getReplyCode() == FTPReplyCode.SERVICE_NOT_AVAILABLE.getCode())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Registra l'avvio di un'operazione. Deve essere invocato con il lock acquisito.
+     */
+    private void start() {
+        inFlight++;
+        if (windowStart < 0) windowStart = clock.getAsLong();
+    }
+
+    /**
+     * Registra la conclusione di un'operazione. Deve essere invocato con il lock acquisito.
+     */
+    private void finish() {
+        inFlight = Math.max(inFlight - 1, 0);
+        available.signalAll();
+    }
+
+    /**
+     * Chiude la finestra corrente confrontandone il throughput con il migliore osservato.<br>
+     * Il limite viene ridotto solo se l'ultimo incremento non ha portato benefici; in tutti gli altri casi viene
+     * incrementato. Le finestre senza byte trasferiti, composte ad esempio da sole eliminazioni, non forniscono
+     * indicazioni e non modificano il limite.
+     * Deve essere invocato con il lock acquisito.
+     */
+    private void closeWindow() {
+        if (windowBytes == 0) {
+            this.resetWindow();
+            return;
+        }
+        long elapsed = Math.max(clock.getAsLong() - windowStart, 1);
+        double measured = windowBytes * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        boolean improved = measured >= bestThroughput * (100 + IMPROVEMENT_THRESHOLD_PERCENT) / 100d;
+        if (increased && !improved) {
+            limit = Math.max(limit * PLATEAU_BACKOFF, minLimit);
+            increased = false;
+        } else {
+            limit = Math.min(Math.floor(limit) + 1, maxLimit);
+            increased = true;
+        }
+        throughput = measured;
+        bestThroughput = Math.max(bestThroughput * THROUGHPUT_DECAY, measured);
+        this.resetWindow();
+    }
+
+    /**
+     * Riduce il limite del fattore indicato e avvia una nuova finestra di misura.
+     * Deve essere invocato con il lock acquisito.
+     * @param factor fattore di riduzione
+     */
+    private void backoff(double factor) {
+        limit = Math.max(limit * factor, minLimit);
+        throughput = 0;
+        bestThroughput = 0;
+        increased = false;
+        this.resetWindow();
+    }
+
+    /**
+     * Avvia una nuova finestra di misura. Deve essere invocato con il lock acquisito.
+     */
+    private void resetWindow() {
+        windowBytes = 0;
+        windowCompletions = 0;
+        windowStart = inFlight > 0 ? clock.getAsLong() : -1;
+    }
+
+}
@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * Rappresenta la configurazione con la quale instaurare una connessione a un server FTP.
@@ -27,6 +28,18 @@ public class FTPConfiguration {
     /** Password con la quale effettuare l'accesso. */
     private String password;
 
+    /** Tempo massimo di attesa di una risposta del server o dell'apertura della connessione dati. */
+    private Duration replyTimeout = Duration.ofSeconds(60);
+    /** Tempo massimo di attesa di nuovi dati durante la lettura dalla connessione dati. */
+    private Duration dataTimeout = Duration.ofSeconds(60);
+
+    /**
+     * Indica se verificare che il certificato TLS del server corrisponda al nome del server, sia sul canale di
+     * controllo sia sui canali dati. Va disabilitata solamente verso server con certificati non conformi raggiunti
+     * tramite reti fidate.
+     */
+    private boolean hostnameVerification = true;
+
     public FTPConfiguration() { }
 
 }
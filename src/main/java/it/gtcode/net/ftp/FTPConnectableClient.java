@@ -0,0 +1,25 @@
+package it.gtcode.net.ftp;
+
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Client FTP in grado di adottare un canale di controllo già connesso, ad esempio quello vincente della
+ * connessione in parallelo eseguita da {@link FTPAddressResolver}.
+ * @since 2.1
+ * @see FTPClientChannels
+ * @see FTPSClientResumable
+ * @author Giorgio Testa
+ */
+interface FTPConnectableClient {
+
+    /**
+     * Adotta la connessione fornita come canale di controllo e attende il messaggio di benvenuto del server,
+     * negoziando la protezione del canale se previsto dal client.
+     * @param hostname nome del server al quale si è connessi
+     * @param socket connessione già stabilita con il server
+     * @throws IOException se non è stato possibile comunicare con il server
+     */
+    void connect(String hostname, Socket socket) throws IOException;
+
+}
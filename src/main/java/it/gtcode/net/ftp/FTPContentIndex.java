@@ -0,0 +1,172 @@
+package it.gtcode.net.ftp;
+
+import lombok.EqualsAndHashCode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indice lato client del contenuto delle risorse caricate sui server FTP.<br>
+ * Per ogni risorsa, identificata da server, utente e percorso assoluto, viene memorizzata l'impronta SHA-256 del
+ * contenuto caricato insieme alla dimensione e alla data di ultima modifica riportate dal server al termine del
+ * caricamento, così da poter riconoscere una successiva modifica avvenuta senza passare dal client.<br>
+ * L'indice può essere mantenuto solamente in memoria oppure salvato su file tramite {@link #save()}.
+ * @since 2.1
+ * @see FTPDedupUpload
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPContentIndex {
+
+    private static final String SEPARATOR = ";";
+
+    /** File nel quale viene salvato l'indice, {@code null} se mantenuto solo in memoria. */
+    private final Path file;
+    @EqualsAndHashCode.Exclude
+    private final ConcurrentHashMap<String, Entry> entries;
+
+    /**
+     * Costruttore. L'indice viene mantenuto solamente in memoria.
+     */
+    public FTPContentIndex() {
+        this.file = null;
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Costruttore. Le voci già salvate nel file fornito vengono caricate.
+     * @param file file nel quale salvare l'indice, può non esistere
+     * @throws NullPointerException se il file fornito è {@code null}
+     * @throws UncheckedIOException se non è stato possibile leggere il file
+     */
+    public FTPContentIndex(Path file) {
+        Objects.requireNonNull(file);
+        this.file = file;
+        this.entries = new ConcurrentHashMap<>();
+        if (Files.exists(file)) this.load();
+    }
+
+    /**
+     * Restituisce la voce associata alla risorsa indicata.
+     * @param session sessione verso il server della risorsa
+     * @param remote percorso della risorsa sul server
+     * @return la voce della risorsa, vuota se non presente
+     */
+    public Optional<Entry> get(FTPSession session, Path remote) {
+        return Optional.ofNullable(entries.get(this.key(session, remote)));
+    }
+
+    /**
+     * Associa alla risorsa indicata la voce fornita.
+     * @param session sessione verso il server della risorsa
+     * @param remote percorso della risorsa sul server
+     * @param entry voce da associare
+     * @throws NullPointerException se la voce fornita è {@code null}
+     */
+    public void put(FTPSession session, Path remote, Entry entry) {
+        Objects.requireNonNull(entry);
+        entries.put(this.key(session, remote), entry);
+    }
+
+    /**
+     * Rimuove la voce associata alla risorsa indicata.
+     * @param session sessione verso il server della risorsa
+     * @param remote percorso della risorsa sul server
+     */
+    public void remove(FTPSession session, Path remote) {
+        entries.remove(this.key(session, remote));
+    }
+
+    /**
+     * Restituisce il numero di risorse presenti nell'indice.
+     * @return il numero di risorse presenti
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Salva atomicamente l'indice sul file fornito in fase di costruzione.<br>
+     * Se l'indice è mantenuto solamente in memoria questo comando non ha effetto.
+     * @throws UncheckedIOException se non è stato possibile scrivere il file
+     */
+    public void save() {
+        if (file == null) return;
+        var properties = new Properties();
+        entries.forEach((key, entry) -> properties.setProperty(key, String.join(SEPARATOR,
+                entry.digest(),
+                Long.toString(entry.size()),
+                entry.lastModified() == null ? "" : entry.lastModified().toString()
+        )));
+        try {
+            var directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            var temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                try (var output = Files.newOutputStream(temp)) {
+                    properties.store(output, null);
+                }
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Carica le voci salvate nel file dell'indice, ignorando quelle non valide.
+     * @throws UncheckedIOException se non è stato possibile leggere il file
+     */
+    private void load() {
+        var properties = new Properties();
+        try (var input = Files.newInputStream(file)) {
+            properties.load(input);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        for (var key : properties.stringPropertyNames()) {
+            var values = properties.getProperty(key).split(SEPARATOR, -1);
+            try {
+                entries.put(key, new Entry(
+                        values[0],
+                        Long.parseLong(values[1]),
+                        values[2].isEmpty() ? null : Instant.parse(values[2])
+                ));
+            } catch (RuntimeException ignored) {
+                // voce non valida, la risorsa verrà nuovamente caricata
+            }
+        }
+    }
+
+    /**
+     * Calcola la chiave della risorsa a partire dal server, dall'utente e dal percorso assoluto sul server.
+     * @param session sessione verso il server della risorsa
+     * @param remote percorso della risorsa sul server
+     * @return la chiave della risorsa
+     */
+    private String key(FTPSession session, Path remote) {
+        var configuration = session.getConfiguration();
+        return configuration.getUsername() + "@" + configuration.getServer() + ":" + configuration.getPort()
+                + session.getRoot().resolve(remote).normalize().toString().replace('\\', '/');
+    }
+
+    /**
+     * Voce dell'indice relativa a una risorsa caricata.
+     * @param digest impronta SHA-256 esadecimale del contenuto
+     * @param size dimensione in byte riportata dal server
+     * @param lastModified data di ultima modifica riportata dal server, {@code null} se non nota
+     * @since 2.1
+     */
+    public record Entry(String digest, long size, Instant lastModified) { }
+
+}
@@ -0,0 +1,283 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPDedupResponse;
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPStatResponse;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Carica risorse su una {@link FTPSession} evitando il trasferimento quando il server ne possiede già una copia
+ * identica.<br>
+ * L'impronta SHA-256 del contenuto viene calcolata durante la lettura dello stream inviato al server e memorizzata in
+ * un {@link FTPContentIndex}. Ai caricamenti successivi della stessa destinazione, se l'indice riporta un contenuto
+ * della stessa dimensione, viene calcolata l'impronta del file locale e confrontata con quella indicizzata; il
+ * trasferimento viene evitato se le impronte coincidono e il server riporta ancora la dimensione e la data di ultima
+ * modifica registrate.<br>
+ * Opzionalmente l'impronta può essere verificata direttamente sul server tramite il comando {@code HASH}, quando
+ * supportato: in questo caso la deduplicazione avviene anche per risorse non presenti nell'indice.<br>
+ * Il protocollo non consente la copia di risorse lato server, perciò la deduplicazione riguarda il contenuto già
+ * presente nella destinazione richiesta.
+ * @since 2.1
+ * @see FTPContentIndex
+ * @see FTPDedupResponse
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPDedupUpload {
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final String DEDUPLICATED_MESSAGE = "Contenuto già presente sul server, trasferimento evitato";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FTPContentIndex index;
+    /** Indica se verificare l'impronta sul server tramite il comando {@code HASH}. */
+    @Getter
+    private final boolean serverHash;
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong hits;
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong misses;
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong skippedBytes;
+
+    /**
+     * Costruttore. L'impronta viene verificata solamente tramite l'indice fornito.
+     * @param index indice del contenuto caricato
+     * @throws NullPointerException se l'indice fornito è {@code null}
+     */
+    public FTPDedupUpload(FTPContentIndex index) {
+        this(index, false);
+    }
+
+    /**
+     * Costruttore.
+     * @param index indice del contenuto caricato
+     * @param serverHash {@code true} per verificare l'impronta anche sul server tramite il comando {@code HASH}
+     * @throws NullPointerException se l'indice fornito è {@code null}
+     */
+    public FTPDedupUpload(FTPContentIndex index, boolean serverHash) {
+        Objects.requireNonNull(index);
+        this.index = index;
+        this.serverHash = serverHash;
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.skippedBytes = new AtomicLong();
+    }
+
+    /**
+     * Carica il file indicato nella directory fornita, evitando il trasferimento se il server ne possiede già una
+     * copia identica.
+     * @param session sessione sulla quale caricare il file
+     * @param file file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con l'impronta del contenuto e gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    public FTPDedupResponse upload(FTPSession session, Path file, Path target) throws FileNotFoundException {
+        if (!Files.isRegularFile(file)) throw new FileNotFoundException(file.toString());
+        var remote = target.resolve(file.getFileName());
+        try {
+            long size = Files.size(file);
+            var indexed = index.get(session, remote).filter(entry -> entry.size() == size);
+            if (indexed.isPresent() || serverHash) {
+                var response = this.deduplicate(session, remote, this.digest(file), size, indexed.orElse(null));
+                if (response != null) return response;
+            }
+        } catch (IOException ignored) {
+            // il file verrà caricato, l'eventuale errore di lettura verrà riportato dal caricamento
+        }
+        misses.incrementAndGet();
+        try (InputStream stream = new FileInputStream(file.toFile())) {
+            return this.store(session, file, stream, target);
+        } catch (FileNotFoundException ffe) {
+            throw ffe;
+        } catch (IOException ioe) {
+            var response = new FTPDedupResponse();
+            response.asError(FTPReplyCode.ACTION_ABORTED.getCode(), ioe.getMessage(), ioe);
+            return response;
+        }
+    }
+
+    /**
+     * Carica lo stream fornito nella directory indicata registrandone l'impronta, calcolata durante la lettura.<br>
+     * Non potendo conoscere il contenuto prima della lettura il trasferimento avviene sempre, ma le impronte
+     * registrate consentono di deduplicare i successivi caricamenti tramite {@link #upload(FTPSession, Path, Path)}.<br>
+     * NOTA: Questo metodo <b>NON</b> chiude l'{@code InputStream} fornito.
+     * @param session sessione sulla quale caricare il file
+     * @param file nome del file da caricare
+     * @param fileStream {@code InputStream} relativo al file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con l'impronta del contenuto e gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    public FTPDedupResponse upload(FTPSession session, Path file, InputStream fileStream, Path target) {
+        return this.store(session, file, fileStream, target);
+    }
+
+    /**
+     * Restituisce il numero di caricamenti evitati.
+     * @return il numero di caricamenti evitati
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Restituisce il numero di caricamenti per i quali è stato necessario trasferire il contenuto.
+     * @return il numero di caricamenti non evitati
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Restituisce il numero di byte il cui trasferimento è stato evitato.
+     * @return il numero di byte non trasferiti
+     */
+    public long getSkippedBytes() {
+        return skippedBytes.get();
+    }
+
+    /**
+     * Verifica se il server possiede già il contenuto fornito nella destinazione indicata.
+     * @param session sessione verso il server
+     * @param remote percorso della destinazione sul server
+     * @param digest impronta del file locale
+     * @param size dimensione del file locale
+     * @param indexed voce dell'indice relativa alla destinazione, {@code null} se assente
+     * @return l'esito del caricamento evitato, {@code null} se è necessario trasferire il contenuto
+     */
+    private FTPDedupResponse deduplicate(FTPSession session, Path remote, String digest, long size,
+                                         FTPContentIndex.Entry indexed) {
+        if (indexed != null && !indexed.digest().equals(digest)) indexed = null;
+        if (indexed == null && !serverHash) return null;
+
+        FTPStatResponse stat = session.stat(remote);
+        if (stat.getStatus() != Status.SUCCESS || stat.getSize() != size) return null;
+        if (indexed != null && indexed.lastModified() != null && !indexed.lastModified().equals(stat.getLastModified()))
+            return null;
+        var remoteDigest = serverHash ? this.serverDigest(session, remote) : null;
+        if (remoteDigest != null ? !remoteDigest.equalsIgnoreCase(digest) : indexed == null) return null;
+
+        index.put(session, remote, new FTPContentIndex.Entry(digest, size, stat.getLastModified()));
+        hits.incrementAndGet();
+        skippedBytes.addAndGet(size);
+        var response = new FTPDedupResponse();
+        response.asSuccess(stat.getReplyCode().getCode(), DEDUPLICATED_MESSAGE, digest, true);
+        return response;
+    }
+
+    /**
+     * Carica lo stream fornito calcolandone l'impronta durante la lettura e la registra nell'indice insieme alle
+     * informazioni riportate dal server.
+     * @param session sessione sulla quale caricare il file
+     * @param file nome del file da caricare
+     * @param fileStream stream del contenuto da caricare
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con l'impronta del contenuto e gli eventuali messaggi di errore
+     */
+    private FTPDedupResponse store(FTPSession session, Path file, InputStream fileStream, Path target) {
+        var remote = target.resolve(file.getFileName());
+        var digest = this.newDigest();
+        var upload = session.upload(file, new DigestInputStream(fileStream, digest), target);
+        var response = new FTPDedupResponse();
+        if (upload.getStatus() != Status.SUCCESS) {
+            index.remove(session, remote);
+            response.asError(upload.getReplyCode().getCode(), upload.getMessage(), upload.getException());
+            return response;
+        }
+
+        var hex = HexFormat.of().formatHex(digest.digest());
+        var stat = session.stat(remote);
+        if (stat.getStatus() == Status.SUCCESS)
+            index.put(session, remote, new FTPContentIndex.Entry(hex, stat.getSize(), stat.getLastModified()));
+        else
+            index.remove(session, remote);
+        response.asSuccess(upload.getReplyCode().getCode(), upload.getMessage(), hex, false);
+        return response;
+    }
+
+    /**
+     * Calcola l'impronta del file fornito.
+     * @param file file del quale calcolare l'impronta
+     * @return l'impronta esadecimale del file
+     * @throws IOException se non è stato possibile leggere il file
+     */
+    private String digest(Path file) throws IOException {
+        var digest = this.newDigest();
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Richiede al server l'impronta SHA-256 della risorsa tramite il comando {@code HASH}.<br>
+     * Il comando viene inviato solamente alle sessioni in grado di eseguire comandi arbitrari, anche se decorate:
+     * la sessione viene raggiunta tramite {@link FTPSession#unwrap(Class, java.util.function.Function)}.
+     * @param session sessione verso il server
+     * @param remote percorso della risorsa sul server
+     * @return l'impronta esadecimale della risorsa, {@code null} se il server non la fornisce
+     */
+    private String serverDigest(FTPSession session, Path remote) {
+        return session.unwrap(FTPSession_ApacheFTPClient.class, apache -> this.serverDigest(apache, remote)).orElse(null);
+    }
+
+    /**
+     * Richiede al server l'impronta SHA-256 della risorsa tramite il comando {@code HASH}.
+     * @param apache sessione in grado di eseguire comandi arbitrari
+     * @param remote percorso della risorsa sul server
+     * @return l'impronta esadecimale della risorsa, {@code null} se il server non la fornisce
+     */
+    private String serverDigest(FTPSession_ApacheFTPClient apache, Path remote) {
+        var client = apache.getFtpClient();
+        try {
+            apache.prepareCommand();
+            client.sendCommand("OPTS", "HASH " + ALGORITHM);
+            if (client.sendCommand("HASH", remote.toString()) != FTPReplyCode.FILE_STATUS.getCode()) return null;
+            var tokens = client.getReplyString().trim().split(" ");
+            return tokens.length >= 4 && ALGORITHM.equalsIgnoreCase(tokens[1]) ? tokens[3] : null;
+        } catch (IOException ioe) {
+            apache.handleConnectionLoss();
+            return null;
+        }
+    }
+
+    /**
+     * Crea una nuova istanza dell'algoritmo di impronta {@value #ALGORITHM}.
+     * @return l'algoritmo di impronta, pronto all'utilizzo
+     * @throws IllegalStateException se l'algoritmo non è disponibile nella JVM
+     */
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException("Algoritmo " + ALGORITHM + " non disponibile", nsae);
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.trace.FTPTracer;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * Rappresenta le opzioni facoltative con le quali creare le sessioni basate su {@code apache-commons-net}.<br>
+ * Tutte le opzioni sono disattivate di default: le sessioni utilizzano FTP in chiaro, i buffer di default, la
+ * risoluzione degli indirizzi di sistema e non vengono tracciate. Le opzioni vengono lette alla creazione del
+ * {@link FTPTransportApache}, della {@link FTPSessionFactoryApache} o della {@link FTPSession_ApacheFTPClient}:
+ * le modifiche successive non hanno effetto su quanto già creato.
+ * @since 2.1
+ * @see FTPTransportApache
+ * @see FTPSessionFactoryApache
+ * @see FTPSession_ApacheFTPClient
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+@Getter@Setter
+public class FTPOptionsApache {
+
+    /**
+     * Contesto TLS con il quale utilizzare FTPS esplicito ({@code AUTH TLS}, {@code PBSZ 0}, {@code PROT P}),
+     * {@code null} per utilizzare FTP in chiaro. Condividere lo stesso contesto tra più sessioni permette di
+     * riprendere le sessioni TLS già negoziate con il server.
+     */
+    private SSLContext sslContext;
+    /**
+     * Dimensionamento automatico dei buffer in base al prodotto banda-ritardo, {@code null} per utilizzare i valori
+     * di default. Può essere condiviso tra più sessioni così che i valori misurati vengano riutilizzati.
+     */
+    private FTPBufferTuner bufferTuner;
+    /**
+     * Tracciamento delle sessioni create, {@link FTPTracer#NOOP} per non tracciarle. Viene applicato dal
+     * {@link FTPTransportApache} e dalla {@link FTPSessionFactoryApache}.
+     */
+    private FTPTracer tracer = FTPTracer.NOOP;
+    /**
+     * Risoluzione degli indirizzi del server tramite cache e connessione in parallelo, {@code null} per utilizzare
+     * la risoluzione di sistema. Può essere condivisa tra più factory.
+     */
+    private FTPAddressResolver resolver;
+
+    public FTPOptionsApache() { }
+
+}
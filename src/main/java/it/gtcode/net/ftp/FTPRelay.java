@@ -0,0 +1,232 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.ftp.response.FTPTransferResponse;
+import it.gtcode.net.ftp.response.FTPTransferResponse.Mode;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Inoltra una risorsa da una {@link FTPSession} a un'altra collegando lo stream di download a quello di upload
+ * tramite un buffer circolare di dimensione fissa.<br>
+ * La lettura dal server sorgente e la scrittura verso il server di destinazione avvengono su una coppia di thread
+ * dedicati, così che le latenze delle due connessioni si sovrappongano; quando il buffer è pieno la lettura viene
+ * sospesa fino a quando la scrittura non ne libera spazio. La memoria utilizzata è quindi costante indipendentemente
+ * dalla dimensione del file e non viene utilizzato il disco locale.<br>
+ * Un errore su uno dei due lati interrompe anche l'altro.
+ * @since 2.1
+ * @see FTPServerTransfer
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPRelay {
+
+    /** Dimensione di default del buffer circolare. */
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    /** Dimensione dei singoli blocchi letti dal server sorgente. */
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /** Dimensione in byte del buffer circolare utilizzato per ogni trasferimento. */
+    @Getter
+    private final int bufferSize;
+    @EqualsAndHashCode.Exclude
+    private final ThreadFactory threadFactory;
+
+    /**
+     * Costruttore. Utilizza un buffer di {@value #DEFAULT_BUFFER_SIZE} byte e thread daemon dedicati.
+     */
+    public FTPRelay() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Costruttore. Utilizza thread daemon dedicati.
+     * @param bufferSize dimensione in byte del buffer circolare
+     * @throws IllegalArgumentException se la dimensione fornita non è positiva
+     */
+    public FTPRelay(int bufferSize) {
+        this(bufferSize, FTPRelay::newDaemonThread);
+    }
+
+    /**
+     * Costruttore.
+     * @param bufferSize dimensione in byte del buffer circolare
+     * @param threadFactory factory con la quale creare i thread di lettura e scrittura, ad esempio una factory di
+     *                      virtual thread
+     * @throws IllegalArgumentException se la dimensione fornita non è positiva
+     * @throws NullPointerException se la factory fornita è {@code null}
+     */
+    public FTPRelay(int bufferSize, ThreadFactory threadFactory) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("La dimensione del buffer deve essere positiva");
+        Objects.requireNonNull(threadFactory);
+        this.bufferSize = bufferSize;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Inoltra il file indicato dalla sessione sorgente alla directory fornita della sessione di destinazione.<br>
+     * Il metodo termina una volta completato, o interrotto, il trasferimento su entrambi i lati. Se il thread
+     * chiamante viene interrotto durante l'attesa l'inoltro viene annullato e la transazione di download viene
+     * conclusa dal thread di lettura al proprio termine, così da non chiuderla mentre lo stream è ancora in lettura.
+     * @param source sessione dalla quale scaricare il file
+     * @param file file da inoltrare, relativo alla root della sessione sorgente
+     * @param target sessione sulla quale caricare il file
+     * @param directory directory della sessione di destinazione nella quale caricare il file
+     * @return l'esito dell'inoltro con gli eventuali messaggi di errore
+     * @throws IllegalStateException se una delle sessioni non può essere utilizzata
+     */
+    public FTPTransferResponse relay(FTPSession source, Path file, FTPSession target, Path directory) {
+        if (!target.isOpen()) throw new IllegalStateException("Impossibile utilizzare la sessione, questa risulta essere chiusa");
+        var response = new FTPTransferResponse();
+        var download = source.download(file);
+        if (download.getStatus() != Status.SUCCESS) {
+            this.asError(response, download, download.getException());
+            return response;
+        }
+
+        var ring = new FTPRingBuffer(bufferSize);
+        var reader = this.start(ring, () -> this.fill(download.getStream().orElseThrow(), ring));
+        var writer = this.start(ring, () -> {
+            var upload = target.upload(file.getFileName(), ring.inputStream(), directory);
+            if (upload.getStatus() != Status.SUCCESS)
+                ring.fail(upload.getException() != null ? upload.getException() : new IOException(upload.getMessage()));
+            return upload;
+        });
+
+        IOException readFailure;
+        FTPResponse upload;
+        try {
+            readFailure = this.await(reader);
+            upload = this.await(writer);
+        } catch (InterruptedException ie) {
+            ring.fail(new InterruptedIOException("Inoltro interrotto"));
+            reader.whenComplete((result, failure) -> this.complete(download));
+            Thread.currentThread().interrupt();
+            this.asError(response, download, new InterruptedIOException("Inoltro interrotto"));
+            return response;
+        }
+        IOException closeFailure = this.complete(download);
+
+        if (upload == null) {
+            this.asError(response, download, new IOException("Caricamento interrotto in maniera inattesa"));
+        } else if (upload.getStatus() != Status.SUCCESS) {
+            this.asError(response, upload, upload.getException());
+        } else if (readFailure != null || closeFailure != null) {
+            this.asError(response, download, readFailure != null ? readFailure : closeFailure);
+        } else {
+            response.asSuccess(upload.getReplyCode().getCode(), upload.getMessage(), Mode.RELAY);
+        }
+        return response;
+    }
+
+    /**
+     * Copia lo stream del server sorgente nel buffer circolare, chiudendo il buffer al termine o segnalando l'errore
+     * riscontrato.
+     * @param stream stream del server sorgente
+     * @param ring buffer circolare di destinazione
+     * @return l'eventuale errore riscontrato durante la lettura, {@code null} altrimenti
+     */
+    private IOException fill(InputStream stream, FTPRingBuffer ring) {
+        var chunk = new byte[Math.min(CHUNK_SIZE, bufferSize)];
+        try {
+            int read;
+            while ((read = stream.read(chunk)) != -1) ring.write(chunk, 0, read);
+            ring.close();
+            return null;
+        } catch (IOException ioe) {
+            ring.fail(ioe);
+            return ioe;
+        }
+    }
+
+    /**
+     * Completa la transazione di download sul server sorgente.
+     * @param download risposta del download
+     * @return l'eventuale errore riscontrato, {@code null} altrimenti
+     */
+    private IOException complete(FTPStreamResponse download) {
+        try {
+            download.close();
+            return null;
+        } catch (UncheckedIOException uioe) {
+            return uioe.getCause();
+        }
+    }
+
+    /**
+     * Avvia l'operazione fornita su un nuovo thread creato dalla factory della classe.<br>
+     * Se l'operazione termina con un errore inatteso questo viene segnalato al buffer, così da non lasciare l'altro
+     * lato in attesa.
+     * @param ring buffer condiviso dai due lati dell'inoltro
+     * @param task operazione da eseguire
+     * @return il risultato futuro dell'operazione
+     * @param <T> tipo del risultato
+     */
+    private <T> CompletableFuture<T> start(FTPRingBuffer ring, Supplier<T> task) {
+        var future = new CompletableFuture<T>();
+        threadFactory.newThread(() -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable t) {
+                ring.fail(new IOException("Inoltro interrotto in maniera inattesa", t));
+                future.completeExceptionally(t);
+            }
+        }).start();
+        return future;
+    }
+
+    /**
+     * Attende il termine dell'operazione fornita.
+     * @param future operazione da attendere
+     * @return il risultato dell'operazione oppure {@code null} se questa è terminata con un errore inatteso
+     * @param <T> tipo del risultato
+     * @throws InterruptedException se il thread corrente viene interrotto durante l'attesa
+     */
+    private <T> T await(CompletableFuture<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ee) {
+            return null;
+        }
+    }
+
+    /**
+     * Riporta sulla risposta dell'inoltro l'errore contenuto nella risposta fornita.
+     * @param response risposta dell'inoltro
+     * @param failure risposta della sessione che ha causato il fallimento
+     * @param exception eccezione da associare alla risposta
+     */
+    private void asError(FTPTransferResponse response, FTPResponse failure, IOException exception) {
+        response.setReplyCode(failure.getReplyCode());
+        response.setException(exception);
+        response.setMode(Mode.RELAY);
+        response.asError(failure.getMessage());
+    }
+
+    /**
+     * Crea un thread daemon dedicato all'inoltro.
+     * @param task operazione da eseguire
+     * @return il thread creato
+     */
+    private static Thread newDaemonThread(Runnable task) {
+        var thread = new Thread(task, "ftp-relay-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+}
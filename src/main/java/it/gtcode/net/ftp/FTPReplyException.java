@@ -0,0 +1,43 @@
+package it.gtcode.net.ftp;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Errore di comunicazione causato da una risposta negativa del server FTP, della quale riporta il codice.<br>
+ * Consente di classificare l'errore, ad esempio come sovraccarico del server, senza interpretarne il messaggio.
+ * @since 2.1
+ * @see FTPConcurrencyLimiter#isOverloaded(Throwable)
+ * @author Giorgio Testa
+ */
+public class FTPReplyException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Codice numerico della risposta del server. */
+    @Getter
+    private final int replyCode;
+
+    /**
+     * Costruttore.
+     * @param message messaggio di errore
+     * @param replyCode codice numerico della risposta del server
+     */
+    public FTPReplyException(String message, int replyCode) {
+        super(message);
+        this.replyCode = replyCode;
+    }
+
+    /**
+     * Costruttore.
+     * @param message messaggio di errore
+     * @param replyCode codice numerico della risposta del server
+     * @param cause errore che ha causato il fallimento
+     */
+    public FTPReplyException(String message, int replyCode, Throwable cause) {
+        super(message, cause);
+        this.replyCode = replyCode;
+    }
+
+}
@@ -0,0 +1,195 @@
+package it.gtcode.net.ftp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Buffer circolare di dimensione fissa che collega un produttore e un consumatore in esecuzione su thread differenti.<br>
+ * Il produttore viene sospeso quando il buffer è pieno e il consumatore quando è vuoto, garantendo un utilizzo di
+ * memoria costante indipendentemente dalla quantità di dati che lo attraversano.<br>
+ * Un errore segnalato da uno dei due lati tramite {@link #fail(IOException)} viene propagato all'altro alla successiva
+ * operazione di lettura o scrittura.
+ * @since 2.1
+ * @author Giorgio Testa
+ */
+class FTPRingBuffer {
+
+    private final byte[] buffer;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+
+    /** Posizione del prossimo byte da leggere. */
+    private int head;
+    /** Numero di byte presenti nel buffer. */
+    private int count;
+    /** Indica che il produttore ha terminato la scrittura. */
+    private boolean closed;
+    /** Eventuale errore segnalato da uno dei due lati. */
+    private IOException failure;
+
+    /**
+     * Costruttore.
+     * @param capacity dimensione in byte del buffer
+     * @throws IllegalArgumentException se la dimensione fornita non è positiva
+     */
+    FTPRingBuffer(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("La dimensione del buffer deve essere positiva");
+        this.buffer = new byte[capacity];
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+    }
+
+    /**
+     * Scrive i byte forniti nel buffer, attendendo che si liberi spazio quando questo risulta pieno.
+     * @param bytes byte da scrivere
+     * @param offset posizione del primo byte da scrivere
+     * @param length numero di byte da scrivere
+     * @throws IOException se è stato segnalato un errore, se il buffer è già stato chiuso o se il thread viene interrotto
+     */
+    void write(byte[] bytes, int offset, int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        lock.lock();
+        try {
+            while (length > 0) {
+                while (count == buffer.length && failure == null) this.await(notFull);
+                if (failure != null) throw new IOException("Il lettore ha interrotto il trasferimento", failure);
+                if (closed) throw new IOException("Il buffer è stato chiuso");
+                int tail = (head + count) % buffer.length;
+                int chunk = Math.min(length, Math.min(buffer.length - count, buffer.length - tail));
+                System.arraycopy(bytes, offset, buffer, tail, chunk);
+                count += chunk;
+                offset += chunk;
+                length -= chunk;
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Legge dal buffer fino a {@code length} byte, attendendo che siano disponibili dati quando questo risulta vuoto.
+     * @param bytes destinazione dei byte letti
+     * @param offset posizione dalla quale iniziare a scrivere nella destinazione
+     * @param length numero massimo di byte da leggere
+     * @return il numero di byte letti, {@code -1} se il produttore ha terminato e il buffer è vuoto
+     * @throws IOException se è stato segnalato un errore o se il thread viene interrotto
+     */
+    int read(byte[] bytes, int offset, int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        if (length == 0) return 0;
+        lock.lock();
+        try {
+            while (count == 0 && !closed && failure == null) this.await(notEmpty);
+            if (failure != null) throw new IOException("Lo scrittore ha interrotto il trasferimento", failure);
+            if (count == 0) return -1;
+            int read = 0;
+            while (read < length && count > 0) {
+                int chunk = Math.min(length - read, Math.min(count, buffer.length - head));
+                System.arraycopy(buffer, head, bytes, offset + read, chunk);
+                head = (head + chunk) % buffer.length;
+                count -= chunk;
+                read += chunk;
+            }
+            notFull.signal();
+            return read;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Indica che il produttore ha terminato la scrittura: il consumatore riceverà la fine dello stream una volta
+     * letti i dati rimanenti.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Segnala un errore, risvegliando entrambi i lati. Viene mantenuto solamente il primo errore segnalato.
+     * @param cause errore riscontrato
+     */
+    void fail(IOException cause) {
+        lock.lock();
+        try {
+            if (failure == null) failure = cause;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restituisce una vista in lettura del buffer.
+     * @return {@link InputStream} che legge dal buffer
+     */
+    InputStream inputStream() {
+        return new InputStream() {
+            private final byte[] single = new byte[1];
+
+            @Override
+            public int read() throws IOException {
+                return FTPRingBuffer.this.read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                return FTPRingBuffer.this.read(bytes, offset, length);
+            }
+        };
+    }
+
+    /**
+     * Restituisce una vista in scrittura del buffer; la sua chiusura corrisponde a {@link #close()}.
+     * @return {@link OutputStream} che scrive nel buffer
+     */
+    OutputStream outputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                FTPRingBuffer.this.write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                FTPRingBuffer.this.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() {
+                FTPRingBuffer.this.close();
+            }
+        };
+    }
+
+    /**
+     * Attende la condizione fornita convertendo l'interruzione del thread in {@link InterruptedIOException}.
+     * @param condition condizione da attendere
+     * @throws InterruptedIOException se il thread viene interrotto durante l'attesa
+     */
+    private void await(Condition condition) throws InterruptedIOException {
+        try {
+            condition.await();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Trasferimento interrotto");
+        }
+    }
+
+}
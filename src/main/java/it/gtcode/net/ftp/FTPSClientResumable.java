@@ -0,0 +1,275 @@
+package it.gtcode.net.ftp;
+
+import org.apache.commons.net.ftp.FTPSClient;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.util.Objects;
+
+/**
+ * {@link FTPSClient} in modalità esplicita ({@code AUTH TLS}) che riutilizza la sessione TLS del canale di controllo
+ * sui canali dati.<br>
+ * {@link FTPSClient} protegge ogni connessione dati con un handshake completo verso la porta dati, che per il
+ * {@link SSLContext} risulta essere un interlocutore sempre diverso: con {@code PROT P} le connessioni dati vengono
+ * invece aperte in chiaro e successivamente cifrate presentandole con host e porta del canale di controllo, così che
+ * il contesto possa riprendere la sessione già negoziata con un handshake abbreviato. Molti server (ad esempio
+ * {@code vsftpd} con {@code require_ssl_reuse}) rifiutano del resto i canali dati che non riprendono la sessione
+ * del canale di controllo.<br>
+ * Condividendo lo stesso {@link SSLContext} tra più client anche le nuove sessioni verso lo stesso server riprendono
+ * le sessioni TLS memorizzate nella cache del contesto.
+ * @since 2.1
+ * @see FTPOptionsApache#setSslContext(SSLContext)
+ * @author Giorgio Testa
+ */
+class FTPSClientResumable extends FTPSClient implements FTPConnectableClient {
+
+    private final SSLContext context;
+    private boolean privateData;
+
+    /**
+     * Costruttore.
+     * @param context contesto TLS con il quale cifrare i canali di controllo e dati
+     * @throws NullPointerException se il contesto fornito è {@code null}
+     */
+    FTPSClientResumable(SSLContext context) {
+        super(false, Objects.requireNonNull(context));
+        this.context = context;
+    }
+
+    /**
+     * Adotta la connessione fornita come canale di controllo, come se fosse stata aperta da
+     * {@link #connect(InetAddress, int)}.
+     * @param hostname nome del server al quale si è connessi
+     * @param socket connessione già stabilita con il server
+     * @throws IOException se non è stato possibile comunicare con il server o negoziare la protezione del canale
+     */
+    @Override
+    public void connect(String hostname, Socket socket) throws IOException {
+        this._hostname_ = hostname;
+        this.remoteInetSocketAddress = (InetSocketAddress) socket.getRemoteSocketAddress();
+        this._socket_ = socket;
+        this._connectAction_();
+    }
+
+    /**
+     * Imposta il livello di protezione dei canali dati.<br>
+     * Con {@code P} le connessioni dati vengono aperte in chiaro e cifrate da
+     * {@link #_openDataConnection_(String, String)} riprendendo la sessione del canale di controllo.
+     * @param prot livello di protezione richiesto
+     * @throws SSLException se il server ha rifiutato il livello richiesto
+     * @throws IOException se non è stato possibile comunicare con il server
+     */
+    @Override
+    public void execPROT(String prot) throws IOException {
+        super.execPROT(prot);
+        this.privateData = "P".equals(prot);
+        if (privateData) {
+            this.setSocketFactory(null);
+            this.setServerSocketFactory(null);
+        }
+    }
+
+    /**
+     * Apre la connessione dati e, se richiesto, la cifra riprendendo la sessione TLS del canale di controllo.<br>
+     * Se abilitata tramite {@link #setEndpointCheckingEnabled(boolean)} il certificato presentato sulla connessione
+     * dati viene verificato rispetto al nome del server, come sul canale di controllo.<br>
+     * Sulla connessione viene disabilitato l'algoritmo di Nagle: i messaggi dell'handshake vengono scritti in più
+     * record consecutivi che altrimenti attenderebbero l'ACK ritardato del server.
+     * @param command comando da inviare al server
+     * @param arg argomento del comando
+     * @return la connessione dati, {@code null} se il server ha rifiutato il comando
+     * @throws IOException se non è stato possibile aprire o cifrare la connessione
+     */
+    @Override
+    protected Socket _openDataConnection_(String command, String arg) throws IOException {
+        var socket = super._openDataConnection_(command, arg);
+        if (socket == null || !privateData || socket instanceof SSLSocket) return socket;
+        try {
+            socket.setTcpNoDelay(true);
+            var secure = (SSLSocket) context.getSocketFactory()
+                    .createSocket(new ControlEndpointSocket(socket, this.getRemotePort()), _hostname_, this.getRemotePort(), true);
+            secure.setUseClientMode(true);
+            if (this.isEndpointCheckingEnabled()) {
+                var parameters = secure.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                secure.setSSLParameters(parameters);
+            }
+            if (this.getProtocols() != null) secure.setEnabledProtocols(this.getProtocols());
+            if (this.getSuites() != null) secure.setEnabledCipherSuites(this.getSuites());
+            secure.startHandshake();
+            return secure;
+        } catch (IOException ioe) {
+            socket.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Connessione dati in chiaro che riporta come porta remota quella del canale di controllo.<br>
+     * La cache delle sessioni TLS del client è indicizzata per host e porta remota effettiva della connessione
+     * sottostante, ignorando la porta indicata durante la creazione del socket cifrato: senza questo adattamento
+     * ogni connessione dati, aperta su una porta sempre diversa, non troverebbe alcuna sessione da riprendere.
+     * Ogni altra operazione viene delegata alla connessione originale.
+     */
+    private static class ControlEndpointSocket extends Socket {
+
+        private final Socket socket;
+        private final int port;
+
+        ControlEndpointSocket(Socket socket, int port) {
+            this.socket = socket;
+            this.port = port;
+        }
+
+        @Override
+        public int getPort() {
+            return port;
+        }
+
+        @Override
+        public InetAddress getInetAddress() {
+            return socket.getInetAddress();
+        }
+
+        @Override
+        public SocketAddress getRemoteSocketAddress() {
+            return socket.getRemoteSocketAddress();
+        }
+
+        @Override
+        public InetAddress getLocalAddress() {
+            return socket.getLocalAddress();
+        }
+
+        @Override
+        public int getLocalPort() {
+            return socket.getLocalPort();
+        }
+
+        @Override
+        public SocketAddress getLocalSocketAddress() {
+            return socket.getLocalSocketAddress();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return socket.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return socket.getOutputStream();
+        }
+
+        @Override
+        public boolean isConnected() {
+            return socket.isConnected();
+        }
+
+        @Override
+        public boolean isBound() {
+            return socket.isBound();
+        }
+
+        @Override
+        public boolean isClosed() {
+            return socket.isClosed();
+        }
+
+        @Override
+        public boolean isInputShutdown() {
+            return socket.isInputShutdown();
+        }
+
+        @Override
+        public boolean isOutputShutdown() {
+            return socket.isOutputShutdown();
+        }
+
+        @Override
+        public void shutdownInput() throws IOException {
+            socket.shutdownInput();
+        }
+
+        @Override
+        public void shutdownOutput() throws IOException {
+            socket.shutdownOutput();
+        }
+
+        @Override
+        public void setSoTimeout(int timeout) throws SocketException {
+            socket.setSoTimeout(timeout);
+        }
+
+        @Override
+        public int getSoTimeout() throws SocketException {
+            return socket.getSoTimeout();
+        }
+
+        @Override
+        public void setTcpNoDelay(boolean on) throws SocketException {
+            socket.setTcpNoDelay(on);
+        }
+
+        @Override
+        public boolean getTcpNoDelay() throws SocketException {
+            return socket.getTcpNoDelay();
+        }
+
+        @Override
+        public void setKeepAlive(boolean on) throws SocketException {
+            socket.setKeepAlive(on);
+        }
+
+        @Override
+        public boolean getKeepAlive() throws SocketException {
+            return socket.getKeepAlive();
+        }
+
+        @Override
+        public void setSoLinger(boolean on, int linger) throws SocketException {
+            socket.setSoLinger(on, linger);
+        }
+
+        @Override
+        public int getSoLinger() throws SocketException {
+            return socket.getSoLinger();
+        }
+
+        @Override
+        public void setReceiveBufferSize(int size) throws SocketException {
+            socket.setReceiveBufferSize(size);
+        }
+
+        @Override
+        public int getReceiveBufferSize() throws SocketException {
+            return socket.getReceiveBufferSize();
+        }
+
+        @Override
+        public void setSendBufferSize(int size) throws SocketException {
+            socket.setSendBufferSize(size);
+        }
+
+        @Override
+        public int getSendBufferSize() throws SocketException {
+            return socket.getSendBufferSize();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+
+    }
+
+}
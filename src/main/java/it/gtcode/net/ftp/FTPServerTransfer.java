@@ -0,0 +1,207 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPTransferResponse;
+import it.gtcode.net.ftp.response.FTPTransferResponse.Mode;
+import lombok.EqualsAndHashCode;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPConnectionClosedException;
+import org.apache.commons.net.ftp.FTPReply;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Trasferisce risorse da un server FTP a un altro utilizzando due {@link FTPSession}.<br>
+ * Quando possibile il trasferimento avviene direttamente tra i due server (FXP): il server sorgente viene posto in
+ * modalità passiva ({@code PASV}) e quello di destinazione in modalità attiva ({@code PORT}) verso di esso, così che il
+ * client gestisca solamente i canali di controllo.<br>
+ * Nel caso in cui uno dei due server rifiuti il trasferimento diretto, o le sessioni non lo supportino, i dati vengono
+ * inoltrati in streaming dalla sorgente alla destinazione tramite un {@link FTPRelay}, senza l'utilizzo di file
+ * temporanei. Il trasferimento diretto è disponibile anche per le sessioni decorate, ad esempio condivise o tracciate,
+ * tramite {@link FTPSession#unwrap(Class, java.util.function.Function)}.
+ * @since 2.1
+ * @see FTPSession
+ * @see FTPTransferResponse
+ * @see FTPRelay
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPServerTransfer {
+
+    private final FTPSession source;
+    private final FTPSession target;
+    private final FTPRelay relay;
+
+    /**
+     * Costruttore. Nel caso in cui il trasferimento diretto venga rifiutato viene utilizzato un {@link FTPRelay}
+     * con le impostazioni di default.
+     * @param source sessione verso il server dal quale prelevare le risorse
+     * @param target sessione verso il server sul quale caricare le risorse
+     * @throws NullPointerException se una delle sessioni fornite è {@code null}
+     */
+    public FTPServerTransfer(FTPSession source, FTPSession target) {
+        this(source, target, new FTPRelay());
+    }
+
+    /**
+     * Costruttore.
+     * @param source sessione verso il server dal quale prelevare le risorse
+     * @param target sessione verso il server sul quale caricare le risorse
+     * @param relay inoltro da utilizzare nel caso in cui il trasferimento diretto venga rifiutato
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     */
+    public FTPServerTransfer(FTPSession source, FTPSession target, FTPRelay relay) {
+        Objects.requireNonNull(source);
+        Objects.requireNonNull(target);
+        Objects.requireNonNull(relay);
+        this.source = source;
+        this.target = target;
+        this.relay = relay;
+    }
+
+    /**
+     * Trasferisce il file indicato nella root della sessione di destinazione.
+     * @param file file da trasferire, relativo alla root della sessione sorgente
+     * @return l'esito del trasferimento con gli eventuali messaggi di errore
+     * @throws IllegalStateException se una delle sessioni non può essere utilizzata
+     * @see #transfer(Path, Path)
+     */
+    public FTPTransferResponse transfer(Path file) {
+        return this.transfer(file, target.getRoot());
+    }
+
+    /**
+     * Trasferisce il file indicato nella directory fornita del server di destinazione.<br>
+     * Viene prima tentato il trasferimento diretto tra i server; se questo viene rifiutato i dati vengono inoltrati
+     * dal client in streaming. La risposta indica la modalità utilizzata e, in caso di inoltro, il motivo per il quale
+     * il trasferimento diretto non è stato eseguito.
+     * @param file file da trasferire, relativo alla root della sessione sorgente
+     * @param directory directory del server di destinazione nella quale caricare il file
+     * @return l'esito del trasferimento con gli eventuali messaggi di errore
+     * @throws IllegalStateException se una delle sessioni non può essere utilizzata
+     * @see FTPTransferResponse#getMode()
+     * @see FTPTransferResponse#getFallbackReason()
+     */
+    public FTPTransferResponse transfer(Path file, Path directory) {
+        var attempt = source.unwrap(FTPSession_ApacheFTPClient.class, apacheSource ->
+                target.unwrap(FTPSession_ApacheFTPClient.class, apacheTarget ->
+                        this.serverToServer(apacheSource, file, apacheTarget, directory)
+                ).orElse(null)
+        ).orElse(Attempt.UNSUPPORTED);
+        if (attempt.response() != null) return attempt.response();
+        var response = relay.relay(source, file, target, directory);
+        response.setFallbackReason(attempt.refusal());
+        return response;
+    }
+
+    /**
+     * Tenta il trasferimento diretto tra i due server.
+     * @param source sessione sorgente
+     * @param file file da trasferire
+     * @param target sessione di destinazione
+     * @param directory directory di destinazione
+     * @return l'esito del trasferimento oppure il rifiuto del trasferimento diretto da parte di uno dei server
+     * @throws IllegalStateException se una delle sessioni non può essere utilizzata
+     */
+    private Attempt serverToServer(FTPSession_ApacheFTPClient source, Path file,
+                                   FTPSession_ApacheFTPClient target, Path directory) {
+        var response = new FTPTransferResponse();
+        FTPClient sourceClient = source.getFtpClient();
+        FTPClient targetClient = target.getFtpClient();
+        FTPClient current = sourceClient;
+        try {
+            source.prepareCommand();
+            if (this.isMissing(sourceClient, file)) {
+                response.asError(sourceClient.getReplyCode(), sourceClient.getReplyString(), null, Mode.SERVER_TO_SERVER);
+                return new Attempt(response, null);
+            }
+            if (!sourceClient.enterRemotePassiveMode()) return Attempt.refused(sourceClient);
+            current = targetClient;
+            target.prepareStore(directory);
+            var passiveHost = InetAddress.getByName(sourceClient.getPassiveHost());
+            if (!targetClient.enterRemoteActiveMode(passiveHost, sourceClient.getPassivePort()))
+                return Attempt.refused(targetClient);
+            if (!targetClient.remoteStore(file.getFileName().toString())) return Attempt.refused(targetClient);
+            current = sourceClient;
+            if (!sourceClient.remoteRetrieve(file.toString())) {
+                var refused = Attempt.refused(sourceClient);
+                this.abort(targetClient);
+                return refused;
+            }
+            if (!sourceClient.completePendingCommand()) {
+                targetClient.completePendingCommand();
+                response.asError(sourceClient.getReplyCode(), sourceClient.getReplyString(), null, Mode.SERVER_TO_SERVER);
+                return new Attempt(response, null);
+            }
+            current = targetClient;
+            if (!targetClient.completePendingCommand()) {
+                response.asError(targetClient.getReplyCode(), targetClient.getReplyString(), null, Mode.SERVER_TO_SERVER);
+                return new Attempt(response, null);
+            }
+            response.asSuccess(targetClient.getReplyCode(), targetClient.getReplyString(), Mode.SERVER_TO_SERVER);
+        } catch (FTPConnectionClosedException | SocketException uce) {
+            source.handleConnectionLoss();
+            target.handleConnectionLoss();
+            response.asError(current.getReplyCode(), current.getReplyString(), uce, Mode.SERVER_TO_SERVER);
+        } catch (IOException ioe) {
+            response.asError(current.getReplyCode(), current.getReplyString(), ioe, Mode.SERVER_TO_SERVER);
+        } finally {
+            sourceClient.enterLocalPassiveMode();
+            targetClient.enterLocalPassiveMode();
+        }
+        return new Attempt(response, null);
+    }
+
+    /**
+     * Verifica tramite {@code SIZE} che il file da trasferire esista, così da non avviare il trasferimento sul server
+     * di destinazione per una risorsa inesistente.<br>
+     * Se il server non supporta il comando il file viene considerato esistente.
+     * @param client client della sessione sorgente
+     * @param file file da verificare
+     * @return {@code true} se il server ha indicato che il file non è disponibile
+     * @throws IOException se non è stato possibile comunicare con il server
+     */
+    private boolean isMissing(FTPClient client, Path file) throws IOException {
+        client.sendCommand("SIZE", file.toString());
+        return client.getReplyCode() == FTPReplyCode.FILE_UNAVAILABLE.getCode();
+    }
+
+    /**
+     * Annulla un {@code STOR} già accettato dal server di destinazione, consumando le eventuali risposte
+     * aggiuntive che il server invia a seguito dell'interruzione.
+     * @param client client della sessione di destinazione
+     * @throws IOException se non è stato possibile comunicare con il server
+     */
+    private void abort(FTPClient client) throws IOException {
+        client.abort();
+        if (FTPReply.isNegativeTransient(client.getReplyCode())) client.getReply();
+    }
+
+    /**
+     * Esito di un tentativo di trasferimento diretto.
+     * @param response esito del trasferimento, {@code null} se il trasferimento diretto non è stato eseguito
+     * @param refusal motivo per il quale il trasferimento diretto non è stato eseguito
+     */
+    private record Attempt(FTPTransferResponse response, String refusal) {
+
+        /** Tentativo non eseguito perché le sessioni non supportano il trasferimento diretto. */
+        static final Attempt UNSUPPORTED = new Attempt(null, "Le sessioni non supportano il trasferimento diretto");
+
+        /**
+         * Crea il tentativo rifiutato dal server del client fornito, riportandone l'ultima risposta.
+         * @param client client del server che ha rifiutato il trasferimento
+         * @return il tentativo rifiutato
+         */
+        static Attempt refused(FTPClient client) {
+            return new Attempt(null, String.format(
+                    "Trasferimento diretto rifiutato: (%s) %s", client.getReplyCode(), client.getReplyString().trim()
+            ));
+        }
+
+    }
+
+}
@@ -1,13 +1,32 @@
 package it.gtcode.net.ftp;
 
+import it.gtcode.net.ftp.progress.FTPProgressInputStream;
+import it.gtcode.net.ftp.progress.FTPProgressListener;
+import it.gtcode.net.ftp.progress.FTPProgressSampling;
+import it.gtcode.net.ftp.response.FTPReplyCode;
 import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
 import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.ftp.response.FTPUploadStreamResponse;
+import it.gtcode.net.response.Status;
 
 import java.io.Closeable;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
 
 /**
  * Rappresenta una sessione instaurata tra un client e un server FTP.<br>
@@ -47,6 +66,81 @@ public interface FTPSession extends Closeable {
      */
     FTPStreamResponse download(Path file);
 
+    /**
+     * Fornisce un {@link FTPStreamResponse} associato alla risorsa richiesta, a partire dalla posizione indicata.<br>
+     * Le implementazioni richiedono al server di riprendere il trasferimento dalla posizione fornita ({@code REST});
+     * di default la risorsa viene richiesta per intero e i byte precedenti la posizione vengono scartati.
+     * @param file file da richiedere al server
+     * @param offset posizione, in byte, dalla quale iniziare la lettura
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @see #download(Path)
+     * @throws IllegalArgumentException se la posizione fornita è negativa
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @since 2.1
+     */
+    default FTPStreamResponse download(Path file, long offset) {
+        if (offset < 0) throw new IllegalArgumentException("La posizione deve essere positiva");
+        var response = this.download(file);
+        if (offset == 0 || response.getStatus() != Status.SUCCESS) return response;
+        try {
+            response.getStream().orElseThrow().skipNBytes(offset);
+        } catch (IOException ioe) {
+            var failure = new FTPStreamResponse(response::close);
+            failure.asError(response.getReplyCode().getCode(), response.getMessage(), ioe);
+            return failure;
+        }
+        return response;
+    }
+
+    /**
+     * Fornisce un {@link FTPStreamResponse} associato alla risorsa richiesta, notificando al listener fornito
+     * l'avanzamento della lettura campionato secondo la politica indicata.<br>
+     * La dimensione della risorsa, necessaria alla stima del tempo rimanente, viene richiesta preventivamente
+     * tramite {@link #stat(Path)}; se il server non la fornisce l'avanzamento riporta solamente i byte letti.
+     * @param file file da richiedere al server
+     * @param listener listener al quale notificare l'avanzamento, invocato sul thread che legge lo stream
+     * @param sampling politica di campionamento delle notifiche
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @see FTPStreamResponse#trackProgress(FTPProgressListener, FTPProgressSampling, long)
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @since 2.1
+     */
+    default FTPStreamResponse download(Path file, FTPProgressListener listener, FTPProgressSampling sampling) {
+        var stat = this.stat(file);
+        long total = stat.getStatus() == Status.SUCCESS ? stat.getSize() : -1;
+        return this.download(file).trackProgress(listener, sampling, total);
+    }
+
+    /**
+     * Fornisce un {@link Flow.Publisher} che pubblica il contenuto della risorsa richiesta come sequenza di
+     * {@link ByteBuffer}, rispettando la domanda del subscriber.<br>
+     * Il download viene eseguito alla sottoscrizione; il contenuto viene letto sull'executor fornito solamente quando
+     * il subscriber richiede nuovi elementi e la transazione con il server viene conclusa al termine del contenuto,
+     * in caso di errore o alla cancellazione della sottoscrizione. La sessione resta occupata fino ad allora.
+     * @param file file da richiedere al server
+     * @param executor executor sul quale leggere il contenuto e notificare il subscriber
+     * @param pool pool dal quale ottenere i buffer pubblicati, ai quali possono essere restituiti una volta consumati
+     * @return il publisher del contenuto della risorsa
+     * @see FTPStreamPublisher
+     * @since 2.1
+     */
+    default Flow.Publisher<ByteBuffer> downloadPublisher(Path file, Executor executor, FTPBufferPool pool) {
+        return new FTPStreamPublisher(() -> this.download(file), executor, pool);
+    }
+
+    /**
+     * Fornisce un {@link Flow.Publisher} che pubblica il contenuto della risorsa richiesta come sequenza di
+     * {@link ByteBuffer}, utilizzando un {@link FTPBufferPool} dedicato con le impostazioni di default.
+     * @param file file da richiedere al server
+     * @param executor executor sul quale leggere il contenuto e notificare il subscriber
+     * @return il publisher del contenuto della risorsa
+     * @see #downloadPublisher(Path, Executor, FTPBufferPool)
+     * @since 2.1
+     */
+    default Flow.Publisher<ByteBuffer> downloadPublisher(Path file, Executor executor) {
+        return this.downloadPublisher(file, executor, new FTPBufferPool());
+    }
+
     /**
      * Carica il file indicato restituendo l'esito dell'operazione.<br>
      * A differenza di {@link #upload(Path, Path)} il file viene caricato nella directory definita nella configurazione
@@ -96,6 +190,158 @@ public interface FTPSession extends Closeable {
      */
     FTPResponse upload(Path file, InputStream fileStream, Path target);
 
+    /**
+     * Carica i byte rimanenti del buffer fornito nella directory definita nella configurazione della sessione,
+     * restituendo l'esito dell'operazione.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @see #upload(Path, ByteBuffer, Path)
+     * @since 2.1
+     */
+    default FTPResponse upload(Path file, ByteBuffer data) {
+        return this.upload(file, data, this.getRoot());
+    }
+
+    /**
+     * Carica i byte rimanenti del buffer fornito restituendo l'esito dell'operazione.<br>
+     * Posizione e limite del buffer non vengono modificati. Il buffer può essere diretto o mappato in memoria: le
+     * implementazioni lo scrivono direttamente sul canale dati, senza copiarlo in uno stream intermedio; di default
+     * viene letto tramite {@link #upload(Path, InputStream, Path)}.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @param target directory nella quale caricare il file
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @since 2.1
+     */
+    default FTPResponse upload(Path file, ByteBuffer data, Path target) {
+        return this.upload(file, new ByteBufferInputStream(data.duplicate()), target);
+    }
+
+    /**
+     * Carica il file indicato nella directory fornita, notificando al listener fornito l'avanzamento del
+     * caricamento campionato secondo la politica indicata.
+     * @param file file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @param listener listener al quale notificare l'avanzamento, invocato sul thread che esegue il caricamento
+     * @param sampling politica di campionamento delle notifiche
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @see FTPProgressInputStream
+     * @since 2.1
+     */
+    default FTPResponse upload(Path file, Path target, FTPProgressListener listener, FTPProgressSampling sampling)
+            throws FileNotFoundException {
+        try (var stream = new FTPProgressInputStream(new FileInputStream(file.toFile()), Files.size(file), listener, sampling)) {
+            return this.upload(file, stream, target);
+        } catch (FileNotFoundException ffe) {
+            throw ffe;
+        } catch (IOException ioe) {
+            var failure = new FTPResponse();
+            failure.asError(FTPReplyCode.ACTION_ABORTED.getCode(), ioe.getMessage(), ioe);
+            return failure;
+        }
+    }
+
+    /**
+     * Carica il file indicato mappandolo in memoria, restituendo l'esito dell'operazione.<br>
+     * Pensato per file di grandi dimensioni: il contenuto non viene copiato nell'heap. Le implementazioni possono
+     * trasferire il file direttamente dal disco al canale dati; di default il file viene mappato in una singola
+     * regione e caricato tramite {@link #upload(Path, ByteBuffer, Path)}, oppure tramite {@link #upload(Path, Path)}
+     * se eccede la dimensione massima di una regione.
+     * @param file file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @see #upload(Path, Path)
+     * @since 2.1
+     */
+    default FTPResponse uploadMapped(Path file, Path target) throws FileNotFoundException {
+        try (var channel = new FileInputStream(file.toFile()).getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) return this.upload(file, target);
+            return this.upload(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), target);
+        } catch (FileNotFoundException ffe) {
+            throw ffe;
+        } catch (IOException ioe) {
+            var failure = new FTPResponse();
+            failure.asError(FTPReplyCode.ACTION_ABORTED.getCode(), ioe.getMessage(), ioe);
+            return failure;
+        }
+    }
+
+    /**
+     * Apre un caricamento in streaming del file indicato nella directory fornita, per contenuti generati
+     * progressivamente o di lunghezza non nota a priori.<br>
+     * Il contenuto scritto sullo stream o sul canale della risposta viene inviato direttamente sulla connessione
+     * dati; la chiusura della risposta tramite {@link FTPUploadStreamResponse#close()} conclude il caricamento e ne
+     * restituisce l'esito definitivo. Fino ad allora la sessione non può eseguire altre operazioni. Di default, per
+     * le implementazioni precedenti alla sua introduzione, viene restituito un errore
+     * {@link FTPReplyCode#COMMAND_NOT_IMPLEMENTED} senza contattare il server.
+     * @param file nome del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return la connessione dati sulla quale scrivere il contenuto e i relativi codici di risposta del server
+     * @see FTPUploadStreamResponse
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @since 2.1
+     */
+    default FTPUploadStreamResponse openUploadStream(Path file, Path target) {
+        var response = new FTPUploadStreamResponse(FTPResponse::new);
+        response.asError(FTPReplyCode.COMMAND_NOT_IMPLEMENTED.getCode(), "Caricamento in streaming non supportato dalla sessione", null);
+        return response;
+    }
+
+    /**
+     * Fornisce un {@link Flow.Subscriber} che carica il file indicato nella directory fornita scrivendo ogni
+     * {@link ByteBuffer} ricevuto direttamente sulla connessione dati.<br>
+     * Il caricamento viene aperto immediatamente tramite {@link #openUploadStream(Path, Path)}; il suo esito
+     * definitivo è disponibile tramite {@link FTPUploadSubscriber#getResult()}.
+     * @param file nome del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return il subscriber da sottoscrivere al publisher del contenuto
+     * @see FTPUploadSubscriber
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @since 2.1
+     */
+    default FTPUploadSubscriber uploadSubscriber(Path file, Path target) {
+        return new FTPUploadSubscriber(this.openUploadStream(file, target));
+    }
+
+    /**
+     * Richiede al server la dimensione ({@code SIZE}) e la data di ultima modifica ({@code MDTM}) del file indicato.<br>
+     * Se il server non supporta {@code MDTM} la risposta riporta solamente la dimensione. Di default, per le
+     * implementazioni precedenti alla sua introduzione, viene restituito un errore
+     * {@link FTPReplyCode#COMMAND_NOT_IMPLEMENTED} senza contattare il server.
+     * @param file file del quale richiedere le informazioni
+     * @return le informazioni del file e i relativi codici di risposta del server
+     * @see FTPStatResponse
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @since 2.1
+     */
+    default FTPStatResponse stat(Path file) {
+        var response = new FTPStatResponse();
+        response.asError(FTPReplyCode.COMMAND_NOT_IMPLEMENTED.getCode(), "Informazioni sui file non supportate dalla sessione", null);
+        return response;
+    }
+
+    /**
+     * Richiede al server dimensione e data di ultima modifica di tutti i file indicati.<br>
+     * Le implementazioni possono inviare le richieste in pipeline, riducendo i round-trip verso il server; di default
+     * i file vengono richiesti uno alla volta tramite {@link #stat(Path)}.
+     * @param files file dei quali richiedere le informazioni
+     * @return le informazioni di ogni file, nell'ordine fornito
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @since 2.1
+     */
+    default Map<Path, FTPStatResponse> stat(Collection<Path> files) {
+        var responses = new LinkedHashMap<Path, FTPStatResponse>();
+        for (var file : files) responses.put(file, this.stat(file));
+        return responses;
+    }
+
     /**
      * Elimina il file indicato restituendo l'esito della richiesta.
      * @param file path del file da eliminare
@@ -112,6 +358,26 @@ public interface FTPSession extends Closeable {
      */
     FTPResponse execute(String command);
 
+    /**
+     * Esegue l'operazione fornita sulla sessione del tipo indicato: questa stessa sessione oppure, per le
+     * implementazioni che ne decorano un'altra, la sessione decorata.<br>
+     * Consente di utilizzare le funzionalità specifiche di un'implementazione, ad esempio il trasferimento diretto tra
+     * server, anche attraverso i decoratori; questi eseguono l'operazione rispettando i propri vincoli, come l'accesso
+     * esclusivo alla connessione o il tracciamento delle operazioni. Di default viene considerata solamente questa
+     * sessione.
+     * @param type tipo della sessione richiesta
+     * @param operation operazione da eseguire sulla sessione
+     * @return il risultato dell'operazione, vuoto se nessuna sessione è del tipo indicato o se l'operazione ha
+     * restituito {@code null}
+     * @param <T> tipo della sessione richiesta
+     * @param <R> tipo del risultato
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @since 2.1
+     */
+    default <T extends FTPSession, R> Optional<R> unwrap(Class<T> type, Function<? super T, ? extends R> operation) {
+        return type.isInstance(this) ? Optional.ofNullable(operation.apply(type.cast(this))) : Optional.empty();
+    }
+
     /**
      * Tenta di chiudere la sessione, eseguendo il logout e disconnettendosi dal server.<br>
      * Nel caso in cui la sessione risulti essere già chiusa questo comando non ha effetto.
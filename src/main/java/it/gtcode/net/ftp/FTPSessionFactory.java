@@ -40,4 +40,27 @@ public interface FTPSessionFactory {
      */
     FTPSession openSession(FTPConfiguration configuration, Object ftpClient);
 
+    /**
+     * Crea una sessione che si connette al server solamente al primo utilizzo, con la configurazione dichiarata alla
+     * creazione della factory.
+     * @return la sessione creata, non ancora connessa
+     * @since 2.1
+     */
+    default FTPSession openLazySession() {
+        return new FTPSession_Lazy(this.getConfiguration(), this::openSession);
+    }
+
+    /**
+     * Avvia in background l'apertura in parallelo del numero di sessioni indicato, ad esempio all'avvio
+     * dell'applicazione.
+     * @param sessions numero di sessioni da aprire
+     * @return l'insieme delle sessioni in apertura, dal quale attenderne la disponibilità e prelevarle
+     * @throws IllegalArgumentException se il numero di sessioni è negativo
+     * @since 2.1
+     * @see FTPSessionPrewarm
+     */
+    default FTPSessionPrewarm prewarm(int sessions) {
+        return new FTPSessionPrewarm(this, sessions);
+    }
+
 }
@@ -0,0 +1,109 @@
+package it.gtcode.net.ftp;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Implementazione di {@link FTPSessionFactory} che limita il numero di sessioni aperte contemporaneamente tramite
+ * un {@link FTPConcurrencyLimiter}.<br>
+ * La creazione di una sessione attende che il limite corrente lo consenta; la sessione occupa il proprio posto fino
+ * alla chiusura, momento in cui i byte trasferiti vengono comunicati al limitatore. Una connessione rifiutata, un
+ * timeout o una risposta {@code 421} durante la creazione o l'utilizzo della sessione riducono il limite.
+ * @since 2.1
+ * @see FTPConcurrencyLimiter
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPSessionFactoryLimited implements FTPSessionFactory {
+
+    private final FTPSessionFactory factory;
+    /** Limitatore delle sessioni aperte contemporaneamente. */
+    @Getter
+    private final FTPConcurrencyLimiter limiter;
+
+    /**
+     * Costruttore.
+     * @param factory factory con la quale creare le sessioni
+     * @param limiter limitatore delle sessioni aperte contemporaneamente
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     */
+    public FTPSessionFactoryLimited(FTPSessionFactory factory, FTPConcurrencyLimiter limiter) {
+        Objects.requireNonNull(factory);
+        Objects.requireNonNull(limiter);
+        this.factory = factory;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Restituisce la configurazione della factory decorata.
+     * @return la configurazione con la quale vengono create le sessioni
+     */
+    @Override
+    public FTPConfiguration getConfiguration() {
+        return factory.getConfiguration();
+    }
+
+    /**
+     * Crea una nuova sessione con la configurazione della factory decorata, attendendo che il limite corrente lo
+     * consenta.
+     * @return la sessione creata
+     * @throws UncheckedIOException se non è stato possibile creare la sessione o se l'attesa è stata interrotta
+     */
+    @Override
+    public FTPSession openSession() {
+        return this.open(factory::openSession);
+    }
+
+    /**
+     * Crea una nuova sessione con la configurazione fornita, attendendo che il limite corrente lo consenta.
+     * @param configuration configurazione da utilizzare al posto di quella della factory decorata
+     * @return la sessione creata
+     * @throws UncheckedIOException se non è stato possibile creare la sessione o se l'attesa è stata interrotta
+     */
+    @Override
+    public FTPSession openSession(FTPConfiguration configuration) {
+        return this.open(() -> factory.openSession(configuration));
+    }
+
+    /**
+     * Crea una nuova sessione con la configurazione e il client forniti, attendendo che il limite corrente lo
+     * consenta.
+     * @param configuration configurazione con la quale è stato inizializzato il client
+     * @param ftpClient client da utilizzare, deve essere già inizializzato e connesso
+     * @return la sessione creata
+     * @throws UncheckedIOException se l'attesa è stata interrotta
+     * @throws IllegalArgumentException se il client fornito non è del tipo richiesto dalla factory decorata
+     */
+    @Override
+    public FTPSession openSession(FTPConfiguration configuration, Object ftpClient) {
+        return this.open(() -> factory.openSession(configuration, ftpClient));
+    }
+
+    /**
+     * Acquisisce un posto nel limitatore e crea la sessione tramite l'operazione fornita.
+     * @param opener operazione di creazione della sessione
+     * @return la sessione creata, che libera il posto alla chiusura
+     * @throws UncheckedIOException se non è stato possibile creare la sessione o se l'attesa è stata interrotta
+     */
+    private FTPSession open(Supplier<FTPSession> opener) {
+        try {
+            limiter.acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Attesa di una sessione disponibile interrotta"));
+        }
+        try {
+            return new FTPSession_Limited(opener.get(), limiter);
+        } catch (RuntimeException re) {
+            if (FTPConcurrencyLimiter.isOverloaded(re)) limiter.releaseOverloaded();
+            else limiter.releaseFailed();
+            throw re;
+        }
+    }
+
+}
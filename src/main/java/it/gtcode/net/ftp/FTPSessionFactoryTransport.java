@@ -0,0 +1,97 @@
+package it.gtcode.net.ftp;
+
+import lombok.EqualsAndHashCode;
+
+import java.util.Objects;
+
+/**
+ * Implementazione di {@code FTPSessionFactory} che delega la creazione delle sessioni a un {@link FTPTransport}.
+ * @param <C> tipo del client nativo utilizzato dal trasporto
+ * @since 2.1
+ * @see FTPSessionFactory
+ * @see FTPTransport
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPSessionFactoryTransport<C> implements FTPSessionFactory {
+
+    private final FTPConfiguration configuration;
+    private final FTPTransport<C> transport;
+
+    /**
+     * Costruttore.
+     * @param configuration configurazione da utilizzare durante la creazione delle sessioni
+     * @param transport trasporto con il quale creare le sessioni
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     */
+    public FTPSessionFactoryTransport(FTPConfiguration configuration, FTPTransport<C> transport) {
+        Objects.requireNonNull(configuration);
+        Objects.requireNonNull(transport);
+        this.configuration = configuration;
+        this.transport = transport;
+    }
+
+    /**
+     * Restituisce la configurazione con la quale è stata creata la factory.
+     * @return configurazione fornita durante la costruzione della factory
+     */
+    @Override
+    public FTPConfiguration getConfiguration() {
+        return this.configuration;
+    }
+
+    /**
+     * Restituisce il trasporto con il quale vengono create le sessioni.
+     * @return trasporto fornito durante la costruzione della factory
+     */
+    public FTPTransport<C> getTransport() {
+        return this.transport;
+    }
+
+    /**
+     * Crea una nuova sessione con la configurazione dichiarata alla creazione della factory.
+     * @return la sessione creata
+     * @throws java.io.UncheckedIOException nel caso in cui non sia stato possibile creare la sessione
+     */
+    @Override
+    public FTPSession openSession() {
+        return transport.connect(configuration);
+    }
+
+    /**
+     * Crea una nuova sessione con la configurazione fornita.
+     * @param configuration configurazione da utilizzare al posto di quella fornita al costruttore della factory
+     * @return la sessione creata
+     * @throws java.io.UncheckedIOException nel caso in cui non sia stato possibile creare la sessione
+     */
+    @Override
+    public FTPSession openSession(FTPConfiguration configuration) {
+        return transport.connect(configuration);
+    }
+
+    /**
+     * Crea una nuova sessione con la configurazione e client FTP forniti.
+     * @param configuration configurazione da utilizzare al posto di quella fornita al costruttore della factory
+     * @param ftpClient client del tipo indicato da {@link FTPTransport#getClientType()}, deve essere già
+     *                  inizializzato e connesso
+     * @return la sessione creata
+     * @throws IllegalArgumentException se il client fornito non è del tipo richiesto
+     */
+    @Override
+    public FTPSession openSession(FTPConfiguration configuration, Object ftpClient) {
+        return transport.wrap(configuration, this.checkClient(ftpClient));
+    }
+
+    /**
+     * Verifica che l'oggetto fornito sia un'istanza del client richiesto dal trasporto.
+     * @param ftpClient istanza del client
+     * @return istanza nel tipo previsto
+     * @throws IllegalArgumentException se l'oggetto fornito non è del tipo previsto
+     */
+    private C checkClient(Object ftpClient) {
+        var clientType = transport.getClientType();
+        if (clientType.isInstance(ftpClient)) return clientType.cast(ftpClient);
+        throw new IllegalArgumentException("Il client fornito deve essere un istanza di " + clientType.getName());
+    }
+
+}
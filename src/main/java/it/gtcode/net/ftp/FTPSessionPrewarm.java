@@ -0,0 +1,176 @@
+package it.gtcode.net.ftp;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Insieme di sessioni aperte in parallelo e in background, tipicamente all'avvio dell'applicazione, in modo che le
+ * prime operazioni non debbano attendere connessione e autenticazione.<br>
+ * Ogni sessione viene aperta da un thread dedicato; {@link #getReady()} si completa quando tutti i tentativi sono
+ * terminati, restituendo il numero di sessioni effettivamente aperte. Le sessioni vengono consegnate da
+ * {@link #take()}, che in assenza di sessioni pronte ne apre una nuova tramite la factory. Le sessioni non consegnate
+ * vengono chiuse da {@link #close()}.
+ * @since 2.1
+ * @see FTPSessionFactory#prewarm(int)
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPSessionPrewarm implements Closeable {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final FTPSessionFactory factory;
+    /** Numero di sessioni richieste. */
+    @Getter
+    private final int requested;
+    @EqualsAndHashCode.Exclude
+    private final ConcurrentLinkedDeque<FTPSession> idle = new ConcurrentLinkedDeque<>();
+    @EqualsAndHashCode.Exclude
+    private final AtomicInteger pending;
+    @EqualsAndHashCode.Exclude
+    private final AtomicInteger opened = new AtomicInteger();
+    @EqualsAndHashCode.Exclude
+    private final AtomicInteger failed = new AtomicInteger();
+    /** Completato con il numero di sessioni aperte quando tutti i tentativi di apertura sono terminati. */
+    @Getter
+    @EqualsAndHashCode.Exclude
+    private final CompletableFuture<Integer> ready = new CompletableFuture<>();
+    @EqualsAndHashCode.Exclude
+    private volatile boolean closed;
+
+    /**
+     * Costruttore. Avvia immediatamente l'apertura delle sessioni su thread daemon dedicati.
+     * @param factory factory con la quale aprire le sessioni
+     * @param sessions numero di sessioni da aprire
+     * @throws NullPointerException se la factory fornita è {@code null}
+     * @throws IllegalArgumentException se il numero di sessioni è negativo
+     */
+    public FTPSessionPrewarm(FTPSessionFactory factory, int sessions) {
+        this(factory, sessions, FTPSessionPrewarm::newDaemonThread);
+    }
+
+    /**
+     * Costruttore. Avvia immediatamente l'apertura delle sessioni, ognuna su un thread creato dalla factory fornita.
+     * @param factory factory con la quale aprire le sessioni
+     * @param sessions numero di sessioni da aprire
+     * @param threadFactory factory con la quale creare i thread di apertura, ad esempio una factory di virtual thread
+     * @throws NullPointerException se la factory o la factory dei thread sono {@code null}
+     * @throws IllegalArgumentException se il numero di sessioni è negativo
+     */
+    public FTPSessionPrewarm(FTPSessionFactory factory, int sessions, ThreadFactory threadFactory) {
+        Objects.requireNonNull(factory);
+        Objects.requireNonNull(threadFactory);
+        if (sessions < 0) throw new IllegalArgumentException("Numero di sessioni negativo: " + sessions);
+        this.factory = factory;
+        this.requested = sessions;
+        this.pending = new AtomicInteger(sessions);
+        if (sessions == 0) ready.complete(0);
+        for (int i = 0; i < sessions; i++) threadFactory.newThread(this::open).start();
+    }
+
+    /**
+     * Indica se tutti i tentativi di apertura sono terminati.
+     * @return {@code true} se l'apertura in background è conclusa
+     */
+    public boolean isReady() {
+        return ready.isDone();
+    }
+
+    /**
+     * Restituisce il numero di sessioni aperte con successo fino a questo momento, incluse quelle già consegnate.
+     * @return numero di sessioni aperte
+     */
+    public int getOpened() {
+        return opened.get();
+    }
+
+    /**
+     * Restituisce il numero di tentativi di apertura falliti.
+     * @return numero di sessioni che non è stato possibile aprire
+     */
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Restituisce il numero di sessioni pronte e non ancora consegnate.
+     * @return numero di sessioni disponibili
+     */
+    public int getAvailable() {
+        return idle.size();
+    }
+
+    /**
+     * Consegna una sessione già aperta o, se nessuna è pronta, ne apre una nuova tramite la factory.<br>
+     * Le sessioni consegnate sono a carico del chiamante, che deve chiuderle.
+     * @return una sessione aperta
+     * @throws IllegalStateException se l'insieme è stato chiuso
+     * @throws java.io.UncheckedIOException se non è stato possibile aprire una nuova sessione
+     */
+    public FTPSession take() {
+        if (closed) throw new IllegalStateException("Pre-riscaldamento chiuso");
+        FTPSession session;
+        while ((session = idle.poll()) != null) {
+            if (session.isOpen()) return session;
+            this.closeQuietly(session);
+        }
+        return factory.openSession();
+    }
+
+    /**
+     * Chiude le sessioni non ancora consegnate e quelle la cui apertura termina successivamente.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        FTPSession session;
+        while ((session = idle.poll()) != null) this.closeQuietly(session);
+    }
+
+    /**
+     * Apre una sessione e la rende disponibile, completando {@link #getReady()} all'ultimo tentativo.
+     */
+    private void open() {
+        try {
+            var session = factory.openSession();
+            opened.incrementAndGet();
+            idle.add(session);
+            if (closed && idle.remove(session)) this.closeQuietly(session);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+        } finally {
+            if (pending.decrementAndGet() == 0) ready.complete(opened.get());
+        }
+    }
+
+    /**
+     * Chiude la sessione fornita ignorando eventuali errori.
+     * @param session sessione da chiudere
+     */
+    private void closeQuietly(FTPSession session) {
+        try {
+            session.close();
+        } catch (RuntimeException ignored) {
+            // la sessione viene comunque abbandonata
+        }
+    }
+
+    /**
+     * Crea un thread daemon dedicato all'apertura delle sessioni.
+     * @param task operazione da eseguire
+     * @return il thread creato
+     */
+    private static Thread newDaemonThread(Runnable task) {
+        var thread = new Thread(task, "ftp-prewarm-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+}
@@ -1,17 +1,34 @@
 package it.gtcode.net.ftp;
 
+import it.gtcode.net.ftp.jfr.FTPCommandEventListener;
+import it.gtcode.net.ftp.jfr.FTPSessionCloseEvent;
+import it.gtcode.net.ftp.jfr.FTPSessionOpenEvent;
+import it.gtcode.net.ftp.jfr.FTPTransferEvent;
 import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
 import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.ftp.response.FTPUploadStreamResponse;
+import it.gtcode.net.ftp.trace.FTPWireLog;
+import it.gtcode.net.response.Status;
 import lombok.Cleanup;
 import lombok.EqualsAndHashCode;
+import org.apache.commons.net.ProtocolCommandListener;
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCmd;
 import org.apache.commons.net.ftp.FTPConnectionClosedException;
+import org.apache.commons.net.ftp.FTPSClient;
 
+import javax.net.ssl.SSLContext;
 import java.io.*;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Implementazione di default di {@link FTPSession}.
@@ -25,7 +42,10 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
     private final FTPConfiguration configuration;
     private final FTPClient ftpClient;
     private final Path root;
-    private boolean open;
+    private final FTPBufferTuner bufferTuner;
+    @EqualsAndHashCode.Exclude
+    private final FTPWireLog wireLog = new FTPWireLog();
+    private volatile boolean open;
 
     /**
      * Costruttore.
@@ -33,10 +53,61 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
      * @throws UncheckedIOException se non è stato possibile creare la sessione
      */
     public FTPSession_ApacheFTPClient(FTPConfiguration configuration) {
-        this.ftpClient = this.createClientInstance(configuration);
-        this.configuration = configuration;
-        this.root = this.getRoot(configuration);
-        this.open = true;
+        this(configuration, new FTPOptionsApache());
+    }
+
+    /**
+     * Costruttore. Se le opzioni forniscono un contesto TLS la sessione utilizza FTPS esplicito: il canale di
+     * controllo viene cifrato tramite {@code AUTH TLS} e, dopo il login, vengono protetti anche i canali dati
+     * ({@code PBSZ 0} e {@code PROT P}) riprendendo la sessione TLS del canale di controllo. Il certificato del server
+     * viene verificato rispetto al nome del server, salvo diversa indicazione tramite
+     * {@link FTPConfiguration#setHostnameVerification}.<br>
+     * Se le opzioni forniscono un {@link FTPBufferTuner} i buffer dei socket dati e il buffer di copia vengono
+     * dimensionati in base al prodotto banda-ritardo misurato verso il server; se forniscono un
+     * {@link FTPAddressResolver} il canale di controllo viene aperto tentando in parallelo gli indirizzi del server.
+     * Il tracciamento delle opzioni viene applicato solamente dal {@link FTPTransportApache}.
+     * @param configuration configurazione con la quale creare la sessione
+     * @param options opzioni con le quali creare la sessione
+     * @throws NullPointerException se le opzioni fornite sono {@code null}
+     * @throws UncheckedIOException se non è stato possibile creare la sessione o negoziare la protezione dei canali
+     * @see FTPOptionsApache
+     * @see FTPSClientResumable
+     */
+    public FTPSession_ApacheFTPClient(FTPConfiguration configuration, FTPOptionsApache options) {
+        this(configuration, options, null);
+    }
+
+    /**
+     * Costruttore. Il listener fornito viene registrato sul client prima della connessione, così da ricevere anche
+     * i comandi di login e di posizionamento nella directory iniziale.
+     * @param configuration configurazione con la quale creare la sessione
+     * @param options opzioni con le quali creare la sessione
+     * @param listener listener dei comandi inviati e delle risposte ricevute, {@code null} se non necessario
+     * @throws NullPointerException se le opzioni fornite sono {@code null}
+     * @throws UncheckedIOException se non è stato possibile creare la sessione o negoziare la protezione dei canali
+     * @see FTPCommandTracer
+     */
+    FTPSession_ApacheFTPClient(FTPConfiguration configuration, FTPOptionsApache options, ProtocolCommandListener listener) {
+        Objects.requireNonNull(options);
+        var sslContext = options.getSslContext();
+        var event = new FTPSessionOpenEvent();
+        event.begin();
+        try {
+            this.bufferTuner = options.getBufferTuner();
+            this.ftpClient = this.createClientInstance(configuration, sslContext, listener, options.getResolver());
+            this.configuration = configuration;
+            this.root = this.getRoot(configuration);
+            this.open = true;
+            event.success = true;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.server = configuration.getServer();
+                event.port = configuration.getPort();
+                event.secure = sslContext != null;
+                event.commit();
+            }
+        }
     }
 
     /**
@@ -47,6 +118,9 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
      */
     public FTPSession_ApacheFTPClient(FTPConfiguration configuration, FTPClient ftpClient) {
         this.ftpClient = ftpClient;
+        this.ftpClient.addProtocolCommandListener(wireLog);
+        this.ftpClient.addProtocolCommandListener(new FTPCommandEventListener(configuration.getServer()));
+        this.bufferTuner = null;
         this.configuration = configuration;
         this.root = this.getRoot(configuration);
         this.open = true;
@@ -91,23 +165,49 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
      */
     @Override
     public FTPStreamResponse download(Path file) {
+        return this.download(file, 0);
+    }
+
+    /**
+     * Fornisce un {@link FTPStreamResponse} associato alla risorsa richiesta, a partire dalla posizione indicata.<br>
+     * La posizione viene comunicata al server tramite il comando {@code REST}, così che i byte precedenti non vengano
+     * trasferiti.
+     * @param file file da richiedere al server
+     * @param offset posizione, in byte, dalla quale iniziare la lettura
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @throws IllegalArgumentException se la posizione fornita è negativa
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStreamResponse download(Path file, long offset) {
+        if (offset < 0) throw new IllegalArgumentException("La posizione deve essere positiva");
         this.canExecute();
-        var response = new FTPStreamResponse(this::completePendingCommand);
+        var transfer = FTPTransferEvent.start(FTPTransferEvent.DOWNLOAD, configuration.getServer(), file);
+        var tracked = new AtomicReference<EndTrackingInputStream>();
+        var response = new FTPStreamResponse(() -> this.completeDownload(transfer, tracked.get()));
         try {
-            this.resetPosition();
-            InputStream fileInputStream = ftpClient.retrieveFileStream(file.toString());
-            this.throwWhenFalse(
-                    fileInputStream != null,
-                    "Non è stato possibile connettersi al file"
-            );
-            response.asSuccess(ftpClient.getReplyCode(), ftpClient.getReplyString(), fileInputStream);
+            InputStream fileInputStream = null;
+            if (this.resetPosition()) {
+                this.applyBuffers();
+                ftpClient.setRestartOffset(offset);
+                fileInputStream = transfer.count(this.measure(ftpClient.retrieveFileStream(file.toString())));
+            }
+            if (fileInputStream != null) {
+                tracked.set(new EndTrackingInputStream(fileInputStream));
+                fileInputStream = tracked.get();
+            }
+            if (fileInputStream != null) response.asSuccess(ftpClient.getReplyCode(), ftpClient.getReplyString(), fileInputStream);
+            else this.asRejected(response);
         } catch (FTPConnectionClosedException | SocketException uce) {
             this.handleFTPConnectionClosedException();
             response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), uce);
         } catch (IOException ioe) {
             response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), ioe);
+        } finally {
+            ftpClient.setRestartOffset(0);
         }
-        return response;
+        if (response.getStatus() != Status.SUCCESS) transfer.complete(false);
+        return this.diagnose(response);
     }
 
     /**
@@ -138,16 +238,16 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
     public FTPResponse upload(Path file, Path target) throws FileNotFoundException {
         this.canExecute();
         var response = new FTPResponse();
+        var transfer = FTPTransferEvent.start(FTPTransferEvent.UPLOAD, configuration.getServer(), file);
         try {
-            this.resetPosition();
-            var remoteFile = target.resolve(file.getFileName());
-            @Cleanup InputStream inputStream = new FileInputStream(file.toFile());
-            this.createDirectoryTree(target);
-            this.throwWhenFalse(
-                    ftpClient.storeFile(remoteFile.getFileName().toString(), inputStream),
-                    "Impossibile caricare il file sul server"
-            );
-            response.asSuccess(ftpClient.getReplyCode(), ftpClient.getReplyString());
+            boolean stored = false;
+            if (this.resetPosition()) {
+                @Cleanup InputStream inputStream = new FileInputStream(file.toFile());
+                this.applyBuffers();
+                stored = this.createDirectoryTree(target)
+                        && ftpClient.storeFile(file.getFileName().toString(), transfer.count(this.measure(inputStream)));
+            }
+            this.complete(response, stored);
         } catch (FTPConnectionClosedException | SocketException uce) {
             this.handleFTPConnectionClosedException();
             response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), uce);
@@ -156,7 +256,8 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
         } catch (IOException ioe) {
             response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), ioe);
         }
-        return response;
+        transfer.complete(response.getStatus() == Status.SUCCESS);
+        return this.diagnose(response);
     }
 
     /**
@@ -189,22 +290,171 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
     public FTPResponse upload(Path file, InputStream fileStream, Path target) {
         this.canExecute();
         var response = new FTPResponse();
+        var transfer = FTPTransferEvent.start(FTPTransferEvent.UPLOAD, configuration.getServer(), file);
         try {
-            this.resetPosition();
-            var remoteFile = target.resolve(file.getFileName());
-            this.createDirectoryTree(target);
-            this.throwWhenFalse(
-                    ftpClient.storeFile(remoteFile.getFileName().toString(), fileStream),
-                    "Impossibile caricare il file sul server"
+            this.applyBuffers();
+            this.complete(
+                    response,
+                    this.resetPosition()
+                            && this.createDirectoryTree(target)
+                            && ftpClient.storeFile(file.getFileName().toString(), transfer.count(this.measure(fileStream)))
             );
-            response.asSuccess(ftpClient.getReplyCode(), ftpClient.getReplyString());
         } catch (FTPConnectionClosedException | SocketException uce) {
             this.handleFTPConnectionClosedException();
             response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), uce);
         } catch (IOException ioe) {
             response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), ioe);
         }
-        return response;
+        transfer.complete(response.getStatus() == Status.SUCCESS);
+        return this.diagnose(response);
+    }
+
+    /**
+     * Carica i byte rimanenti del buffer fornito restituendo l'esito dell'operazione.<br>
+     * Posizione e limite del buffer non vengono modificati. Sul canale dati in chiaro il buffer, anche diretto o
+     * mappato in memoria, viene scritto direttamente sul {@link java.nio.channels.SocketChannel} della connessione;
+     * negli altri casi un buffer basato su array viene scritto in un'unica operazione, senza copie intermedie.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @param target directory nella quale caricare il file
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     */
+    @Override
+    public FTPResponse upload(Path file, ByteBuffer data, Path target) {
+        this.canExecute();
+        var response = new FTPResponse();
+        var buffer = data.duplicate();
+        var transfer = FTPTransferEvent.start(FTPTransferEvent.UPLOAD, configuration.getServer(), file);
+        try {
+            this.applyBuffers();
+            this.complete(
+                    response,
+                    this.resetPosition()
+                            && this.createDirectoryTree(target)
+                            && this.store(file, channel -> {
+                                long written = 0;
+                                while (buffer.hasRemaining()) written += channel.write(buffer);
+                                transfer.add(written);
+                                return written;
+                            })
+            );
+        } catch (FTPConnectionClosedException | SocketException uce) {
+            this.handleFTPConnectionClosedException();
+            response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), uce);
+        } catch (IOException ioe) {
+            response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), ioe);
+        }
+        transfer.complete(response.getStatus() == Status.SUCCESS);
+        return this.diagnose(response);
+    }
+
+    /**
+     * Carica il file indicato senza copiarne il contenuto nell'heap, restituendo l'esito dell'operazione.<br>
+     * Il file viene trasferito tramite {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}:
+     * sul canale dati in chiaro il sistema lo invia direttamente dal disco alla connessione ({@code sendfile}) o per
+     * regioni mappate in memoria, senza limiti di dimensione.
+     * @param file file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     */
+    @Override
+    public FTPResponse uploadMapped(Path file, Path target) throws FileNotFoundException {
+        this.canExecute();
+        var response = new FTPResponse();
+        var transfer = FTPTransferEvent.start(FTPTransferEvent.UPLOAD, configuration.getServer(), file);
+        try {
+            boolean stored = false;
+            if (this.resetPosition()) {
+                @Cleanup FileChannel source = new FileInputStream(file.toFile()).getChannel();
+                this.applyBuffers();
+                stored = this.createDirectoryTree(target) && this.store(file, channel -> {
+                    long position = 0;
+                    for (long size = source.size(); position < size; ) {
+                        long sent = source.transferTo(position, size - position, channel);
+                        transfer.add(sent);
+                        position += sent;
+                    }
+                    return position;
+                });
+            }
+            this.complete(response, stored);
+        } catch (FTPConnectionClosedException | SocketException uce) {
+            this.handleFTPConnectionClosedException();
+            response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), uce);
+        } catch (FileNotFoundException ffe) {
+            throw ffe;
+        } catch (IOException ioe) {
+            response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), ioe);
+        }
+        transfer.complete(response.getStatus() == Status.SUCCESS);
+        return this.diagnose(response);
+    }
+
+    /**
+     * Apre un caricamento in streaming del file indicato nella directory fornita.<br>
+     * Il contenuto scritto sullo stream o sul canale della risposta viene inviato direttamente sulla connessione
+     * dati, senza thread o buffer intermedi. Fino alla chiusura della risposta la sessione non può eseguire altre
+     * operazioni.
+     * @param file nome del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return la connessione dati sulla quale scrivere il contenuto e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPUploadStreamResponse openUploadStream(Path file, Path target) {
+        this.canExecute();
+        var transfer = FTPTransferEvent.start(FTPTransferEvent.UPLOAD, configuration.getServer(), file);
+        var response = new FTPUploadStreamResponse(() -> this.completeUpload(transfer));
+        try {
+            WritableByteChannel channel = null;
+            if (this.resetPosition() && this.createDirectoryTree(target)) {
+                this.applyBuffers();
+                channel = transfer.count(this.measure(this.openStore(file)));
+            }
+            if (channel != null) response.asSuccess(ftpClient.getReplyCode(), ftpClient.getReplyString(), channel);
+            else this.asRejected(response);
+        } catch (FTPConnectionClosedException | SocketException uce) {
+            this.handleFTPConnectionClosedException();
+            response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), uce);
+        } catch (IOException ioe) {
+            response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), ioe);
+        }
+        if (response.getStatus() != Status.SUCCESS) transfer.complete(false);
+        return this.diagnose(response);
+    }
+
+    /**
+     * Richiede al server la dimensione ({@code SIZE}) e la data di ultima modifica ({@code MDTM}) del file indicato.<br>
+     * Se il server non supporta {@code MDTM} la risposta riporta solamente la dimensione.
+     * @param file file del quale richiedere le informazioni
+     * @return le informazioni del file e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStatResponse stat(Path file) {
+        this.canExecute();
+        var response = new FTPStatResponse();
+        try {
+            String size = this.resetPosition() ? ftpClient.getSize(file.toString()) : null;
+            if (size == null) {
+                this.asRejected(response);
+                return this.diagnose(response);
+            }
+            int replyCode = ftpClient.getReplyCode();
+            String replyString = ftpClient.getReplyString();
+            response.asSuccess(replyCode, replyString, Long.parseLong(size.trim()), ftpClient.mdtmInstant(file.toString()));
+        } catch (FTPConnectionClosedException | SocketException uce) {
+            this.handleFTPConnectionClosedException();
+            response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), uce);
+        } catch (IOException ioe) {
+            response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), ioe);
+        } catch (NumberFormatException nfe) {
+            response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), new IOException("Dimensione non valida: " + nfe.getMessage(), nfe));
+        }
+        return this.diagnose(response);
     }
 
     /**
@@ -218,19 +468,14 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
         this.canExecute();
         var response = new FTPResponse();
         try {
-            this.resetPosition();
-            this.throwWhenFalse(
-                    ftpClient.deleteFile(file.toString()),
-                    "Impossibile rimuovere il file dal server"
-            );
-            response.asSuccess(ftpClient.getReplyCode(), ftpClient.getReplyString());
+            this.complete(response, this.resetPosition() && ftpClient.deleteFile(file.toString()));
         } catch (FTPConnectionClosedException | SocketException uce) {
             this.handleFTPConnectionClosedException();
             response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), uce);
         } catch (IOException ioe) {
             response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), ioe);
         }
-        return response;
+        return this.diagnose(response);
     }
 
     /**
@@ -244,19 +489,14 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
         this.canExecute();
         var response = new FTPResponse();
         try {
-            this.resetPosition();
-            this.throwWhenFalse(
-                    ftpClient.sendSiteCommand(command),
-                    "Impossibile eseguire il comando fornito"
-            );
-            response.asSuccess(ftpClient.getReplyCode(), ftpClient.getReplyString());
+            this.complete(response, this.resetPosition() && ftpClient.sendSiteCommand(command));
         } catch (FTPConnectionClosedException | SocketException uce) {
             this.handleFTPConnectionClosedException();
             response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), uce);
         } catch (IOException ioe) {
             response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), ioe);
         }
-        return response;
+        return this.diagnose(response);
     }
 
     /**
@@ -267,55 +507,196 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
     @Override
     public void close() {
         if (!open) return;
+        var event = new FTPSessionCloseEvent();
+        event.begin();
         try {
             open = false;
             ftpClient.logout();
             ftpClient.disconnect();
         } catch (IOException ioe) {
             throw new UncheckedIOException(ioe);
+        } finally {
+            this.commit(event, false);
         }
     }
 
+    /**
+     * Restituisce il registro degli ultimi comandi e risposte scambiati con il server.<br>
+     * Le risposte di errore restituite dalla sessione ne riportano una copia tramite {@link FTPResponse#getWireLog()}.
+     * @return il registro della sessione
+     * @since 2.1
+     */
+    public FTPWireLog getWireLog() {
+        return this.wireLog;
+    }
+
+    /**
+     * Restituisce il client utilizzato dalla sessione per comunicare con il server.
+     * @return il client della sessione
+     */
+    FTPClient getFtpClient() {
+        return this.ftpClient;
+    }
+
+    /**
+     * Prepara la sessione all'esecuzione di un comando gestito esternamente, riportandola alla root.
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @throws IOException se non è stato possibile spostarsi nella root
+     */
+    void prepareCommand() throws IOException {
+        this.canExecute();
+        this.throwWhenFalse(this.resetPosition(), "Impossibile spostarsi nella directory");
+    }
+
+    /**
+     * Prepara la sessione alla ricezione di un file gestita esternamente, riportandola alla root e
+     * creando la directory di destinazione nel caso non esista.
+     * @param target directory nella quale verrà caricato il file
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @throws IOException se non è stato possibile spostarsi o creare la directory
+     */
+    void prepareStore(Path target) throws IOException {
+        this.prepareCommand();
+        this.throwWhenFalse(this.createDirectoryTree(target), "Impossibile creare la directory");
+    }
+
+    /**
+     * Allega alla risposta fornita, se di errore, le ultime voci del registro dei comandi.
+     * @param response esito dell'operazione
+     * @return l'esito dell'operazione
+     */
+    private <R extends FTPResponse> R diagnose(R response) {
+        if (response.getStatus() == Status.ERROR) response.setWireLog(wireLog.getEntries());
+        return response;
+    }
+
+    /**
+     * Chiude la sessione nel caso in cui la connessione con il server sia stata persa.
+     * @throws UncheckedIOException se non è stato possibile chiudere la sessione
+     */
+    void handleConnectionLoss() {
+        if (open && !ftpClient.isAvailable()) this.handleFTPConnectionClosedException();
+    }
+
     /**
      * Dato il percorso/file fornito crea il directory tree nel caso questo non esista o risulti incompleto.
      * @param target percorso dal quale ricreare l'albero
-     * @throws IOException se non è stato possibile creare la nuova directory o se non è stato possibile spostarsi nella
-     * directory appena creata
+     * @return {@code true} se l'albero è stato creato e la sessione vi si è spostata, {@code false} se il server ha
+     * rifiutato la creazione di una directory o lo spostamento nella stessa
+     * @throws IOException se non è stato possibile comunicare con il server
      */
-    private void createDirectoryTree(Path target) throws IOException {
+    private boolean createDirectoryTree(Path target) throws IOException {
         for (Path path : target) {
             if (Files.isDirectory(path)) continue;
-            if (!ftpClient.changeWorkingDirectory(path.toString())) {
-                this.throwWhenFalse(
-                        ftpClient.makeDirectory(path.toString()),
-                        "Impossibile creare la directory"
-                );
-                this.changeWorkingDirectory(path);
-            }
+            if (ftpClient.changeWorkingDirectory(path.toString())) continue;
+            if (!ftpClient.makeDirectory(path.toString()) || !ftpClient.changeWorkingDirectory(path.toString()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Invia il comando {@code STOR} e scrive il contenuto del file sulla connessione dati tramite l'operazione fornita.<br>
+     * Se è attivo il dimensionamento automatico la banda del caricamento viene cronometrata attorno alla scrittura,
+     * senza decorare il canale, così da non perdere il trasferimento diretto dal disco alla connessione.
+     * @param file nome del file da caricare
+     * @param writer operazione che scrive il contenuto del file
+     * @return {@code true} se il server ha accettato e concluso il caricamento, {@code false} altrimenti
+     * @throws IOException se non è stato possibile comunicare con il server o scrivere il contenuto
+     */
+    private boolean store(Path file, ChannelWriter writer) throws IOException {
+        var channel = this.openStore(file);
+        if (channel == null) return false;
+        long start = System.nanoTime();
+        long written;
+        try (channel) {
+            written = writer.write(channel);
+        }
+        boolean completed = ftpClient.completePendingCommand();
+        if (completed && bufferTuner != null) bufferTuner.record(configuration, written, System.nanoTime() - start);
+        return completed;
+    }
+
+    /**
+     * Invia il comando {@code STOR} e apre la relativa connessione dati.<br>
+     * Se il client espone il canale della connessione dati viene restituito direttamente quest'ultimo, altrimenti
+     * un canale che scrive sullo stream restituito da {@link FTPClient#storeFileStream(String)}. Al termine della
+     * scrittura è compito del chiamante chiudere il canale e invocare {@link FTPClient#completePendingCommand()}.
+     * @param file nome del file da caricare
+     * @return il canale della connessione dati, {@code null} se il server ha rifiutato il caricamento
+     * @throws IOException se non è stato possibile comunicare con il server o aprire la connessione
+     */
+    private WritableByteChannel openStore(Path file) throws IOException {
+        var name = file.getFileName().toString();
+        if (ftpClient instanceof FTPClientChannels client) {
+            var socket = client.openDataConnection(FTPCmd.STOR, name);
+            return socket != null ? socket.getChannel() : null;
         }
+        var outputStream = ftpClient.storeFileStream(name);
+        return outputStream != null ? new StreamChannel(outputStream) : null;
+    }
+
+    /**
+     * Applica al client i buffer stimati per il server, se è attivo il dimensionamento automatico.
+     */
+    private void applyBuffers() {
+        if (bufferTuner != null) bufferTuner.apply(ftpClient, configuration);
+    }
+
+    /**
+     * Avvolge lo stream di un trasferimento così da misurarne la banda, se è attivo il dimensionamento automatico.
+     * @param stream stream del trasferimento, può essere {@code null}
+     * @return lo stream da utilizzare per il trasferimento
+     */
+    private InputStream measure(InputStream stream) {
+        return bufferTuner != null && stream != null ? bufferTuner.measure(configuration, stream) : stream;
+    }
+
+    /**
+     * Avvolge il canale di un caricamento così da misurarne la banda, se è attivo il dimensionamento automatico.
+     * @param channel canale del caricamento, può essere {@code null}
+     * @return il canale da utilizzare per il caricamento
+     */
+    private WritableByteChannel measure(WritableByteChannel channel) {
+        return bufferTuner != null && channel != null ? bufferTuner.measure(configuration, channel) : channel;
     }
 
     /**
      * Data la configurazione fornita tenta di inizializzare una connessione verso il server FTP.
      * @param ftpConfiguration configurazione con la quale inizializzare il client
+     * @param sslContext contesto TLS con il quale cifrare i canali, {@code null} per utilizzare FTP in chiaro
+     * @param listener listener da registrare sul client prima della connessione, {@code null} se non necessario
+     * @param resolver risoluzione degli indirizzi del server, {@code null} per utilizzare la risoluzione di sistema
      * @return {@link FTPClient} connesso alle coordinate fornite
      * @throws UncheckedIOException se non è stato possibile trovare, connettersi o eseguire il login al server
      */
-    private FTPClient createClientInstance(FTPConfiguration ftpConfiguration) {
-        var client = new FTPClient();
+    private FTPClient createClientInstance(FTPConfiguration ftpConfiguration, SSLContext sslContext,
+                                           ProtocolCommandListener listener, FTPAddressResolver resolver) {
+        var client = sslContext != null ? new FTPSClientResumable(sslContext) : new FTPClientChannels();
+        client.addProtocolCommandListener(wireLog);
+        client.addProtocolCommandListener(new FTPCommandEventListener(ftpConfiguration.getServer()));
+        if (listener != null) client.addProtocolCommandListener(listener);
+        if (client instanceof FTPSClient ftpsClient) ftpsClient.setEndpointCheckingEnabled(ftpConfiguration.isHostnameVerification());
         try {
-            client.connect(ftpConfiguration.getServer(), ftpConfiguration.getPort());
+            if (resolver == null) client.connect(ftpConfiguration.getServer(), ftpConfiguration.getPort());
+            else ((FTPConnectableClient) client).connect(
+                    ftpConfiguration.getServer(),
+                    resolver.connect(ftpConfiguration.getServer(), ftpConfiguration.getPort(), client.getConnectTimeout())
+            );
             client.login(ftpConfiguration.getUsername(), ftpConfiguration.getPassword());
+            if (client instanceof FTPSClient ftpsClient) {
+                ftpsClient.execPBSZ(0);
+                ftpsClient.execPROT("P");
+            }
+            if (bufferTuner != null) bufferTuner.tune(client, ftpConfiguration);
             client.enterLocalPassiveMode();
             client.setFileType(FTP.BINARY_FILE_TYPE);
         } catch (IOException ioe) {
-            throw new UncheckedIOException(
-                    String.format(
-                            "Non è stato possibile connettersi al server: (%s) %s",
-                            client.getReplyCode(), client.getReplyString()
-                    ),
-                    ioe
+            var message = String.format(
+                    "Non è stato possibile connettersi al server: (%s) %s",
+                    client.getReplyCode(), client.getReplyString()
             );
+            throw new UncheckedIOException(message, new FTPReplyException(message, client.getReplyCode(), ioe));
         }
         return client;
     }
@@ -362,35 +743,88 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
     }
 
     /**
-     * Solleva una {@link IOException} nel caso {@code result} sia {@code false}, completando il messaggio fornito con
-     * lo stato e messaggio di risposta restituiti dal server.
+     * Solleva una {@link FTPReplyException} nel caso {@code result} sia {@code false}, completando il messaggio fornito
+     * con lo stato e messaggio di risposta restituiti dal server.
      * @param result parametro indicante se sollevare l'eccezione o meno
      * @param message messaggio di errore
-     * @throws IOException se {@code result} è {@code false}
+     * @throws FTPReplyException se {@code result} è {@code false}
      */
-    private void throwWhenFalse(boolean result, String message) throws IOException {
+    private void throwWhenFalse(boolean result, String message) throws FTPReplyException {
         if (result) return;
-        throw new IOException(String.format(message + ": (%s) %s", ftpClient.getReplyCode(), ftpClient.getReplyString()));
+        throw new FTPReplyException(
+                String.format(message + ": (%s) %s", ftpClient.getReplyCode(), ftpClient.getReplyString()),
+                ftpClient.getReplyCode()
+        );
     }
 
     /**
      * Riporta la sessione alla root dichiarata durante la creazione della stessa.
-     * @throws IOException se non è stato possibile spostarsi
+     * @return {@code true} se la sessione si è spostata, {@code false} se il server ha rifiutato lo spostamento
+     * @throws IOException se non è stato possibile comunicare con il server
+     */
+    private boolean resetPosition() throws IOException {
+        return ftpClient.changeWorkingDirectory(root.toString());
+    }
+
+    /**
+     * Valorizza la risposta fornita con l'ultima risposta del server.<br>
+     * Una risposta negativa è un esito previsto delle operazioni: viene quindi riportata come errore senza creare
+     * alcuna eccezione, riservate ai problemi di comunicazione con il server.
+     * @param response risposta da valorizzare
+     * @param accepted indica se il server ha accettato l'operazione
      */
-    private void resetPosition() throws IOException {
-        this.throwWhenFalse(ftpClient.changeWorkingDirectory(root.toString()), "Impossibile spostarsi nella directory");
+    private void complete(FTPResponse response, boolean accepted) {
+        if (accepted) response.asSuccess(ftpClient.getReplyCode(), ftpClient.getReplyString());
+        else this.asRejected(response);
     }
 
     /**
-     * Invia al server vari comandi per gestire il termine di una transazione di download.
+     * Valorizza la risposta fornita con la risposta negativa del server, senza alcuna eccezione associata.
+     * @param response risposta da valorizzare
+     */
+    private void asRejected(FTPResponse response) {
+        response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString());
+    }
+
+    /**
+     * Invia al server vari comandi per gestire il termine di una transazione di download.<br>
+     * Se lo stream è stato chiuso prima di raggiungerne la fine il trasferimento viene annullato tramite il comando
+     * {@code ABOR}: il server risponde sia al {@code RETR}, con {@code 426} o {@code 226} se il trasferimento era già
+     * concluso, sia all'{@code ABOR} stesso.
+     * @param transfer evento del trasferimento da concludere
+     * @param stream stream del download, {@code null} se il server ha rifiutato il download
      * @throws UncheckedIOException se non è stato possibile eseguire i comandi
      */
-    private void completePendingCommand() {
+    private void completeDownload(FTPTransferEvent transfer, EndTrackingInputStream stream) {
+        boolean completed = false;
         try {
-            ftpClient.completePendingCommand();
+            boolean aborted = stream != null && !stream.isEnded();
+            if (aborted) ftpClient.abort();
+            completed = ftpClient.completePendingCommand() && !aborted;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
+        } finally {
+            transfer.complete(completed);
+        }
+    }
+
+    /**
+     * Conclude la transazione di un caricamento in streaming, la cui connessione dati è già stata chiusa.
+     * @param transfer evento del trasferimento da concludere
+     * @return l'esito definitivo del caricamento
+     */
+    private FTPResponse completeUpload(FTPTransferEvent transfer) {
+        var response = new FTPResponse();
+        try {
+            this.complete(response, ftpClient.completePendingCommand());
+        } catch (FTPConnectionClosedException | SocketException uce) {
+            this.handleFTPConnectionClosedException();
+            response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), uce);
+        } catch (IOException ioe) {
+            response.asError(ftpClient.getReplyCode(), ftpClient.getReplyString(), ioe);
         }
+        transfer.complete(response.getStatus() == Status.SUCCESS);
+        return this.diagnose(response);
     }
 
     /**
@@ -398,14 +832,32 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
      * @throws UncheckedIOException se non è stato possibile chiudere la sessione
      */
     private void handleFTPConnectionClosedException() {
+        var event = new FTPSessionCloseEvent();
+        event.begin();
         try {
             open = false;
             ftpClient.disconnect();
         } catch (IOException ioe) {
             throw new UncheckedIOException("Non è stato possibile disconnettersi dal server", ioe);
+        } finally {
+            this.commit(event, true);
         }
     }
 
+    /**
+     * Conclude e registra l'evento di chiusura della sessione, se abilitato.
+     * @param event evento da registrare
+     * @param lost {@code true} se la sessione è stata chiusa a seguito della perdita della connessione
+     */
+    private void commit(FTPSessionCloseEvent event, boolean lost) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.server = configuration.getServer();
+        event.port = configuration.getPort();
+        event.lost = lost;
+        event.commit();
+    }
+
     /**
      * Verifica che la sessione si trovi in condizione di essere utilizzata.
      * @throws IllegalStateException se la sessione non può essere utilizzata
@@ -414,4 +866,90 @@ public class FTPSession_ApacheFTPClient implements FTPSession {
         if (!open) throw new IllegalStateException("Impossibile utilizzare la sessione, questa risulta essere chiusa");
     }
 
+    /**
+     * Operazione che scrive il contenuto di un file sulla connessione dati e restituisce i byte scritti.
+     */
+    @FunctionalInterface
+    private interface ChannelWriter {
+        long write(WritableByteChannel channel) throws IOException;
+    }
+
+    /**
+     * Stream di download che registra se la lettura ne ha raggiunto la fine, così da annullare tramite {@code ABOR} i
+     * trasferimenti chiusi prima del termine.
+     */
+    private static class EndTrackingInputStream extends FilterInputStream {
+
+        private volatile boolean ended;
+
+        EndTrackingInputStream(InputStream stream) {
+            super(stream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read == -1) ended = true;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1) ended = true;
+            return read;
+        }
+
+        boolean isEnded() {
+            return ended;
+        }
+
+    }
+
+    /**
+     * Canale che scrive su uno stream, utilizzato quando la connessione dati non espone il proprio canale.<br>
+     * I buffer basati su array vengono scritti direttamente dall'array; gli altri vengono copiati a blocchi.
+     */
+    private static class StreamChannel implements WritableByteChannel {
+
+        private static final int CHUNK_SIZE = 64 * 1024;
+
+        private final OutputStream outputStream;
+        private byte[] chunk;
+        private boolean open = true;
+
+        StreamChannel(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            int written = source.remaining();
+            if (source.hasArray()) {
+                outputStream.write(source.array(), source.arrayOffset() + source.position(), written);
+                source.position(source.limit());
+                return written;
+            }
+            if (chunk == null) chunk = new byte[CHUNK_SIZE];
+            while (source.hasRemaining()) {
+                int length = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, length);
+                outputStream.write(chunk, 0, length);
+            }
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            open = false;
+            outputStream.close();
+        }
+
+    }
+
 }
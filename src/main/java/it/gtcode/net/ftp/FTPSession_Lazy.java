@@ -0,0 +1,199 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.ftp.response.FTPUploadStreamResponse;
+import lombok.EqualsAndHashCode;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Implementazione di {@link FTPSession} che rimanda la connessione e l'autenticazione al server al primo utilizzo
+ * effettivo.<br>
+ * La configurazione è disponibile senza connettersi; {@link #isOpen()} e {@link #close()} non aprono la sessione
+ * decorata se questa non è ancora stata creata. Se la connessione fallisce l'eccezione viene propagata al chiamante e
+ * un utilizzo successivo ritenta la connessione.
+ * @since 2.1
+ * @see FTPSessionFactory#openLazySession()
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+class FTPSession_Lazy implements FTPSession {
+
+    private final FTPConfiguration configuration;
+    @EqualsAndHashCode.Exclude
+    private final Supplier<FTPSession> opener;
+    @EqualsAndHashCode.Exclude
+    private final ReentrantLock lock = new ReentrantLock();
+    @EqualsAndHashCode.Exclude
+    private volatile FTPSession session;
+    @EqualsAndHashCode.Exclude
+    private volatile boolean closed;
+
+    /**
+     * Costruttore.
+     * @param configuration configurazione con la quale verrà aperta la sessione
+     * @param opener funzione che apre la sessione decorata al primo utilizzo
+     */
+    FTPSession_Lazy(FTPConfiguration configuration, Supplier<FTPSession> opener) {
+        this.configuration = configuration;
+        this.opener = opener;
+    }
+
+    /**
+     * Indica se la sessione è utilizzabile: una sessione non ancora connessa è considerata aperta fino alla sua
+     * chiusura.
+     * @return {@code true} se la sessione non è stata chiusa e, se già connessa, la connessione è ancora attiva
+     */
+    @Override
+    public boolean isOpen() {
+        var current = session;
+        return !closed && (current == null || current.isOpen());
+    }
+
+    /**
+     * Indica se la connessione al server è già stata stabilita.
+     * @return {@code true} se la sessione decorata è stata creata
+     */
+    boolean isConnected() {
+        return session != null;
+    }
+
+    @Override
+    public FTPConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public Path getRoot() {
+        return this.session().getRoot();
+    }
+
+    @Override
+    public FTPStreamResponse download(Path file) {
+        return this.session().download(file);
+    }
+
+    @Override
+    public FTPStreamResponse download(Path file, long offset) {
+        return this.session().download(file, offset);
+    }
+
+    @Override
+    public FTPResponse upload(Path file) throws FileNotFoundException {
+        return this.session().upload(file);
+    }
+
+    @Override
+    public FTPResponse upload(Path file, Path target) throws FileNotFoundException {
+        return this.session().upload(file, target);
+    }
+
+    @Override
+    public FTPResponse upload(Path file, InputStream fileStream) {
+        return this.session().upload(file, fileStream);
+    }
+
+    @Override
+    public FTPResponse upload(Path file, InputStream fileStream, Path target) {
+        return this.session().upload(file, fileStream, target);
+    }
+
+    @Override
+    public FTPResponse upload(Path file, ByteBuffer data) {
+        return this.session().upload(file, data);
+    }
+
+    @Override
+    public FTPResponse upload(Path file, ByteBuffer data, Path target) {
+        return this.session().upload(file, data, target);
+    }
+
+    @Override
+    public FTPResponse uploadMapped(Path file, Path target) throws FileNotFoundException {
+        return this.session().uploadMapped(file, target);
+    }
+
+    @Override
+    public FTPUploadStreamResponse openUploadStream(Path file, Path target) {
+        return this.session().openUploadStream(file, target);
+    }
+
+    @Override
+    public FTPStatResponse stat(Path file) {
+        return this.session().stat(file);
+    }
+
+    @Override
+    public Map<Path, FTPStatResponse> stat(Collection<Path> files) {
+        return this.session().stat(files);
+    }
+
+    @Override
+    public FTPResponse delete(Path file) {
+        return this.session().delete(file);
+    }
+
+    @Override
+    public FTPResponse execute(String command) {
+        return this.session().execute(command);
+    }
+
+    /**
+     * Esegue l'operazione fornita sulla sessione del tipo indicato, aprendo la sessione decorata se non ancora creata.
+     * @param type tipo della sessione richiesta
+     * @param operation operazione da eseguire sulla sessione
+     * @return il risultato dell'operazione, vuoto se nessuna sessione è del tipo indicato
+     * @throws IllegalStateException se la sessione è stata chiusa
+     * @throws java.io.UncheckedIOException se non è stato possibile aprire la sessione
+     */
+    @Override
+    public <T extends FTPSession, R> Optional<R> unwrap(Class<T> type, Function<? super T, ? extends R> operation) {
+        if (type.isInstance(this)) return Optional.ofNullable(operation.apply(type.cast(this)));
+        return this.session().unwrap(type, operation);
+    }
+
+    /**
+     * Chiude la sessione decorata se è già stata aperta; in caso contrario impedisce che venga aperta.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            if (session != null) session.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restituisce la sessione decorata, aprendola se non ancora creata.
+     * @return la sessione decorata
+     * @throws IllegalStateException se la sessione è stata chiusa
+     * @throws java.io.UncheckedIOException se non è stato possibile aprire la sessione
+     */
+    private FTPSession session() {
+        var current = session;
+        if (current != null) return current;
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Sessione chiusa");
+            if (session == null) session = opener.get();
+            return session;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
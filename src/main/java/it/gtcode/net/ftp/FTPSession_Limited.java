@@ -0,0 +1,366 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.ftp.response.FTPUploadStreamResponse;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Implementazione di {@link FTPSession} che occupa uno dei posti di un {@link FTPConcurrencyLimiter} per tutta la
+ * durata della sessione decorata.<br>
+ * I byte trasferiti vengono conteggiati e comunicati al limitatore alla chiusura della sessione; una risposta
+ * {@code 421} o un timeout riducono invece immediatamente il limite.
+ * @since 2.1
+ * @see FTPSessionFactoryLimited
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+class FTPSession_Limited implements FTPSession {
+
+    private final FTPSession session;
+    @EqualsAndHashCode.Exclude
+    private final FTPConcurrencyLimiter limiter;
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong bytes = new AtomicLong();
+    @EqualsAndHashCode.Exclude
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /**
+     * Costruttore.
+     * @param session sessione da decorare
+     * @param limiter limitatore del quale la sessione occupa un posto già acquisito
+     */
+    FTPSession_Limited(FTPSession session, FTPConcurrencyLimiter limiter) {
+        this.session = session;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Indica se la sessione decorata è ancora aperta.
+     * @return {@code true} se la sessione può essere utilizzata, {@code false} altrimenti
+     */
+    @Override
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+
+    /**
+     * Restituisce la configurazione della sessione decorata.
+     * @return la configurazione con la quale è stata creata la sessione
+     */
+    @Override
+    public FTPConfiguration getConfiguration() {
+        return session.getConfiguration();
+    }
+
+    /**
+     * Restituisce la root della sessione decorata.
+     * @return percorso definito come root della sessione
+     */
+    @Override
+    public Path getRoot() {
+        return session.getRoot();
+    }
+
+    /**
+     * Fornisce un {@link FTPStreamResponse} associato alla risorsa richiesta.<br>
+     * I byte letti dallo stream restituito vengono conteggiati nel totale della sessione.
+     * @param file file da richiedere al server
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStreamResponse download(Path file) {
+        return this.count(session.download(file));
+    }
+
+    /**
+     * Fornisce un {@link FTPStreamResponse} associato alla risorsa richiesta, a partire dalla posizione indicata.<br>
+     * I byte letti dallo stream restituito vengono conteggiati nel totale della sessione.
+     * @param file file da richiedere al server
+     * @param offset posizione, in byte, dalla quale iniziare la lettura
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @throws IllegalArgumentException se la posizione fornita è negativa
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStreamResponse download(Path file, long offset) {
+        return this.count(session.download(file, offset));
+    }
+
+    /**
+     * Carica il file indicato nella root della sessione, conteggiandone la dimensione se il caricamento va a buon
+     * fine.
+     * @param file file da caricare sul server
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file) throws FileNotFoundException {
+        return this.count(session.upload(file), file);
+    }
+
+    /**
+     * Carica il file indicato nella directory fornita, conteggiandone la dimensione se il caricamento va a buon fine.
+     * @param file file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, Path target) throws FileNotFoundException {
+        return this.count(session.upload(file, target), file);
+    }
+
+    /**
+     * Carica il contenuto dello stream fornito nella root della sessione, conteggiando i byte letti.
+     * @param file nome del file da caricare
+     * @param fileStream contenuto del file da caricare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, InputStream fileStream) {
+        return this.check(session.upload(file, new CountingInputStream(fileStream)));
+    }
+
+    /**
+     * Carica il contenuto dello stream fornito nella directory indicata, conteggiando i byte letti.
+     * @param file nome del file da caricare
+     * @param fileStream contenuto del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, InputStream fileStream, Path target) {
+        return this.check(session.upload(file, new CountingInputStream(fileStream), target));
+    }
+
+    /**
+     * Carica i byte rimanenti del buffer fornito nella root della sessione, conteggiandoli se il caricamento va a
+     * buon fine.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, ByteBuffer data) {
+        return this.count(session.upload(file, data), data.remaining());
+    }
+
+    /**
+     * Carica i byte rimanenti del buffer fornito nella directory indicata, conteggiandoli se il caricamento va a buon
+     * fine.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, ByteBuffer data, Path target) {
+        return this.count(session.upload(file, data, target), data.remaining());
+    }
+
+    /**
+     * Carica il file indicato senza copiarne il contenuto nell'heap, conteggiandone la dimensione se il caricamento
+     * va a buon fine.
+     * @param file file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse uploadMapped(Path file, Path target) throws FileNotFoundException {
+        return this.count(session.uploadMapped(file, target), file);
+    }
+
+    /**
+     * Apre un caricamento in streaming del file indicato nella directory fornita.<br>
+     * I byte scritti sul canale restituito non vengono conteggiati; una risposta {@code 421} riduce comunque il
+     * limite.
+     * @param file nome del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return la connessione dati sulla quale scrivere il contenuto e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPUploadStreamResponse openUploadStream(Path file, Path target) {
+        return this.check(session.openUploadStream(file, target));
+    }
+
+    /**
+     * Richiede al server le informazioni del file indicato.
+     * @param file file del quale richiedere le informazioni
+     * @return le informazioni del file e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStatResponse stat(Path file) {
+        return this.check(session.stat(file));
+    }
+
+    /**
+     * Richiede al server le informazioni dei file indicati, riducendo il limite se una delle risposte segnala un
+     * sovraccarico.
+     * @param files file dei quali richiedere le informazioni
+     * @return le informazioni di ogni file, indicizzate per percorso
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public Map<Path, FTPStatResponse> stat(Collection<Path> files) {
+        var responses = session.stat(files);
+        responses.values().forEach(this::check);
+        return responses;
+    }
+
+    /**
+     * Elimina il file indicato dal server.
+     * @param file file da eliminare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse delete(Path file) {
+        return this.check(session.delete(file));
+    }
+
+    /**
+     * Invia al server il comando fornito.
+     * @param command comando da inviare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse execute(String command) {
+        return this.check(session.execute(command));
+    }
+
+    /**
+     * Esegue l'operazione fornita sulla sessione del tipo indicato, all'interno del posto già occupato nel
+     * limitatore.
+     * @param type tipo della sessione richiesta
+     * @param operation operazione da eseguire sulla sessione
+     * @return il risultato dell'operazione, vuoto se nessuna sessione è del tipo indicato
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public <T extends FTPSession, R> Optional<R> unwrap(Class<T> type, Function<? super T, ? extends R> operation) {
+        if (type.isInstance(this)) return Optional.ofNullable(operation.apply(type.cast(this)));
+        return session.unwrap(type, operation);
+    }
+
+    /**
+     * Chiude la sessione decorata e libera il posto occupato nel limitatore, comunicando i byte trasferiti.
+     */
+    @Override
+    public void close() {
+        try {
+            session.close();
+        } finally {
+            if (released.compareAndSet(false, true)) limiter.release(bytes.get());
+        }
+    }
+
+    /**
+     * Riduce il limite se l'esito fornito segnala un sovraccarico del server.
+     * @param response esito dell'operazione
+     * @return l'esito dell'operazione
+     */
+    private <R extends FTPResponse> R check(R response) {
+        if (FTPConcurrencyLimiter.isOverloaded(response) && released.compareAndSet(false, true))
+            limiter.releaseOverloaded();
+        return response;
+    }
+
+    /**
+     * Conteggia la dimensione del file caricato se l'operazione è andata a buon fine.
+     * @param response esito del caricamento
+     * @param file file caricato
+     * @return l'esito del caricamento
+     */
+    private FTPResponse count(FTPResponse response, Path file) {
+        if (response.getStatus() == Status.SUCCESS) {
+            try {
+                bytes.addAndGet(Files.size(file));
+            } catch (IOException ignored) {
+                // il conteggio è solamente indicativo
+            }
+        }
+        return this.check(response);
+    }
+
+    /**
+     * Conteggia i byte caricati se l'operazione è andata a buon fine.
+     * @param response esito del caricamento
+     * @param size byte caricati
+     * @return l'esito del caricamento
+     */
+    private FTPResponse count(FTPResponse response, long size) {
+        if (response.getStatus() == Status.SUCCESS) bytes.addAndGet(size);
+        return this.check(response);
+    }
+
+    /**
+     * Sostituisce lo stream della risposta fornita con uno che conteggia i byte letti.
+     * @param response esito del download
+     * @return la risposta con lo stream conteggiato
+     */
+    private FTPStreamResponse count(FTPStreamResponse response) {
+        if (response.getStatus() != Status.SUCCESS) return this.check(response);
+        var counted = new FTPStreamResponse(response::close);
+        counted.asSuccess(
+                response.getReplyCode().getCode(),
+                response::getMessage,
+                new CountingInputStream(response.getStream().orElseThrow())
+        );
+        return counted;
+    }
+
+    /**
+     * Stream che conteggia i byte letti nel totale della sessione.
+     */
+    private class CountingInputStream extends FilterInputStream {
+
+        CountingInputStream(InputStream stream) {
+            super(stream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) bytes.incrementAndGet();
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) bytes.addAndGet(read);
+            return read;
+        }
+
+    }
+
+}
@@ -0,0 +1,389 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.ftp.response.FTPUploadStreamResponse;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Implementazione di {@link FTPSession} che consente di condividere in sicurezza una sessione tra più thread.<br>
+ * Le operazioni vengono eseguite una alla volta sulla connessione della sessione decorata, nell'ordine in cui sono
+ * state richieste: ogni thread si accoda in una coda non bloccante e attende il proprio turno parcheggiandosi
+ * ({@link LockSupport#park(Object)}), senza blocchi {@code synchronized} che vincolerebbero un virtual thread al
+ * proprio carrier durante l'I/O. Ogni chiamante esegue l'operazione sul proprio thread e riceve la propria risposta.
+ * <br>
+ * I download e i caricamenti in streaming occupano la connessione fino alla chiusura della risposta restituita,
+ * che può avvenire anche da un thread diverso: un thread che mantiene aperta una risposta non deve quindi invocare
+ * altre operazioni sulla stessa sessione prima di averla chiusa.
+ * @since 2.1
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPSession_Shared implements FTPSession {
+
+    private final FTPSession session;
+    @EqualsAndHashCode.Exclude
+    private final AtomicBoolean busy = new AtomicBoolean();
+    @EqualsAndHashCode.Exclude
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Costruttore.
+     * @param session sessione da condividere, non deve essere utilizzata direttamente da altri thread
+     * @throws NullPointerException se la sessione fornita è {@code null}
+     */
+    public FTPSession_Shared(FTPSession session) {
+        Objects.requireNonNull(session);
+        this.session = session;
+    }
+
+    /**
+     * Indica se la sessione condivisa è ancora aperta, senza attendere il proprio turno.
+     * @return {@code true} se la sessione può essere utilizzata, {@code false} altrimenti
+     */
+    @Override
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+
+    /**
+     * Restituisce la configurazione della sessione condivisa, senza attendere il proprio turno.
+     * @return la configurazione con la quale è stata creata la sessione
+     */
+    @Override
+    public FTPConfiguration getConfiguration() {
+        return session.getConfiguration();
+    }
+
+    /**
+     * Restituisce la root della sessione condivisa, senza attendere il proprio turno.
+     * @return percorso definito come root della sessione
+     */
+    @Override
+    public Path getRoot() {
+        return session.getRoot();
+    }
+
+    /**
+     * Fornisce un {@link FTPStreamResponse} associato alla risorsa richiesta.<br>
+     * La connessione resta occupata fino alla chiusura della risposta restituita.
+     * @param file file da richiedere al server
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStreamResponse download(Path file) {
+        return this.hold(() -> session.download(file));
+    }
+
+    /**
+     * Fornisce un {@link FTPStreamResponse} associato alla risorsa richiesta, a partire dalla posizione indicata.<br>
+     * La connessione resta occupata fino alla chiusura della risposta restituita.
+     * @param file file da richiedere al server
+     * @param offset posizione, in byte, dalla quale iniziare la lettura
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @throws IllegalArgumentException se la posizione fornita è negativa
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStreamResponse download(Path file, long offset) {
+        return this.hold(() -> session.download(file, offset));
+    }
+
+    /**
+     * Carica il file indicato nella root della sessione al proprio turno.
+     * @param file file da caricare sul server
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file) throws FileNotFoundException {
+        this.acquire();
+        try {
+            return session.upload(file);
+        } finally {
+            this.release();
+        }
+    }
+
+    /**
+     * Carica il file indicato nella directory fornita al proprio turno.
+     * @param file file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, Path target) throws FileNotFoundException {
+        this.acquire();
+        try {
+            return session.upload(file, target);
+        } finally {
+            this.release();
+        }
+    }
+
+    /**
+     * Carica il contenuto dello stream fornito nella root della sessione al proprio turno.<br>
+     * Lo stream viene letto mentre la connessione è occupata: una sorgente lenta ritarda gli altri thread in coda.
+     * @param file nome del file da caricare
+     * @param fileStream contenuto del file da caricare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, InputStream fileStream) {
+        return this.serialize(() -> session.upload(file, fileStream));
+    }
+
+    /**
+     * Carica il contenuto dello stream fornito nella directory indicata al proprio turno.
+     * @param file nome del file da caricare
+     * @param fileStream contenuto del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, InputStream fileStream, Path target) {
+        return this.serialize(() -> session.upload(file, fileStream, target));
+    }
+
+    /**
+     * Carica i byte rimanenti del buffer fornito nella root della sessione al proprio turno.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, ByteBuffer data) {
+        return this.serialize(() -> session.upload(file, data));
+    }
+
+    /**
+     * Carica i byte rimanenti del buffer fornito nella directory indicata al proprio turno.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, ByteBuffer data, Path target) {
+        return this.serialize(() -> session.upload(file, data, target));
+    }
+
+    /**
+     * Carica il file indicato senza copiarne il contenuto nell'heap, al proprio turno.
+     * @param file file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse uploadMapped(Path file, Path target) throws FileNotFoundException {
+        this.acquire();
+        try {
+            return session.uploadMapped(file, target);
+        } finally {
+            this.release();
+        }
+    }
+
+    /**
+     * Apre un caricamento in streaming del file indicato nella directory fornita.<br>
+     * La connessione resta occupata fino alla chiusura della risposta restituita.
+     * @param file nome del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return la connessione dati sulla quale scrivere il contenuto e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPUploadStreamResponse openUploadStream(Path file, Path target) {
+        this.acquire();
+        FTPUploadStreamResponse upload;
+        try {
+            upload = session.openUploadStream(file, target);
+        } catch (RuntimeException re) {
+            this.release();
+            throw re;
+        }
+        if (upload.getStatus() != Status.SUCCESS) {
+            this.release();
+            return upload;
+        }
+        var released = new AtomicBoolean();
+        var shared = new FTPUploadStreamResponse(() -> {
+            try {
+                return upload.close();
+            } finally {
+                if (released.compareAndSet(false, true)) this.release();
+            }
+        });
+        shared.asSuccess(upload.getReplyCode().getCode(), upload::getMessage, upload.getChannel().orElseThrow());
+        return shared;
+    }
+
+    /**
+     * Richiede al server le informazioni del file indicato al proprio turno.
+     * @param file file del quale richiedere le informazioni
+     * @return le informazioni del file e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStatResponse stat(Path file) {
+        return this.serialize(() -> session.stat(file));
+    }
+
+    /**
+     * Richiede al server le informazioni dei file indicati in un unico turno, così che le richieste non vengano
+     * intervallate da quelle degli altri thread.
+     * @param files file dei quali richiedere le informazioni
+     * @return le informazioni di ogni file, indicizzate per percorso
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public Map<Path, FTPStatResponse> stat(Collection<Path> files) {
+        return this.serialize(() -> session.stat(files));
+    }
+
+    /**
+     * Elimina il file indicato dal server al proprio turno.
+     * @param file file da eliminare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse delete(Path file) {
+        return this.serialize(() -> session.delete(file));
+    }
+
+    /**
+     * Invia al server il comando fornito al proprio turno.
+     * @param command comando da inviare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse execute(String command) {
+        return this.serialize(() -> session.execute(command));
+    }
+
+    /**
+     * Esegue l'operazione fornita sulla sessione del tipo indicato al proprio turno, mantenendo occupata la connessione
+     * per tutta la sua durata.
+     * @param type tipo della sessione richiesta
+     * @param operation operazione da eseguire sulla sessione
+     * @return il risultato dell'operazione, vuoto se nessuna sessione è del tipo indicato
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public <T extends FTPSession, R> Optional<R> unwrap(Class<T> type, Function<? super T, ? extends R> operation) {
+        if (type.isInstance(this)) return Optional.ofNullable(operation.apply(type.cast(this)));
+        return this.serialize(() -> session.unwrap(type, operation));
+    }
+
+    /**
+     * Chiude la sessione decorata dopo che le operazioni già accodate sono state concluse.
+     */
+    @Override
+    public void close() {
+        this.acquire();
+        try {
+            session.close();
+        } finally {
+            this.release();
+        }
+    }
+
+    /**
+     * Esegue l'operazione fornita al proprio turno.
+     * @param operation operazione da eseguire
+     * @return l'esito dell'operazione
+     */
+    private <R> R serialize(Supplier<R> operation) {
+        this.acquire();
+        try {
+            return operation.get();
+        } finally {
+            this.release();
+        }
+    }
+
+    /**
+     * Esegue il download fornito al proprio turno, mantenendo occupata la connessione fino alla chiusura della
+     * risposta.
+     * @param download operazione di download
+     * @return la risposta che libera la connessione alla chiusura
+     */
+    private FTPStreamResponse hold(Supplier<FTPStreamResponse> download) {
+        this.acquire();
+        FTPStreamResponse response;
+        try {
+            response = download.get();
+        } catch (RuntimeException re) {
+            this.release();
+            throw re;
+        }
+        if (response.getStatus() != Status.SUCCESS) {
+            this.release();
+            return response;
+        }
+        var released = new AtomicBoolean();
+        var shared = new FTPStreamResponse(() -> {
+            if (!released.compareAndSet(false, true)) return;
+            try {
+                response.close();
+            } finally {
+                this.release();
+            }
+        });
+        shared.asSuccess(response.getReplyCode().getCode(), response::getMessage, response.getStream().orElseThrow());
+        return shared;
+    }
+
+    /**
+     * Accoda il thread corrente e lo parcheggia finché non è il primo della coda e la connessione è libera.
+     */
+    private void acquire() {
+        var current = Thread.currentThread();
+        boolean interrupted = false;
+        waiters.add(current);
+        while (waiters.peek() != current || !busy.compareAndSet(false, true)) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) interrupted = true;
+        }
+        waiters.remove();
+        if (interrupted) current.interrupt();
+    }
+
+    /**
+     * Libera la connessione e risveglia il primo thread in coda.
+     */
+    private void release() {
+        busy.set(false);
+        LockSupport.unpark(waiters.peek());
+    }
+
+}
@@ -0,0 +1,460 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.ftp.response.FTPUploadStreamResponse;
+import it.gtcode.net.ftp.trace.FTPSpan;
+import it.gtcode.net.ftp.trace.FTPTracer;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Implementazione di {@link FTPSession} che apre un intervallo di tracciamento per ogni operazione della sessione
+ * decorata.<br>
+ * I comandi inviati durante l'operazione vengono associati all'intervallo tramite il {@link FTPCommandTracer}
+ * installato sul client della sessione. Gli scaricamenti e i caricamenti in streaming restano tracciati fino alla
+ * chiusura della relativa risposta, così da comprendere la fase di trasferimento dati.<br>
+ * Le funzionalità che richiedono il client concreto, come la verifica tramite {@code HASH} di
+ * {@link FTPDedupUpload} e il trasferimento tra server di {@link FTPServerTransfer}, lo raggiungono tramite
+ * {@link #unwrap(Class, Function)} e vengono quindi tracciate in un intervallo {@code unwrap} che ne raccoglie i
+ * comandi.
+ * @since 2.1
+ * @see FTPTracer
+ * @see FTPTransportApache
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+class FTPSession_Traced implements FTPSession {
+
+    private final FTPSession session;
+    @EqualsAndHashCode.Exclude
+    private final FTPCommandTracer commands;
+
+    /**
+     * Costruttore.
+     * @param session sessione da decorare
+     * @param commands tracciamento dei comandi installato sul client della sessione
+     */
+    FTPSession_Traced(FTPSession session, FTPCommandTracer commands) {
+        this.session = session;
+        this.commands = commands;
+    }
+
+    /**
+     * Indica se la sessione decorata è ancora aperta. Non apre alcun intervallo.
+     * @return {@code true} se la sessione può essere utilizzata, {@code false} altrimenti
+     */
+    @Override
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+
+    /**
+     * Restituisce la configurazione della sessione decorata. Non apre alcun intervallo.
+     * @return la configurazione con la quale è stata creata la sessione
+     */
+    @Override
+    public FTPConfiguration getConfiguration() {
+        return session.getConfiguration();
+    }
+
+    /**
+     * Restituisce la root della sessione decorata. Non apre alcun intervallo.
+     * @return percorso definito come root della sessione
+     */
+    @Override
+    public Path getRoot() {
+        return session.getRoot();
+    }
+
+    /**
+     * Fornisce un {@link FTPStreamResponse} associato alla risorsa richiesta.<br>
+     * L'intervallo {@code download} resta aperto fino alla chiusura della risposta e riporta i byte letti.
+     * @param file file da richiedere al server
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStreamResponse download(Path file) {
+        return this.download(file, () -> session.download(file));
+    }
+
+    /**
+     * Fornisce un {@link FTPStreamResponse} associato alla risorsa richiesta, a partire dalla posizione indicata.<br>
+     * L'intervallo {@code download} resta aperto fino alla chiusura della risposta e riporta i byte letti.
+     * @param file file da richiedere al server
+     * @param offset posizione, in byte, dalla quale iniziare la lettura
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @throws IllegalArgumentException se la posizione fornita è negativa
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStreamResponse download(Path file, long offset) {
+        return this.download(file, () -> session.download(file, offset));
+    }
+
+    /**
+     * Carica il file indicato nella root della sessione all'interno di un intervallo {@code upload}, che riporta la
+     * dimensione del file.
+     * @param file file da caricare sul server
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file) throws FileNotFoundException {
+        var span = this.start("upload", file);
+        try {
+            return this.finish(span, session.upload(file), this.size(file));
+        } catch (FileNotFoundException | RuntimeException e) {
+            this.fail(span, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Carica il file indicato nella directory fornita all'interno di un intervallo {@code upload}, che riporta la
+     * dimensione del file.
+     * @param file file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, Path target) throws FileNotFoundException {
+        var span = this.start("upload", file);
+        try {
+            return this.finish(span, session.upload(file, target), this.size(file));
+        } catch (FileNotFoundException | RuntimeException e) {
+            this.fail(span, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Carica il contenuto dello stream fornito nella root della sessione all'interno di un intervallo
+     * {@code upload}, che riporta i byte letti dallo stream.
+     * @param file nome del file da caricare
+     * @param fileStream contenuto del file da caricare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, InputStream fileStream) {
+        var counting = new CountingInputStream(fileStream);
+        return this.trace("upload", file, () -> session.upload(file, counting), () -> counting.count);
+    }
+
+    /**
+     * Carica il contenuto dello stream fornito nella directory indicata all'interno di un intervallo
+     * {@code upload}, che riporta i byte letti dallo stream.
+     * @param file nome del file da caricare
+     * @param fileStream contenuto del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, InputStream fileStream, Path target) {
+        var counting = new CountingInputStream(fileStream);
+        return this.trace("upload", file, () -> session.upload(file, counting, target), () -> counting.count);
+    }
+
+    /**
+     * Carica i byte rimanenti del buffer fornito nella root della sessione all'interno di un intervallo
+     * {@code upload}.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, ByteBuffer data) {
+        long size = data.remaining();
+        return this.trace("upload", file, () -> session.upload(file, data), () -> size);
+    }
+
+    /**
+     * Carica i byte rimanenti del buffer fornito nella directory indicata all'interno di un intervallo
+     * {@code upload}.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, ByteBuffer data, Path target) {
+        long size = data.remaining();
+        return this.trace("upload", file, () -> session.upload(file, data, target), () -> size);
+    }
+
+    /**
+     * Carica il file indicato senza copiarne il contenuto nell'heap, all'interno di un intervallo {@code upload}.
+     * @param file file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse uploadMapped(Path file, Path target) throws FileNotFoundException {
+        var span = this.start("upload", file);
+        try {
+            return this.finish(span, session.uploadMapped(file, target), this.size(file));
+        } catch (FileNotFoundException | RuntimeException e) {
+            this.fail(span, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Apre un caricamento in streaming del file indicato nella directory fornita.<br>
+     * L'intervallo {@code upload} resta aperto fino alla chiusura della risposta e ne riporta l'esito definitivo.
+     * @param file nome del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return la connessione dati sulla quale scrivere il contenuto e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPUploadStreamResponse openUploadStream(Path file, Path target) {
+        var span = this.start("upload", file);
+        FTPUploadStreamResponse upload;
+        try {
+            upload = session.openUploadStream(file, target);
+        } catch (RuntimeException re) {
+            this.fail(span, re);
+            throw re;
+        }
+        if (upload.getStatus() != Status.SUCCESS) return this.finish(span, upload, -1);
+        var ended = new AtomicBoolean();
+        var traced = new FTPUploadStreamResponse(() -> {
+            FTPResponse outcome = upload;
+            try {
+                outcome = upload.close();
+                return outcome;
+            } catch (RuntimeException re) {
+                span.recordException(re);
+                throw re;
+            } finally {
+                if (ended.compareAndSet(false, true)) this.finish(span, outcome, -1);
+            }
+        });
+        traced.asSuccess(upload.getReplyCode().getCode(), upload::getMessage, upload.getChannel().orElseThrow());
+        return traced;
+    }
+
+    /**
+     * Richiede al server le informazioni del file indicato all'interno di un intervallo {@code stat}.
+     * @param file file del quale richiedere le informazioni
+     * @return le informazioni del file e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStatResponse stat(Path file) {
+        return this.trace("stat", file, () -> session.stat(file), () -> -1);
+    }
+
+    /**
+     * Elimina il file indicato dal server all'interno di un intervallo {@code delete}.
+     * @param file file da eliminare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse delete(Path file) {
+        return this.trace("delete", file, () -> session.delete(file), () -> -1);
+    }
+
+    /**
+     * Invia al server il comando fornito all'interno di un intervallo {@code execute}.
+     * @param command comando da inviare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse execute(String command) {
+        return this.trace("execute", null, () -> session.execute(command), () -> -1);
+    }
+
+    /**
+     * Esegue l'operazione fornita sulla sessione del tipo indicato all'interno di un intervallo dedicato, al quale
+     * vengono associati i comandi inviati dall'operazione.
+     * @param type tipo della sessione richiesta
+     * @param operation operazione da eseguire sulla sessione
+     * @return il risultato dell'operazione, vuoto se nessuna sessione è del tipo indicato
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public <T extends FTPSession, R> Optional<R> unwrap(Class<T> type, Function<? super T, ? extends R> operation) {
+        if (type.isInstance(this)) return Optional.ofNullable(operation.apply(type.cast(this)));
+        var span = this.start("unwrap", null);
+        try {
+            Optional<R> result = session.unwrap(type, operation);
+            commands.end(span);
+            return result;
+        } catch (RuntimeException re) {
+            this.fail(span, re);
+            throw re;
+        }
+    }
+
+    /**
+     * Chiude la sessione decorata all'interno di un intervallo {@code close}, se ancora aperta.
+     */
+    @Override
+    public void close() {
+        if (!session.isOpen()) return;
+        var span = this.start("close", null);
+        try {
+            session.close();
+        } catch (RuntimeException re) {
+            this.fail(span, re);
+            throw re;
+        }
+        commands.end(span);
+    }
+
+    /**
+     * Traccia uno scaricamento fino alla chiusura della risposta, conteggiando i byte letti.
+     * @param file file richiesto
+     * @param operation operazione di scaricamento
+     * @return la risposta dello scaricamento
+     */
+    private FTPStreamResponse download(Path file, Supplier<FTPStreamResponse> operation) {
+        var span = this.start("download", file);
+        FTPStreamResponse response;
+        try {
+            response = operation.get();
+        } catch (RuntimeException re) {
+            this.fail(span, re);
+            throw re;
+        }
+        if (response.getStatus() != Status.SUCCESS) return this.finish(span, response, -1);
+        var counting = new CountingInputStream(response.getStream().orElseThrow());
+        var ended = new AtomicBoolean();
+        var traced = new FTPStreamResponse(() -> {
+            try {
+                response.close();
+            } catch (RuntimeException re) {
+                span.recordException(re);
+                throw re;
+            } finally {
+                if (ended.compareAndSet(false, true)) this.finish(span, response, counting.count);
+            }
+        });
+        traced.asSuccess(response.getReplyCode().getCode(), response::getMessage, counting);
+        return traced;
+    }
+
+    /**
+     * Traccia un'operazione conclusa al ritorno della stessa.
+     * @param name nome dell'operazione
+     * @param file file oggetto dell'operazione, {@code null} se assente
+     * @param operation operazione da eseguire
+     * @param bytes byte trasferiti dall'operazione, negativo se non applicabile
+     * @return l'esito dell'operazione
+     */
+    private <R extends FTPResponse> R trace(String name, Path file, Supplier<R> operation, LongSupplier bytes) {
+        var span = this.start(name, file);
+        try {
+            return this.finish(span, operation.get(), bytes.getAsLong());
+        } catch (RuntimeException re) {
+            this.fail(span, re);
+            throw re;
+        }
+    }
+
+    /**
+     * Apre l'intervallo di un'operazione.
+     * @param name nome dell'operazione
+     * @param file file oggetto dell'operazione, {@code null} se assente
+     * @return l'intervallo aperto
+     */
+    private FTPSpan start(String name, Path file) {
+        var span = commands.begin(name);
+        if (file != null) span.setAttribute(FTPTracer.FILE, file.toString());
+        return span;
+    }
+
+    /**
+     * Conclude l'intervallo di un'operazione con l'esito fornito.
+     * @param span intervallo dell'operazione
+     * @param response esito dell'operazione
+     * @param bytes byte trasferiti, negativo se non applicabile
+     * @return l'esito dell'operazione
+     */
+    private <R extends FTPResponse> R finish(FTPSpan span, R response, long bytes) {
+        if (response.getReplyCode() != null) span.setAttribute(FTPTracer.REPLY_CODE, response.getReplyCode().getCode());
+        if (response.getStatus() == Status.SUCCESS && bytes >= 0) span.setAttribute(FTPTracer.BYTES, bytes);
+        if (response.getException() != null) span.recordException(response.getException());
+        commands.end(span);
+        return response;
+    }
+
+    /**
+     * Conclude l'intervallo di un'operazione fallita con un'eccezione.
+     * @param span intervallo dell'operazione
+     * @param exception eccezione sollevata
+     */
+    private void fail(FTPSpan span, Exception exception) {
+        span.recordException(exception);
+        commands.end(span);
+    }
+
+    /**
+     * Restituisce la dimensione del file fornito.
+     * @param file file locale
+     * @return la dimensione del file, {@code -1} se non è stato possibile leggerla
+     */
+    private long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException ioe) {
+            return -1;
+        }
+    }
+
+    /**
+     * Stream che conteggia i byte letti. Viene letto da un solo thread alla volta.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream stream) {
+            super(stream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) count++;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, length);
+            if (read > 0) count += read;
+            return read;
+        }
+
+    }
+
+}
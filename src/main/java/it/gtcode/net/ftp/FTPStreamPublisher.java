@@ -0,0 +1,221 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * {@link Flow.Publisher} che pubblica il contenuto di un download come sequenza di {@link ByteBuffer}.<br>
+ * Il download viene richiesto alla sottoscrizione e letto sull'{@link Executor} fornito solamente in presenza di
+ * domanda da parte del subscriber: in assenza di richieste nessun thread resta occupato dal trasferimento. Ogni
+ * buffer pubblicato proviene dal {@link FTPBufferPool} fornito e, una volta consumato, può essergli restituito
+ * tramite {@link FTPBufferPool#release(ByteBuffer)}.<br>
+ * Al termine del contenuto, in caso di errore o di cancellazione della sottoscrizione la risposta viene chiusa
+ * tramite {@link FTPStreamResponse#close()}, concludendo la transazione con il server. Il publisher ammette una sola
+ * sottoscrizione.
+ * @since 2.1
+ * @see FTPSession#downloadPublisher(java.nio.file.Path, Executor, FTPBufferPool)
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPStreamPublisher implements Flow.Publisher<ByteBuffer> {
+
+    @EqualsAndHashCode.Exclude
+    private final Supplier<FTPStreamResponse> download;
+    @EqualsAndHashCode.Exclude
+    private final Executor executor;
+    private final FTPBufferPool pool;
+    @EqualsAndHashCode.Exclude
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Costruttore.
+     * @param download operazione che esegue il download, invocata sull'executor alla sottoscrizione
+     * @param executor executor sul quale leggere il contenuto e notificare il subscriber
+     * @param pool pool dal quale ottenere i buffer da pubblicare
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     */
+    public FTPStreamPublisher(Supplier<FTPStreamResponse> download, Executor executor, FTPBufferPool pool) {
+        Objects.requireNonNull(download);
+        Objects.requireNonNull(executor);
+        Objects.requireNonNull(pool);
+        this.download = download;
+        this.executor = executor;
+        this.pool = pool;
+    }
+
+    /**
+     * Sottoscrive il subscriber fornito. Una seconda sottoscrizione viene rifiutata con una
+     * {@link IllegalStateException}.
+     * @param subscriber subscriber al quale pubblicare il contenuto
+     * @throws NullPointerException se il subscriber fornito è {@code null}
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) { }
+
+                @Override
+                public void cancel() { }
+            });
+            subscriber.onError(new IllegalStateException("Il download è già stato sottoscritto"));
+            return;
+        }
+        subscriber.onSubscribe(new StreamSubscription(subscriber));
+    }
+
+    /**
+     * Sottoscrizione che legge il contenuto del download in base alla domanda del subscriber.<br>
+     * Le richieste e la cancellazione pianificano un ciclo di lettura sull'executor; i cicli non vengono mai eseguiti
+     * in parallelo, così che la risposta sia utilizzata da un solo thread alla volta.
+     */
+    private class StreamSubscription implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean invalidRequest;
+        private FTPStreamResponse response;
+        private InputStream stream;
+        private boolean terminated;
+
+        StreamSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) invalidRequest = true;
+            else demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            this.schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            this.schedule();
+        }
+
+        /**
+         * Pianifica un ciclo di lettura, se non ne è già in corso uno.
+         */
+        private void schedule() {
+            if (pending.getAndIncrement() != 0) return;
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ree) {
+                this.terminate(ree, true);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                this.drain();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Pubblica buffer finché il subscriber ne richiede, concludendo la sottoscrizione al termine del contenuto.
+         */
+        private void drain() {
+            if (terminated) return;
+            if (cancelled) {
+                this.terminate(null, false);
+                return;
+            }
+            if (invalidRequest) {
+                this.terminate(new IllegalArgumentException("Il numero di elementi richiesti deve essere positivo"), true);
+                return;
+            }
+            if (demand.get() == 0) return;
+            try {
+                if (stream == null && !this.open()) return;
+                while (demand.get() > 0 && !cancelled) {
+                    var buffer = pool.acquire();
+                    int read = stream.read(buffer.array(), buffer.arrayOffset(), buffer.capacity());
+                    if (read < 0) {
+                        pool.release(buffer);
+                        this.terminate(null, true);
+                        return;
+                    }
+                    buffer.limit(read);
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(buffer);
+                    } catch (RuntimeException re) {
+                        // un subscriber che fallisce viene considerato cancellato
+                        this.terminate(null, false);
+                        return;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                this.terminate(e, true);
+            }
+        }
+
+        /**
+         * Esegue il download.
+         * @return {@code true} se il server ha fornito il contenuto, {@code false} se la sottoscrizione è stata
+         * conclusa con un errore
+         */
+        private boolean open() {
+            var result = download.get();
+            if (result.getStatus() != Status.SUCCESS) {
+                IOException error = result.getException() != null
+                        ? result.getException()
+                        : new IOException(String.format(
+                                "Impossibile scaricare il file: (%s) %s",
+                                result.getReplyCode() != null ? result.getReplyCode().getCode() : null,
+                                result.getMessage()
+                        ));
+                this.terminate(error, true);
+                return false;
+            }
+            response = result;
+            stream = result.getStream().orElseThrow();
+            return true;
+        }
+
+        /**
+         * Conclude la sottoscrizione chiudendo l'eventuale risposta e notificando il subscriber.
+         * @param error errore con il quale concludere, {@code null} se il contenuto è stato pubblicato per intero
+         * @param signal indica se notificare il subscriber
+         */
+        private void terminate(Throwable error, boolean signal) {
+            if (terminated) return;
+            terminated = true;
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (UncheckedIOException uioe) {
+                    if (error == null) error = uioe.getCause();
+                }
+            }
+            if (!signal) return;
+            if (error == null) subscriber.onComplete();
+            else subscriber.onError(error);
+        }
+
+    }
+
+}
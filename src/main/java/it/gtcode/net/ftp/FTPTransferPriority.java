@@ -0,0 +1,19 @@
+package it.gtcode.net.ftp;
+
+/**
+ * Classi di priorità dei trasferimenti gestiti da un {@link FTPTransferScheduler}, in ordine di precedenza
+ * decrescente.
+ * @since 2.1
+ * @see FTPTransferScheduler
+ * @author Giorgio Testa
+ */
+public enum FTPTransferPriority {
+
+    /** Trasferimenti sensibili alla latenza, ad esempio richiesti da un utente in attesa. */
+    INTERACTIVE,
+    /** Trasferimenti ordinari. */
+    NORMAL,
+    /** Trasferimenti massivi senza vincoli di latenza, ad esempio elaborazioni notturne. */
+    BULK
+
+}
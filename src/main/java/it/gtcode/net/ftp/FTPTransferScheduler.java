@@ -0,0 +1,448 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Pianifica i trasferimenti verso un server su un numero limitato di connessioni, rispettando classi di priorità
+ * ({@link FTPTransferPriority}).<br>
+ * Quando una connessione si libera viene assegnata alla richiesta in attesa con la priorità più alta; a parità di
+ * priorità alla più vecchia. Per evitare che le classi meno prioritarie attendano indefinitamente, ogni richiesta
+ * guadagna una classe di priorità per ogni intervallo di invecchiamento trascorso in coda.<br>
+ * Ogni classe può inoltre riservarsi un numero di connessioni che le altre classi non possono occupare: riservando
+ * connessioni a {@link FTPTransferPriority#INTERACTIVE} un trasferimento interattivo ottiene una connessione entro
+ * la durata di un trasferimento anche quando i trasferimenti massivi saturano le restanti.<br>
+ * Le sessioni vengono create dalla factory fornita e riutilizzate tra i trasferimenti; i trasferimenti vengono
+ * eseguiti su thread dedicati.
+ * @since 2.1
+ * @see FTPTransferPriority
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPTransferScheduler implements Closeable {
+
+    /** Intervallo di invecchiamento di default. */
+    public static final Duration DEFAULT_AGING = Duration.ofSeconds(30);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final FTPTransferPriority[] PRIORITIES = FTPTransferPriority.values();
+
+    private final FTPSessionFactory factory;
+    /** Numero massimo di connessioni utilizzate contemporaneamente. */
+    @Getter
+    private final int maxConnections;
+    /** Intervallo di attesa dopo il quale una richiesta guadagna una classe di priorità. */
+    @Getter
+    private final Duration aging;
+    private final Map<FTPTransferPriority, Integer> reservations;
+    @EqualsAndHashCode.Exclude
+    private final ThreadFactory threadFactory;
+    @EqualsAndHashCode.Exclude
+    private final LongSupplier clock;
+    @EqualsAndHashCode.Exclude
+    private final ReentrantLock lock = new ReentrantLock();
+    @EqualsAndHashCode.Exclude
+    private final Map<FTPTransferPriority, Deque<Request<?>>> queues = new EnumMap<>(FTPTransferPriority.class);
+    @EqualsAndHashCode.Exclude
+    private final Map<FTPTransferPriority, Integer> running = new EnumMap<>(FTPTransferPriority.class);
+    @EqualsAndHashCode.Exclude
+    private final Deque<FTPSession> idle = new ConcurrentLinkedDeque<>();
+    @EqualsAndHashCode.Exclude
+    private volatile boolean closed;
+
+    /**
+     * Costruttore. Non riserva connessioni ad alcuna classe e utilizza l'intervallo di invecchiamento di default.
+     * @param factory factory con la quale creare le sessioni
+     * @param maxConnections numero massimo di connessioni utilizzate contemporaneamente
+     * @throws NullPointerException se la factory fornita è {@code null}
+     * @throws IllegalArgumentException se il numero massimo di connessioni non è positivo
+     */
+    public FTPTransferScheduler(FTPSessionFactory factory, int maxConnections) {
+        this(factory, maxConnections, Map.of(), DEFAULT_AGING);
+    }
+
+    /**
+     * Costruttore. Utilizza thread daemon dedicati.
+     * @param factory factory con la quale creare le sessioni
+     * @param maxConnections numero massimo di connessioni utilizzate contemporaneamente
+     * @param reservations connessioni riservate a ciascuna classe di priorità
+     * @param aging intervallo di attesa dopo il quale una richiesta guadagna una classe di priorità
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     * @throws IllegalArgumentException se il numero massimo di connessioni o l'intervallo non sono positivi, o se
+     * le connessioni riservate sono negative o complessivamente superiori al massimo
+     */
+    public FTPTransferScheduler(FTPSessionFactory factory, int maxConnections,
+                                Map<FTPTransferPriority, Integer> reservations, Duration aging) {
+        this(factory, maxConnections, reservations, aging, FTPTransferScheduler::newDaemonThread, System::nanoTime);
+    }
+
+    /**
+     * Costruttore.
+     * @param factory factory con la quale creare le sessioni
+     * @param maxConnections numero massimo di connessioni utilizzate contemporaneamente
+     * @param reservations connessioni riservate a ciascuna classe di priorità
+     * @param aging intervallo di attesa dopo il quale una richiesta guadagna una classe di priorità
+     * @param threadFactory factory con la quale creare i thread dei trasferimenti
+     * @param clock orologio in nanosecondi con il quale misurare l'attesa delle richieste
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     * @throws IllegalArgumentException se il numero massimo di connessioni o l'intervallo non sono positivi, o se
+     * le connessioni riservate sono negative o complessivamente superiori al massimo
+     */
+    FTPTransferScheduler(FTPSessionFactory factory, int maxConnections, Map<FTPTransferPriority, Integer> reservations,
+                         Duration aging, ThreadFactory threadFactory, LongSupplier clock) {
+        Objects.requireNonNull(factory);
+        Objects.requireNonNull(reservations);
+        Objects.requireNonNull(aging);
+        Objects.requireNonNull(threadFactory);
+        if (maxConnections <= 0) throw new IllegalArgumentException("Il numero massimo di connessioni deve essere positivo");
+        if (aging.isNegative() || aging.isZero()) throw new IllegalArgumentException("L'intervallo di invecchiamento deve essere positivo");
+        int reserved = 0;
+        for (var reservation : reservations.values()) {
+            if (reservation < 0) throw new IllegalArgumentException("Le connessioni riservate non possono essere negative");
+            reserved += reservation;
+        }
+        if (reserved > maxConnections)
+            throw new IllegalArgumentException("Le connessioni riservate superano il numero massimo di connessioni");
+        this.factory = factory;
+        this.maxConnections = maxConnections;
+        this.aging = aging;
+        this.reservations = new EnumMap<>(FTPTransferPriority.class);
+        this.threadFactory = threadFactory;
+        this.clock = clock;
+        for (var priority : PRIORITIES) {
+            this.reservations.put(priority, reservations.getOrDefault(priority, 0));
+            this.queues.put(priority, new ArrayDeque<>());
+            this.running.put(priority, 0);
+        }
+    }
+
+    /**
+     * Restituisce le connessioni riservate alla classe indicata.
+     * @param priority classe di priorità
+     * @return il numero di connessioni riservate
+     */
+    public int getReservation(FTPTransferPriority priority) {
+        return reservations.get(priority);
+    }
+
+    /**
+     * Restituisce il numero di richieste della classe indicata in attesa di una connessione.
+     * @param priority classe di priorità
+     * @return il numero di richieste in attesa
+     */
+    public int getQueued(FTPTransferPriority priority) {
+        lock.lock();
+        try {
+            return queues.get(priority).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restituisce il numero di trasferimenti della classe indicata in corso.
+     * @param priority classe di priorità
+     * @return il numero di trasferimenti in corso
+     */
+    public int getRunning(FTPTransferPriority priority) {
+        lock.lock();
+        try {
+            return running.get(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pianifica il caricamento del file indicato.
+     * @param priority classe di priorità del trasferimento
+     * @param file file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito futuro del caricamento
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se lo scheduler è stato chiuso
+     */
+    public CompletableFuture<FTPResponse> upload(FTPTransferPriority priority, Path file, Path target)
+            throws FileNotFoundException {
+        if (!Files.isRegularFile(file)) throw new FileNotFoundException(file.toString());
+        return this.submit(priority, session -> {
+            try {
+                return session.upload(file, target);
+            } catch (FileNotFoundException ffe) {
+                throw new UncheckedIOException(ffe);
+            }
+        });
+    }
+
+    /**
+     * Pianifica il caricamento del contenuto fornito.<br>
+     * NOTA: Lo stream fornito <b>NON</b> viene chiuso.
+     * @param priority classe di priorità del trasferimento
+     * @param file nome del file da caricare
+     * @param fileStream {@code InputStream} relativo al file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito futuro del caricamento
+     * @throws IllegalStateException se lo scheduler è stato chiuso
+     */
+    public CompletableFuture<FTPResponse> upload(FTPTransferPriority priority, Path file, InputStream fileStream,
+                                                 Path target) {
+        return this.submit(priority, session -> session.upload(file, fileStream, target));
+    }
+
+    /**
+     * Pianifica il download del file indicato.<br>
+     * La connessione resta assegnata al trasferimento fino alla chiusura della risposta restituita.
+     * @param priority classe di priorità del trasferimento
+     * @param file file da richiedere al server
+     * @return un riferimento futuro alla risorsa richiesta
+     * @throws IllegalStateException se lo scheduler è stato chiuso
+     */
+    public CompletableFuture<FTPStreamResponse> download(FTPTransferPriority priority, Path file) {
+        return this.enqueue(priority, (session, release) -> {
+            var response = session.download(file);
+            if (response.getStatus() != Status.SUCCESS) {
+                release.run();
+                return response;
+            }
+            var released = new AtomicBoolean();
+            var scheduled = new FTPStreamResponse(() -> {
+                if (!released.compareAndSet(false, true)) return;
+                try {
+                    response.close();
+                } finally {
+                    release.run();
+                }
+            });
+            scheduled.asSuccess(response.getReplyCode().getCode(), response::getMessage, response.getStream().orElseThrow());
+            return scheduled;
+        });
+    }
+
+    /**
+     * Pianifica l'eliminazione del file indicato.
+     * @param priority classe di priorità dell'operazione
+     * @param file path del file da eliminare
+     * @return l'esito futuro dell'eliminazione
+     * @throws IllegalStateException se lo scheduler è stato chiuso
+     */
+    public CompletableFuture<FTPResponse> delete(FTPTransferPriority priority, Path file) {
+        return this.submit(priority, session -> session.delete(file));
+    }
+
+    /**
+     * Pianifica un'operazione arbitraria, eseguita su una sessione dedicata fino al suo termine.
+     * @param priority classe di priorità dell'operazione
+     * @param operation operazione da eseguire
+     * @return l'esito futuro dell'operazione, completato in maniera eccezionale se l'operazione fallisce o se non è
+     * stato possibile creare la sessione
+     * @throws IllegalStateException se lo scheduler è stato chiuso
+     */
+    public <R> CompletableFuture<R> submit(FTPTransferPriority priority, Function<FTPSession, R> operation) {
+        Objects.requireNonNull(operation);
+        return this.enqueue(priority, (session, release) -> {
+            try {
+                return operation.apply(session);
+            } finally {
+                release.run();
+            }
+        });
+    }
+
+    /**
+     * Chiude lo scheduler e le sessioni inattive. Le richieste in attesa vengono completate in maniera eccezionale,
+     * i trasferimenti in corso vengono conclusi e le relative sessioni chiuse al termine.
+     */
+    @Override
+    public void close() {
+        List<Request<?>> pending = new ArrayList<>();
+        lock.lock();
+        try {
+            closed = true;
+            queues.values().forEach(queue -> {
+                pending.addAll(queue);
+                queue.clear();
+            });
+        } finally {
+            lock.unlock();
+        }
+        pending.forEach(request -> request.result.completeExceptionally(new IllegalStateException("Scheduler chiuso")));
+        FTPSession session;
+        while ((session = idle.poll()) != null) this.closeQuietly(session);
+    }
+
+    /**
+     * Accoda una richiesta e avvia i trasferimenti consentiti.
+     * @param priority classe di priorità della richiesta
+     * @param task operazione da eseguire, responsabile di liberare la connessione
+     * @return l'esito futuro dell'operazione
+     * @throws IllegalStateException se lo scheduler è stato chiuso
+     */
+    private <R> CompletableFuture<R> enqueue(FTPTransferPriority priority, Task<R> task) {
+        Objects.requireNonNull(priority);
+        var request = new Request<>(priority, task, clock.getAsLong(), new CompletableFuture<R>());
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Impossibile utilizzare lo scheduler, questo risulta essere chiuso");
+            queues.get(priority).addLast(request);
+        } finally {
+            lock.unlock();
+        }
+        this.dispatch();
+        return request.result;
+    }
+
+    /**
+     * Assegna le connessioni libere alle richieste in attesa.
+     */
+    private void dispatch() {
+        while (true) {
+            Request<?> next;
+            lock.lock();
+            try {
+                next = this.next();
+                if (next == null) return;
+                queues.get(next.priority).pollFirst();
+                running.merge(next.priority, 1, Integer::sum);
+            } finally {
+                lock.unlock();
+            }
+            this.start(next);
+        }
+    }
+
+    /**
+     * Seleziona la prossima richiesta da avviare, tenendo conto dell'invecchiamento e delle connessioni riservate.
+     * Deve essere invocato con il lock acquisito.
+     * @return la richiesta da avviare, {@code null} se nessuna richiesta può essere avviata
+     */
+    private Request<?> next() {
+        int total = running.values().stream().mapToInt(Integer::intValue).sum();
+        if (total >= maxConnections) return null;
+        long now = clock.getAsLong();
+        Request<?> best = null;
+        long bestRank = Long.MAX_VALUE;
+        for (var priority : PRIORITIES) {
+            var head = queues.get(priority).peekFirst();
+            if (head == null || !this.admissible(priority, total)) continue;
+            long rank = Math.max(priority.ordinal() - (now - head.submitted) / aging.toNanos(), 0);
+            if (best == null || rank < bestRank || (rank == bestRank && head.submitted < best.submitted)) {
+                best = head;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Indica se una richiesta della classe fornita può occupare una connessione senza sottrarla alle connessioni
+     * riservate alle altre classi. Deve essere invocato con il lock acquisito.
+     * @param priority classe della richiesta
+     * @param total connessioni attualmente occupate
+     * @return {@code true} se la richiesta può essere avviata
+     */
+    private boolean admissible(FTPTransferPriority priority, int total) {
+        if (running.get(priority) < reservations.get(priority)) return true;
+        int reservedForOthers = 0;
+        for (var other : PRIORITIES)
+            if (other != priority) reservedForOthers += Math.max(reservations.get(other) - running.get(other), 0);
+        return maxConnections - total - reservedForOthers > 0;
+    }
+
+    /**
+     * Avvia la richiesta fornita su un thread dedicato.
+     * @param request richiesta da avviare
+     */
+    private <R> void start(Request<R> request) {
+        threadFactory.newThread(() -> {
+            var released = new AtomicBoolean();
+            FTPSession session = null;
+            try {
+                session = idle.poll();
+                if (session == null) session = factory.openSession();
+                var leased = session;
+                request.result.complete(request.task.execute(leased, () -> {
+                    if (released.compareAndSet(false, true)) this.finish(request.priority, leased);
+                }));
+            } catch (RuntimeException re) {
+                request.result.completeExceptionally(re);
+                if (released.compareAndSet(false, true)) this.finish(request.priority, session);
+            }
+        }).start();
+    }
+
+    /**
+     * Libera la connessione occupata da un trasferimento e avvia le richieste in attesa.
+     * @param priority classe del trasferimento concluso
+     * @param session sessione utilizzata, {@code null} se non è stato possibile crearla
+     */
+    private void finish(FTPTransferPriority priority, FTPSession session) {
+        if (session != null) {
+            if (session.isOpen() && !closed) idle.push(session);
+            else this.closeQuietly(session);
+        }
+        lock.lock();
+        try {
+            running.merge(priority, -1, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+        this.dispatch();
+    }
+
+    /**
+     * Chiude la sessione fornita ignorando eventuali errori.
+     * @param session sessione da chiudere
+     */
+    private void closeQuietly(FTPSession session) {
+        try {
+            session.close();
+        } catch (RuntimeException ignored) {
+            // la sessione viene comunque abbandonata
+        }
+    }
+
+    /**
+     * Crea un thread daemon dedicato ai trasferimenti.
+     * @param task operazione da eseguire
+     * @return il thread creato
+     */
+    private static Thread newDaemonThread(Runnable task) {
+        var thread = new Thread(task, "ftp-scheduler-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Operazione eseguita su una sessione assegnata, che deve invocare {@code release} quando la connessione non è
+     * più necessaria.
+     */
+    @FunctionalInterface
+    private interface Task<R> {
+        R execute(FTPSession session, Runnable release);
+    }
+
+    /**
+     * Richiesta in attesa di una connessione.
+     */
+    private record Request<R>(FTPTransferPriority priority, Task<R> task, long submitted, CompletableFuture<R> result) { }
+
+}
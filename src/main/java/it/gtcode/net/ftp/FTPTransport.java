@@ -0,0 +1,38 @@
+package it.gtcode.net.ftp;
+
+/**
+ * Rappresenta un'implementazione del protocollo FTP in grado di creare {@link FTPSession}.<br>
+ * Permette alle factory di essere indipendenti dal client utilizzato per comunicare con il server, dichiarando in
+ * maniera tipizzata il client che il trasporto è in grado di utilizzare.
+ * @param <C> tipo del client nativo utilizzato dal trasporto
+ * @since 2.1
+ * @see FTPSessionFactoryTransport
+ * @see FTPTransportApache
+ * @author Giorgio Testa
+ */
+public interface FTPTransport<C> {
+
+    /**
+     * Restituisce il tipo del client nativo utilizzato dal trasporto.
+     * @return la classe del client nativo
+     */
+    Class<C> getClientType();
+
+    /**
+     * Crea una nuova sessione connettendosi al server indicato dalla configurazione fornita.
+     * @param configuration configurazione con la quale creare la sessione
+     * @return la sessione creata
+     * @throws java.io.UncheckedIOException nel caso in cui non sia stato possibile creare la sessione
+     */
+    FTPSession connect(FTPConfiguration configuration);
+
+    /**
+     * Crea una nuova sessione utilizzando il client fornito.
+     * @param configuration configurazione con la quale è stato inizializzato il client
+     * @param client client da utilizzare, deve essere già inizializzato e connesso
+     * @return la sessione creata
+     * @throws java.io.UncheckedIOException nel caso in cui non sia stato possibile creare la sessione
+     */
+    FTPSession wrap(FTPConfiguration configuration, C client);
+
+}
@@ -0,0 +1,132 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.trace.FTPTracer;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.apache.commons.net.ftp.FTPClient;
+
+import javax.net.ssl.SSLContext;
+import java.util.Objects;
+
+/**
+ * Implementazione di {@link FTPTransport} con {@code apache-commons-net}.<br>
+ * Ogni sessione creata utilizza un {@link FTPClient} bloccante dedicato; se è stato fornito un {@link SSLContext}
+ * le sessioni utilizzano FTPS esplicito e condividono il contesto, così da riprendere le sessioni TLS già negoziate.<br>
+ * Se è stato fornito un {@link FTPTracer} diverso da {@link FTPTracer#NOOP} la creazione delle sessioni, ogni loro
+ * operazione e ogni comando inviato vengono tracciati.<br>
+ * Se è stato fornito un {@link FTPAddressResolver} gli indirizzi dei server vengono mantenuti nella sua cache e le
+ * connessioni di controllo vengono aperte tentando gli indirizzi in parallelo.
+ * @since 2.1
+ * @see FTPTransport
+ * @see FTPSession_ApacheFTPClient
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPTransportApache implements FTPTransport<FTPClient> {
+
+    /** Contesto TLS condiviso dalle sessioni create, {@code null} se le sessioni utilizzano FTP in chiaro. */
+    @Getter
+    private final SSLContext sslContext;
+    /** Dimensionamento automatico dei buffer condiviso dalle sessioni create, {@code null} se non attivo. */
+    @Getter
+    private final FTPBufferTuner bufferTuner;
+    /** Tracciamento delle sessioni create. */
+    @Getter
+    private final FTPTracer tracer;
+    /** Risoluzione degli indirizzi dei server, {@code null} se viene utilizzata la risoluzione di sistema. */
+    @Getter
+    private final FTPAddressResolver resolver;
+
+    /**
+     * Costruttore. Le sessioni create utilizzano FTP in chiaro.
+     */
+    public FTPTransportApache() {
+        this(new FTPOptionsApache());
+    }
+
+    /**
+     * Costruttore.
+     * @param options opzioni con le quali creare le sessioni, lette alla creazione del trasporto
+     * @throws NullPointerException se le opzioni o il tracciamento forniti sono {@code null}
+     * @see FTPOptionsApache
+     */
+    public FTPTransportApache(FTPOptionsApache options) {
+        Objects.requireNonNull(options);
+        this.sslContext = options.getSslContext();
+        this.bufferTuner = options.getBufferTuner();
+        this.tracer = Objects.requireNonNull(options.getTracer());
+        this.resolver = options.getResolver();
+    }
+
+    /**
+     * Restituisce il tipo del client nativo utilizzato dal trasporto.
+     * @return {@code org.apache.commons.net.ftp.FTPClient}
+     */
+    @Override
+    public Class<FTPClient> getClientType() {
+        return FTPClient.class;
+    }
+
+    /**
+     * Crea una nuova sessione connettendosi al server indicato dalla configurazione fornita.
+     * @param configuration configurazione con la quale creare la sessione
+     * @return la sessione creata
+     * @throws java.io.UncheckedIOException nel caso in cui non sia stato possibile creare la sessione
+     */
+    @Override
+    public FTPSession connect(FTPConfiguration configuration) {
+        if (tracer == FTPTracer.NOOP)
+            return new FTPSession_ApacheFTPClient(configuration, this.options(), null);
+        var commands = new FTPCommandTracer(tracer, configuration);
+        var span = commands.begin("connect");
+        try {
+            return new FTPSession_Traced(
+                    new FTPSession_ApacheFTPClient(configuration, this.options(), commands),
+                    commands
+            );
+        } catch (RuntimeException re) {
+            span.recordException(re);
+            throw re;
+        } finally {
+            commands.end(span);
+        }
+    }
+
+    /**
+     * Crea una nuova sessione utilizzando il client fornito.
+     * @param configuration configurazione con la quale è stato inizializzato il client
+     * @param client client da utilizzare, deve essere già inizializzato e connesso
+     * @return la sessione creata
+     * @throws java.io.UncheckedIOException nel caso in cui non sia stato possibile creare la sessione
+     */
+    @Override
+    public FTPSession wrap(FTPConfiguration configuration, FTPClient client) {
+        if (tracer == FTPTracer.NOOP) return new FTPSession_ApacheFTPClient(configuration, client);
+        var commands = new FTPCommandTracer(tracer, configuration);
+        client.addProtocolCommandListener(commands);
+        var span = commands.begin("connect");
+        try {
+            return new FTPSession_Traced(new FTPSession_ApacheFTPClient(configuration, client), commands);
+        } catch (RuntimeException re) {
+            span.recordException(re);
+            throw re;
+        } finally {
+            commands.end(span);
+        }
+    }
+
+    /**
+     * Ricostruisce le opzioni lette alla creazione del trasporto, così che le sessioni non risentano di modifiche
+     * successive all'oggetto originale.
+     * @return le opzioni del trasporto
+     */
+    private FTPOptionsApache options() {
+        var options = new FTPOptionsApache();
+        options.setSslContext(sslContext);
+        options.setBufferTuner(bufferTuner);
+        options.setTracer(tracer);
+        options.setResolver(resolver);
+        return options;
+    }
+
+}
@@ -0,0 +1,126 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPUploadStreamResponse;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * {@link Flow.Subscriber} che scrive ogni {@link ByteBuffer} ricevuto sulla connessione dati di un caricamento in
+ * streaming.<br>
+ * La scrittura avviene sul thread del publisher, senza thread o buffer intermedi: viene richiesto un nuovo elemento
+ * solamente dopo aver scritto il precedente, così che il publisher proceda alla velocità della connessione. Se fornito,
+ * ogni buffer scritto viene restituito al {@link FTPBufferPool} indicato.<br>
+ * Al completamento del publisher il caricamento viene concluso e il suo esito reso disponibile tramite
+ * {@link #getResult()}; in caso di errore del publisher la connessione dati viene chiusa e l'esito riporta l'errore
+ * ricevuto, anche se il server potrebbe conservare il contenuto parziale.
+ * @since 2.1
+ * @see FTPSession#uploadSubscriber(java.nio.file.Path, java.nio.file.Path)
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPUploadSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+    private final FTPUploadStreamResponse upload;
+    @EqualsAndHashCode.Exclude
+    private final FTPBufferPool pool;
+    @EqualsAndHashCode.Exclude
+    private final CompletableFuture<FTPResponse> result = new CompletableFuture<>();
+    @EqualsAndHashCode.Exclude
+    private Flow.Subscription subscription;
+
+    /**
+     * Costruttore.
+     * @param upload caricamento in streaming sul quale scrivere
+     * @throws NullPointerException se il caricamento fornito è {@code null}
+     */
+    public FTPUploadSubscriber(FTPUploadStreamResponse upload) {
+        this(upload, null);
+    }
+
+    /**
+     * Costruttore.
+     * @param upload caricamento in streaming sul quale scrivere
+     * @param pool pool al quale restituire i buffer scritti, {@code null} per non restituirli
+     * @throws NullPointerException se il caricamento fornito è {@code null}
+     */
+    public FTPUploadSubscriber(FTPUploadStreamResponse upload, FTPBufferPool pool) {
+        Objects.requireNonNull(upload);
+        this.upload = upload;
+        this.pool = pool;
+    }
+
+    /**
+     * Restituisce l'esito futuro del caricamento, completato al termine della sottoscrizione.
+     * @return l'esito futuro del caricamento, mai completato in maniera eccezionale
+     */
+    public CompletableFuture<FTPResponse> getResult() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        if (this.subscription != null || result.isDone()) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        if (upload.getStatus() != Status.SUCCESS) {
+            subscription.cancel();
+            result.complete(upload);
+            return;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        if (result.isDone()) return;
+        var channel = upload.getChannel().orElseThrow();
+        try {
+            while (item.hasRemaining()) channel.write(item);
+        } catch (IOException ioe) {
+            subscription.cancel();
+            this.abort(ioe);
+            return;
+        }
+        if (pool != null) pool.release(item);
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (result.isDone()) return;
+        this.abort(throwable instanceof IOException ioe ? ioe : new IOException(throwable));
+    }
+
+    @Override
+    public void onComplete() {
+        if (result.isDone()) return;
+        result.complete(upload.close());
+    }
+
+    /**
+     * Chiude il caricamento e ne completa l'esito con l'errore fornito.
+     * @param error errore che ha interrotto il caricamento
+     */
+    private void abort(IOException error) {
+        try {
+            upload.close();
+        } catch (RuntimeException ignored) {
+            // l'esito riporta comunque l'errore originale
+        }
+        var failure = new FTPResponse();
+        failure.asError(FTPReplyCode.ACTION_ABORTED.getCode(), error.getMessage(), error);
+        result.complete(failure);
+    }
+
+}
@@ -0,0 +1,494 @@
+package it.gtcode.net.ftp.cache;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPSession;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache su disco delle risorse scaricate tramite {@link FTPSession}.<br>
+ * Ogni risorsa è identificata dal server, dall'utente e dal percorso assoluto sul server; prima di essere servita la
+ * copia locale viene validata confrontandone dimensione ({@code SIZE}) e data di ultima modifica ({@code MDTM}) con
+ * quelle fornite dal server. Se il server non supporta {@code MDTM} la validazione avviene sulla sola dimensione.<br>
+ * Una risorsa valida viene servita tramite un {@link FileChannel} locale senza aprire alcuna connessione dati; in caso
+ * contrario viene scaricata in un file temporaneo e pubblicata nella cache tramite uno spostamento atomico, così che
+ * un lettore concorrente non possa mai osservare una copia parziale.<br>
+ * La dimensione complessiva delle risorse è limitata dal budget fornito: superato il limite vengono rimosse le risorse
+ * utilizzate meno di recente (LRU). Le risorse più grandi dell'intero budget vengono scaricate senza essere memorizzate.
+ * @since 2.1
+ * @see FTPSession_DownloadCache
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPDownloadCache {
+
+    private static final String DATA_EXTENSION = ".data";
+    private static final String META_EXTENSION = ".meta";
+    private static final String TEMP_PREFIX = "download-";
+    private static final String HIT_MESSAGE = "Risorsa servita dalla cache locale";
+
+    /** Directory nella quale vengono memorizzate le risorse. */
+    @Getter
+    private final Path directory;
+    /** Dimensione massima in byte dell'insieme delle risorse memorizzate. */
+    @Getter
+    private final long maxBytes;
+    /** Risorse memorizzate, ordinate dalla meno alla più recentemente utilizzata. */
+    @EqualsAndHashCode.Exclude
+    private final LinkedHashMap<String, Entry> entries;
+    @EqualsAndHashCode.Exclude
+    private final ReentrantLock lock;
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong hits;
+    @EqualsAndHashCode.Exclude
+    private final AtomicLong misses;
+    /** Dimensione in byte delle risorse attualmente memorizzate. */
+    @EqualsAndHashCode.Exclude
+    private long usedBytes;
+
+    /**
+     * Costruttore. Le risorse già presenti nella directory fornita, memorizzate da una precedente istanza, vengono
+     * recuperate e ordinate in base al loro ultimo utilizzo.
+     * @param directory directory nella quale memorizzare le risorse, viene creata se non esiste
+     * @param maxBytes dimensione massima in byte dell'insieme delle risorse memorizzate
+     * @throws NullPointerException se la directory fornita è {@code null}
+     * @throws IllegalArgumentException se la dimensione fornita non è positiva
+     * @throws UncheckedIOException se non è stato possibile creare o leggere la directory
+     */
+    public FTPDownloadCache(Path directory, long maxBytes) {
+        Objects.requireNonNull(directory);
+        if (maxBytes <= 0) throw new IllegalArgumentException("La dimensione della cache deve essere positiva");
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.lock = new ReentrantLock();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        try {
+            Files.createDirectories(directory);
+            this.load();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Restituisce una {@link FTPSession} che scarica le risorse tramite questa cache, delegando ogni altra operazione
+     * alla sessione fornita.
+     * @param session sessione da decorare
+     * @return la sessione decorata
+     * @throws NullPointerException se la sessione fornita è {@code null}
+     */
+    public FTPSession wrap(FTPSession session) {
+        return new FTPSession_DownloadCache(session, this);
+    }
+
+    /**
+     * Fornisce la risorsa richiesta, servendola dalla cache se la copia locale risulta ancora valida.<br>
+     * Se il server non consente la validazione della risorsa, ad esempio perché non supporta {@code SIZE}, questa
+     * viene scaricata direttamente dalla sessione senza essere memorizzata.
+     * @param session sessione con la quale validare e, se necessario, scaricare la risorsa
+     * @param file file da richiedere al server
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    public FTPStreamResponse download(FTPSession session, Path file) {
+        return this.download(session, file, session.stat(file));
+    }
+
+    /**
+     * Garantisce la presenza in cache delle risorse fornite, scaricando solamente quelle mancanti o non più valide.<br>
+     * La validazione di tutte le risorse avviene con un'unica richiesta {@link FTPSession#stat(Collection)}, che le
+     * sessioni in grado di farlo inviano in pipeline.
+     * @param session sessione con la quale validare e, se necessario, scaricare le risorse
+     * @param files file da richiedere al server
+     * @return l'esito di ogni risorsa, nell'ordine fornito
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    public Map<Path, FTPResponse> prefetch(FTPSession session, Collection<Path> files) {
+        var responses = new LinkedHashMap<Path, FTPResponse>();
+        session.stat(files).forEach((file, stat) -> {
+            var download = this.download(session, file, stat);
+            var response = new FTPResponse();
+            if (download.getStatus() == Status.SUCCESS) {
+                try {
+                    download.close();
+                    response.asSuccess(download.getReplyCode().getCode(), download.getMessage());
+                } catch (UncheckedIOException uioe) {
+                    response.asError(download.getReplyCode().getCode(), download.getMessage(), uioe.getCause());
+                }
+            } else {
+                response.asError(download.getReplyCode().getCode(), download.getMessage(), download.getException());
+            }
+            responses.put(file, response);
+        });
+        return responses;
+    }
+
+    /**
+     * Rimuove dalla cache la risorsa indicata, ad esempio a seguito della sua modifica tramite la sessione fornita.
+     * @param session sessione con la quale è stata effettuata la modifica
+     * @param file file da rimuovere
+     */
+    public void invalidate(FTPSession session, Path file) {
+        var key = this.key(session, file);
+        lock.lock();
+        try {
+            this.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restituisce il numero di richieste servite dalla cache.
+     * @return il numero di richieste servite dalla cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Restituisce il numero di richieste per le quali è stato necessario scaricare la risorsa dal server.
+     * @return il numero di richieste non servite dalla cache
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Restituisce la dimensione in byte delle risorse attualmente memorizzate.
+     * @return la dimensione in byte delle risorse memorizzate
+     */
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fornisce la risorsa richiesta utilizzando le informazioni già ottenute dal server.
+     * @param session sessione con la quale scaricare la risorsa
+     * @param file file da richiedere al server
+     * @param stat informazioni del file fornite dal server
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta
+     */
+    private FTPStreamResponse download(FTPSession session, Path file, FTPStatResponse stat) {
+        if (stat.getStatus() != Status.SUCCESS) {
+            if (stat.getException() == null) return session.download(file);
+            var response = new FTPStreamResponse(() -> { });
+            response.asError(stat.getReplyCode().getCode(), stat.getMessage(), stat.getException());
+            return response;
+        }
+
+        var key = this.key(session, file);
+        var hit = this.open(key, stat);
+        if (hit != null) {
+            hits.incrementAndGet();
+            var response = new FTPStreamResponse(() -> { });
+            response.asSuccess(stat.getReplyCode().getCode(), HIT_MESSAGE, hit);
+            return response;
+        }
+
+        misses.incrementAndGet();
+        if (stat.getSize() > maxBytes) return session.download(file);
+        var download = session.download(file);
+        if (download.getStatus() != Status.SUCCESS) return download;
+        return this.store(key, stat, download);
+    }
+
+    /**
+     * Apre la copia locale della risorsa se presente e coerente con le informazioni fornite dal server.
+     * @param key chiave della risorsa
+     * @param stat informazioni del file fornite dal server
+     * @return lo stream della copia locale, {@code null} se assente o non più valida
+     */
+    private InputStream open(String key, FTPStatResponse stat) {
+        lock.lock();
+        try {
+            var entry = entries.get(key);
+            if (entry == null) return null;
+            if (!entry.matches(stat)) {
+                this.remove(key);
+                return null;
+            }
+            var data = this.data(key);
+            var stream = Channels.newInputStream(FileChannel.open(data, StandardOpenOption.READ));
+            Files.setLastModifiedTime(data, FileTime.from(Instant.now()));
+            return stream;
+        } catch (IOException ioe) {
+            this.remove(key);
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Scarica la risorsa in un file temporaneo, la pubblica atomicamente nella cache e la fornisce dalla copia locale.
+     * @param key chiave della risorsa
+     * @param stat informazioni del file fornite dal server
+     * @param download risposta del download dal server
+     * @return un riferimento alla copia locale della risorsa e i codici di risposta del server
+     */
+    private FTPStreamResponse store(String key, FTPStatResponse stat, FTPStreamResponse download) {
+        var response = new FTPStreamResponse(() -> { });
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, TEMP_PREFIX, DATA_EXTENSION);
+            long copied;
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                copied = download.getStream().orElseThrow().transferTo(output);
+            } finally {
+                download.close();
+            }
+
+            var entry = new Entry(copied, stat.getLastModified());
+            var data = this.data(key);
+            InputStream stream;
+            lock.lock();
+            try {
+                var previous = entries.remove(key);
+                if (previous != null) usedBytes -= previous.size();
+                this.deleteQuietly(this.meta(key));
+                Files.move(temp, data, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                stream = Channels.newInputStream(FileChannel.open(data, StandardOpenOption.READ));
+                if (copied == stat.getSize()) {
+                    this.writeMeta(key, entry);
+                    entries.put(key, entry);
+                    usedBytes += entry.size();
+                    this.evict();
+                } else {
+                    this.deleteQuietly(data);
+                }
+            } finally {
+                lock.unlock();
+            }
+            response.asSuccess(download.getReplyCode().getCode(), download.getMessage(), stream);
+        } catch (IOException ioe) {
+            response.asError(download.getReplyCode().getCode(), download.getMessage(), ioe);
+        } catch (UncheckedIOException uioe) {
+            response.asError(download.getReplyCode().getCode(), download.getMessage(), uioe.getCause());
+        } finally {
+            if (temp != null) this.deleteQuietly(temp);
+        }
+        return response;
+    }
+
+    /**
+     * Rimuove le risorse utilizzate meno di recente fino a rientrare nel budget.<br>
+     * Deve essere invocato detenendo il lock.
+     */
+    private void evict() {
+        var iterator = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            var eldest = iterator.next();
+            iterator.remove();
+            usedBytes -= eldest.getValue().size();
+            this.delete(eldest.getKey());
+        }
+    }
+
+    /**
+     * Rimuove dall'indice e dal disco la risorsa associata alla chiave fornita.<br>
+     * Deve essere invocato detenendo il lock.
+     * @param key chiave della risorsa
+     */
+    private void remove(String key) {
+        var entry = entries.remove(key);
+        if (entry != null) usedBytes -= entry.size();
+        this.delete(key);
+    }
+
+    /**
+     * Elimina dal disco i file della risorsa associata alla chiave fornita, rimuovendo per prime le informazioni
+     * così che una copia parzialmente eliminata non venga mai recuperata.
+     * @param key chiave della risorsa
+     */
+    private void delete(String key) {
+        this.deleteQuietly(this.meta(key));
+        this.deleteQuietly(this.data(key));
+    }
+
+    /**
+     * Recupera le risorse memorizzate nella directory, ordinandole in base al loro ultimo utilizzo e rimuovendo i
+     * file temporanei di download interrotti e le copie prive di informazioni.
+     * @throws IOException se non è stato possibile leggere la directory
+     */
+    private void load() throws IOException {
+        var found = new ArrayList<Map.Entry<String, Entry>>();
+        var accessed = new HashMap<String, FileTime>();
+        var orphans = new ArrayList<Path>();
+        try (var files = Files.newDirectoryStream(directory)) {
+            for (var file : files) {
+                var name = file.getFileName().toString();
+                if (name.startsWith(TEMP_PREFIX)) {
+                    this.deleteQuietly(file);
+                } else if (name.endsWith(DATA_EXTENSION)) {
+                    orphans.add(file);
+                } else if (name.endsWith(META_EXTENSION)) {
+                    var key = this.keyOf(file, META_EXTENSION);
+                    var entry = this.readMeta(key);
+                    var data = this.data(key);
+                    if (entry != null && Files.isRegularFile(data) && Files.size(data) == entry.size()) {
+                        found.add(Map.entry(key, entry));
+                        accessed.put(key, Files.getLastModifiedTime(data));
+                    } else {
+                        this.deleteQuietly(file);
+                        this.deleteQuietly(data);
+                    }
+                }
+            }
+        }
+        orphans.removeIf(file -> accessed.containsKey(this.keyOf(file, DATA_EXTENSION)));
+        orphans.forEach(this::deleteQuietly);
+        found.sort(Comparator.comparing(item -> accessed.get(item.getKey())));
+        for (var item : found) {
+            entries.put(item.getKey(), item.getValue());
+            usedBytes += item.getValue().size();
+        }
+        this.evict();
+    }
+
+    /**
+     * Legge le informazioni della risorsa associata alla chiave fornita.
+     * @param key chiave della risorsa
+     * @return le informazioni della risorsa, {@code null} se non leggibili
+     */
+    private Entry readMeta(String key) {
+        var properties = new Properties();
+        try (var input = Files.newInputStream(this.meta(key))) {
+            properties.load(input);
+            var modified = properties.getProperty("lastModified");
+            return new Entry(
+                    Long.parseLong(properties.getProperty("size")),
+                    modified == null ? null : Instant.parse(modified)
+            );
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scrive atomicamente le informazioni della risorsa associata alla chiave fornita.
+     * @param key chiave della risorsa
+     * @param entry informazioni della risorsa
+     * @throws IOException se non è stato possibile scrivere le informazioni
+     */
+    private void writeMeta(String key, Entry entry) throws IOException {
+        var properties = new Properties();
+        properties.setProperty("size", Long.toString(entry.size()));
+        if (entry.lastModified() != null) properties.setProperty("lastModified", entry.lastModified().toString());
+        var temp = Files.createTempFile(directory, TEMP_PREFIX, META_EXTENSION);
+        try {
+            try (var output = Files.newOutputStream(temp)) {
+                properties.store(output, null);
+            }
+            Files.move(temp, this.meta(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            this.deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Calcola la chiave della risorsa a partire dal server, dall'utente e dal percorso assoluto del file.
+     * @param session sessione con la quale viene richiesta la risorsa
+     * @param file file richiesto, relativo alla root della sessione
+     * @return la chiave esadecimale della risorsa
+     */
+    private String key(FTPSession session, Path file) {
+        FTPConfiguration configuration = session.getConfiguration();
+        var identity = configuration.getUsername() + "@" + configuration.getServer() + ":" + configuration.getPort()
+                + session.getRoot().resolve(file).normalize().toString().replace('\\', '/');
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(identity.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException("Algoritmo SHA-256 non disponibile", nsae);
+        }
+    }
+
+    /**
+     * Estrae la chiave della risorsa dal nome di uno dei file della cache.
+     * @param file file della cache, dati o metadati
+     * @param extension estensione del file fornito
+     * @return la chiave della risorsa
+     */
+    private String keyOf(Path file, String extension) {
+        var name = file.getFileName().toString();
+        return name.substring(0, name.length() - extension.length());
+    }
+
+    /**
+     * Restituisce il file della cache che contiene la copia locale della risorsa.
+     * @param key chiave della risorsa
+     * @return il file dei dati della risorsa
+     */
+    private Path data(String key) {
+        return directory.resolve(key + DATA_EXTENSION);
+    }
+
+    /**
+     * Restituisce il file della cache che contiene le informazioni di validità della copia locale della risorsa.
+     * @param key chiave della risorsa
+     * @return il file dei metadati della risorsa
+     */
+    private Path meta(String key) {
+        return directory.resolve(key + META_EXTENSION);
+    }
+
+    /**
+     * Elimina il file fornito ignorando eventuali errori, ad esempio se ancora aperto da un lettore su sistemi che
+     * non ne consentono la rimozione.
+     * @param file file da eliminare
+     */
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // verrà rimosso al successivo riavvio della cache
+        }
+    }
+
+    /**
+     * Informazioni di una risorsa memorizzata.
+     * @param size dimensione in byte della risorsa
+     * @param lastModified data di ultima modifica fornita dal server, {@code null} se non nota
+     */
+    private record Entry(long size, Instant lastModified) {
+
+        /**
+         * Verifica che la risorsa corrisponda alle informazioni fornite dal server.
+         * @param stat informazioni del file fornite dal server
+         * @return {@code true} se la copia locale è ancora valida
+         */
+        boolean matches(FTPStatResponse stat) {
+            return size == stat.getSize() && Objects.equals(lastModified, stat.getLastModified());
+        }
+
+    }
+
+}
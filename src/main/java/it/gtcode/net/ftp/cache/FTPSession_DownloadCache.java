@@ -0,0 +1,290 @@
+package it.gtcode.net.ftp.cache;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPSession;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.ftp.response.FTPUploadStreamResponse;
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Implementazione di {@link FTPSession} che scarica le risorse tramite un {@link FTPDownloadCache}, delegando ogni
+ * altra operazione alla sessione decorata.<br>
+ * Le risorse caricate o eliminate tramite questa sessione vengono rimosse dalla cache.
+ * @since 2.1
+ * @see FTPDownloadCache#wrap(FTPSession)
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPSession_DownloadCache implements FTPSession {
+
+    private final FTPSession session;
+    private final FTPDownloadCache cache;
+
+    /**
+     * Costruttore.
+     * @param session sessione da decorare
+     * @param cache cache tramite la quale scaricare le risorse
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     */
+    public FTPSession_DownloadCache(FTPSession session, FTPDownloadCache cache) {
+        Objects.requireNonNull(session);
+        Objects.requireNonNull(cache);
+        this.session = session;
+        this.cache = cache;
+    }
+
+    /**
+     * Indica se la sessione decorata è aperta o meno.
+     * @return {@code true} se è aperta, {@code false} altrimenti
+     */
+    @Override
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+
+    /**
+     * Restituisce la configurazione con la quale è stata creata la sessione decorata.
+     * @return la configurazione della sessione
+     */
+    @Override
+    public FTPConfiguration getConfiguration() {
+        return session.getConfiguration();
+    }
+
+    /**
+     * Restituisce il percorso con il quale la sessione decorata ha effettuato la connessione al server.
+     * @return il percorso con il quale è stata effettuata la connessione al server
+     */
+    @Override
+    public Path getRoot() {
+        return session.getRoot();
+    }
+
+    /**
+     * Fornisce la risorsa richiesta, servendola dalla cache se la copia locale risulta ancora valida.
+     * @param file file da richiedere al server
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @see FTPDownloadCache#download(FTPSession, Path)
+     */
+    @Override
+    public FTPStreamResponse download(Path file) {
+        return cache.download(session, file);
+    }
+
+    /**
+     * Fornisce la risorsa richiesta a partire dalla posizione indicata, delegando direttamente alla sessione decorata.
+     * @param file file da richiedere al server
+     * @param offset posizione, in byte, dalla quale iniziare la lettura
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @throws IllegalArgumentException se la posizione fornita è negativa
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStreamResponse download(Path file, long offset) {
+        return session.download(file, offset);
+    }
+
+    /**
+     * Carica il file indicato nella directory definita nella configurazione della sessione, rimuovendo dalla cache
+     * la copia locale della risorsa se il caricamento va a buon fine.
+     * @param file file da caricare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file) throws FileNotFoundException {
+        return this.invalidate(file.getFileName(), session.upload(file));
+    }
+
+    /**
+     * Carica il file indicato nella directory fornita, rimuovendo dalla cache la copia locale della risorsa se il
+     * caricamento va a buon fine.
+     * @param file file da caricare
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, Path target) throws FileNotFoundException {
+        return this.invalidate(target.resolve(file.getFileName()), session.upload(file, target));
+    }
+
+    /**
+     * Carica lo stream fornito nella directory definita nella configurazione della sessione, rimuovendo dalla cache
+     * la copia locale della risorsa se il caricamento va a buon fine.<br>
+     * NOTA: Questo metodo <b>NON</b> chiude l'{@code InputStream} fornito.
+     * @param file nome del file da caricare
+     * @param fileStream {@code InputStream} relativo al file da caricare sul server
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, InputStream fileStream) {
+        return this.invalidate(file.getFileName(), session.upload(file, fileStream));
+    }
+
+    /**
+     * Carica lo stream fornito nella directory indicata, rimuovendo dalla cache la copia locale della risorsa se il
+     * caricamento va a buon fine.<br>
+     * NOTA: Questo metodo <b>NON</b> chiude l'{@code InputStream} fornito.
+     * @param file nome del file da caricare
+     * @param fileStream {@code InputStream} relativo al file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, InputStream fileStream, Path target) {
+        return this.invalidate(target.resolve(file.getFileName()), session.upload(file, fileStream, target));
+    }
+
+    /**
+     * Carica i byte rimanenti del buffer fornito nella directory definita nella configurazione della sessione,
+     * rimuovendo dalla cache la copia locale della risorsa se il caricamento va a buon fine.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, ByteBuffer data) {
+        return this.invalidate(file.getFileName(), session.upload(file, data));
+    }
+
+    /**
+     * Carica i byte rimanenti del buffer fornito nella directory indicata, rimuovendo dalla cache la copia locale
+     * della risorsa se il caricamento va a buon fine.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse upload(Path file, ByteBuffer data, Path target) {
+        return this.invalidate(target.resolve(file.getFileName()), session.upload(file, data, target));
+    }
+
+    /**
+     * Carica il file indicato mappandolo in memoria, rimuovendo dalla cache la copia locale della risorsa se il
+     * caricamento va a buon fine.
+     * @param file file da caricare
+     * @param target directory nella quale caricare il file
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse uploadMapped(Path file, Path target) throws FileNotFoundException {
+        return this.invalidate(target.resolve(file.getFileName()), session.uploadMapped(file, target));
+    }
+
+    /**
+     * Apre un caricamento in streaming del file indicato nella directory fornita, rimuovendo dalla cache la copia
+     * locale della risorsa se il server accetta il caricamento.
+     * @param file nome del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return la connessione dati sulla quale scrivere il contenuto e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPUploadStreamResponse openUploadStream(Path file, Path target) {
+        return this.invalidate(target.resolve(file.getFileName()), session.openUploadStream(file, target));
+    }
+
+    /**
+     * Richiede le informazioni del file indicato alla sessione decorata, senza consultare la cache.
+     * @param file file del quale richiedere le informazioni
+     * @return le informazioni del file e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStatResponse stat(Path file) {
+        return session.stat(file);
+    }
+
+    /**
+     * Richiede le informazioni di tutti i file indicati alla sessione decorata, senza consultare la cache.
+     * @param files file dei quali richiedere le informazioni
+     * @return le informazioni di ogni file, nell'ordine fornito
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public Map<Path, FTPStatResponse> stat(Collection<Path> files) {
+        return session.stat(files);
+    }
+
+    /**
+     * Elimina il file indicato, rimuovendo dalla cache la copia locale della risorsa se l'eliminazione va a buon
+     * fine.
+     * @param file path del file da eliminare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse delete(Path file) {
+        return this.invalidate(file, session.delete(file));
+    }
+
+    /**
+     * Esegue il comando fornito tramite la sessione decorata.<br>
+     * Le risorse modificate dal comando non vengono rimosse dalla cache.
+     * @param command comando da eseguire
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse execute(String command) {
+        return session.execute(command);
+    }
+
+    /**
+     * Esegue l'operazione fornita sulla sessione del tipo indicato, delegando alla sessione decorata.<br>
+     * Le risorse modificate dall'operazione non vengono rimosse dalla cache.
+     * @param type tipo della sessione richiesta
+     * @param operation operazione da eseguire sulla sessione
+     * @return il risultato dell'operazione, vuoto se nessuna sessione è del tipo indicato
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public <T extends FTPSession, R> Optional<R> unwrap(Class<T> type, Function<? super T, ? extends R> operation) {
+        if (type.isInstance(this)) return Optional.ofNullable(operation.apply(type.cast(this)));
+        return session.unwrap(type, operation);
+    }
+
+    /**
+     * Chiude la sessione decorata. Le copie locali restano nella cache e possono essere servite ad altre sessioni.
+     */
+    @Override
+    public void close() {
+        session.close();
+    }
+
+    /**
+     * Rimuove dalla cache la risorsa modificata se l'operazione fornita è andata a buon fine.
+     * @param file file modificato, relativo alla root della sessione
+     * @param response esito dell'operazione
+     * @return l'esito dell'operazione
+     */
+    private <R extends FTPResponse> R invalidate(Path file, R response) {
+        if (response.getStatus() == Status.SUCCESS) cache.invalidate(session, file);
+        return response;
+    }
+
+}
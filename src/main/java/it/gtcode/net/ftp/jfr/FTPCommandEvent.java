@@ -0,0 +1,31 @@
+package it.gtcode.net.ftp.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Evento JFR relativo a un comando inviato sul canale di controllo, dall'invio alla ricezione della risposta.<br>
+ * Viene registrato solamente il nome del comando, mai gli argomenti. Disabilitato di default, viene abilitato
+ * tramite le impostazioni della registrazione ({@code it.gtcode.net.ftp.Command#enabled=true}), eventualmente con
+ * una soglia di durata.
+ * @since 2.1
+ * @see FTPCommandEventListener
+ * @author Giorgio Testa
+ */
+@Name("it.gtcode.net.ftp.Command")
+@Label("FTP Command")
+@Category({"GTCode", "FTP"})
+@Description("Comando inviato al server FTP e relativa risposta")
+@Enabled(false)
+@StackTrace(false)
+public final class FTPCommandEvent extends Event {
+
+    @Label("Server")
+    public String server;
+
+    @Label("Command")
+    public String command;
+
+    @Label("Reply Code")
+    public int replyCode;
+
+}
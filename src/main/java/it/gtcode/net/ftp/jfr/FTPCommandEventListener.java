@@ -0,0 +1,55 @@
+package it.gtcode.net.ftp.jfr;
+
+import jdk.jfr.EventType;
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.apache.commons.net.ProtocolCommandListener;
+
+/**
+ * Emette un {@link FTPCommandEvent} per ogni comando inviato da un client {@code apache-commons-net}, dall'invio
+ * del comando alla ricezione della relativa risposta.<br>
+ * Se l'evento non è abilitato nella registrazione in corso non viene creato alcun oggetto. Come il client al quale è
+ * associato, non è pensato per un utilizzo concorrente.
+ * @since 2.1
+ * @see FTPCommandEvent
+ * @author Giorgio Testa
+ */
+public class FTPCommandEventListener implements ProtocolCommandListener {
+
+    private static final EventType TYPE = EventType.getEventType(FTPCommandEvent.class);
+
+    private final String server;
+    private FTPCommandEvent pending;
+
+    /**
+     * Costruttore.
+     * @param server indirizzo del server, riportato negli eventi
+     */
+    public FTPCommandEventListener(String server) {
+        this.server = server;
+    }
+
+    @Override
+    public void protocolCommandSent(ProtocolCommandEvent event) {
+        if (!TYPE.isEnabled()) {
+            pending = null;
+            return;
+        }
+        var command = new FTPCommandEvent();
+        command.begin();
+        command.server = server;
+        command.command = event.getCommand();
+        pending = command;
+    }
+
+    @Override
+    public void protocolReplyReceived(ProtocolCommandEvent event) {
+        var command = pending;
+        if (command == null) return;
+        pending = null;
+        command.end();
+        if (!command.shouldCommit()) return;
+        command.replyCode = event.getReplyCode();
+        command.commit();
+    }
+
+}
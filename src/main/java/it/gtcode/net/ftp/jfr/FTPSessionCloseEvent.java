@@ -0,0 +1,31 @@
+package it.gtcode.net.ftp.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Evento JFR relativo alla chiusura di una sessione, comprendente logout e disconnessione.<br>
+ * Disabilitato di default, viene abilitato tramite le impostazioni della registrazione
+ * ({@code it.gtcode.net.ftp.SessionClose#enabled=true}).
+ * @since 2.1
+ * @see FTPSessionOpenEvent
+ * @author Giorgio Testa
+ */
+@Name("it.gtcode.net.ftp.SessionClose")
+@Label("FTP Session Close")
+@Category({"GTCode", "FTP"})
+@Description("Chiusura di una sessione FTP")
+@Enabled(false)
+@StackTrace(false)
+public final class FTPSessionCloseEvent extends Event {
+
+    @Label("Server")
+    public String server;
+
+    @Label("Port")
+    public int port;
+
+    @Label("Connection Lost")
+    @Description("La sessione è stata chiusa a seguito della perdita della connessione")
+    public boolean lost;
+
+}
@@ -0,0 +1,35 @@
+package it.gtcode.net.ftp.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Evento JFR relativo all'apertura di una sessione: connessione, login, negoziazione TLS e posizionamento nella
+ * directory iniziale.<br>
+ * Disabilitato di default, viene abilitato tramite le impostazioni della registrazione
+ * ({@code it.gtcode.net.ftp.SessionOpen#enabled=true}).
+ * @since 2.1
+ * @see FTPSessionCloseEvent
+ * @author Giorgio Testa
+ */
+@Name("it.gtcode.net.ftp.SessionOpen")
+@Label("FTP Session Open")
+@Category({"GTCode", "FTP"})
+@Description("Apertura di una sessione FTP")
+@Enabled(false)
+@StackTrace(false)
+public final class FTPSessionOpenEvent extends Event {
+
+    @Label("Server")
+    public String server;
+
+    @Label("Port")
+    public int port;
+
+    @Label("Secure")
+    @Description("Sessione FTPS")
+    public boolean secure;
+
+    @Label("Success")
+    public boolean success;
+
+}
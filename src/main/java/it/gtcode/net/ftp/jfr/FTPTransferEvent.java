@@ -0,0 +1,151 @@
+package it.gtcode.net.ftp.jfr;
+
+import jdk.jfr.*;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Evento JFR relativo alla fase di trasferimento dati di un caricamento o di uno scaricamento, con i byte trasferiti
+ * e il throughput ottenuto.<br>
+ * Disabilitato di default, viene abilitato tramite le impostazioni della registrazione
+ * ({@code it.gtcode.net.ftp.Transfer#enabled=true}). Se l'evento non è abilitato i metodi di conteggio restituiscono
+ * lo stream o il canale forniti senza decorarli.
+ * @since 2.1
+ * @author Giorgio Testa
+ */
+@Name("it.gtcode.net.ftp.Transfer")
+@Label("FTP Transfer")
+@Category({"GTCode", "FTP"})
+@Description("Trasferimento dati di un file da o verso il server FTP")
+@Enabled(false)
+@StackTrace(false)
+public final class FTPTransferEvent extends Event {
+
+    /** Direzione di un caricamento. */
+    public static final String UPLOAD = "upload";
+    /** Direzione di uno scaricamento. */
+    public static final String DOWNLOAD = "download";
+
+    @Label("Server")
+    public String server;
+
+    @Label("Direction")
+    public String direction;
+
+    @Label("File")
+    public String file;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Throughput")
+    @DataAmount
+    @Frequency
+    public long throughput;
+
+    @Label("Success")
+    public boolean success;
+
+    private transient long started;
+    private transient boolean completed;
+
+    /**
+     * Avvia la misura di un trasferimento, se l'evento è abilitato.
+     * @param direction direzione del trasferimento, {@link #UPLOAD} o {@link #DOWNLOAD}
+     * @param server indirizzo del server
+     * @param file file trasferito
+     * @return l'evento avviato
+     */
+    public static FTPTransferEvent start(String direction, String server, Path file) {
+        var event = new FTPTransferEvent();
+        if (!event.isEnabled()) return event;
+        event.begin();
+        event.started = System.nanoTime();
+        event.direction = direction;
+        event.server = server;
+        event.file = file != null ? file.toString() : null;
+        return event;
+    }
+
+    /**
+     * Aggiunge i byte forniti al totale trasferito.
+     * @param count byte trasferiti
+     */
+    public void add(long count) {
+        if (count > 0) bytes += count;
+    }
+
+    /**
+     * Decora lo stream fornito conteggiando i byte letti, se l'evento è abilitato.
+     * @param stream stream del trasferimento, può essere {@code null}
+     * @return lo stream da utilizzare per il trasferimento
+     */
+    public InputStream count(InputStream stream) {
+        if (stream == null || !this.isEnabled()) return stream;
+        return new FilterInputStream(stream) {
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                if (read >= 0) bytes++;
+                return read;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = in.read(buffer, offset, length);
+                FTPTransferEvent.this.add(read);
+                return read;
+            }
+        };
+    }
+
+    /**
+     * Decora il canale fornito conteggiando i byte scritti, se l'evento è abilitato.
+     * @param channel canale del trasferimento, può essere {@code null}
+     * @return il canale da utilizzare per il trasferimento
+     */
+    public WritableByteChannel count(WritableByteChannel channel) {
+        if (channel == null || !this.isEnabled()) return channel;
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                int written = channel.write(source);
+                FTPTransferEvent.this.add(written);
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    /**
+     * Conclude la misura del trasferimento e registra l'evento se supera le soglie della registrazione.<br>
+     * Le invocazioni successive alla prima non hanno effetto.
+     * @param success {@code true} se il trasferimento è andato a buon fine
+     */
+    public void complete(boolean success) {
+        if (completed || !this.isEnabled()) return;
+        completed = true;
+        this.end();
+        if (!this.shouldCommit()) return;
+        long elapsed = Math.max(System.nanoTime() - started, 1);
+        this.success = success;
+        this.throughput = (long) (bytes * 1_000_000_000d / elapsed);
+        this.commit();
+    }
+
+}
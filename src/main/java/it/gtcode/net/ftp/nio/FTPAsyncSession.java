@@ -0,0 +1,170 @@
+package it.gtcode.net.ftp.nio;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPSession;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.ftp.response.FTPUploadStreamResponse;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Versione non bloccante di {@link FTPSession}: ogni operazione restituisce immediatamente una
+ * {@link CompletableFuture} che viene completata all'arrivo della risposta del server.<br>
+ * Le operazioni richieste sulla stessa sessione vengono accodate ed eseguite nell'ordine di invocazione, poiché il
+ * protocollo FTP non consente di sovrapporre comandi sulla stessa connessione; sessioni differenti procedono invece in
+ * parallelo sugli stessi thread.<br>
+ * Le future vengono completate dal thread del selettore: le operazioni concatenate dall'utilizzatore non devono
+ * quindi essere bloccanti, pena il rallentamento di tutte le sessioni gestite dallo stesso selettore.
+ * @since 2.1
+ * @see FTPSession
+ * @see FTPTransportNio#connectAsync(FTPConfiguration)
+ * @author Giorgio Testa
+ */
+public interface FTPAsyncSession {
+
+    /**
+     * Indica se questa {@link FTPAsyncSession} è aperta o meno.<br>
+     * Invocare metodi su una sessione chiusa comporta il fallimento automatico degli stessi.
+     * @return {@code true} e è aperta, {@code false} altrimenti
+     */
+    boolean isOpen();
+
+    /**
+     * Restituisce la configurazione con la quale è stata creata la sessione.
+     * @return la configurazione della sessione
+     */
+    FTPConfiguration getConfiguration();
+
+    /**
+     * Restituisce il percorso con il quale è stata effettuata la connessione al server.
+     * @return il percorso con il quale è stata effettuata la connessione al server
+     */
+    Path getRoot();
+
+    /**
+     * Richiede la risorsa indicata, completando la future fornita all'apertura del trasferimento.<br>
+     * È compito dell'utilizzatore chiudere lo stream una volta terminato l'utilizzo: fino ad allora le operazioni
+     * successive sulla sessione rimangono in coda.
+     * @param file file da richiedere al server
+     * @return un riferimento futuro alla risorsa richiesta e i relativi codici di risposta del server
+     * @see FTPSession#download(Path)
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    CompletableFuture<FTPStreamResponse> download(Path file);
+
+    /**
+     * Richiede la risorsa indicata a partire dalla posizione fornita.
+     * @param file file da richiedere al server
+     * @param offset posizione, in byte, dalla quale iniziare la lettura
+     * @return un riferimento futuro alla risorsa richiesta e i relativi codici di risposta del server
+     * @see FTPSession#download(Path, long)
+     * @throws IllegalArgumentException se la posizione fornita è negativa
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    CompletableFuture<FTPStreamResponse> download(Path file, long offset);
+
+    /**
+     * Carica il file indicato nella directory definita nella configurazione della sessione.<br>
+     * NOTA: Questo metodo <b>NON</b> chiude l'{@code InputStream} fornito.<br>
+     * @param file nome del file da caricare
+     * @param fileStream {@code InputStream} relativo al file da caricare sul server
+     * @return l'esito futuro della richiesta con gli eventuali messaggi di errore
+     * @see #upload(Path, InputStream, Path)
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    CompletableFuture<FTPResponse> upload(Path file, InputStream fileStream);
+
+    /**
+     * Carica il file indicato nella directory fornita.<br>
+     * Lo stream viene letto da un thread dedicato ai trasferimenti, così da non bloccare il selettore.<br>
+     * NOTA: Questo metodo <b>NON</b> chiude l'{@code InputStream} fornito.<br>
+     * @param file nome del file da caricare
+     * @param fileStream {@code InputStream} relativo al file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito futuro della richiesta con gli eventuali messaggi di errore
+     * @see FTPSession#upload(Path, InputStream, Path)
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    CompletableFuture<FTPResponse> upload(Path file, InputStream fileStream, Path target);
+
+    /**
+     * Carica i byte rimanenti del buffer fornito nella directory indicata.<br>
+     * Il buffer, anche diretto o mappato in memoria, viene scritto direttamente sul canale dati; posizione e limite
+     * del buffer non vengono modificati.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return l'esito futuro della richiesta con gli eventuali messaggi di errore
+     * @see FTPSession#upload(Path, ByteBuffer, Path)
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @since 2.1
+     */
+    CompletableFuture<FTPResponse> upload(Path file, ByteBuffer data, Path target);
+
+    /**
+     * Apre un caricamento in streaming del file indicato nella directory fornita.<br>
+     * Il contenuto scritto sullo stream o sul canale della risposta viene inviato direttamente sul canale dati; fino
+     * alla chiusura della risposta le operazioni successive sulla sessione rimangono in coda.
+     * @param file nome del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return il canale dati futuro sul quale scrivere il contenuto e i relativi codici di risposta del server
+     * @see FTPSession#openUploadStream(Path, Path)
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @since 2.1
+     */
+    CompletableFuture<FTPUploadStreamResponse> openUploadStream(Path file, Path target);
+
+    /**
+     * Elimina il file indicato.
+     * @param file path del file da eliminare
+     * @return l'esito futuro della richiesta con gli eventuali messaggi di errore
+     * @see FTPSession#delete(Path)
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    CompletableFuture<FTPResponse> delete(Path file);
+
+    /**
+     * Richiede al server la dimensione ({@code SIZE}) e la data di ultima modifica ({@code MDTM}) del file indicato.
+     * @param file file del quale richiedere le informazioni
+     * @return le informazioni future del file con gli eventuali messaggi di errore
+     * @see FTPSession#stat(Path)
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    CompletableFuture<FTPStatResponse> stat(Path file);
+
+    /**
+     * Richiede al server dimensione e data di ultima modifica di tutti i file indicati.
+     * @param files file dei quali richiedere le informazioni
+     * @return le informazioni future di ogni file, nell'ordine fornito
+     * @see FTPSession#stat(Collection)
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    CompletableFuture<Map<Path, FTPStatResponse>> stat(Collection<Path> files);
+
+    /**
+     * Esegue il comando fornito sul server.
+     * @param command comando da eseguire
+     * @return l'esito futuro della richiesta con gli eventuali messaggi di errore
+     * @see FTPSession#execute(String)
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    CompletableFuture<FTPResponse> execute(String command);
+
+    /**
+     * Chiude la sessione al termine delle operazioni già accodate, eseguendo il logout e disconnettendosi dal
+     * server.<br>
+     * Nel caso in cui la sessione risulti essere già chiusa questo comando non ha effetto.
+     * @return la future completata alla chiusura della sessione, fallita con una {@link UncheckedIOException} se
+     * viene riscontrato un problema durante la disconnessione dal server
+     */
+    CompletableFuture<Void> close();
+
+}
@@ -0,0 +1,864 @@
+package it.gtcode.net.ftp.nio;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.ftp.response.FTPUploadStreamResponse;
+import lombok.EqualsAndHashCode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Implementazione di {@link FTPAsyncSession} basata su {@link SocketChannel} non bloccanti.<br>
+ * Ogni operazione è composta da una catena di comandi: l'invio di un comando e la ricezione della sua risposta non
+ * occupano alcun thread, il passo successivo viene eseguito dal selettore all'arrivo della risposta. Le operazioni
+ * della stessa sessione vengono accodate ed eseguite in ordine.
+ * @since 2.1
+ * @see FTPAsyncSession
+ * @see FTPEventLoopGroup
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPAsyncSession_NioSocketChannel implements FTPAsyncSession {
+
+    /** Formato della data restituita dal comando {@code MDTM}, sempre espressa in UTC. */
+    private static final DateTimeFormatter MDTM_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    /** Indirizzo e porta contenuti nella risposta al comando {@code PASV}. */
+    private static final Pattern PASSIVE_ADDRESS = Pattern.compile("(\\d{1,3}),(\\d{1,3}),(\\d{1,3}),(\\d{1,3}),(\\d{1,3}),(\\d{1,3})");
+
+    private final FTPConfiguration configuration;
+    @EqualsAndHashCode.Exclude
+    private final FTPControlChannel control;
+    @EqualsAndHashCode.Exclude
+    private final Executor transferExecutor;
+    private Path root;
+    private volatile boolean open;
+    /** Ultima risposta ricevuta dal server. */
+    @EqualsAndHashCode.Exclude
+    private volatile FTPReply lastReply;
+    /** Coda delle operazioni: ogni operazione inizia al termine della precedente. */
+    @EqualsAndHashCode.Exclude
+    private CompletableFuture<?> tail;
+
+    /**
+     * Costruttore.
+     * @param configuration configurazione della sessione
+     * @param control canale di controllo verso il server
+     * @param transferExecutor executor sul quale copiare gli stream dei caricamenti
+     */
+    private FTPAsyncSession_NioSocketChannel(FTPConfiguration configuration, FTPControlChannel control,
+                                             Executor transferExecutor) {
+        this.configuration = configuration;
+        this.control = control;
+        this.transferExecutor = transferExecutor;
+        this.tail = CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Si connette al server indicato nella configurazione ed esegue il login.
+     * @param configuration configurazione con la quale creare la sessione
+     * @param group gruppo di selettori sul quale gestire la sessione
+     * @return la sessione futura, fallita con una {@link UncheckedIOException} se non è stato possibile crearla
+     */
+    static CompletableFuture<FTPAsyncSession_NioSocketChannel> connect(FTPConfiguration configuration,
+                                                                       FTPEventLoopGroup group) {
+        FTPControlChannel control;
+        try {
+            var address = new InetSocketAddress(configuration.getServer(), configuration.getPort());
+            control = FTPControlChannel.connect(group.next(), address);
+        } catch (UncheckedIOException uioe) {
+            return CompletableFuture.failedFuture(uioe);
+        }
+        var session = new FTPAsyncSession_NioSocketChannel(configuration, control, group.getTransferExecutor());
+        return session.initialize(session.login());
+    }
+
+    /**
+     * Crea una sessione utilizzando un canale già connesso al server e sul quale è già stato eseguito il login.
+     * @param configuration configurazione con la quale è stato inizializzato il canale
+     * @param group gruppo di selettori sul quale gestire la sessione
+     * @param channel canale da utilizzare per comunicare con il server
+     * @return la sessione futura, fallita con una {@link UncheckedIOException} se non è stato possibile crearla
+     */
+    static CompletableFuture<FTPAsyncSession_NioSocketChannel> attach(FTPConfiguration configuration,
+                                                                      FTPEventLoopGroup group, SocketChannel channel) {
+        FTPControlChannel control;
+        try {
+            control = FTPControlChannel.attach(group.next(), channel);
+        } catch (UncheckedIOException uioe) {
+            return CompletableFuture.failedFuture(uioe);
+        }
+        var session = new FTPAsyncSession_NioSocketChannel(configuration, control, group.getTransferExecutor());
+        return session.initialize(CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Indica se questa {@link FTPAsyncSession} è aperta o meno.<br>
+     * Invocare metodi su una sessione chiusa comporta il fallimento automatico degli stessi.
+     * @return {@code true} e è aperta, {@code false} altrimenti
+     */
+    @Override
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    /**
+     * Restituisce la configurazione con la quale è stata creata la sessione.
+     * @return la configurazione della sessione
+     */
+    @Override
+    public FTPConfiguration getConfiguration() {
+        return this.configuration;
+    }
+
+    /**
+     * Restituisce il percorso con il quale è stata effettuata la connessione al server.
+     * @return il percorso con il quale è stata effettuata la connessione al server
+     */
+    @Override
+    public Path getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Richiede la risorsa indicata, completando la future fornita all'apertura del trasferimento.<br>
+     * È compito dell'utilizzatore chiudere lo stream una volta terminato l'utilizzo: fino ad allora le operazioni
+     * successive sulla sessione rimangono in coda.
+     * @param file file da richiedere al server
+     * @return un riferimento futuro alla risorsa richiesta e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public CompletableFuture<FTPStreamResponse> download(Path file) {
+        return this.download(file, 0);
+    }
+
+    /**
+     * Richiede la risorsa indicata a partire dalla posizione fornita, comunicata al server tramite il comando
+     * {@code REST}.
+     * @param file file da richiedere al server
+     * @param offset posizione, in byte, dalla quale iniziare la lettura
+     * @return un riferimento futuro alla risorsa richiesta e i relativi codici di risposta del server
+     * @throws IllegalArgumentException se la posizione fornita è negativa
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public CompletableFuture<FTPStreamResponse> download(Path file, long offset) {
+        if (offset < 0) throw new IllegalArgumentException("La posizione deve essere positiva");
+        this.canExecute();
+        var finished = new CompletableFuture<Void>();
+        return this.enqueue(() -> {
+            var data = new AtomicReference<SocketChannel>();
+            var response = new FTPStreamResponse(() -> this.completePendingCommand(data.getAndSet(null), finished));
+            return this.resetPosition()
+                    .thenCompose(reply -> this.openDataChannel())
+                    .thenCompose(channel -> {
+                        data.set(channel);
+                        if (offset == 0) return CompletableFuture.completedFuture(null);
+                        return this.expect(
+                                this.command("REST " + offset),
+                                FTPReply::isPositiveIntermediate,
+                                "Il server non consente la ripresa del trasferimento"
+                        );
+                    })
+                    .thenCompose(restart -> this.expect(
+                            this.command("RETR " + file),
+                            FTPReply::isPreliminary,
+                            "Non è stato possibile connettersi al file"
+                    ))
+                    .handle((reply, error) -> {
+                        var failure = error;
+                        if (failure == null) {
+                            try {
+                                // a differenza di Channels.newInputStream lo stream del socket rispetta il timeout
+                                response.asSuccess(reply.getCode(), reply::getText, data.get().socket().getInputStream());
+                                return response;
+                            } catch (IOException ioe) {
+                                failure = ioe;
+                            }
+                        }
+                        this.closeQuietly(data.getAndSet(null));
+                        finished.complete(null);
+                        this.asError(response, failure);
+                        return response;
+                    });
+        }, finished);
+    }
+
+    /**
+     * Carica il file indicato nella directory definita nella configurazione della sessione.<br>
+     * NOTA: Questo metodo <b>NON</b> chiude l'{@code InputStream} fornito.<br>
+     * @param file nome del file da caricare
+     * @param fileStream {@code InputStream} relativo al file da caricare sul server
+     * @return l'esito futuro della richiesta con gli eventuali messaggi di errore
+     * @see #upload(Path, InputStream, Path)
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public CompletableFuture<FTPResponse> upload(Path file, InputStream fileStream) {
+        return this.upload(file, fileStream, root);
+    }
+
+    /**
+     * Carica il file indicato nella directory fornita.<br>
+     * Lo stream viene letto da un thread dedicato ai trasferimenti, così da non bloccare il selettore.<br>
+     * NOTA: Questo metodo <b>NON</b> chiude l'{@code InputStream} fornito.<br>
+     * @param file nome del file da caricare
+     * @param fileStream {@code InputStream} relativo al file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @return l'esito futuro della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public CompletableFuture<FTPResponse> upload(Path file, InputStream fileStream, Path target) {
+        return this.store(file, target, data -> this.transfer(fileStream, data));
+    }
+
+    /**
+     * Carica i byte rimanenti del buffer fornito nella directory indicata.<br>
+     * Il buffer, anche diretto o mappato in memoria, viene scritto direttamente sul canale dati da un thread dedicato
+     * ai trasferimenti; posizione e limite del buffer non vengono modificati.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return l'esito futuro della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public CompletableFuture<FTPResponse> upload(Path file, ByteBuffer data, Path target) {
+        var buffer = data.duplicate();
+        return this.store(file, target, channel -> this.transfer(buffer, channel));
+    }
+
+    /**
+     * Apre un caricamento in streaming del file indicato nella directory fornita.<br>
+     * Il contenuto scritto sullo stream o sul canale della risposta viene inviato direttamente sul canale dati; fino
+     * alla chiusura della risposta le operazioni successive sulla sessione rimangono in coda.
+     * @param file nome del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return il canale dati futuro sul quale scrivere il contenuto e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public CompletableFuture<FTPUploadStreamResponse> openUploadStream(Path file, Path target) {
+        this.canExecute();
+        var finished = new CompletableFuture<Void>();
+        return this.enqueue(() -> {
+            var data = new AtomicReference<SocketChannel>();
+            var response = new FTPUploadStreamResponse(() -> this.completeUpload(data.getAndSet(null), finished));
+            return this.resetPosition()
+                    .thenCompose(reply -> this.createDirectoryTree(target))
+                    .thenCompose(reply -> this.openDataChannel())
+                    .thenCompose(channel -> {
+                        data.set(channel);
+                        return this.expect(
+                                this.command("STOR " + file.getFileName()),
+                                FTPReply::isPreliminary,
+                                "Impossibile caricare il file sul server"
+                        );
+                    })
+                    .handle((reply, error) -> {
+                        if (error == null) {
+                            response.asSuccess(reply.getCode(), reply::getText, data.get());
+                        } else {
+                            this.closeQuietly(data.getAndSet(null));
+                            finished.complete(null);
+                            this.asError(response, error);
+                        }
+                        return response;
+                    });
+        }, finished);
+    }
+
+    /**
+     * Carica un file nella directory indicata, scrivendone il contenuto sul canale dati tramite l'operazione fornita.
+     * @param file nome del file da caricare
+     * @param target directory nella quale caricare il file
+     * @param transfer operazione eseguita sul thread dei trasferimenti che scrive il contenuto e restituisce
+     *                 l'eventuale errore locale
+     * @return l'esito futuro della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    private CompletableFuture<FTPResponse> store(Path file, Path target, Function<SocketChannel, IOException> transfer) {
+        this.canExecute();
+        return this.enqueue(() -> {
+            var data = new AtomicReference<SocketChannel>();
+            var response = new FTPResponse();
+            return this.resetPosition()
+                    .thenCompose(reply -> this.createDirectoryTree(target))
+                    .thenCompose(reply -> this.openDataChannel())
+                    .thenCompose(channel -> {
+                        data.set(channel);
+                        return this.expect(
+                                this.command("STOR " + file.getFileName()),
+                                FTPReply::isPreliminary,
+                                "Impossibile caricare il file sul server"
+                        );
+                    })
+                    .thenCompose(reply -> CompletableFuture.supplyAsync(
+                            () -> transfer.apply(data.get()),
+                            transferExecutor
+                    ))
+                    .thenCompose(localFailure -> {
+                        var reply = this.reply(control.receive());
+                        if (localFailure != null) return reply.thenCompose(ignored -> CompletableFuture.failedFuture(localFailure));
+                        return this.expect(reply, FTPReply::isPositiveCompletion, "Impossibile caricare il file sul server");
+                    })
+                    .handle((reply, error) -> {
+                        this.closeQuietly(data.get());
+                        if (error == null) response.asSuccess(reply.getCode(), reply::getText);
+                        else this.asError(response, error);
+                        return response;
+                    });
+        }, null);
+    }
+
+    /**
+     * Elimina il file indicato.
+     * @param file path del file da eliminare
+     * @return l'esito futuro della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public CompletableFuture<FTPResponse> delete(Path file) {
+        this.canExecute();
+        return this.enqueue(() -> this.respond(
+                this.resetPosition().thenCompose(reply -> this.expect(
+                        this.command("DELE " + file),
+                        FTPReply::isPositiveCompletion,
+                        "Impossibile rimuovere il file dal server"
+                ))
+        ), null);
+    }
+
+    /**
+     * Richiede al server la dimensione ({@code SIZE}) e la data di ultima modifica ({@code MDTM}) del file indicato.
+     * I due comandi vengono inviati in pipeline, senza attendere la prima risposta.
+     * @param file file del quale richiedere le informazioni
+     * @return le informazioni future del file con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public CompletableFuture<FTPStatResponse> stat(Path file) {
+        this.canExecute();
+        return this.enqueue(() -> this.resetPosition().handle((reply, error) -> error)
+                .thenCompose(error -> error == null ? this.statFile(file) : CompletableFuture.completedFuture(this.statError(error))), null);
+    }
+
+    /**
+     * Richiede al server dimensione e data di ultima modifica di tutti i file indicati.<br>
+     * Tutti i comandi vengono inviati in pipeline all'interno di un'unica operazione, così che il tempo complessivo
+     * sia circa quello di un singolo round-trip verso il server indipendentemente dal numero di file.
+     * @param files file dei quali richiedere le informazioni
+     * @return le informazioni future di ogni file, nell'ordine fornito
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public CompletableFuture<Map<Path, FTPStatResponse>> stat(Collection<Path> files) {
+        this.canExecute();
+        var paths = List.copyOf(files);
+        return this.enqueue(() -> this.resetPosition().handle((reply, error) -> error).thenCompose(error -> {
+            var pending = new LinkedHashMap<Path, CompletableFuture<FTPStatResponse>>();
+            for (var file : paths)
+                pending.put(file, error == null ? this.statFile(file) : CompletableFuture.completedFuture(this.statError(error)));
+            return CompletableFuture.allOf(pending.values().toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+                var responses = new LinkedHashMap<Path, FTPStatResponse>();
+                pending.forEach((file, response) -> responses.put(file, response.join()));
+                return (Map<Path, FTPStatResponse>) responses;
+            });
+        }), null);
+    }
+
+    /**
+     * Esegue il comando fornito sul server.
+     * @param command comando da eseguire
+     * @return l'esito futuro della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public CompletableFuture<FTPResponse> execute(String command) {
+        this.canExecute();
+        return this.enqueue(() -> this.respond(
+                this.resetPosition().thenCompose(reply -> this.expect(
+                        this.command("SITE " + command),
+                        FTPReply::isPositiveCompletion,
+                        "Impossibile eseguire il comando fornito"
+                ))
+        ), null);
+    }
+
+    /**
+     * Chiude la sessione al termine delle operazioni già accodate, eseguendo il logout e disconnettendosi dal
+     * server.<br>
+     * Nel caso in cui la sessione risulti essere già chiusa questo comando non ha effetto.
+     * @return la future completata alla chiusura della sessione, fallita con una {@link UncheckedIOException} se
+     * viene riscontrato un problema durante la disconnessione dal server
+     */
+    @Override
+    public CompletableFuture<Void> close() {
+        if (!open) return CompletableFuture.completedFuture(null);
+        open = false;
+        return this.enqueue(() -> this.command("QUIT").handle((reply, error) -> {
+            control.close();
+            if (error != null) throw new CompletionException(new UncheckedIOException(this.unwrap(error)));
+            return null;
+        }), null);
+    }
+
+    /**
+     * Attende il messaggio di benvenuto del server ed esegue il login con le credenziali della configurazione,
+     * impostando la modalità di trasferimento binaria.
+     * @return la risposta futura all'ultimo comando inviato
+     */
+    private CompletableFuture<FTPReply> login() {
+        return this.expect(this.reply(control.receive()), FTPReply::isPositiveCompletion, "Connessione rifiutata")
+                .thenCompose(greeting -> this.command("USER " + configuration.getUsername()))
+                .thenCompose(user -> user.isPositiveIntermediate()
+                        ? this.command("PASS " + configuration.getPassword())
+                        : CompletableFuture.completedFuture(user))
+                .thenCompose(pass -> this.expect(CompletableFuture.completedFuture(pass), FTPReply::isPositiveCompletion, "Login fallito"))
+                .thenCompose(pass -> this.expect(this.command("TYPE I"), FTPReply::isPositiveCompletion, "Modalità binaria non supportata"));
+    }
+
+    /**
+     * Data la configurazione della sessione ne importa la root:<br>
+     * <ul>
+     *     <li>
+     *         se non è stata fornita alcuna preferenza di directory ({@link FTPConfiguration#getDirectory()})
+     *         viene utilizzata la directory scelta dal server FTP;
+     *     </li>
+     *     <li>
+     *         se è stata fornita una preferenza di directory ({@link FTPConfiguration#getDirectory()})
+     *         viene utilizzata quella directory e viene spostato il focus della sessione su di essa;
+     *     </li>
+     * </ul>
+     * Al termine la sessione viene aperta.
+     * @param ready operazione da attendere prima dell'inizializzazione, ad esempio il login
+     * @return la sessione futura, fallita con una {@link UncheckedIOException} se non è stato possibile inizializzarla
+     */
+    private CompletableFuture<FTPAsyncSession_NioSocketChannel> initialize(CompletableFuture<FTPReply> ready) {
+        return ready.thenCompose(reply -> {
+            if (configuration.getDirectory() != null) return this.changeWorkingDirectory(configuration.getDirectory());
+            configuration.setDirectory(Path.of("/"));
+            return CompletableFuture.completedFuture(reply);
+        }).handle((reply, error) -> {
+            if (error != null) {
+                control.close();
+                var reason = lastReply;
+                throw new CompletionException(new UncheckedIOException(
+                        String.format(
+                                "Non è stato possibile connettersi al server: (%s) %s",
+                                reason != null ? reason.getCode() : 0, reason != null ? reason.getText() : ""
+                        ),
+                        this.unwrap(error)
+                ));
+            }
+            this.root = configuration.getDirectory();
+            this.open = true;
+            return this;
+        });
+    }
+
+    /**
+     * Accoda l'operazione fornita, che verrà avviata al termine di quelle già accodate.
+     * @param operation operazione da eseguire
+     * @param release future al completamento della quale la sessione può passare all'operazione successiva,
+     *                {@code null} per attendere il termine dell'operazione stessa
+     * @return il risultato futuro dell'operazione
+     * @param <T> tipo del risultato
+     */
+    private <T> CompletableFuture<T> enqueue(Supplier<CompletableFuture<T>> operation, CompletableFuture<?> release) {
+        synchronized (this) {
+            var result = tail.handle((ignored, error) -> null).thenCompose(ignored -> operation.get());
+            tail = release != null ? release : result;
+            return result;
+        }
+    }
+
+    /**
+     * Dato il percorso/file fornito crea il directory tree nel caso questo non esista o risulti incompleto.
+     * @param target percorso dal quale ricreare l'albero
+     * @return la risposta futura all'ultimo comando inviato
+     */
+    private CompletableFuture<FTPReply> createDirectoryTree(Path target) {
+        var chain = CompletableFuture.completedFuture(lastReply);
+        for (Path path : target) {
+            chain = chain.thenCompose(previous -> this.command("CWD " + path)).thenCompose(reply -> {
+                if (reply.isPositiveCompletion()) return CompletableFuture.completedFuture(reply);
+                return this.expect(this.command("MKD " + path), FTPReply::isPositiveCompletion, "Impossibile creare la directory")
+                        .thenCompose(created -> this.changeWorkingDirectory(path));
+            });
+        }
+        return chain;
+    }
+
+    /**
+     * Richiede al server un indirizzo passivo e vi apre un canale dati.<br>
+     * Le letture bloccanti dal canale restituito tramite il relativo {@link java.net.Socket} falliscono con una
+     * {@link SocketTimeoutException} se il server non invia dati entro {@link FTPConfiguration#getDataTimeout()}.
+     * @return il canale dati futuro, connesso e in modalità bloccante
+     */
+    private CompletableFuture<SocketChannel> openDataChannel() {
+        return this.expect(
+                this.command("PASV"),
+                reply -> reply.getCode() == FTPReplyCode.ENTERING_PASSIVE_MODE.getCode(),
+                "Impossibile aprire la connessione dati"
+        ).thenCompose(reply -> {
+            try {
+                return FTPDataChannel.open(control.getLoop(), this.passiveAddress(reply), configuration.getReplyTimeout());
+            } catch (IOException ioe) {
+                return CompletableFuture.failedFuture(ioe);
+            }
+        }).thenApply(channel -> {
+            try {
+                channel.configureBlocking(true);
+                channel.socket().setSoTimeout(Math.toIntExact(configuration.getDataTimeout().toMillis()));
+                return channel;
+            } catch (IOException ioe) {
+                this.closeQuietly(channel);
+                throw new CompletionException(ioe);
+            }
+        });
+    }
+
+    /**
+     * Estrae l'indirizzo passivo dalla risposta fornita.<br>
+     * Se il server comunica un indirizzo non raggiungibile, tipicamente perché si trova dietro un NAT, viene
+     * utilizzato l'indirizzo del canale di controllo.
+     * @param reply risposta al comando {@code PASV}
+     * @return l'indirizzo al quale aprire il canale dati
+     * @throws IOException se la risposta non contiene un indirizzo valido
+     */
+    private InetSocketAddress passiveAddress(FTPReply reply) throws IOException {
+        var matcher = PASSIVE_ADDRESS.matcher(reply.getText());
+        if (!matcher.find()) throw new ProtocolException("Risposta alla modalità passiva non valida: " + reply.getText());
+        var host = InetAddress.getByName(String.join(".", matcher.group(1), matcher.group(2), matcher.group(3), matcher.group(4)));
+        if (host.isAnyLocalAddress() || (host.isSiteLocalAddress() && !control.getRemoteAddress().isSiteLocalAddress()))
+            host = control.getRemoteAddress();
+        int port = Integer.parseInt(matcher.group(5)) * 256 + Integer.parseInt(matcher.group(6));
+        return new InetSocketAddress(host, port);
+    }
+
+    /**
+     * Copia lo stream fornito sul canale dati, chiudendolo al termine per segnalare al server la fine del file.
+     * @param fileStream stream da caricare
+     * @param data canale dati
+     * @return l'eventuale errore riscontrato durante la copia, {@code null} altrimenti
+     */
+    private IOException transfer(InputStream fileStream, SocketChannel data) {
+        try (var outputStream = Channels.newOutputStream(data)) {
+            fileStream.transferTo(outputStream);
+            return null;
+        } catch (IOException ioe) {
+            this.closeQuietly(data);
+            return ioe;
+        }
+    }
+
+    /**
+     * Scrive i byte rimanenti del buffer fornito sul canale dati, chiudendolo in caso di errore.
+     * @param buffer buffer da scrivere
+     * @param data canale dati sul quale scrivere il buffer
+     * @return l'eventuale errore locale, {@code null} se la scrittura è andata a buon fine
+     */
+    private IOException transfer(ByteBuffer buffer, SocketChannel data) {
+        try (data) {
+            while (buffer.hasRemaining()) data.write(buffer);
+            return null;
+        } catch (IOException ioe) {
+            return ioe;
+        }
+    }
+
+    /**
+     * Completa la transazione di download in corso chiudendo il canale dati e attendendo la risposta conclusiva del
+     * server.<br>
+     * Se invocato dal thread del selettore la risposta non viene attesa, così da non bloccare il selettore stesso.
+     * @param data canale dati del download, {@code null} se il download è già stato completato
+     * @param finished future da completare al termine della transazione
+     * @throws UncheckedIOException se non è stato possibile completare la transazione
+     */
+    private void completePendingCommand(SocketChannel data, CompletableFuture<Void> finished) {
+        if (data == null) return;
+        this.closeQuietly(data);
+        var reply = this.reply(control.receive()).whenComplete((completed, error) -> finished.complete(null));
+        if (control.getLoop().inLoop()) return;
+        try {
+            reply.get();
+        } catch (ExecutionException ee) {
+            throw new UncheckedIOException(this.unwrap(ee));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Attesa della risposta interrotta"));
+        }
+    }
+
+    /**
+     * Completa la transazione di un caricamento in streaming chiudendo il canale dati e attendendo la risposta
+     * conclusiva del server.<br>
+     * Se invocato dal thread del selettore la risposta non viene attesa, così da non bloccare il selettore stesso: in
+     * tal caso l'esito restituito non è definitivo e viene riportato come errore.
+     * @param data canale dati del caricamento
+     * @param finished future da completare al termine della transazione
+     * @return l'esito definitivo del caricamento
+     */
+    private FTPResponse completeUpload(SocketChannel data, CompletableFuture<Void> finished) {
+        var response = new FTPResponse();
+        this.closeQuietly(data);
+        var reply = this.expect(
+                this.reply(control.receive()),
+                FTPReply::isPositiveCompletion,
+                "Impossibile caricare il file sul server"
+        ).whenComplete((completed, error) -> finished.complete(null));
+        if (control.getLoop().inLoop()) {
+            response.asError(FTPReplyCode.ACTION_ABORTED.getCode(), "Esito del caricamento non atteso dal thread del selettore");
+            return response;
+        }
+        try {
+            var completed = reply.get();
+            response.asSuccess(completed.getCode(), completed::getText);
+        } catch (ExecutionException ee) {
+            this.asError(response, ee.getCause());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            response.asError(
+                    FTPReplyCode.ACTION_ABORTED.getCode(),
+                    "Attesa della risposta interrotta",
+                    new InterruptedIOException("Attesa della risposta interrotta")
+            );
+        }
+        return response;
+    }
+
+    /**
+     * Invia in pipeline i comandi {@code SIZE} e {@code MDTM} per il file fornito, combinandone le risposte.<br>
+     * Il fallimento di {@code MDTM}, ad esempio perché non supportato dal server, non compromette la risposta.
+     * @param file file del quale richiedere le informazioni
+     * @return le informazioni future del file, mai fallite
+     */
+    private CompletableFuture<FTPStatResponse> statFile(Path file) {
+        var size = this.command("SIZE " + file);
+        var modified = this.command("MDTM " + file);
+        return size.thenCombine(modified, (sizeReply, modifiedReply) -> {
+            var response = new FTPStatResponse();
+            if (sizeReply.getCode() != FTPReplyCode.FILE_STATUS.getCode()) {
+                response.asError(sizeReply.getCode(), sizeReply::getText, null);
+                return response;
+            }
+            try {
+                response.asSuccess(sizeReply.getCode(), sizeReply.getText(),
+                        Long.parseLong(this.argument(sizeReply)), this.lastModified(modifiedReply));
+            } catch (NumberFormatException nfe) {
+                response.asError(sizeReply.getCode(), sizeReply.getText(), new IOException("Dimensione non valida: " + nfe.getMessage(), nfe));
+            }
+            return response;
+        }).exceptionally(this::statError);
+    }
+
+    /**
+     * Converte la risposta al comando {@code MDTM} nella data di ultima modifica.
+     * @param reply risposta del server
+     * @return la data di ultima modifica, {@code null} se il server non l'ha fornita o non è valida
+     */
+    private Instant lastModified(FTPReply reply) {
+        if (reply.getCode() != FTPReplyCode.FILE_STATUS.getCode()) return null;
+        var value = this.argument(reply);
+        if (value.length() < 14) return null;
+        try {
+            return LocalDateTime.parse(value.substring(0, 14), MDTM_FORMAT).toInstant(ZoneOffset.UTC);
+        } catch (DateTimeParseException dtpe) {
+            return null;
+        }
+    }
+
+    /**
+     * Restituisce l'argomento di una risposta su singola riga, escludendo il codice di risposta.
+     * @param reply risposta del server
+     * @return il testo della risposta senza codice e terminatore di riga
+     */
+    private String argument(FTPReply reply) {
+        var text = reply.getText();
+        return text.length() > 4 ? text.substring(4).trim() : "";
+    }
+
+    /**
+     * Crea la risposta di errore di una richiesta di informazioni.
+     * @param error errore riscontrato
+     * @return la risposta valorizzata con l'errore
+     */
+    private FTPStatResponse statError(Throwable error) {
+        var response = new FTPStatResponse();
+        this.asError(response, error);
+        return response;
+    }
+
+    /**
+     * Riporta la sessione alla root dichiarata durante la creazione della stessa.
+     * @return la risposta futura del server
+     */
+    private CompletableFuture<FTPReply> resetPosition() {
+        return this.changeWorkingDirectory(root);
+    }
+
+    /**
+     * Tenta di spostarsi nel percorso fornito.
+     * @param path percorso nel quale spostarsi
+     * @return la risposta futura del server, fallita se non è stato possibile spostarsi nel nuovo percorso
+     */
+    private CompletableFuture<FTPReply> changeWorkingDirectory(Path path) {
+        return this.expect(this.command("CWD " + path), FTPReply::isPositiveCompletion, "Impossibile spostarsi nella directory");
+    }
+
+    /**
+     * Invia il comando fornito al server.
+     * @param command comando da inviare
+     * @return la risposta futura del server
+     */
+    private CompletableFuture<FTPReply> command(String command) {
+        return this.reply(control.send(command));
+    }
+
+    /**
+     * Applica alla risposta fornita il tempo massimo di attesa della configurazione, memorizzandola come ultima risposta del server.
+     * @param reply risposta futura del server
+     * @return la risposta futura del server
+     */
+    private CompletableFuture<FTPReply> reply(CompletableFuture<FTPReply> reply) {
+        return reply.orTimeout(configuration.getReplyTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((completed, error) -> {
+                    if (completed != null) lastReply = completed;
+                });
+    }
+
+    /**
+     * Interrompe la catena con un {@link FTPReplyRejection} se la risposta fornita non è quella attesa.
+     * @param reply risposta futura del server
+     * @param accepted condizione che la risposta deve soddisfare
+     * @param message messaggio di errore
+     * @return la risposta futura, rifiutata se non soddisfa la condizione
+     */
+    private CompletableFuture<FTPReply> expect(CompletableFuture<FTPReply> reply, Predicate<FTPReply> accepted,
+                                               String message) {
+        return reply.thenCompose(completed -> accepted.test(completed)
+                ? CompletableFuture.completedFuture(completed)
+                : CompletableFuture.failedFuture(new FTPReplyRejection(completed, message)));
+    }
+
+    /**
+     * Converte la risposta futura fornita in un {@link FTPResponse}.
+     * @param reply risposta futura del server
+     * @return l'esito futuro della richiesta con gli eventuali messaggi di errore
+     */
+    private CompletableFuture<FTPResponse> respond(CompletableFuture<FTPReply> reply) {
+        return reply.handle((completed, error) -> {
+            var response = new FTPResponse();
+            if (error == null) response.asSuccess(completed.getCode(), completed::getText);
+            else this.asError(response, error);
+            return response;
+        });
+    }
+
+    /**
+     * Riporta sulla risposta fornita l'errore riscontrato.<br>
+     * Le risposte negative del server vengono riportate senza alcuna eccezione associata; gli errori di connessione
+     * rendono invece la sessione inutilizzabile. Gli altri errori riportano l'ultima risposta ricevuta dal server
+     * oppure, se non ne è ancora stata ricevuta alcuna, {@link FTPReplyCode#ACTION_ABORTED}.
+     * @param response risposta da valorizzare
+     * @param error errore riscontrato
+     */
+    private void asError(FTPResponse response, Throwable error) {
+        if (error instanceof FTPReplyRejection rejected) {
+            response.asError(rejected.getReply().getCode(), rejected.getReply()::getText, null);
+            return;
+        }
+        var cause = this.unwrap(error);
+        if (cause instanceof SocketException || cause instanceof SocketTimeoutException
+                || cause instanceof ProtocolException) {
+            this.handleConnectionLoss();
+            response.asError(FTPReplyCode.SERVICE_NOT_AVAILABLE.getCode(), cause.getMessage(), cause);
+        } else {
+            var reply = lastReply;
+            if (reply != null) response.asError(reply.getCode(), reply::getText, cause);
+            else response.asError(FTPReplyCode.ACTION_ABORTED.getCode(), cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Estrae l'errore originale da quello fornito dalle future.
+     * @param error errore fornito dalle future
+     * @return l'errore originale
+     */
+    private IOException unwrap(Throwable error) {
+        if (error instanceof FTPReplyRejection rejected) return new IOException(rejected.getMessage());
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null)
+            error = error.getCause();
+        if (error instanceof IOException ioe) return ioe;
+        if (error instanceof UncheckedIOException uioe) return uioe.getCause();
+        if (error instanceof TimeoutException) return new SocketTimeoutException("Nessuna risposta dal server entro " + configuration.getReplyTimeout());
+        return new IOException(error);
+    }
+
+    /**
+     * Chiude il canale fornito ignorando eventuali errori.
+     * @param channel canale da chiudere, può essere {@code null}
+     */
+    private void closeQuietly(SocketChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // il canale è già inutilizzabile
+        }
+    }
+
+    /**
+     * Gestisce la corretta chiusura della sessione nel caso in cui la connessione con il server sia stata persa.
+     */
+    private void handleConnectionLoss() {
+        open = false;
+        control.close();
+    }
+
+    /**
+     * Verifica che la sessione si trovi in condizione di essere utilizzata.
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    private void canExecute() {
+        if (!open) throw new IllegalStateException("Impossibile utilizzare la sessione, questa risulta essere chiusa");
+    }
+
+}
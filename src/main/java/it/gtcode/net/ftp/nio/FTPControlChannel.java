@@ -0,0 +1,266 @@
+package it.gtcode.net.ftp.nio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Canale di controllo non bloccante verso un server FTP, gestito da un {@link FTPSelectorLoop}.<br>
+ * I comandi inviati vengono accodati e scritti dal thread del selettore; le risposte ricevute vengono associate, in
+ * ordine di arrivo, ai comandi in attesa. Una risposta ricevuta senza alcun comando in attesa, come la risposta
+ * conclusiva di un trasferimento, viene mantenuta fino alla successiva richiesta tramite {@link #receive()}.<br>
+ * Le risposte vengono composte da un {@link FTPReplyParser} dedicato al canale.
+ * @since 2.1
+ * @see FTPSelectorLoop
+ * @see FTPReply
+ * @see FTPReplyParser
+ * @author Giorgio Testa
+ */
+final class FTPControlChannel implements FTPSelectorLoop.Handler {
+
+    /** Codifica utilizzata sul canale di controllo, la stessa utilizzata di default da {@code apache-commons-net}. */
+    static final Charset ENCODING = StandardCharsets.ISO_8859_1;
+
+    private final FTPSelectorLoop loop;
+    private final SocketChannel channel;
+    private final InetAddress remoteAddress;
+    private final ByteBuffer readBuffer;
+    private final ArrayDeque<ByteBuffer> writes;
+    private final ArrayDeque<CompletableFuture<FTPReply>> pending;
+    private final ArrayDeque<FTPReply> unclaimed;
+    private final FTPReplyParser parser;
+
+    /** Chiave di registrazione sul selettore, accessibile solo dal thread del selettore. */
+    private SelectionKey key;
+    /** Errore che ha reso il canale inutilizzabile. */
+    private volatile IOException failure;
+
+    /**
+     * Costruttore.
+     * @param loop selettore che gestirà il canale
+     * @param channel canale verso il server, in modalità non bloccante
+     * @param remoteAddress indirizzo del server
+     */
+    private FTPControlChannel(FTPSelectorLoop loop, SocketChannel channel, InetAddress remoteAddress) {
+        this.loop = loop;
+        this.channel = channel;
+        this.remoteAddress = remoteAddress;
+        this.readBuffer = ByteBuffer.allocate(8 * 1024);
+        this.writes = new ArrayDeque<>();
+        this.pending = new ArrayDeque<>();
+        this.unclaimed = new ArrayDeque<>();
+        this.parser = new FTPReplyParser();
+    }
+
+    /**
+     * Avvia la connessione verso l'indirizzo fornito. Il messaggio di benvenuto del server può essere ottenuto
+     * tramite {@link #receive()}.
+     * @param loop selettore che gestirà il canale
+     * @param address indirizzo del server
+     * @return il canale di controllo, eventualmente ancora in fase di connessione
+     * @throws UncheckedIOException se il server non è stato trovato o non è stato possibile aprire il canale
+     */
+    static FTPControlChannel connect(FTPSelectorLoop loop, InetSocketAddress address) {
+        if (address.isUnresolved())
+            throw new UncheckedIOException(new UnknownHostException("Server non trovato: " + address.getHostString()));
+        try {
+            var channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            var control = new FTPControlChannel(loop, channel, address.getAddress());
+            loop.execute(() -> {
+                try {
+                    if (channel.connect(address)) control.key = loop.register(channel, SelectionKey.OP_READ, control);
+                    else control.key = loop.register(channel, SelectionKey.OP_CONNECT, control);
+                } catch (IOException ioe) {
+                    control.failed(ioe);
+                }
+            }, control::failed);
+            return control;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Non è stato possibile aprire il canale di controllo", ioe);
+        }
+    }
+
+    /**
+     * Utilizza il canale fornito, già connesso al server, come canale di controllo.
+     * @param loop selettore che gestirà il canale
+     * @param channel canale già connesso al server
+     * @return il canale di controllo
+     * @throws UncheckedIOException se non è stato possibile rendere il canale non bloccante
+     */
+    static FTPControlChannel attach(FTPSelectorLoop loop, SocketChannel channel) {
+        try {
+            channel.configureBlocking(false);
+            var address = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+            var control = new FTPControlChannel(loop, channel, address);
+            loop.execute(() -> {
+                try {
+                    control.key = loop.register(channel, SelectionKey.OP_READ, control);
+                } catch (IOException ioe) {
+                    control.failed(ioe);
+                }
+            }, control::failed);
+            return control;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Non è stato possibile utilizzare il canale fornito", ioe);
+        }
+    }
+
+    /**
+     * Restituisce il selettore che gestisce il canale.
+     * @return il selettore del canale
+     */
+    FTPSelectorLoop getLoop() {
+        return this.loop;
+    }
+
+    /**
+     * Restituisce l'indirizzo del server al quale è connesso il canale.
+     * @return indirizzo del server
+     */
+    InetAddress getRemoteAddress() {
+        return this.remoteAddress;
+    }
+
+    /**
+     * Indica se il canale può ancora essere utilizzato.
+     * @return {@code true} se il canale è aperto e non ha riscontrato errori, {@code false} altrimenti
+     */
+    boolean isOpen() {
+        return failure == null && channel.isOpen();
+    }
+
+    /**
+     * Invia il comando fornito al server.<br>
+     * Il comando viene codificato in un nuovo buffer, accodato fino alla sua completa scrittura sul canale.
+     * @param command comando da inviare, senza terminatore di riga
+     * @return la risposta futura del server al comando
+     */
+    CompletableFuture<FTPReply> send(String command) {
+        var future = new CompletableFuture<FTPReply>();
+        var bytes = ByteBuffer.wrap((command + "\r\n").getBytes(ENCODING));
+        loop.execute(() -> {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+                return;
+            }
+            writes.add(bytes);
+            if (key != null && key.isValid() && (key.interestOps() & SelectionKey.OP_CONNECT) == 0)
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            this.claim(future);
+        }, future::completeExceptionally);
+        return future;
+    }
+
+    /**
+     * Attende la prossima risposta del server senza inviare alcun comando, ad esempio la risposta conclusiva di un
+     * trasferimento o il messaggio di benvenuto.
+     * @return la risposta futura del server
+     */
+    CompletableFuture<FTPReply> receive() {
+        var future = new CompletableFuture<FTPReply>();
+        loop.execute(() -> this.claim(future), future::completeExceptionally);
+        return future;
+    }
+
+    /**
+     * Chiude il canale, facendo fallire tutte le richieste in attesa.
+     */
+    void close() {
+        loop.execute(() -> this.failed(new SocketException("Il canale di controllo è stato chiuso")), rejected -> {
+            // il selettore arrestato ha già chiuso il canale facendo fallire le richieste in attesa
+        });
+    }
+
+    /**
+     * Gestisce gli eventi del canale sul thread del selettore.
+     * @param key chiave di registrazione del canale
+     * @throws IOException se è stato riscontrato un errore sul canale
+     */
+    @Override
+    public void ready(SelectionKey key) throws IOException {
+        if (key.isConnectable() && channel.finishConnect())
+            key.interestOps(SelectionKey.OP_READ | (writes.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+        if (key.isValid() && key.isReadable()) this.read();
+        if (key.isValid() && key.isWritable()) this.write();
+    }
+
+    /**
+     * Rende il canale inutilizzabile, facendo fallire tutte le richieste in attesa.
+     * @param cause errore riscontrato
+     */
+    @Override
+    public void failed(IOException cause) {
+        if (failure == null) failure = cause;
+        if (key != null) key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // il canale è già inutilizzabile
+        }
+        CompletableFuture<FTPReply> waiting;
+        while ((waiting = pending.poll()) != null) waiting.completeExceptionally(failure);
+    }
+
+    /**
+     * Associa la richiesta fornita alla prima risposta non ancora reclamata, oppure la accoda in attesa.
+     * @param future richiesta da associare
+     * @return {@code true} se la richiesta è stata completata immediatamente, {@code false} se è stata accodata
+     */
+    private boolean claim(CompletableFuture<FTPReply> future) {
+        if (!unclaimed.isEmpty()) return future.complete(unclaimed.poll());
+        if (failure != null) return future.completeExceptionally(failure);
+        pending.add(future);
+        return false;
+    }
+
+    /**
+     * Legge i dati disponibili sul canale componendo le risposte del server.
+     * @throws IOException se il server ha chiuso la connessione o ha inviato una risposta non valida
+     */
+    private void read() throws IOException {
+        int read;
+        while ((read = channel.read(readBuffer)) > 0) {
+            readBuffer.flip();
+            FTPReply completed;
+            while ((completed = parser.parse(readBuffer)) != null) this.deliver(completed);
+            readBuffer.clear();
+        }
+        if (read == -1) throw new SocketException("Connessione chiusa dal server");
+    }
+
+    /**
+     * Consegna la risposta completata alla prima richiesta in attesa, o la mantiene fino alla prossima richiesta.
+     * @param completed risposta completata
+     */
+    private void deliver(FTPReply completed) {
+        var waiting = pending.poll();
+        if (waiting != null) waiting.complete(completed);
+        else unclaimed.add(completed);
+    }
+
+    /**
+     * Scrive sul canale i comandi accodati, fino a quando il canale li accetta.
+     * @throws IOException se non è stato possibile scrivere sul canale
+     */
+    private void write() throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = writes.peek()) != null) {
+            channel.write(buffer);
+            if (buffer.hasRemaining()) return;
+            writes.poll();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+}
@@ -0,0 +1,102 @@
+package it.gtcode.net.ftp.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gestisce l'apertura non bloccante di un canale dati verso un server FTP in modalità passiva.<br>
+ * La connessione viene instaurata sul thread del selettore; una volta connesso il canale viene rimosso dal selettore
+ * e consegnato al chiamante, che ne gestisce il trasferimento.
+ * @since 2.1
+ * @see FTPSelectorLoop
+ * @author Giorgio Testa
+ */
+final class FTPDataChannel implements FTPSelectorLoop.Handler {
+
+    private final FTPSelectorLoop loop;
+    private final SocketChannel channel;
+    private final CompletableFuture<SocketChannel> connected;
+
+    /**
+     * Costruttore.
+     * @param loop selettore sul quale instaurare la connessione
+     * @param channel canale da connettere, in modalità non bloccante
+     */
+    private FTPDataChannel(FTPSelectorLoop loop, SocketChannel channel) {
+        this.loop = loop;
+        this.channel = channel;
+        this.connected = new CompletableFuture<>();
+    }
+
+    /**
+     * Apre un canale dati verso l'indirizzo fornito.<br>
+     * Il canale restituito non è più registrato sul selettore e può essere reso bloccante dal chiamante. Se la
+     * connessione non viene instaurata entro il tempo indicato il canale viene chiuso e la future fallisce con una
+     * {@link java.util.concurrent.TimeoutException}.
+     * @param loop selettore sul quale instaurare la connessione
+     * @param address indirizzo passivo comunicato dal server
+     * @param timeout tempo massimo di attesa della connessione
+     * @return il canale futuro, una volta connesso
+     */
+    static CompletableFuture<SocketChannel> open(FTPSelectorLoop loop, InetSocketAddress address, Duration timeout) {
+        try {
+            var channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            var data = new FTPDataChannel(loop, channel);
+            data.connected.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((connected, error) -> {
+                if (error != null) loop.execute(data::close, rejected -> data.close());
+            });
+            loop.execute(() -> {
+                try {
+                    if (channel.connect(address)) data.connected.complete(channel);
+                    else loop.register(channel, SelectionKey.OP_CONNECT, data);
+                } catch (IOException ioe) {
+                    data.failed(ioe);
+                }
+            }, data::failed);
+            return data.connected;
+        } catch (IOException ioe) {
+            return CompletableFuture.failedFuture(ioe);
+        }
+    }
+
+    /**
+     * Completa la connessione del canale. Il canale viene consegnato al chiamante solo al ciclo successivo del
+     * selettore, quando la sua registrazione è stata effettivamente rimossa.
+     * @param key chiave di registrazione del canale
+     * @throws IOException se non è stato possibile connettersi
+     */
+    @Override
+    public void ready(SelectionKey key) throws IOException {
+        if (!key.isConnectable() || !channel.finishConnect()) return;
+        key.cancel();
+        loop.execute(() -> connected.complete(channel), this::failed);
+    }
+
+    /**
+     * Chiude il canale facendo fallire la connessione in corso.
+     * @param cause errore riscontrato
+     */
+    @Override
+    public void failed(IOException cause) {
+        this.close();
+        connected.completeExceptionally(cause);
+    }
+
+    /**
+     * Chiude il canale ignorando eventuali errori, annullandone la registrazione sul selettore.
+     */
+    private void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // il canale è già inutilizzabile
+        }
+    }
+
+}
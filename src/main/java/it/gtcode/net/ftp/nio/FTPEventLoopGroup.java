@@ -0,0 +1,111 @@
+package it.gtcode.net.ftp.nio;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gruppo di selettori sui quali vengono distribuiti i canali di controllo delle sessioni NIO.<br>
+ * Ogni selettore è gestito da un proprio thread e può servire migliaia di connessioni: il numero di thread necessari
+ * dipende quindi dai core disponibili e non dal numero di sessioni aperte. Il gruppo fornisce inoltre i thread sui
+ * quali vengono copiati gli stream dei caricamenti, unica operazione che non può essere svolta in maniera non
+ * bloccante poiché legge da un {@link java.io.InputStream} fornito dall'utilizzatore: il numero di questi thread è
+ * limitato e i caricamenti eccedenti attendono che uno di essi si liberi.<br>
+ * Il gruppo può essere condiviso tra più {@link FTPTransportNio} e deve essere chiuso una volta terminato il suo
+ * utilizzo.
+ * @since 2.1
+ * @see FTPTransportNio
+ * @see FTPAsyncSession
+ * @author Giorgio Testa
+ */
+public class FTPEventLoopGroup implements Closeable {
+
+    /** Numero massimo di default dei thread dedicati ai caricamenti. */
+    public static final int DEFAULT_TRANSFER_THREADS = 64;
+    private static final AtomicInteger GROUP_COUNTER = new AtomicInteger();
+
+    private final FTPSelectorLoop[] loops;
+    private final ExecutorService transferExecutor;
+    private final AtomicInteger next;
+
+    /**
+     * Costruttore. Utilizza un selettore per ogni core disponibile.
+     * @throws java.io.UncheckedIOException se non è stato possibile aprire i selettori
+     */
+    public FTPEventLoopGroup() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Costruttore. Utilizza al più {@value #DEFAULT_TRANSFER_THREADS} thread per i caricamenti.
+     * @param selectorThreads numero di thread, e quindi di selettori, sui quali distribuire le sessioni
+     * @throws IllegalArgumentException se il numero di thread fornito non è positivo
+     * @throws java.io.UncheckedIOException se non è stato possibile aprire i selettori
+     */
+    public FTPEventLoopGroup(int selectorThreads) {
+        this(selectorThreads, DEFAULT_TRANSFER_THREADS);
+    }
+
+    /**
+     * Costruttore.
+     * @param selectorThreads numero di thread, e quindi di selettori, sui quali distribuire le sessioni
+     * @param transferThreads numero massimo di thread sui quali copiare gli stream dei caricamenti; i thread inattivi
+     *                        vengono rilasciati dopo un minuto
+     * @throws IllegalArgumentException se uno dei numeri di thread forniti non è positivo
+     * @throws java.io.UncheckedIOException se non è stato possibile aprire i selettori
+     */
+    public FTPEventLoopGroup(int selectorThreads, int transferThreads) {
+        if (selectorThreads <= 0 || transferThreads <= 0)
+            throw new IllegalArgumentException("Il numero di thread deve essere positivo");
+        int id = GROUP_COUNTER.incrementAndGet();
+        this.loops = new FTPSelectorLoop[selectorThreads];
+        for (int i = 0; i < selectorThreads; i++) loops[i] = new FTPSelectorLoop("ftp-nio-" + id + "-" + i);
+        var transferCounter = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(transferThreads, transferThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+                    var thread = new Thread(task, "ftp-nio-" + id + "-transfer-" + transferCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        this.transferExecutor = executor;
+        this.next = new AtomicInteger();
+    }
+
+    /**
+     * Restituisce il numero di selettori del gruppo.
+     * @return il numero di selettori
+     */
+    public int size() {
+        return loops.length;
+    }
+
+    /**
+     * Arresta i thread dei selettori e dei trasferimenti; le sessioni ancora aperte diventano inutilizzabili.
+     */
+    @Override
+    public void close() {
+        for (var loop : loops) loop.close();
+        transferExecutor.shutdownNow();
+    }
+
+    /**
+     * Restituisce il prossimo selettore al quale assegnare una sessione, distribuendo le sessioni a rotazione.
+     * @return il selettore scelto
+     */
+    FTPSelectorLoop next() {
+        return loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+    }
+
+    /**
+     * Restituisce l'executor sul quale vengono copiati gli stream dei caricamenti.
+     * @return l'executor dei trasferimenti
+     */
+    ExecutorService getTransferExecutor() {
+        return this.transferExecutor;
+    }
+
+}
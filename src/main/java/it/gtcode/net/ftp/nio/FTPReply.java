@@ -0,0 +1,93 @@
+package it.gtcode.net.ftp.nio;
+
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Rappresenta una risposta, anche su più righe, ricevuta sul canale di controllo di un server FTP.<br>
+ * Il codice viene estratto direttamente dai byte ricevuti; il testo viene invece decodificato solamente alla prima
+ * invocazione di {@link #getText()}, così che le risposte delle quali viene verificato solo il codice non producano
+ * alcuna stringa.
+ * @since 2.1
+ * @see FTPReplyCode
+ * @see FTPReplyParser
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+@ToString
+public class FTPReply {
+
+    /** Codice numerico della risposta. */
+    private final int code;
+    /** Byte della risposta, comprensivi dei codici e dei terminatori di riga. */
+    @ToString.Exclude
+    private final byte[] raw;
+    /** Testo della risposta, decodificato alla prima richiesta. */
+    @EqualsAndHashCode.Exclude
+    private String text;
+
+    /**
+     * Costruttore.
+     * @param code codice numerico della risposta
+     * @param raw byte della risposta, non vengono copiati
+     */
+    FTPReply(int code, byte[] raw) {
+        this.code = code;
+        this.raw = raw;
+    }
+
+    /**
+     * Restituisce il codice numerico della risposta.
+     * @return il codice della risposta
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * Restituisce il testo completo della risposta, comprensivo dei codici e dei terminatori di riga.
+     * @return il testo della risposta
+     */
+    public String getText() {
+        var decoded = this.text;
+        if (decoded == null) {
+            decoded = new String(raw, FTPControlChannel.ENCODING);
+            this.text = decoded;
+        }
+        return decoded;
+    }
+
+    /**
+     * Restituisce lo stato al quale appartiene il codice della risposta.
+     * @return lo stato della risposta
+     */
+    public FTPReplyCode.Status getStatus() {
+        return FTPReplyCode.Status.valueOfCode(code);
+    }
+
+    /**
+     * Indica se la risposta è preliminare, ovvero se il server invierà una seconda risposta al termine dell'azione.
+     * @return {@code true} se la risposta è preliminare, {@code false} altrimenti
+     */
+    public boolean isPreliminary() {
+        return code >= 100 && code < 200;
+    }
+
+    /**
+     * Indica se la risposta rappresenta il completamento con successo del comando.
+     * @return {@code true} se la risposta è positiva e conclusiva, {@code false} altrimenti
+     */
+    public boolean isPositiveCompletion() {
+        return code >= 200 && code < 300;
+    }
+
+    /**
+     * Indica se la risposta rappresenta l'accettazione del comando in attesa di ulteriori informazioni.
+     * @return {@code true} se la risposta è positiva intermedia, {@code false} altrimenti
+     */
+    public boolean isPositiveIntermediate() {
+        return code >= 300 && code < 400;
+    }
+
+}
@@ -0,0 +1,156 @@
+package it.gtcode.net.ftp.nio;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Macchina a stati che compone le risposte di un server FTP a partire dai byte ricevuti sul canale di controllo.<br>
+ * Gestisce sia le risposte su singola riga ({@code "250 OK"}) sia quelle su più righe ({@code "211-..."} fino alla
+ * riga {@code "211 ..."}), anche quando queste arrivano frammentate su più letture. Ogni canale di controllo utilizza
+ * una propria istanza, accessibile esclusivamente dal thread del selettore.
+ * @since 2.1
+ * @see FTPControlChannel
+ * @author Giorgio Testa
+ */
+final class FTPReplyParser {
+
+    /** Dimensione massima di una risposta, oltre la quale il server viene considerato non conforme. */
+    static final int MAX_REPLY_LENGTH = 64 * 1024;
+
+    /** Stati del parser. */
+    private enum State {
+        /** In attesa della prima riga di una risposta. */
+        FIRST_LINE,
+        /** All'interno di una risposta su più righe, in attesa della riga conclusiva. */
+        CONTINUATION
+    }
+
+    /** Byte della risposta in corso di lettura, terminatori di riga compresi. */
+    private byte[] text;
+    /** Numero di byte validi in {@link #text}. */
+    private int length;
+    /** Posizione in {@link #text} dell'inizio della riga corrente. */
+    private int lineStart;
+    private State state;
+    /** Codice della risposta in corso di lettura. */
+    private int code;
+
+    /**
+     * Costruttore.
+     */
+    FTPReplyParser() {
+        this.text = new byte[256];
+        this.state = State.FIRST_LINE;
+    }
+
+    /**
+     * Consuma i byte disponibili nel buffer fino al completamento di una risposta.<br>
+     * I byte vengono copiati a blocchi di riga nel buffer interno, riutilizzato tra una risposta e l'altra: la
+     * scansione delle righe non alloca memoria, mentre ogni risposta completata comporta la copia dei suoi byte e la
+     * creazione del relativo {@link FTPReply}, che sopravvivono al parser. Il buffer interno viene ampliato solo per
+     * risposte più lunghe di quelle ricevute in precedenza. I byte successivi alla risposta completata rimangono nel
+     * buffer e devono essere forniti alla chiamata successiva.
+     * @param buffer byte ricevuti dal server, in modalità lettura
+     * @return la risposta completata oppure {@code null} se i byte disponibili non sono sufficienti
+     * @throws ProtocolException se i byte ricevuti non rappresentano una risposta valida
+     */
+    FTPReply parse(ByteBuffer buffer) throws ProtocolException {
+        while (buffer.hasRemaining()) {
+            int end = this.indexOfLineFeed(buffer);
+            int chunk = (end == -1 ? buffer.limit() : end + 1) - buffer.position();
+            this.ensureCapacity(chunk);
+            buffer.get(text, length, chunk);
+            length += chunk;
+            if (end != -1 && this.endOfLine()) return this.complete();
+        }
+        return null;
+    }
+
+    /**
+     * Cerca il prossimo terminatore di riga nei byte disponibili, senza consumarli.
+     * @param buffer byte ricevuti dal server
+     * @return la posizione del terminatore, {@code -1} se non presente
+     */
+    private int indexOfLineFeed(ByteBuffer buffer) {
+        for (int i = buffer.position(); i < buffer.limit(); i++)
+            if (buffer.get(i) == '\n') return i;
+        return -1;
+    }
+
+    /**
+     * Interpreta la riga appena terminata aggiornando lo stato del parser.
+     * @return {@code true} se la riga conclude la risposta, {@code false} altrimenti
+     * @throws ProtocolException se la prima riga non inizia con un codice di risposta valido
+     */
+    private boolean endOfLine() throws ProtocolException {
+        int lineCode = this.lineCode();
+        byte separator = this.separator();
+        lineStart = length;
+        if (state == State.FIRST_LINE) {
+            if (lineCode == -1) throw new ProtocolException("Risposta non valida dal server: " + this.decode());
+            code = lineCode;
+            if (separator != '-') return true;
+            state = State.CONTINUATION;
+            return false;
+        }
+        return lineCode == code && separator != '-';
+    }
+
+    /**
+     * Estrae il codice numerico dalla riga corrente.
+     * @return il codice di risposta, {@code -1} se la riga non inizia con tre cifre
+     */
+    private int lineCode() {
+        if (length - lineStart < 4) return -1;
+        int value = 0;
+        for (int i = lineStart; i < lineStart + 3; i++) {
+            byte b = text[i];
+            if (b < '0' || b > '9') return -1;
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Restituisce il byte che segue il codice nella riga corrente.
+     * @return {@code ' '} o {@code '-'} per righe conformi, il terminatore se la riga contiene solamente il codice
+     */
+    private byte separator() {
+        return length - lineStart > 3 ? text[lineStart + 3] : (byte) ' ';
+    }
+
+    /**
+     * Crea la risposta completata e riporta il parser allo stato iniziale.<br>
+     * I byte vengono copiati in un array della dimensione esatta della risposta, poiché il buffer interno viene
+     * riutilizzato per la risposta successiva.
+     * @return la risposta completata
+     */
+    private FTPReply complete() {
+        var reply = new FTPReply(code, Arrays.copyOf(text, length));
+        length = 0;
+        lineStart = 0;
+        state = State.FIRST_LINE;
+        return reply;
+    }
+
+    /**
+     * Decodifica la risposta in corso di lettura.
+     * @return il testo della risposta
+     */
+    private String decode() {
+        return new String(text, 0, length, FTPControlChannel.ENCODING);
+    }
+
+    /**
+     * Garantisce lo spazio per i byte forniti, ampliando il buffer quando necessario.
+     * @param required numero di byte da aggiungere
+     * @throws ProtocolException se la risposta supera {@value #MAX_REPLY_LENGTH} byte
+     */
+    private void ensureCapacity(int required) throws ProtocolException {
+        if (length + required <= text.length) return;
+        if (length + required > MAX_REPLY_LENGTH) throw new ProtocolException("Risposta del server troppo lunga");
+        text = Arrays.copyOf(text, Math.min(Math.max(text.length * 2, length + required), MAX_REPLY_LENGTH));
+    }
+
+}
@@ -0,0 +1,58 @@
+package it.gtcode.net.ftp.nio;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Segnala, all'interno di una catena di {@link java.util.concurrent.CompletableFuture}, che il server ha risposto a
+ * un comando con un codice diverso da quello atteso, interrompendo i passi successivi dell'operazione.<br>
+ * Una risposta negativa è un esito previsto e non un problema di connessione: la rilevazione non cattura lo stack
+ * trace, il messaggio viene composto solo se richiesto e, estendendo {@link CompletionException}, non viene
+ * ulteriormente incapsulata dalle future. La risposta restituita all'utilizzatore non riporta alcuna eccezione.
+ * @since 2.1
+ * @see FTPReply
+ * @author Giorgio Testa
+ */
+class FTPReplyRejection extends CompletionException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient FTPReply reply;
+    private final String operation;
+
+    /**
+     * Costruttore.
+     * @param reply risposta ricevuta dal server
+     * @param operation descrizione dell'operazione rifiutata
+     */
+    FTPReplyRejection(FTPReply reply, String operation) {
+        this.reply = reply;
+        this.operation = operation;
+    }
+
+    /**
+     * Restituisce la risposta che ha causato il rifiuto.
+     * @return la risposta ricevuta dal server
+     */
+    FTPReply getReply() {
+        return this.reply;
+    }
+
+    /**
+     * Restituisce la descrizione del rifiuto, completa del codice e del testo della risposta.
+     * @return il messaggio del rifiuto
+     */
+    @Override
+    public String getMessage() {
+        return operation + ": (" + reply.getCode() + ") " + reply.getText();
+    }
+
+    /**
+     * Non cattura lo stack trace, privo di significato per un esito previsto.
+     * @return questa istanza
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+}
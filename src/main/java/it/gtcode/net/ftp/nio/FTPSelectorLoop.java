@@ -0,0 +1,235 @@
+package it.gtcode.net.ftp.nio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Thread dedicato alla gestione di un {@link Selector} sul quale vengono multiplexati i canali di più sessioni.<br>
+ * Tutte le operazioni sui canali registrati avvengono sul thread del selettore: gli altri thread vi accedono
+ * esclusivamente tramite {@link #execute(Runnable, Consumer)}.
+ * @since 2.1
+ * @see FTPControlChannel
+ * @author Giorgio Testa
+ */
+final class FTPSelectorLoop implements Closeable {
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Task> tasks;
+    private volatile boolean running;
+
+    /**
+     * Costruttore. Avvia immediatamente il thread del selettore.
+     * @param name nome da assegnare al thread
+     * @throws UncheckedIOException se non è stato possibile aprire il selettore
+     */
+    FTPSelectorLoop(String name) {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Non è stato possibile aprire il selettore", ioe);
+        }
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.running = true;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Accoda l'operazione fornita per l'esecuzione sul thread del selettore.<br>
+     * Se il selettore è già stato arrestato, o si arresta prima di eseguirla, l'operazione non viene eseguita e viene
+     * invece invocato {@code rejected}, sul thread chiamante o su quello del selettore, così che il chiamante possa
+     * completare le proprie richieste. Lo stesso avviene se l'operazione fallisce con un errore inatteso.
+     * @param task operazione da eseguire
+     * @param rejected azione da eseguire al posto dell'operazione se questa non può essere completata
+     */
+    void execute(Runnable task, Consumer<IOException> rejected) {
+        var queued = new Task(task, rejected);
+        tasks.add(queued);
+        if (running) selector.wakeup();
+        else if (tasks.remove(queued)) queued.reject(new IOException("Il selettore è stato chiuso"));
+    }
+
+    /**
+     * Indica se il thread corrente è quello del selettore.
+     * @return {@code true} se il chiamante è il thread del selettore, {@code false} altrimenti
+     */
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Registra il canale fornito sul selettore. Deve essere invocato dal thread del selettore.
+     * @param channel canale da registrare, deve essere non bloccante
+     * @param ops operazioni di interesse
+     * @param handler gestore degli eventi del canale
+     * @return la chiave di registrazione
+     * @throws IOException se non è stato possibile registrare il canale
+     */
+    SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws IOException {
+        return channel.register(selector, ops, handler);
+    }
+
+    /**
+     * Arresta il thread del selettore chiudendo tutti i canali ancora registrati.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Ciclo principale del selettore: attende gli eventi dei canali registrati ed esegue le operazioni accodate.<br>
+     * Un errore, anche inatteso, nella gestione di un canale fa fallire solo il relativo gestore: il selettore
+     * continua a servire gli altri canali.
+     */
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                this.drain();
+                var selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    var key = selected.next();
+                    selected.remove();
+                    var handler = (Handler) key.attachment();
+                    try {
+                        if (key.isValid()) handler.ready(key);
+                    } catch (IOException ioe) {
+                        this.fail(key, handler, ioe);
+                    } catch (RuntimeException re) {
+                        this.fail(key, handler, new IOException("Errore inatteso nella gestione del canale", re));
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            running = false;
+        } finally {
+            this.shutdown();
+        }
+    }
+
+    /**
+     * Annulla la registrazione del canale notificando l'errore al relativo gestore.<br>
+     * Il canale viene chiuso anche se il gestore stesso fallisce, così da non lasciarlo registrato sul selettore.
+     * @param key chiave di registrazione del canale
+     * @param handler gestore degli eventi del canale
+     * @param cause errore riscontrato
+     */
+    private void fail(SelectionKey key, Handler handler, IOException cause) {
+        key.cancel();
+        try {
+            handler.failed(cause);
+        } catch (RuntimeException ignored) {
+            this.closeQuietly(key);
+        }
+    }
+
+    /**
+     * Chiude il canale associato alla chiave fornita ignorando eventuali errori.
+     * @param key chiave di registrazione del canale
+     */
+    private void closeQuietly(SelectionKey key) {
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // il canale è già inutilizzabile
+        }
+    }
+
+    /**
+     * Chiude il selettore notificando a tutti i gestori ancora registrati la chiusura.<br>
+     * Le operazioni ancora accodate non vengono eseguite ma rifiutate, così che le relative richieste vengano
+     * comunque completate.
+     */
+    private void shutdown() {
+        try {
+            for (var key : selector.keys()) {
+                this.fail(key, (Handler) key.attachment(), new IOException("Il selettore è stato chiuso"));
+                this.closeQuietly(key);
+            }
+            selector.close();
+        } catch (IOException | ClosedSelectorException ignored) {
+            // il selettore è in chiusura, non ci sono ulteriori azioni possibili
+        }
+        Task task;
+        while ((task = tasks.poll()) != null) task.reject(new IOException("Il selettore è stato chiuso"));
+    }
+
+    /**
+     * Esegue tutte le operazioni accodate.<br>
+     * Un'operazione terminata con un errore inatteso viene rifiutata e non impedisce l'esecuzione delle successive.
+     */
+    private void drain() {
+        Task task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.action.run();
+            } catch (RuntimeException re) {
+                task.reject(new IOException("Errore inatteso nell'esecuzione dell'operazione", re));
+            }
+        }
+    }
+
+    /**
+     * Operazione accodata sul selettore, insieme all'azione con la quale rifiutarla.<br>
+     * Viene confrontata per identità, così che ogni operazione sia eseguita o rifiutata una sola volta.
+     * @since 2.1
+     * @author Giorgio Testa
+     */
+    private static final class Task {
+
+        private final Runnable action;
+        private final Consumer<IOException> rejected;
+
+        private Task(Runnable action, Consumer<IOException> rejected) {
+            this.action = action;
+            this.rejected = rejected;
+        }
+
+        /**
+         * Rifiuta l'operazione ignorando eventuali errori inattesi dell'azione di rifiuto.
+         * @param cause motivo del rifiuto
+         */
+        private void reject(IOException cause) {
+            try {
+                rejected.accept(cause);
+            } catch (RuntimeException ignored) {
+                // l'operazione è comunque conclusa, il selettore resta utilizzabile
+            }
+        }
+
+    }
+
+    /**
+     * Gestore degli eventi di un canale registrato su un {@link FTPSelectorLoop}.
+     * @since 2.1
+     * @author Giorgio Testa
+     */
+    interface Handler {
+
+        /**
+         * Invocato dal thread del selettore quando il canale è pronto per una delle operazioni di interesse.
+         * @param key chiave di registrazione del canale
+         * @throws IOException se è stato riscontrato un errore sul canale; la chiave viene annullata
+         */
+        void ready(SelectionKey key) throws IOException;
+
+        /**
+         * Invocato dal thread del selettore quando il canale non può più essere utilizzato.
+         * @param cause errore riscontrato
+         */
+        void failed(IOException cause);
+
+    }
+
+}
@@ -0,0 +1,289 @@
+package it.gtcode.net.ftp.nio;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPSession;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.ftp.response.FTPUploadStreamResponse;
+import lombok.EqualsAndHashCode;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Implementazione di {@link FTPSession} basata su {@link SocketChannel} non bloccanti.<br>
+ * Ogni operazione viene delegata a una {@link FTPAsyncSession_NioSocketChannel}, attendendone il completamento: il
+ * canale di controllo è quindi gestito da un {@link FTPEventLoopGroup} condiviso con altre sessioni e il thread
+ * chiamante rimane occupato solamente per la durata della singola operazione.<br>
+ * Le sessioni vengono create tramite {@link FTPTransportNio}.
+ * @since 2.1
+ * @see FTPSession
+ * @see FTPAsyncSession
+ * @see FTPTransportNio
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode
+public class FTPSession_NioSocketChannel implements FTPSession {
+
+    private final FTPAsyncSession_NioSocketChannel session;
+
+    /**
+     * Costruttore. Si connette al server indicato nella configurazione ed esegue il login.
+     * @param configuration configurazione con la quale creare la sessione
+     * @param group gruppo di selettori sul quale gestire la sessione
+     * @throws UncheckedIOException se non è stato possibile creare la sessione
+     */
+    FTPSession_NioSocketChannel(FTPConfiguration configuration, FTPEventLoopGroup group) {
+        this.session = await(FTPAsyncSession_NioSocketChannel.connect(configuration, group));
+    }
+
+    /**
+     * Costruttore. A differenza di {@link #FTPSession_NioSocketChannel(FTPConfiguration, FTPEventLoopGroup)}
+     * utilizza un canale già connesso al server e sul quale è già stato eseguito il login.
+     * @param configuration configurazione con la quale è stato inizializzato il canale
+     * @param group gruppo di selettori sul quale gestire la sessione
+     * @param channel canale da utilizzare per comunicare con il server
+     * @throws UncheckedIOException se non è stato possibile creare la sessione
+     */
+    FTPSession_NioSocketChannel(FTPConfiguration configuration, FTPEventLoopGroup group, SocketChannel channel) {
+        this.session = await(FTPAsyncSession_NioSocketChannel.attach(configuration, group, channel));
+    }
+
+    /**
+     * Indica se questa {@link FTPSession} è aperta o meno.<br>
+     * Invocare metodi su una sessione chiusa comporta il fallimento automatico degli stessi.
+     * @return {@code true} e è aperta, {@code false} altrimenti
+     */
+    @Override
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+
+    /**
+     * Restituisce la configurazione con la quale è stata creata la sessione.
+     * @return la configurazione della sessione
+     */
+    @Override
+    public FTPConfiguration getConfiguration() {
+        return session.getConfiguration();
+    }
+
+    /**
+     * Restituisce il percorso con il quale è stata effettuata la connessione al server.
+     * @return il percorso con il quale è stata effettuata la connessione al server
+     */
+    @Override
+    public Path getRoot() {
+        return session.getRoot();
+    }
+
+    /**
+     * Fornisce un {@link FTPStreamResponse} associato alla risorsa richiesta.<br>
+     * È compito dell'utilizzatore chiudere lo stream una volta terminato l'utilizzo; la risposta restituita fornisce
+     * funzioni di utility per semplificare la consumazione della risorsa.
+     * @param file file da richiedere al server
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @see FTPStreamResponse
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStreamResponse download(Path file) {
+        return await(session.download(file));
+    }
+
+    /**
+     * Fornisce un {@link FTPStreamResponse} associato alla risorsa richiesta, a partire dalla posizione indicata.
+     * @param file file da richiedere al server
+     * @param offset posizione, in byte, dalla quale iniziare la lettura
+     * @return un riferimento alla risorsa richiesta e i relativi codici di risposta del server
+     * @throws IllegalArgumentException se la posizione fornita è negativa
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStreamResponse download(Path file, long offset) {
+        return await(session.download(file, offset));
+    }
+
+    /**
+     * Carica il file indicato restituendo l'esito dell'operazione.<br>
+     * A differenza di {@link #upload(Path, Path)} il file viene caricato nella directory definita nella configurazione
+     * della sessione.
+     * @param file file da caricare sul server
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @see #upload(Path, Path)
+     */
+    @Override
+    public FTPResponse upload(Path file) throws FileNotFoundException {
+        return this.upload(file, session.getRoot());
+    }
+
+    /**
+     * Carica il file indicato restituendo l'esito dell'operazione.<br>
+     * A differenza di {@link #upload(Path, InputStream, Path)} l'{@code InputStream} viene creato e gestito direttamente
+     * da questo metodo.
+     * @param file file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @throws FileNotFoundException se non è stato possibile raggiungere il file da caricare
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @see #upload(Path, InputStream, Path)
+     */
+    @Override
+    public FTPResponse upload(Path file, Path target) throws FileNotFoundException {
+        if (!session.isOpen()) throw new IllegalStateException("Impossibile utilizzare la sessione, questa risulta essere chiusa");
+        try (InputStream inputStream = new FileInputStream(file.toFile())) {
+            return this.upload(file, inputStream, target);
+        } catch (FileNotFoundException ffe) {
+            throw ffe;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Carica il file indicato restituendo l'esito dell'operazione.<br>
+     * A differenza di {@link #upload(Path, InputStream, Path)} il file viene caricato nella directory definita
+     * nella configurazione della sessione.<br>
+     * NOTA: Questo metodo <b>NON</b> chiude l'{@code InputStream} fornito.<br>
+     * @param file nome del file da caricare
+     * @param fileStream {@code InputStream} relativo al file da caricare sul server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @see #upload(Path, InputStream, Path)
+     */
+    @Override
+    public FTPResponse upload(Path file, InputStream fileStream) {
+        return this.upload(file, fileStream, session.getRoot());
+    }
+
+    /**
+     * Carica il file indicato restituendo l'esito dell'operazione.<br>
+     * NOTA: Questo metodo <b>NON</b> chiude l'{@code InputStream} fornito.<br>
+     * @param file nome del file da caricare
+     * @param fileStream {@code InputStream} relativo al file da caricare sul server
+     * @param target directory nella quale caricare il file
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     */
+    @Override
+    public FTPResponse upload(Path file, InputStream fileStream, Path target) {
+        return await(session.upload(file, fileStream, target));
+    }
+
+    /**
+     * Carica i byte rimanenti del buffer fornito restituendo l'esito dell'operazione.<br>
+     * Il buffer, anche diretto o mappato in memoria, viene scritto direttamente sul canale dati; posizione e limite
+     * del buffer non vengono modificati.
+     * @param file nome del file da caricare
+     * @param data contenuto del file da caricare
+     * @param target directory nella quale caricare il file
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     */
+    @Override
+    public FTPResponse upload(Path file, ByteBuffer data, Path target) {
+        return await(session.upload(file, data, target));
+    }
+
+    /**
+     * Apre un caricamento in streaming del file indicato nella directory fornita.<br>
+     * Il contenuto scritto sullo stream o sul canale della risposta viene inviato direttamente sul canale dati; fino
+     * alla chiusura della risposta la sessione non può eseguire altre operazioni.
+     * @param file nome del file da caricare
+     * @param target directory nella quale caricare il file
+     * @return la connessione dati sulla quale scrivere il contenuto e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPUploadStreamResponse openUploadStream(Path file, Path target) {
+        return await(session.openUploadStream(file, target));
+    }
+
+    /**
+     * Elimina il file indicato restituendo l'esito della richiesta.
+     * @param file path del file da eliminare
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse delete(Path file) {
+        return await(session.delete(file));
+    }
+
+    /**
+     * Richiede al server la dimensione ({@code SIZE}) e la data di ultima modifica ({@code MDTM}) del file indicato.
+     * @param file file del quale richiedere le informazioni
+     * @return le informazioni del file e i relativi codici di risposta del server
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPStatResponse stat(Path file) {
+        return await(session.stat(file));
+    }
+
+    /**
+     * Richiede al server dimensione e data di ultima modifica di tutti i file indicati, inviando le richieste in
+     * pipeline.
+     * @param files file dei quali richiedere le informazioni
+     * @return le informazioni di ogni file, nell'ordine fornito
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public Map<Path, FTPStatResponse> stat(Collection<Path> files) {
+        return await(session.stat(files));
+    }
+
+    /**
+     * Esegue il comando fornito sul server.
+     * @param command comando da eseguire
+     * @return l'esito della richiesta con gli eventuali messaggi di errore
+     * @throws IllegalStateException se la sessione non può essere utilizzata
+     */
+    @Override
+    public FTPResponse execute(String command) {
+        return await(session.execute(command));
+    }
+
+    /**
+     * Tenta di chiudere la sessione, eseguendo il logout e disconnettendosi dal server.<br>
+     * Nel caso in cui la sessione risulti essere già chiusa questo comando non ha effetto.
+     * @throws UncheckedIOException se viene riscontrato un problema durante la disconnessione dal server
+     */
+    @Override
+    public void close() {
+        await(session.close());
+    }
+
+    /**
+     * Restituisce la versione non bloccante di questa sessione, con la quale condivide la coda delle operazioni.
+     * @return la sessione non bloccante sottostante
+     */
+    public FTPAsyncSession async() {
+        return this.session;
+    }
+
+    /**
+     * Attende il completamento dell'operazione fornita, rilanciando gli errori non controllati originali.
+     * @param future operazione da attendere
+     * @return il risultato dell'operazione
+     * @param <T> tipo del risultato
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof RuntimeException re) throw re;
+            throw ce;
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package it.gtcode.net.ftp.nio;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPSession;
+import it.gtcode.net.ftp.FTPTransport;
+
+import java.io.Closeable;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implementazione di {@link FTPTransport} basata su {@link SocketChannel} non bloccanti.<br>
+ * I canali di controllo di tutte le sessioni create vengono distribuiti sui selettori di un {@link FTPEventLoopGroup};
+ * non è quindi necessario un thread per ogni connessione. Oltre alle sessioni bloccanti previste da
+ * {@link FTPTransport} il trasporto fornisce sessioni non bloccanti tramite {@link #connectAsync(FTPConfiguration)}.<br>
+ * Il trasporto deve essere chiuso una volta terminato il suo utilizzo; un gruppo fornito dall'utilizzatore non viene
+ * però arrestato, così da poter essere condiviso.
+ * @since 2.1
+ * @see FTPTransport
+ * @see FTPEventLoopGroup
+ * @see FTPSession_NioSocketChannel
+ * @see FTPAsyncSession_NioSocketChannel
+ * @author Giorgio Testa
+ */
+public class FTPTransportNio implements FTPTransport<SocketChannel>, Closeable {
+
+    private final FTPEventLoopGroup group;
+    private final boolean ownsGroup;
+
+    /**
+     * Costruttore. Utilizza un nuovo {@link FTPEventLoopGroup} con un selettore per ogni core disponibile.
+     * @throws java.io.UncheckedIOException se non è stato possibile aprire i selettori
+     */
+    public FTPTransportNio() {
+        this(new FTPEventLoopGroup(), true);
+    }
+
+    /**
+     * Costruttore. Utilizza un nuovo {@link FTPEventLoopGroup} con il numero di selettori fornito.
+     * @param selectorThreads numero di thread, e quindi di selettori, sui quali distribuire le sessioni
+     * @throws IllegalArgumentException se il numero di thread fornito non è positivo
+     * @throws java.io.UncheckedIOException se non è stato possibile aprire i selettori
+     */
+    public FTPTransportNio(int selectorThreads) {
+        this(new FTPEventLoopGroup(selectorThreads), true);
+    }
+
+    /**
+     * Costruttore. Utilizza il gruppo fornito, che non viene arrestato alla chiusura del trasporto.
+     * @param group gruppo di selettori sul quale gestire le sessioni
+     * @throws NullPointerException se il gruppo fornito è {@code null}
+     */
+    public FTPTransportNio(FTPEventLoopGroup group) {
+        this(Objects.requireNonNull(group), false);
+    }
+
+    /**
+     * Costruttore.
+     * @param group gruppo di selettori sul quale gestire le sessioni
+     * @param ownsGroup indica se il gruppo deve essere arrestato alla chiusura del trasporto
+     */
+    private FTPTransportNio(FTPEventLoopGroup group, boolean ownsGroup) {
+        this.group = group;
+        this.ownsGroup = ownsGroup;
+    }
+
+    /**
+     * Restituisce il tipo del client nativo utilizzato dal trasporto.
+     * @return {@code java.nio.channels.SocketChannel}
+     */
+    @Override
+    public Class<SocketChannel> getClientType() {
+        return SocketChannel.class;
+    }
+
+    /**
+     * Crea una nuova sessione connettendosi al server indicato dalla configurazione fornita.
+     * @param configuration configurazione con la quale creare la sessione
+     * @return la sessione creata
+     * @throws java.io.UncheckedIOException nel caso in cui non sia stato possibile creare la sessione
+     */
+    @Override
+    public FTPSession connect(FTPConfiguration configuration) {
+        return new FTPSession_NioSocketChannel(configuration, group);
+    }
+
+    /**
+     * Crea una nuova sessione utilizzando il canale fornito.
+     * @param configuration configurazione con la quale è stato inizializzato il canale
+     * @param client canale già connesso al server e sul quale è già stato eseguito il login
+     * @return la sessione creata
+     * @throws java.io.UncheckedIOException nel caso in cui non sia stato possibile creare la sessione
+     */
+    @Override
+    public FTPSession wrap(FTPConfiguration configuration, SocketChannel client) {
+        return new FTPSession_NioSocketChannel(configuration, group, client);
+    }
+
+    /**
+     * Crea una nuova sessione non bloccante connettendosi al server indicato dalla configurazione fornita.
+     * @param configuration configurazione con la quale creare la sessione
+     * @return la sessione futura, fallita con una {@link java.io.UncheckedIOException} nel caso in cui non sia stato
+     * possibile crearla
+     */
+    public CompletableFuture<FTPAsyncSession> connectAsync(FTPConfiguration configuration) {
+        return FTPAsyncSession_NioSocketChannel.connect(configuration, group).thenApply(session -> session);
+    }
+
+    /**
+     * Arresta il gruppo di selettori, se creato dal trasporto; le sessioni ancora aperte diventano inutilizzabili.
+     */
+    @Override
+    public void close() {
+        if (ownsGroup) group.close();
+    }
+
+}
@@ -0,0 +1,39 @@
+package it.gtcode.net.ftp.progress;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Istantanea dell'avanzamento di un trasferimento, notificata a un {@link FTPProgressListener}.
+ * @param transferred byte trasferiti dall'inizio del trasferimento
+ * @param total dimensione in byte della risorsa, {@code -1} se non nota
+ * @param rate velocità istantanea in byte al secondo, misurata dal campionamento precedente
+ * @param elapsed tempo trascorso dall'inizio del trasferimento
+ * @param completed {@code true} se il contenuto è stato trasferito per intero o lo stream è stato chiuso
+ * @since 2.1
+ * @see FTPProgressListener
+ * @author Giorgio Testa
+ */
+public record FTPProgress(long transferred, long total, double rate, Duration elapsed, boolean completed) {
+
+    /**
+     * Restituisce la percentuale di avanzamento.
+     * @return la percentuale trasferita tra {@code 0} e {@code 100}, vuota se la dimensione della risorsa non è nota
+     */
+    public Optional<Double> getPercentage() {
+        if (total < 0) return Optional.empty();
+        if (total == 0) return Optional.of(100d);
+        return Optional.of(Math.min(transferred * 100d / total, 100d));
+    }
+
+    /**
+     * Restituisce la stima del tempo rimanente sulla base della velocità istantanea.
+     * @return il tempo rimanente stimato, vuoto se la dimensione della risorsa non è nota o se la velocità è nulla
+     */
+    public Optional<Duration> getEta() {
+        if (completed) return Optional.of(Duration.ZERO);
+        if (total < 0 || rate <= 0) return Optional.empty();
+        return Optional.of(Duration.ofNanos((long) (Math.max(total - transferred, 0) / rate * 1_000_000_000d)));
+    }
+
+}
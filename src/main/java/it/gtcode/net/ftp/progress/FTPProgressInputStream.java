@@ -0,0 +1,161 @@
+package it.gtcode.net.ftp.progress;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link InputStream} che misura l'avanzamento della lettura dello stream decorato, notificandolo a un
+ * {@link FTPProgressListener} secondo un {@link FTPProgressSampling}.<br>
+ * Lo stream è pensato per essere letto da un solo thread alla volta, come avviene nel ciclo di copia di un
+ * trasferimento: i contatori sono campi semplici e ogni lettura si limita a incrementarli e a confrontarli con la
+ * soglia della prossima notifica, senza sincronizzazione. L'orologio viene consultato solamente se il campionamento
+ * per tempo è abilitato.<br>
+ * Al raggiungimento della fine del contenuto, o alla chiusura se precedente, viene inviata un'ultima notifica con
+ * {@link FTPProgress#completed()} valorizzato.
+ * @since 2.1
+ * @see FTPProgressSampling
+ * @author Giorgio Testa
+ */
+public class FTPProgressInputStream extends FilterInputStream {
+
+    private final FTPProgressListener listener;
+    private final long total;
+    private final long sampleBytes;
+    private final long sampleNanos;
+    private final LongSupplier clock;
+    private final long start;
+
+    private long transferred;
+    private long nextBytes;
+    private long nextNanos;
+    private long lastBytes;
+    private long lastNanos;
+    private boolean completed;
+
+    /**
+     * Costruttore.
+     * @param stream stream da decorare
+     * @param total dimensione in byte del contenuto, {@code -1} se non nota
+     * @param listener listener al quale notificare l'avanzamento
+     * @param sampling politica di campionamento delle notifiche
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     */
+    public FTPProgressInputStream(InputStream stream, long total, FTPProgressListener listener,
+                                  FTPProgressSampling sampling) {
+        this(stream, total, listener, sampling, System::nanoTime);
+    }
+
+    /**
+     * Costruttore.
+     * @param stream stream da decorare
+     * @param total dimensione in byte del contenuto, {@code -1} se non nota
+     * @param listener listener al quale notificare l'avanzamento
+     * @param sampling politica di campionamento delle notifiche
+     * @param clock orologio in nanosecondi con il quale misurare la velocità
+     * @throws NullPointerException se uno dei parametri forniti è {@code null}
+     */
+    FTPProgressInputStream(InputStream stream, long total, FTPProgressListener listener,
+                           FTPProgressSampling sampling, LongSupplier clock) {
+        super(Objects.requireNonNull(stream));
+        Objects.requireNonNull(listener);
+        Objects.requireNonNull(sampling);
+        this.listener = listener;
+        this.total = total;
+        this.sampleBytes = sampling.bytes() > 0 ? sampling.bytes() : Long.MAX_VALUE;
+        this.sampleNanos = sampling.interval().toNanos();
+        this.clock = clock;
+        this.start = clock.getAsLong();
+        this.lastNanos = start;
+        this.nextBytes = sampleBytes;
+        this.nextNanos = sampleNanos > 0 ? start + sampleNanos : Long.MAX_VALUE;
+    }
+
+    /**
+     * Restituisce i byte letti finora. Deve essere invocato dal thread che legge lo stream.
+     * @return i byte letti
+     */
+    public long getTransferred() {
+        return transferred;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = super.read();
+        this.advance(read < 0 ? -1 : 1);
+        return read;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = in.read(buffer, offset, length);
+        this.advance(read);
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) this.advance(skipped);
+        return skipped;
+    }
+
+    /**
+     * Chiude lo stream decorato, inviando l'ultima notifica se non ancora inviata.
+     * @throws IOException se non è stato possibile chiudere lo stream decorato
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            this.complete();
+        }
+    }
+
+    /**
+     * Registra i byte letti e notifica l'avanzamento se è stata raggiunta una soglia di campionamento.
+     * @param read byte letti, negativo alla fine del contenuto
+     */
+    private void advance(long read) {
+        if (read < 0) {
+            this.complete();
+            return;
+        }
+        transferred += read;
+        if (transferred >= nextBytes) {
+            this.sample(clock.getAsLong(), false);
+        } else if (sampleNanos > 0) {
+            long now = clock.getAsLong();
+            if (now >= nextNanos) this.sample(now, false);
+        }
+    }
+
+    /**
+     * Invia l'ultima notifica, una sola volta.
+     */
+    private void complete() {
+        if (completed) return;
+        completed = true;
+        this.sample(clock.getAsLong(), true);
+    }
+
+    /**
+     * Notifica l'avanzamento corrente e calcola le soglie della prossima notifica.
+     * @param now istante corrente in nanosecondi
+     * @param last {@code true} se si tratta dell'ultima notifica
+     */
+    private void sample(long now, boolean last) {
+        long elapsed = Math.max(now - lastNanos, 1);
+        double rate = (transferred - lastBytes) * 1_000_000_000d / elapsed;
+        lastBytes = transferred;
+        lastNanos = now;
+        nextBytes = sampleBytes == Long.MAX_VALUE ? Long.MAX_VALUE : transferred + sampleBytes;
+        if (sampleNanos > 0) nextNanos = now + sampleNanos;
+        listener.onProgress(new FTPProgress(transferred, total, rate, Duration.ofNanos(now - start), last));
+    }
+
+}
@@ -0,0 +1,19 @@
+package it.gtcode.net.ftp.progress;
+
+/**
+ * Riceve l'avanzamento di un trasferimento, campionato secondo un {@link FTPProgressSampling}.<br>
+ * Il listener viene invocato sul thread che esegue il trasferimento: operazioni onerose ne rallentano la copia.
+ * @since 2.1
+ * @see FTPProgressInputStream
+ * @author Giorgio Testa
+ */
+@FunctionalInterface
+public interface FTPProgressListener {
+
+    /**
+     * Notifica l'avanzamento del trasferimento.
+     * @param progress istantanea dell'avanzamento
+     */
+    void onProgress(FTPProgress progress);
+
+}
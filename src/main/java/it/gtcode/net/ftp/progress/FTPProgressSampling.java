@@ -0,0 +1,52 @@
+package it.gtcode.net.ftp.progress;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Politica di campionamento dell'avanzamento di un trasferimento: il listener viene notificato quando dall'ultima
+ * notifica sono stati trasferiti almeno {@code bytes} byte oppure è trascorso almeno {@code interval}, oltre che al
+ * termine del trasferimento.
+ * @param bytes byte tra due notifiche, {@code 0} per non campionare per byte
+ * @param interval tempo tra due notifiche, {@link Duration#ZERO} per non campionare per tempo
+ * @since 2.1
+ * @see FTPProgressInputStream
+ * @author Giorgio Testa
+ */
+public record FTPProgressSampling(long bytes, Duration interval) {
+
+    /** Campionamento di default: ogni MiB trasferito oppure ogni secondo. */
+    public static final FTPProgressSampling DEFAULT = new FTPProgressSampling(1024 * 1024, Duration.ofSeconds(1));
+
+    /**
+     * Costruttore.
+     * @param bytes byte tra due notifiche, {@code 0} per non campionare per byte
+     * @param interval tempo tra due notifiche, {@link Duration#ZERO} per non campionare per tempo
+     * @throws NullPointerException se l'intervallo fornito è {@code null}
+     * @throws IllegalArgumentException se i valori forniti sono negativi o entrambi nulli
+     */
+    public FTPProgressSampling {
+        Objects.requireNonNull(interval);
+        if (bytes < 0 || interval.isNegative()) throw new IllegalArgumentException("Il campionamento non può essere negativo");
+        if (bytes == 0 && interval.isZero()) throw new IllegalArgumentException("Indicare almeno un criterio di campionamento");
+    }
+
+    /**
+     * Crea un campionamento per byte trasferiti.
+     * @param bytes byte tra due notifiche
+     * @return il campionamento creato
+     */
+    public static FTPProgressSampling everyBytes(long bytes) {
+        return new FTPProgressSampling(bytes, Duration.ZERO);
+    }
+
+    /**
+     * Crea un campionamento per tempo trascorso.
+     * @param interval tempo tra due notifiche
+     * @return il campionamento creato
+     */
+    public static FTPProgressSampling every(Duration interval) {
+        return new FTPProgressSampling(0, interval);
+    }
+
+}
@@ -0,0 +1,41 @@
+package it.gtcode.net.ftp.response;
+
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Rappresenta l'esito del caricamento di un insieme di risorse accorpate in archivi.<br>
+ * Oltre alle informazioni di {@link FTPResponse} riporta il numero di archivi caricati e di risorse in essi contenute.
+ * @since 2.1
+ * @see FTPResponse
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode(callSuper = true)
+@Getter@Setter
+public class FTPArchiveResponse extends FTPResponse {
+
+    /** Numero di archivi caricati. */
+    private int archives;
+    /** Numero di risorse caricate all'interno degli archivi. */
+    private int archivedFiles;
+    /** Numero di risorse caricate singolarmente in quanto superiori alla soglia di accorpamento. */
+    private int directFiles;
+
+    /**
+     * Inizializza la risposta con lo stato {@link Status#SUCCESS} e gli oggetti forniti.
+     * @param replyCode codice di risposta dal server al caricamento del manifest
+     * @param message messaggio testuale di risposta dal server al caricamento del manifest
+     * @param archives numero di archivi caricati
+     * @param archivedFiles numero di risorse caricate all'interno degli archivi
+     * @param directFiles numero di risorse caricate singolarmente
+     */
+    public void asSuccess(int replyCode, String message, int archives, int archivedFiles, int directFiles) {
+        super.asSuccess(replyCode, message);
+        this.archives = archives;
+        this.archivedFiles = archivedFiles;
+        this.directFiles = directFiles;
+    }
+
+}
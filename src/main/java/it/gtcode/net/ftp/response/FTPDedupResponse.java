@@ -0,0 +1,38 @@
+package it.gtcode.net.ftp.response;
+
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Rappresenta l'esito di un caricamento deduplicato di una risorsa.<br>
+ * Oltre alle informazioni di {@link FTPResponse} riporta l'impronta del contenuto caricato e se il trasferimento è
+ * stato evitato in quanto il server ne possedeva già una copia identica.
+ * @since 2.1
+ * @see FTPResponse
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode(callSuper = true)
+@Getter@Setter
+public class FTPDedupResponse extends FTPResponse {
+
+    /** Impronta SHA-256 esadecimale del contenuto, {@code null} se non calcolata. */
+    private String digest;
+    /** Indica se il trasferimento è stato evitato. */
+    private boolean deduplicated;
+
+    /**
+     * Inizializza la risposta con lo stato {@link Status#SUCCESS} e gli oggetti forniti.
+     * @param replyCode codice di risposta dal server
+     * @param message messaggio testuale di risposta dal server
+     * @param digest impronta SHA-256 esadecimale del contenuto
+     * @param deduplicated {@code true} se il trasferimento è stato evitato
+     */
+    public void asSuccess(int replyCode, String message, String digest, boolean deduplicated) {
+        super.asSuccess(replyCode, message);
+        this.digest = digest;
+        this.deduplicated = deduplicated;
+    }
+
+}
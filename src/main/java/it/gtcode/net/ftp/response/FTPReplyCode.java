@@ -3,7 +3,7 @@ package it.gtcode.net.ftp.response;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
-import java.util.function.Predicate;
+import java.util.function.IntPredicate;
 
 /**
  * Rappresenta vari codici di stato del protocollo FTP.<br>
@@ -220,6 +220,16 @@ public enum FTPReplyCode {
     /** Valore numerico del {@link FTPReplyCode} */
     private final int code;
 
+    /**
+     * Codici indicizzati per valore numerico, evita la copia di {@code values()} ad ogni ricerca.<br>
+     * A parità di valore viene mantenuto il primo codice dichiarato.
+     */
+    private static final FTPReplyCode[] BY_CODE = new FTPReplyCode[700];
+
+    static {
+        for (var value : values()) if (BY_CODE[value.code] == null) BY_CODE[value.code] = value;
+    }
+
     /**
      * Restituisce lo stato che rappresenta questo codice {@link FTPReplyCode}.
      * @return il relativo stato di questo codice di risposta
@@ -235,8 +245,7 @@ public enum FTPReplyCode {
      * @return il associato al valore numerico fornito
      */
     public static FTPReplyCode valueOfCode(int replyCode) {
-        for (var value : values())
-            if (value.code == replyCode) return value;
+        if (replyCode >= 0 && replyCode < BY_CODE.length && BY_CODE[replyCode] != null) return BY_CODE[replyCode];
         throw new IllegalArgumentException(String.format("Il codice %s non è tra quelli attualmente supportati", replyCode));
     }
 
@@ -263,7 +272,10 @@ public enum FTPReplyCode {
         PROTECTED_REPLY_CODE((code) -> code >= 600 && code < 700);
 
         /** Vincolo di attribuzione dei codici */
-        private final Predicate<Integer> range;
+        private final IntPredicate range;
+
+        /** Stati in ordine di centinaia, evita la copia di {@code values()} ad ogni ricerca. */
+        private static final Status[] BY_HUNDREDS = values();
 
         /**
          * Restituisce lo {@link Status} associato al valore numerico fornito.
@@ -272,8 +284,8 @@ public enum FTPReplyCode {
          * @return il associato al valore numerico fornito
          */
         public static Status valueOfCode(int replyCode) {
-            for (var value : values())
-                if (value.range.test(replyCode)) return value;
+            int index = replyCode / 100 - 1;
+            if (index >= 0 && index < BY_HUNDREDS.length && BY_HUNDREDS[index].range.test(replyCode)) return BY_HUNDREDS[index];
             throw new IllegalArgumentException(String.format("Il codice %s non è tra quelli attualmente supportati", replyCode));
         }
 
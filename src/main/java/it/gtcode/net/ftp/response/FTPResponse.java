@@ -1,11 +1,16 @@
 package it.gtcode.net.ftp.response;
 
+import it.gtcode.net.ftp.trace.FTPWireEntry;
+import it.gtcode.net.ftp.trace.FTPWireLog;
 import it.gtcode.net.response.*;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Implementazione di {@code Response} per il protocollo FTP.<br>
@@ -25,9 +30,68 @@ public class FTPResponse extends GenericResponse {
     private FTPReplyCode replyCode;
     /**
      * Eventuale eccezione riscontrata durante il tentativo di comunicazione con il server.<br>
-     * Potrebbe essere {@code null} anche se stato della risposta è un errore.
+     * Potrebbe essere {@code null} anche se stato della risposta è un errore, in particolare quando l'errore
+     * consiste in una risposta negativa del server: in tal caso l'esito è descritto da {@link #getReplyCode()}.
      */
     private IOException exception;
+    /**
+     * Ultimi comandi e risposte scambiati con il server prima dell'errore, valorizzati dalle sessioni che mantengono
+     * un {@link FTPWireLog}. Vuoto per le risposte andate a buon fine.
+     * @since 2.1
+     */
+    @EqualsAndHashCode.Exclude
+    private List<FTPWireEntry> wireLog = List.of();
+    /**
+     * Messaggio non ancora materializzato, viene calcolato alla prima lettura tramite {@link #getMessage()}.<br>
+     * Consente di non decodificare la risposta del server quando il messaggio non viene mai letto.
+     */
+    @EqualsAndHashCode.Exclude
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private Supplier<String> pendingMessage;
+
+    /**
+     * Ottiene l'eventuale messaggio di risposta, materializzandolo se fornito in maniera differita.
+     * @return {@link String}
+     */
+    @Override
+    public String getMessage() {
+        var pending = this.pendingMessage;
+        if (pending != null) {
+            super.setMessage(pending.get());
+            this.pendingMessage = null;
+        }
+        return super.getMessage();
+    }
+
+    /**
+     * Imposta il messaggio di risposta, sostituendo l'eventuale messaggio differito.
+     * @param message messaggio di risposta
+     */
+    @Override
+    public void setMessage(String message) {
+        this.pendingMessage = null;
+        super.setMessage(message);
+    }
+
+    /**
+     * Inizializza la risposta con lo stato {@link Status#SUCCESS} e il messaggio fornito.
+     * @param message messaggio di risposta
+     */
+    @Override
+    public void asSuccess(String message) {
+        this.pendingMessage = null;
+        super.asSuccess(message);
+    }
+
+    /**
+     * Inizializza la risposta con lo stato {@link Status#ERROR} e il messaggio fornito.
+     * @param message messaggio di risposta
+     */
+    @Override
+    public void asError(String message) {
+        this.pendingMessage = null;
+        super.asError(message);
+    }
 
     /**
      * Inizializza la risposta con lo stato {@link Status#SUCCESS} e gli oggetti forniti.
@@ -35,7 +99,7 @@ public class FTPResponse extends GenericResponse {
      * @param message messaggio testuale di risposta dal server
      */
     public void asSuccess(int replyCode, String message) {
-        super.asSuccess(message);
+        this.asSuccess(message);
         this.replyCode = FTPReplyCode.valueOfCode(replyCode);
     }
 
@@ -56,8 +120,33 @@ public class FTPResponse extends GenericResponse {
      * @param message messaggio testuale di risposta dal server
      */
     public void asError(int replyCode, String message) {
-        super.asError(message);
+        this.asError(message);
         this.replyCode = FTPReplyCode.valueOfCode(replyCode);
     }
 
+    /**
+     * Inizializza la risposta con lo stato {@link Status#SUCCESS} e gli oggetti forniti.<br>
+     * Il messaggio viene calcolato solamente alla prima lettura tramite {@link #getMessage()}.
+     * @param replyCode codice di risposta dal server
+     * @param message funzione che fornisce il messaggio testuale di risposta dal server
+     * @since 2.1
+     */
+    public void asSuccess(int replyCode, Supplier<String> message) {
+        this.asSuccess(replyCode, (String) null);
+        this.pendingMessage = message;
+    }
+
+    /**
+     * Inizializza la risposta con lo stato {@link Status#ERROR} e gli oggetti forniti.<br>
+     * Il messaggio viene calcolato solamente alla prima lettura tramite {@link #getMessage()}.
+     * @param replyCode codice di risposta dal server
+     * @param message funzione che fornisce il messaggio testuale di risposta dal server
+     * @param exception eccezione riscontrata
+     * @since 2.1
+     */
+    public void asError(int replyCode, Supplier<String> message, IOException exception) {
+        this.asError(replyCode, (String) null, exception);
+        this.pendingMessage = message;
+    }
+
 }
@@ -0,0 +1,55 @@
+package it.gtcode.net.ftp.response;
+
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Rappresenta la risposta alla richiesta delle informazioni di un file presente sul server.<br>
+ * Oltre alle informazioni di {@link FTPResponse} riporta la dimensione ({@code SIZE}) e la data di ultima modifica
+ * ({@code MDTM}) del file.
+ * @since 2.1
+ * @see FTPResponse
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode(callSuper = true)
+@Getter@Setter
+public class FTPStatResponse extends FTPResponse {
+
+    /** Dimensione in byte del file, {@code -1} se non nota. */
+    private long size = -1;
+    /** Data di ultima modifica del file, {@code null} se il server non la fornisce. */
+    private Instant lastModified;
+
+    /**
+     * Inizializza la risposta con lo stato {@link Status#SUCCESS} e gli oggetti forniti.
+     * @param replyCode codice di risposta dal server
+     * @param message messaggio testuale di risposta dal server
+     * @param size dimensione in byte del file
+     * @param lastModified data di ultima modifica del file, {@code null} se non nota
+     */
+    public void asSuccess(int replyCode, String message, long size, Instant lastModified) {
+        super.asSuccess(replyCode, message);
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Inizializza la risposta con lo stato {@link Status#ERROR} e gli oggetti forniti, azzerando le informazioni
+     * del file.
+     * @param replyCode codice di risposta dal server
+     * @param message messaggio testuale di risposta dal server
+     * @param exception eccezione riscontrata
+     */
+    @Override
+    public void asError(int replyCode, String message, IOException exception) {
+        super.asError(replyCode, message, exception);
+        this.size = -1;
+        this.lastModified = null;
+    }
+
+}
@@ -1,5 +1,8 @@
 package it.gtcode.net.ftp.response;
 
+import it.gtcode.net.ftp.progress.FTPProgressInputStream;
+import it.gtcode.net.ftp.progress.FTPProgressListener;
+import it.gtcode.net.ftp.progress.FTPProgressSampling;
 import it.gtcode.net.response.Status;
 import lombok.EqualsAndHashCode;
 
@@ -9,6 +12,7 @@ import java.io.UncheckedIOException;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Rappresenta la risposta alla richiesta di una risorsa in streaming dal server.
@@ -55,6 +59,24 @@ public class FTPStreamResponse extends FTPResponse {
         }
     }
 
+    /**
+     * Notifica al listener fornito l'avanzamento della lettura dello stream, campionato secondo la politica indicata.<br>
+     * Lo stream restituito da {@link #getStream()} viene sostituito da un {@link FTPProgressInputStream}; se la
+     * risposta non contiene alcuno stream l'invocazione non ha effetto.
+     * @param listener listener al quale notificare l'avanzamento
+     * @param sampling politica di campionamento delle notifiche
+     * @param total dimensione in byte della risorsa, {@code -1} se non nota
+     * @return questa risposta
+     * @throws NullPointerException se il listener o il campionamento forniti sono {@code null}
+     * @since 2.1
+     */
+    public FTPStreamResponse trackProgress(FTPProgressListener listener, FTPProgressSampling sampling, long total) {
+        Objects.requireNonNull(listener);
+        Objects.requireNonNull(sampling);
+        if (stream != null) stream = new FTPProgressInputStream(stream, total, listener, sampling);
+        return this;
+    }
+
     /**
      * Chiude l'{@link InputStream} contenuto, terminando la transazione con il server per questa risorsa.
      * @throws UncheckedIOException se non è stato possibile chiudere lo stream o
@@ -85,4 +107,17 @@ public class FTPStreamResponse extends FTPResponse {
         this.stream = stream;
     }
 
+    /**
+     * Inizializza la risposta con lo stato {@link Status#SUCCESS} e gli oggetti forniti.<br>
+     * Il messaggio viene calcolato solamente alla prima lettura tramite {@link #getMessage()}.
+     * @param replyCode codice di risposta dal server
+     * @param message funzione che fornisce il messaggio testuale di risposta dal server
+     * @param stream stream della risorsa richiesta
+     * @since 2.1
+     */
+    public void asSuccess(int replyCode, Supplier<String> message, InputStream stream) {
+        super.asSuccess(replyCode, message);
+        this.stream = stream;
+    }
+
 }
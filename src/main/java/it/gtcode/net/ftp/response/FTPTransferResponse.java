@@ -0,0 +1,67 @@
+package it.gtcode.net.ftp.response;
+
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+
+/**
+ * Rappresenta l'esito di un trasferimento di una risorsa tra due server FTP.<br>
+ * Oltre alle informazioni di {@link FTPResponse} indica la modalità con la quale i dati sono stati effettivamente
+ * trasferiti.
+ * @since 2.1
+ * @see FTPResponse
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode(callSuper = true)
+@Getter@Setter
+public class FTPTransferResponse extends FTPResponse {
+
+    /** Modalità con la quale è stato eseguito il trasferimento. */
+    private Mode mode;
+    /**
+     * Motivo per il quale il trasferimento diretto tra i server non è stato eseguito, {@code null} se il trasferimento
+     * è avvenuto in modalità {@link Mode#SERVER_TO_SERVER} o l'inoltro è stato richiesto esplicitamente.
+     */
+    private String fallbackReason;
+
+    /**
+     * Inizializza la risposta con lo stato {@link Status#SUCCESS} e gli oggetti forniti.
+     * @param replyCode codice di risposta dal server di destinazione
+     * @param message messaggio testuale di risposta dal server di destinazione
+     * @param mode modalità con la quale è stato eseguito il trasferimento
+     */
+    public void asSuccess(int replyCode, String message, Mode mode) {
+        super.asSuccess(replyCode, message);
+        this.mode = mode;
+    }
+
+    /**
+     * Inizializza la risposta con lo stato {@link Status#ERROR} e gli oggetti forniti.
+     * @param replyCode codice di risposta dal server che ha causato il fallimento
+     * @param message messaggio testuale di risposta dal server che ha causato il fallimento
+     * @param exception eccezione riscontrata
+     * @param mode modalità con la quale è stato tentato il trasferimento
+     */
+    public void asError(int replyCode, String message, IOException exception, Mode mode) {
+        super.asError(replyCode, message, exception);
+        this.mode = mode;
+    }
+
+    /**
+     * Rappresenta le modalità con le quali una risorsa può essere trasferita tra due server.
+     * @since 2.1
+     * @author Giorgio Testa
+     */
+    public enum Mode {
+
+        /** I dati sono stati trasferiti direttamente tra i due server (FXP), il client ha gestito solo i canali di controllo. */
+        SERVER_TO_SERVER,
+        /** I dati sono stati inoltrati in streaming dal client, senza l'utilizzo di file temporanei. */
+        RELAY
+
+    }
+
+}
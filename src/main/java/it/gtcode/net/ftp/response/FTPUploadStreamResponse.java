@@ -0,0 +1,126 @@
+package it.gtcode.net.ftp.response;
+
+import it.gtcode.net.response.Status;
+import lombok.EqualsAndHashCode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Rappresenta la risposta all'apertura di un caricamento in streaming verso il server.<br>
+ * Il contenuto del file viene scritto direttamente sulla connessione dati tramite {@link #getStream()} o
+ * {@link #getChannel()}; la chiusura tramite {@link #close()} conclude la transazione e restituisce l'esito
+ * definitivo del caricamento.
+ * @since 2.1
+ * @see FTPStreamResponse
+ * @author Giorgio Testa
+ */
+@EqualsAndHashCode(callSuper = true)
+public class FTPUploadStreamResponse extends FTPResponse {
+
+    private WritableByteChannel channel;
+    private OutputStream stream;
+    @EqualsAndHashCode.Exclude
+    private FTPResponse outcome;
+    private final Supplier<FTPResponse> serverCompleteTransactionCallback;
+
+    /**
+     * Costruttore.
+     * @param serverCompleteTransactionCallback funzione che conclude la transazione con il server dopo la chiusura
+     *                                          della connessione dati, restituendo l'esito del caricamento
+     */
+    public FTPUploadStreamResponse(Supplier<FTPResponse> serverCompleteTransactionCallback) {
+        this.serverCompleteTransactionCallback = serverCompleteTransactionCallback;
+    }
+
+    /**
+     * Restituisce l'{@link OutputStream} sul quale scrivere il contenuto del file.<br>
+     * È compito dell'utilizzatore chiamare il metodo {@link #close()} al termine della scrittura.
+     * @return lo stream wrappato in un {@link Optional}, vuoto se il server ha rifiutato il caricamento
+     * @see #close()
+     * @see #produce(Consumer)
+     */
+    public Optional<OutputStream> getStream() {
+        return Optional.ofNullable(stream);
+    }
+
+    /**
+     * Restituisce il {@link WritableByteChannel} sul quale scrivere il contenuto del file, adatto a buffer diretti e
+     * mappati in memoria.<br>
+     * È compito dell'utilizzatore chiamare il metodo {@link #close()} al termine della scrittura.
+     * @return il canale wrappato in un {@link Optional}, vuoto se il server ha rifiutato il caricamento
+     * @see #close()
+     */
+    public Optional<WritableByteChannel> getChannel() {
+        return Optional.ofNullable(channel);
+    }
+
+    /**
+     * Scrive il contenuto del file tramite la funzione fornita e conclude il caricamento.
+     * @param producer funzione che scrive il contenuto sullo stream
+     * @return l'esito definitivo del caricamento
+     * @throws NullPointerException se {@code producer} è {@code null}
+     * @throws java.util.NoSuchElementException se lo stream è {@code null}
+     */
+    public FTPResponse produce(Consumer<OutputStream> producer) {
+        Objects.requireNonNull(producer);
+        var outputStream = this.getStream().orElseThrow();
+        try {
+            producer.accept(outputStream);
+        } finally {
+            this.close();
+        }
+        return outcome;
+    }
+
+    /**
+     * Chiude la connessione dati e conclude la transazione con il server.<br>
+     * Invocazioni successive alla prima restituiscono lo stesso esito.
+     * @return l'esito definitivo del caricamento, questa stessa risposta se il server ha rifiutato il caricamento
+     */
+    public FTPResponse close() {
+        if (outcome != null) return outcome;
+        if (channel == null) return outcome = this;
+        try {
+            channel.close();
+        } catch (IOException ioe) {
+            var failure = new FTPResponse();
+            failure.asError(FTPReplyCode.ACTION_ABORTED.getCode(), ioe.getMessage(), ioe);
+            serverCompleteTransactionCallback.get();
+            return outcome = failure;
+        }
+        return outcome = serverCompleteTransactionCallback.get();
+    }
+
+    /**
+     * Inizializza la risposta con lo stato {@link Status#SUCCESS} e il canale fornito.
+     * @param replyCode codice di risposta preliminare dal server
+     * @param message messaggio testuale di risposta dal server
+     * @param channel canale della connessione dati
+     */
+    public void asSuccess(int replyCode, String message, WritableByteChannel channel) {
+        super.asSuccess(replyCode, message);
+        this.channel = channel;
+        this.stream = Channels.newOutputStream(channel);
+    }
+
+    /**
+     * Inizializza la risposta con lo stato {@link Status#SUCCESS} e il canale fornito.<br>
+     * Il messaggio viene calcolato solamente alla prima lettura tramite {@link #getMessage()}.
+     * @param replyCode codice di risposta preliminare dal server
+     * @param message funzione che fornisce il messaggio testuale di risposta dal server
+     * @param channel canale della connessione dati
+     */
+    public void asSuccess(int replyCode, Supplier<String> message, WritableByteChannel channel) {
+        super.asSuccess(replyCode, message);
+        this.channel = channel;
+        this.stream = Channels.newOutputStream(channel);
+    }
+
+}
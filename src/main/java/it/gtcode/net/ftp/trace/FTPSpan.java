@@ -0,0 +1,54 @@
+package it.gtcode.net.ftp.trace;
+
+/**
+ * Intervallo di tempo tracciato da un {@link FTPTracer}, relativo a un'operazione di una sessione, a un comando del
+ * canale di controllo o alla fase di trasferimento dati.<br>
+ * Corrisponde a uno {@code Span} di OpenTelemetry: gli attributi seguono le convenzioni semantiche dove presenti
+ * (ad esempio {@value FTPTracer#SERVER_ADDRESS}) e la chiusura tramite {@link #end()} ne fissa la durata.
+ * @since 2.1
+ * @see FTPTracer
+ * @author Giorgio Testa
+ */
+public interface FTPSpan {
+
+    /** Intervallo che non registra nulla. */
+    FTPSpan NOOP = new FTPSpan() {
+        @Override
+        public void setAttribute(String key, String value) { }
+
+        @Override
+        public void setAttribute(String key, long value) { }
+
+        @Override
+        public void recordException(Throwable exception) { }
+
+        @Override
+        public void end() { }
+    };
+
+    /**
+     * Imposta un attributo testuale.
+     * @param key nome dell'attributo
+     * @param value valore dell'attributo
+     */
+    void setAttribute(String key, String value);
+
+    /**
+     * Imposta un attributo numerico.
+     * @param key nome dell'attributo
+     * @param value valore dell'attributo
+     */
+    void setAttribute(String key, long value);
+
+    /**
+     * Registra l'errore fornito e segna l'intervallo come fallito.
+     * @param exception errore riscontrato
+     */
+    void recordException(Throwable exception);
+
+    /**
+     * Conclude l'intervallo.
+     */
+    void end();
+
+}
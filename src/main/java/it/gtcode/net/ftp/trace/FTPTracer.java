@@ -0,0 +1,45 @@
+package it.gtcode.net.ftp.trace;
+
+/**
+ * Punto di estensione per il tracciamento delle sessioni FTP.<br>
+ * Per ogni operazione di una sessione viene aperto un intervallo radice ({@code FTP download},
+ * {@code FTP upload}, ...) con un intervallo figlio per ogni comando inviato sul canale di controllo
+ * ({@code FTP CWD}, {@code FTP PASV}, {@code FTP RETR}, ...) e uno per la fase di trasferimento dati
+ * ({@code FTP data}), compresa tra la risposta preliminare del server e quella conclusiva. Anche la creazione della
+ * sessione viene tracciata ({@code FTP connect}), comprendendo login e posizionamento nella directory iniziale.<br>
+ * L'interfaccia ricalca il {@code Tracer} di OpenTelemetry, al quale può essere adattata creando lo span tramite
+ * {@code spanBuilder(name).setParent(...)}; la password e gli argomenti dei comandi non vengono mai registrati.<br>
+ * L'implementazione {@link #NOOP} viene riconosciuta dai trasporti, che in tal caso non installano alcun
+ * tracciamento.
+ * @since 2.1
+ * @see FTPSpan
+ * @author Giorgio Testa
+ */
+@FunctionalInterface
+public interface FTPTracer {
+
+    /** Tracciamento disabilitato. */
+    FTPTracer NOOP = (name, parent) -> FTPSpan.NOOP;
+
+    /** Indirizzo del server, secondo le convenzioni semantiche di OpenTelemetry. */
+    String SERVER_ADDRESS = "server.address";
+    /** Porta del server, secondo le convenzioni semantiche di OpenTelemetry. */
+    String SERVER_PORT = "server.port";
+    /** Nome del comando inviato sul canale di controllo. */
+    String COMMAND = "ftp.command";
+    /** Codice dell'ultima risposta ricevuta dal server. */
+    String REPLY_CODE = "ftp.reply_code";
+    /** Percorso della risorsa oggetto dell'operazione. */
+    String FILE = "ftp.file";
+    /** Byte trasferiti dall'operazione. */
+    String BYTES = "ftp.bytes";
+
+    /**
+     * Apre un nuovo intervallo.
+     * @param name nome dell'intervallo
+     * @param parent intervallo padre, {@code null} per un intervallo radice
+     * @return l'intervallo aperto
+     */
+    FTPSpan startSpan(String name, FTPSpan parent);
+
+}
@@ -0,0 +1,24 @@
+package it.gtcode.net.ftp.trace;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Comando inviato o risposta ricevuta sul canale di controllo, registrato da un {@link FTPWireLog}.
+ * @param sequence numero progressivo della voce all'interno del registro
+ * @param timestamp istante di registrazione
+ * @param command {@code true} se si tratta di un comando inviato, {@code false} se di una risposta ricevuta
+ * @param text testo del comando o della risposta, con le credenziali mascherate
+ * @param duration per le risposte, il tempo trascorso dall'invio dell'ultimo comando; {@code null} per i comandi
+ * @since 2.1
+ * @see FTPWireLog
+ * @author Giorgio Testa
+ */
+public record FTPWireEntry(long sequence, Instant timestamp, boolean command, String text, Duration duration) {
+
+    @Override
+    public String toString() {
+        return timestamp + (command ? " > " : " < ") + text + (duration != null ? " (" + duration.toMillis() + " ms)" : "");
+    }
+
+}
@@ -0,0 +1,129 @@
+package it.gtcode.net.ftp.trace;
+
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.apache.commons.net.ProtocolCommandListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Registro circolare di dimensione fissa degli ultimi comandi e risposte scambiati sul canale di controllo, pensato
+ * per la diagnostica a posteriori dei fallimenti.<br>
+ * A differenza del {@link org.apache.commons.net.PrintCommandListener} non produce output: ogni voce viene scritta
+ * in una posizione dell'array circolare riservata tramite un contatore atomico, senza lock, e le voci più vecchie
+ * vengono sovrascritte. La lettura tramite {@link #getEntries(int)} può avvenire da qualsiasi thread e scarta le
+ * voci sovrascritte durante la copia.<br>
+ * Gli argomenti dei comandi {@code PASS} e {@code ACCT} vengono mascherati.
+ * @since 2.1
+ * @see FTPWireEntry
+ * @author Giorgio Testa
+ */
+public class FTPWireLog implements ProtocolCommandListener {
+
+    /** Numero di voci conservate di default. */
+    public static final int DEFAULT_CAPACITY = 32;
+    private static final String MASK = "****";
+
+    private final AtomicReferenceArray<FTPWireEntry> entries;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile long lastCommand;
+
+    /**
+     * Costruttore. Conserva le ultime {@value #DEFAULT_CAPACITY} voci.
+     */
+    public FTPWireLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Costruttore.
+     * @param capacity numero di voci conservate
+     * @throws IllegalArgumentException se il numero di voci non è positivo
+     */
+    public FTPWireLog(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("La capacità deve essere positiva");
+        this.entries = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Restituisce il numero di voci conservate.
+     * @return la capacità del registro
+     */
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    /**
+     * Restituisce tutte le voci conservate, dalla più vecchia alla più recente.
+     * @return le voci conservate
+     */
+    public List<FTPWireEntry> getEntries() {
+        return this.getEntries(entries.length());
+    }
+
+    /**
+     * Restituisce le ultime voci registrate, dalla più vecchia alla più recente.
+     * @param count numero massimo di voci da restituire
+     * @return le ultime voci registrate, al massimo {@code count} e al massimo la capacità del registro
+     */
+    public List<FTPWireEntry> getEntries(int count) {
+        long end = sequence.get();
+        long start = Math.max(end - Math.min(count, entries.length()), 0);
+        var snapshot = new ArrayList<FTPWireEntry>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            var entry = entries.get((int) (i % entries.length()));
+            if (entry != null && entry.sequence() == i) snapshot.add(entry);
+        }
+        return List.copyOf(snapshot);
+    }
+
+    @Override
+    public void protocolCommandSent(ProtocolCommandEvent event) {
+        lastCommand = System.nanoTime();
+        this.record(true, this.mask(event.getCommand(), event.getMessage()), null);
+    }
+
+    @Override
+    public void protocolReplyReceived(ProtocolCommandEvent event) {
+        long sent = lastCommand;
+        this.record(false, this.trim(event.getMessage()), sent != 0 ? Duration.ofNanos(System.nanoTime() - sent) : null);
+    }
+
+    /**
+     * Registra una nuova voce, sovrascrivendo la più vecchia se il registro è pieno.
+     * @param command {@code true} se si tratta di un comando inviato
+     * @param text testo della voce
+     * @param duration tempo trascorso dall'ultimo comando, {@code null} se non applicabile
+     */
+    private void record(boolean command, String text, Duration duration) {
+        long position = sequence.getAndIncrement();
+        entries.set((int) (position % entries.length()), new FTPWireEntry(position, Instant.now(), command, text, duration));
+    }
+
+    /**
+     * Maschera gli argomenti dei comandi contenenti credenziali.
+     * @param command nome del comando
+     * @param message comando completo inviato al server
+     * @return il comando da registrare
+     */
+    private String mask(String command, String message) {
+        var name = command != null ? command.toUpperCase(Locale.ROOT) : "";
+        if (name.equals("PASS") || name.equals("ACCT")) return name + " " + MASK;
+        return this.trim(message);
+    }
+
+    /**
+     * Rimuove i terminatori di riga finali.
+     * @param text testo da ripulire, può essere {@code null}
+     * @return il testo senza terminatori finali
+     */
+    private String trim(String text) {
+        return text != null ? text.stripTrailing() : "";
+    }
+
+}
@@ -0,0 +1,206 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.net.*;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPAddressResolverTests {
+
+    public static FakeFtpServer fakeFtpServer;
+    public static ServerSocket serverSocket;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("ftp.example");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() throws Exception {
+        serverSocket = new ServerSocket(2167, 50, InetAddress.getByName("127.0.0.1"));
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2168);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fileSystem.add(new FileEntry("/share/file.txt", "contenuto"));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() throws Exception {
+        fakeFtpServer.stop();
+        serverSocket.close();
+    }
+
+    static InetAddress address(String literal) throws UnknownHostException {
+        return InetAddress.getByName(literal);
+    }
+
+    FTPAddressResolver resolver(FTPAddressResolver.Lookup lookup, AtomicLong clock) {
+        return new FTPAddressResolver(
+                Duration.ofSeconds(30), Duration.ofMillis(100), Duration.ofMinutes(1),
+                lookup, clock::get, Executors.defaultThreadFactory()
+        );
+    }
+
+    @Test
+    void resolve_cached() {
+        try {
+
+            var lookups = new AtomicInteger();
+            var clock = new AtomicLong();
+            var resolver = this.resolver(host -> {
+                lookups.incrementAndGet();
+                return new InetAddress[] { address("127.0.0.1") };
+            }, clock);
+
+            assertThat(resolver.resolve("ftp.example")).containsExactly(address("127.0.0.1"));
+            assertThat(resolver.resolve("ftp.example")).containsExactly(address("127.0.0.1"));
+            assertThat(lookups).hasValue(1);
+
+            clock.addAndGet(Duration.ofSeconds(31).toNanos());
+            resolver.resolve("ftp.example");
+            assertThat(lookups).hasValue(2);
+
+            resolver.invalidate("ftp.example");
+            resolver.resolve("ftp.example");
+            assertThat(lookups).hasValue(3);
+
+            var failing = this.resolver(host -> { throw new UnknownHostException(host); }, clock);
+            assertThatThrownBy(() -> failing.resolve("ftp.example")).isInstanceOf(UnknownHostException.class);
+
+        } catch (Exception e) {
+            fail("resolve_cached", e);
+        }
+    }
+
+    @Test
+    void resolve_interleaved() {
+        try {
+
+            var resolver = this.resolver(host -> new InetAddress[] {
+                    address("::1"), address("::2"), address("127.0.0.1"), address("127.0.0.2")
+            }, new AtomicLong());
+
+            assertThat(resolver.resolve("ftp.example")).containsExactly(
+                    address("::1"), address("127.0.0.1"), address("::2"), address("127.0.0.2")
+            );
+
+        } catch (Exception e) {
+            fail("resolve_interleaved", e);
+        }
+    }
+
+    @Test
+    void connect_demoted() {
+        try {
+
+            var clock = new AtomicLong();
+            var resolver = this.resolver(
+                    host -> new InetAddress[] { address("127.0.0.2"), address("127.0.0.1") },
+                    clock
+            );
+
+            @Cleanup var socket = resolver.connect("ftp.example", 2167, 5000);
+            assertThat(socket.isConnected()).isTrue();
+            assertThat(socket.getInetAddress()).isEqualTo(address("127.0.0.1"));
+            assertThat(resolver.resolve("ftp.example")).containsExactly(address("127.0.0.1"), address("127.0.0.2"));
+
+            clock.addAndGet(Duration.ofMinutes(2).toNanos());
+            resolver.invalidate("ftp.example");
+            assertThat(resolver.resolve("ftp.example")).containsExactly(address("127.0.0.2"), address("127.0.0.1"));
+
+        } catch (Exception e) {
+            fail("connect_demoted", e);
+        }
+    }
+
+    @Test
+    void connect_unresponsive() {
+        try {
+
+            var resolver = this.resolver(
+                    host -> new InetAddress[] { address("192.0.2.1"), address("127.0.0.1") },
+                    new AtomicLong()
+            );
+
+            long start = System.nanoTime();
+            @Cleanup var socket = resolver.connect("ftp.example", 2167, 10000);
+            assertThat(socket.getInetAddress()).isEqualTo(address("127.0.0.1"));
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+
+        } catch (Exception e) {
+            fail("connect_unresponsive", e);
+        }
+    }
+
+    @Test
+    void connect_unreachable() {
+        try {
+
+            var resolver = this.resolver(
+                    host -> new InetAddress[] { address("127.0.0.2"), address("127.0.0.3") },
+                    new AtomicLong()
+            );
+
+            assertThatThrownBy(() -> resolver.connect("ftp.example", 2167, 5000))
+                    .isInstanceOf(ConnectException.class)
+                    .satisfies(e -> assertThat(e.getSuppressed()).hasSize(2));
+
+        } catch (Exception e) {
+            fail("connect_unreachable", e);
+        }
+    }
+
+    @Test
+    void openSession() {
+        try {
+
+            var resolver = this.resolver(
+                    host -> new InetAddress[] { address("192.0.2.1"), address("127.0.0.1") },
+                    new AtomicLong()
+            );
+            var options = new FTPOptionsApache();
+            options.setResolver(resolver);
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2168), options);
+
+            @Cleanup var session = factory.openSession();
+            assertThat(session.isOpen()).isTrue();
+            assertThat(session.getRoot()).isEqualTo(Path.of("/share"));
+            assertThat(session.stat(Path.of("file.txt"))).returns(Status.SUCCESS, FTPResponse::getStatus);
+
+            @Cleanup var second = factory.openSession();
+            assertThat(second.stat(Path.of("file.txt"))).returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(resolver.resolve("ftp.example").get(0)).isEqualTo(address("127.0.0.1"));
+
+        } catch (Exception e) {
+            fail("openSession", e);
+        }
+    }
+
+}
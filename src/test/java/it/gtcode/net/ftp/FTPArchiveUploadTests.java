@@ -0,0 +1,198 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPArchiveResponse;
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPArchiveUploadTests {
+
+    public static FakeFtpServer fakeFtpServer;
+
+    @TempDir
+    Path directory;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    List<Path> createFiles() throws Exception {
+        var files = new ArrayList<Path>();
+        for (int i = 0; i < 5; i++)
+            files.add(Files.writeString(directory.resolve("small-" + i + ".txt"), "small-content-" + i + "-1234567890"));
+        files.add(Files.writeString(directory.resolve("large.txt"), "large-content-".repeat(10)));
+        return files;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2153);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fakeFtpServer.setFileSystem(fileSystem);
+        RestartableRetrCommandHandler.install(fakeFtpServer);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    @Test
+    void FTPArchiveUpload_fail() {
+        try {
+
+            assertThrows(IllegalArgumentException.class, () -> new FTPArchiveUpload(0, 1024));
+            assertThrows(IllegalArgumentException.class, () -> new FTPArchiveUpload(1024, 0));
+            assertThrows(IllegalArgumentException.class, () -> new FTPArchiveUpload(2048, 1024));
+
+        } catch (Exception e) {
+            fail("FTPArchiveUpload_fail", e);
+        }
+    }
+
+    @Test
+    void upload() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2153));
+            var files = this.createFiles();
+
+            FTPArchiveResponse response = new FTPArchiveUpload(32, 60)
+                    .upload(session, files, Path.of("coalesced"), "batch");
+
+            assertThat(response)
+                    .returns(null, FTPArchiveResponse::getException)
+                    .returns(3, FTPArchiveResponse::getArchives)
+                    .returns(5, FTPArchiveResponse::getArchivedFiles)
+                    .returns(1, FTPArchiveResponse::getDirectFiles)
+                    .returns(Status.SUCCESS, FTPArchiveResponse::getStatus);
+
+            var fileSystem = fakeFtpServer.getFileSystem();
+            assertThat(fileSystem.exists("/share/coalesced/batch.manifest")).isTrue();
+            assertThat(fileSystem.exists("/share/coalesced/large.txt")).isTrue();
+            assertThat(fileSystem.exists("/share/coalesced/small-0.txt")).isFalse();
+
+            var archive = (FileEntry) fileSystem.getEntry("/share/coalesced/batch-00001.zip");
+            var content = new ByteArrayOutputStream();
+            archive.createInputStream().transferTo(content);
+            try (var zip = new ZipInputStream(new ByteArrayInputStream(content.toByteArray()))) {
+                assertThat(zip.getNextEntry().getName()).isEqualTo("small-0.txt");
+                assertThat(zip).hasBinaryContent(Files.readAllBytes(files.get(0)));
+            }
+
+        } catch (Exception e) {
+            fail("upload", e);
+        }
+    }
+
+    @Test
+    void upload_duplicated() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2153));
+            var file = Files.writeString(directory.resolve("duplicated.txt"), "duplicated");
+
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () -> new FTPArchiveUpload().upload(session, List.of(file, file), Path.of("duplicated"), "batch")
+            );
+
+        } catch (Exception e) {
+            fail("upload_duplicated", e);
+        }
+    }
+
+    @Test
+    void FTPArchiveManifest_escape() {
+        try {
+
+            var manifest = new FTPArchiveManifest();
+            manifest.add(new FTPArchiveManifest.Entry("tab\tnew\nline\\.txt", "batch\r-00001.zip", 0, 10, 5));
+            manifest.add(new FTPArchiveManifest.Entry("plain.txt", null, 0, 0, 7));
+
+            var output = new ByteArrayOutputStream();
+            manifest.write(output);
+            assertThat(output.toString(StandardCharsets.UTF_8).lines()).hasSize(3);
+
+            var read = FTPArchiveManifest.read(new ByteArrayInputStream(output.toByteArray()));
+            assertThat(read.getEntries()).containsExactlyElementsOf(manifest.getEntries());
+
+            var unescaped = "# gtcode-ftp-manifest 1\nbatch-00001.zip\t0\t10\t5\tback\\slash.txt\n";
+            assertThrows(IOException.class,
+                    () -> FTPArchiveManifest.read(new ByteArrayInputStream(unescaped.getBytes(StandardCharsets.UTF_8))));
+
+        } catch (Exception e) {
+            fail("FTPArchiveManifest_escape", e);
+        }
+    }
+
+    @Test
+    void read() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2153));
+            var files = this.createFiles();
+            new FTPArchiveUpload(32, 60).upload(session, files, Path.of("toRead"), "batch");
+
+            var reader = FTPArchiveReader.open(session, Path.of("toRead/batch.manifest"));
+            assertThat(reader.getManifest().getEntries()).hasSize(6);
+
+            for (var file : files) {
+                FTPStreamResponse response = reader.read(file.getFileName().toString());
+                assertThat(response)
+                        .returns(null, FTPStreamResponse::getException)
+                        .returns(Status.SUCCESS, FTPStreamResponse::getStatus);
+                response.consume(stream -> {
+                    try {
+                        assertThat(stream).hasBinaryContent(Files.readAllBytes(file));
+                    } catch (Exception e) {
+                        fail("read", e);
+                    }
+                });
+            }
+
+            assertThat(reader.read("unknown.txt"))
+                    .returns(null, FTPStreamResponse::getException)
+                    .returns(FTPReplyCode.FILE_UNAVAILABLE, FTPStreamResponse::getReplyCode)
+                    .returns(Status.ERROR, FTPStreamResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("read", e);
+        }
+    }
+
+}
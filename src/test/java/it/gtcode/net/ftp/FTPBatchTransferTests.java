@@ -0,0 +1,197 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockftpserver.core.command.Command;
+import org.mockftpserver.core.command.CommandNames;
+import org.mockftpserver.core.session.Session;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.command.StorCommandHandler;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPBatchTransferTests {
+
+    public static FakeFtpServer fakeFtpServer;
+    public static OverloadedStorCommandHandler storCommandHandler;
+
+    @TempDir
+    Path tempDir;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2156);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fileSystem.add(new DirectoryEntry("/share/upload"));
+        for (int i = 0; i < 6; i++)
+            fileSystem.add(new FileEntry("/share/download/file" + i + ".txt", "contenuto " + i));
+        fakeFtpServer.setFileSystem(fileSystem);
+        storCommandHandler = new OverloadedStorCommandHandler();
+        fakeFtpServer.setCommandHandler(CommandNames.STOR, storCommandHandler);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    List<Path> createFiles(int count) throws Exception {
+        var files = new ArrayList<Path>();
+        for (int i = 0; i < count; i++)
+            files.add(Files.writeString(tempDir.resolve("local" + i + ".txt"), "contenuto locale " + i));
+        return files;
+    }
+
+    @Test
+    void upload() {
+        try {
+
+            var limiter = new FTPConcurrencyLimiter();
+            var batch = new FTPBatchTransfer(new FTPSessionFactoryApache(this.getConfiguration(2156)), limiter);
+            var files = this.createFiles(6);
+
+            var responses = batch.upload(files, Path.of("upload"));
+            assertThat(responses).containsOnlyKeys(files);
+            assertThat(responses.values()).allMatch(response -> response.getStatus() == Status.SUCCESS);
+            for (var file : files)
+                assertThat(fakeFtpServer.getFileSystem().exists("/share/upload/" + file.getFileName())).isTrue();
+            assertThat(limiter.getInFlight()).isZero();
+            assertThat(limiter.getOverloads()).isZero();
+            assertThat(limiter.getLimit()).isGreaterThanOrEqualTo(FTPConcurrencyLimiter.DEFAULT_INITIAL_LIMIT);
+
+        } catch (Exception e) {
+            fail("upload", e);
+        }
+    }
+
+    @Test
+    void upload_overloaded() {
+        try {
+
+            var limiter = new FTPConcurrencyLimiter(4, 1, 4);
+            var batch = new FTPBatchTransfer(new FTPSessionFactoryApache(this.getConfiguration(2156)), limiter);
+            var files = this.createFiles(3);
+
+            storCommandHandler.overload(1);
+            var responses = batch.upload(files, Path.of("upload"));
+            assertThat(responses.values()).allMatch(response -> response.getStatus() == Status.SUCCESS);
+            assertThat(limiter.getOverloads()).isEqualTo(1);
+            assertThat(limiter.getLimit()).isLessThan(4);
+            assertThat(limiter.getInFlight()).isZero();
+
+        } catch (Exception e) {
+            fail("upload_overloaded", e);
+        }
+    }
+
+    @Test
+    void download() {
+        try {
+
+            var limiter = new FTPConcurrencyLimiter();
+            var batch = new FTPBatchTransfer(new FTPSessionFactoryApache(this.getConfiguration(2156)), limiter);
+            var files = new ArrayList<Path>();
+            for (int i = 0; i < 6; i++) files.add(Path.of("download", "file" + i + ".txt"));
+            files.add(Path.of("download", "missing.txt"));
+
+            var responses = batch.download(files, tempDir.resolve("downloaded"));
+            for (int i = 0; i < 6; i++) {
+                assertThat(responses.get(files.get(i))).returns(Status.SUCCESS, FTPResponse::getStatus);
+                assertThat(tempDir.resolve("downloaded").resolve("file" + i + ".txt")).hasContent("contenuto " + i);
+            }
+            assertThat(responses.get(files.get(6))).returns(Status.ERROR, FTPResponse::getStatus);
+            assertThat(limiter.getInFlight()).isZero();
+            assertThat(limiter.getOverloads()).isZero();
+
+        } catch (Exception e) {
+            fail("download", e);
+        }
+    }
+
+    @Test
+    void openSession_limited() {
+        try {
+
+            var limiter = new FTPConcurrencyLimiter(2, 1, 2);
+            var factory = new FTPSessionFactoryLimited(new FTPSessionFactoryApache(this.getConfiguration(2156)), limiter);
+            assertThat(factory.getConfiguration()).isEqualTo(this.getConfiguration(2156));
+
+            @Cleanup var first = factory.openSession();
+            assertThat(first.isOpen()).isTrue();
+            assertThat(limiter.getInFlight()).isEqualTo(1);
+
+            var second = factory.openSession();
+            assertThat(limiter.getInFlight()).isEqualTo(2);
+            second.close();
+            second.close();
+            assertThat(limiter.getInFlight()).isEqualTo(1);
+
+            storCommandHandler.overload(1);
+            var local = this.createFiles(1).get(0);
+            assertThat(first.upload(local, Path.of("upload")))
+                    .returns(Status.ERROR, FTPResponse::getStatus)
+                    .returns(true, FTPConcurrencyLimiter::isOverloaded);
+            assertThat(limiter.getOverloads()).isEqualTo(1);
+            assertThat(limiter.getLimit()).isEqualTo(1);
+            assertThat(limiter.getInFlight()).isZero();
+
+        } catch (Exception e) {
+            fail("openSession_limited", e);
+        }
+    }
+
+    /**
+     * Handler del comando STOR che risponde {@code 421} al numero di richieste indicato prima di servirle
+     * normalmente.
+     */
+    static class OverloadedStorCommandHandler extends StorCommandHandler {
+
+        private final AtomicInteger overloads = new AtomicInteger();
+
+        void overload(int times) {
+            overloads.set(times);
+        }
+
+        @Override
+        protected void handle(Command command, Session session) {
+            if (overloads.getAndUpdate(value -> Math.max(value - 1, 0)) > 0) {
+                session.sendReply(421, "Too many users");
+                session.close();
+                return;
+            }
+            super.handle(command, session);
+        }
+
+    }
+
+}
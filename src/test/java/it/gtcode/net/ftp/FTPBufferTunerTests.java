@@ -0,0 +1,218 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPBufferTunerTests {
+
+    public static final byte[] CONTENT = new byte[(int) FTPBufferTuner.MIN_SAMPLE_SIZE * 4];
+
+    public static FakeFtpServer fakeFtpServer;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    FTPOptionsApache getOptions(FTPBufferTuner tuner) {
+        var options = new FTPOptionsApache();
+        options.setBufferTuner(tuner);
+        return options;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2155);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        var file = new FileEntry("/share/toDownload.bin");
+        file.setContents(CONTENT);
+        fileSystem.add(file);
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    @Test
+    void bufferSize() {
+        try {
+
+            assertThat(FTPBufferTuner.bufferSize(0, Duration.ofMillis(50))).isEqualTo(FTPBufferTuner.MIN_BUFFER_SIZE);
+            assertThat(FTPBufferTuner.bufferSize(100_000_000, Duration.ofMillis(50))).isEqualTo(10_000_000);
+            assertThat(FTPBufferTuner.bufferSize(1_000_000_000, Duration.ofMillis(50))).isEqualTo(FTPBufferTuner.MAX_BUFFER_SIZE);
+
+        } catch (Exception e) {
+            fail("bufferSize", e);
+        }
+    }
+
+    @Test
+    void tune() {
+        try {
+
+            var tuner = new FTPBufferTuner();
+            var configuration = this.getConfiguration(2155);
+            assertThat(tuner.getTuning(configuration)).isEmpty();
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(configuration, this.getOptions(tuner));
+
+            var tuning = tuner.getTuning(configuration).orElseThrow();
+            assertThat(tuning.rtt()).isPositive();
+            assertThat(tuning.bytesPerSecond()).isZero();
+            assertThat(tuning.bufferSize()).isEqualTo(FTPBufferTuner.MIN_BUFFER_SIZE);
+            assertThat(session.getFtpClient())
+                    .returns(tuning.bufferSize(), client -> client.getSendDataSocketBufferSize())
+                    .returns(tuning.bufferSize(), client -> client.getReceiveDataSocketBufferSize())
+                    .returns(tuning.bufferSize(), client -> client.getBufferSize());
+
+        } catch (Exception e) {
+            fail("tune", e);
+        }
+    }
+
+    @Test
+    void tune_transfers() {
+        try {
+
+            var tuner = new FTPBufferTuner();
+            var configuration = this.getConfiguration(2155);
+            @Cleanup var session = new FTPSession_ApacheFTPClient(configuration, this.getOptions(tuner));
+
+            assertThat(session.upload(Path.of("small.bin"), new ByteArrayInputStream(new byte[16])))
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(tuner.getTuning(configuration).orElseThrow().bytesPerSecond()).isZero();
+
+            assertThat(session.upload(Path.of("toUpload.bin"), new ByteArrayInputStream(CONTENT)))
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+            long uploaded = tuner.getTuning(configuration).orElseThrow().bytesPerSecond();
+            assertThat(uploaded).isPositive();
+
+            session.download(Path.of("toDownload.bin")).consume(stream -> {
+                try {
+                    assertThat(stream.readAllBytes()).hasSize(CONTENT.length);
+                } catch (Exception e) {
+                    fail("tune_transfers", e);
+                }
+            });
+            assertThat(tuner.getTuning(configuration).orElseThrow().bytesPerSecond())
+                    .isGreaterThanOrEqualTo((long) (uploaded * FTPBufferTuner.THROUGHPUT_DECAY));
+
+        } catch (Exception e) {
+            fail("tune_transfers", e);
+        }
+    }
+
+    @Test
+    void tune_channelUploads() {
+        try {
+
+            var configuration = this.getConfiguration(2155);
+
+            var tuner = new FTPBufferTuner();
+            try (var session = new FTPSession_ApacheFTPClient(configuration, this.getOptions(tuner))) {
+                assertThat(session.upload(Path.of("buffer.bin"), ByteBuffer.wrap(CONTENT)))
+                        .returns(Status.SUCCESS, FTPResponse::getStatus);
+            }
+            assertThat(tuner.getTuning(configuration).orElseThrow().bytesPerSecond()).isPositive();
+
+            var mappedTuner = new FTPBufferTuner();
+            var file = Files.createTempFile("mapped", ".bin");
+            try (var session = new FTPSession_ApacheFTPClient(configuration, this.getOptions(mappedTuner))) {
+                Files.write(file, CONTENT);
+                assertThat(session.uploadMapped(file, Path.of("mapped")))
+                        .returns(Status.SUCCESS, FTPResponse::getStatus);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+            assertThat(mappedTuner.getTuning(configuration).orElseThrow().bytesPerSecond()).isPositive();
+
+            var streamTuner = new FTPBufferTuner();
+            try (var session = new FTPSession_ApacheFTPClient(configuration, this.getOptions(streamTuner))) {
+                var upload = session.openUploadStream(Path.of("stream.bin"), Path.of("stream"));
+                var channel = upload.getChannel().orElseThrow();
+                var buffer = ByteBuffer.wrap(CONTENT);
+                while (buffer.hasRemaining()) channel.write(buffer);
+                assertThat(upload.close()).returns(Status.SUCCESS, FTPResponse::getStatus);
+            }
+            assertThat(streamTuner.getTuning(configuration).orElseThrow().bytesPerSecond()).isPositive();
+
+        } catch (Exception e) {
+            fail("tune_channelUploads", e);
+        }
+    }
+
+    @Test
+    void tune_throughputDecay() {
+        try {
+
+            var tuner = new FTPBufferTuner();
+            var configuration = this.getConfiguration(2155);
+            @Cleanup var session = new FTPSession_ApacheFTPClient(configuration, this.getOptions(tuner));
+            long bytes = FTPBufferTuner.MIN_SAMPLE_SIZE;
+
+            tuner.record(configuration, bytes, 1_000_000_000L);
+            assertThat(tuner.getTuning(configuration).orElseThrow().bytesPerSecond()).isEqualTo(bytes);
+
+            tuner.record(configuration, bytes, 10_000_000_000L);
+            assertThat(tuner.getTuning(configuration).orElseThrow().bytesPerSecond())
+                    .isEqualTo((long) (bytes * FTPBufferTuner.THROUGHPUT_DECAY));
+
+            for (int i = 0; i < 50; i++) tuner.record(configuration, bytes, 10_000_000_000L);
+            assertThat(tuner.getTuning(configuration).orElseThrow().bytesPerSecond()).isEqualTo(bytes / 10);
+
+        } catch (Exception e) {
+            fail("tune_throughputDecay", e);
+        }
+    }
+
+    @Test
+    void tune_sharedFactory() {
+        try {
+
+            var tuner = new FTPBufferTuner();
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2155), this.getOptions(tuner));
+
+            @Cleanup var first = factory.openSession();
+            Duration rtt = tuner.getTuning(factory.getConfiguration()).orElseThrow().rtt();
+            @Cleanup var second = factory.openSession();
+            assertThat(tuner.getTuning(factory.getConfiguration()).orElseThrow().rtt()).isLessThanOrEqualTo(rtt);
+
+            var other = this.getConfiguration(2155);
+            other.setServer("127.0.0.1");
+            assertThat(tuner.getTuning(other)).isEmpty();
+
+        } catch (Exception e) {
+            fail("tune_sharedFactory", e);
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPByteBufferUploadTests {
+
+    public static final byte[] CONTENT = new byte[256 * 1024];
+
+    public static FakeFtpServer fakeFtpServer;
+
+    @TempDir
+    Path tempDir;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        new Random(42).nextBytes(CONTENT);
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2157);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    byte[] stored(String path) throws Exception {
+        return ((FileEntry) fakeFtpServer.getFileSystem().getEntry(path)).createInputStream().readAllBytes();
+    }
+
+    @Test
+    void upload_heapBuffer() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2157));
+
+            var data = ByteBuffer.wrap(CONTENT, 1024, CONTENT.length - 2048);
+            FTPResponse response = session.upload(Path.of("heap.bin"), data, Path.of("buffers"));
+
+            assertThat(response)
+                    .returns(null, FTPResponse::getException)
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(data.position()).isEqualTo(1024);
+            assertThat(this.stored("/share/buffers/heap.bin")).isEqualTo(Arrays.copyOfRange(CONTENT, 1024, CONTENT.length - 1024));
+
+        } catch (Exception e) {
+            fail("upload_heapBuffer", e);
+        }
+    }
+
+    @Test
+    void upload_directBuffer() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2157));
+            assertThat(session.getFtpClient()).isInstanceOf(FTPClientChannels.class);
+
+            var data = ByteBuffer.allocateDirect(CONTENT.length).put(CONTENT).flip();
+            FTPResponse response = session.upload(Path.of("direct.bin"), data, Path.of("buffers"));
+
+            assertThat(response)
+                    .returns(null, FTPResponse::getException)
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(data.remaining()).isEqualTo(CONTENT.length);
+            assertThat(this.stored("/share/buffers/direct.bin")).isEqualTo(CONTENT);
+
+        } catch (Exception e) {
+            fail("upload_directBuffer", e);
+        }
+    }
+
+    @Test
+    void upload_directBufferStream() {
+        try {
+
+            var configuration = this.getConfiguration(2157);
+            var ftpClient = new FTPClient();
+            ftpClient.connect(configuration.getServer(), configuration.getPort());
+            ftpClient.login(configuration.getUsername(), configuration.getPassword());
+            ftpClient.enterLocalPassiveMode();
+            ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
+            @Cleanup var session = new FTPSession_ApacheFTPClient(configuration, ftpClient);
+
+            var data = ByteBuffer.allocateDirect(CONTENT.length).put(CONTENT).flip();
+            FTPResponse response = session.upload(Path.of("stream.bin"), data, Path.of("buffers"));
+
+            assertThat(response).returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(this.stored("/share/buffers/stream.bin")).isEqualTo(CONTENT);
+
+        } catch (Exception e) {
+            fail("upload_directBufferStream", e);
+        }
+    }
+
+    @Test
+    void upload_defaultByteBuffer() {
+        try {
+
+            var limiter = new FTPConcurrencyLimiter();
+            @Cleanup var session = new FTPSessionFactoryLimited(
+                    new FTPSessionFactoryApache(this.getConfiguration(2157)), limiter
+            ).openSession();
+
+            var data = ByteBuffer.wrap("contenuto".getBytes(StandardCharsets.UTF_8));
+            assertThat(session.upload(Path.of("limited.txt"), data, Path.of("buffers")))
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(this.stored("/share/buffers/limited.txt")).isEqualTo("contenuto".getBytes(StandardCharsets.UTF_8));
+
+        } catch (Exception e) {
+            fail("upload_defaultByteBuffer", e);
+        }
+    }
+
+    @Test
+    void uploadMapped() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2157));
+            var file = Files.write(tempDir.resolve("mapped.bin"), CONTENT);
+
+            FTPResponse response = session.uploadMapped(file, Path.of("mapped"));
+
+            assertThat(response)
+                    .returns(null, FTPResponse::getException)
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(this.stored("/share/mapped/mapped.bin")).isEqualTo(CONTENT);
+
+            assertThatThrownBy(() -> session.uploadMapped(tempDir.resolve("missing.bin"), Path.of("mapped")))
+                    .isInstanceOf(FileNotFoundException.class);
+
+        } catch (Exception e) {
+            fail("uploadMapped", e);
+        }
+    }
+
+}
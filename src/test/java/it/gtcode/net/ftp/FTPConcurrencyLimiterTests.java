@@ -0,0 +1,207 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPResponse;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPConcurrencyLimiterTests {
+
+    @Test
+    void FTPConcurrencyLimiter_fail() {
+        assertThatThrownBy(() -> new FTPConcurrencyLimiter(1, 0, 4)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FTPConcurrencyLimiter(2, 2, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FTPConcurrencyLimiter(5, 1, 4)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void acquire_limit() {
+        try {
+
+            var limiter = new FTPConcurrencyLimiter(2, 1, 4);
+            assertThat(limiter.tryAcquire(Duration.ZERO)).isTrue();
+            assertThat(limiter.tryAcquire(Duration.ZERO)).isTrue();
+            assertThat(limiter.tryAcquire(Duration.ofMillis(50))).isFalse();
+            assertThat(limiter.getInFlight()).isEqualTo(2);
+
+            limiter.releaseFailed();
+            assertThat(limiter.tryAcquire(Duration.ZERO)).isTrue();
+            assertThat(limiter.getLimit()).isEqualTo(2);
+
+        } catch (Exception e) {
+            fail("acquire_limit", e);
+        }
+    }
+
+    @Test
+    void release_additiveIncrease() {
+        try {
+
+            var clock = new AtomicLong();
+            var limiter = new FTPConcurrencyLimiter(1, 1, 3, clock::get);
+
+            limiter.acquire();
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            limiter.release(1000);
+            assertThat(limiter.getLimit()).isEqualTo(2);
+            assertThat(limiter.getThroughput()).isEqualTo(1000);
+
+            limiter.acquire();
+            limiter.acquire();
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            limiter.release(1500);
+            limiter.release(1500);
+            assertThat(limiter.getLimit()).isEqualTo(3);
+            assertThat(limiter.getThroughput()).isEqualTo(3000);
+
+            for (int i = 0; i < 3; i++) limiter.acquire();
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            for (int i = 0; i < 3; i++) limiter.release(5000);
+            assertThat(limiter.getLimit()).isEqualTo(3);
+            assertThat(limiter.getInFlight()).isZero();
+
+        } catch (Exception e) {
+            fail("release_additiveIncrease", e);
+        }
+    }
+
+    @Test
+    void release_plateau() {
+        try {
+
+            var clock = new AtomicLong();
+            var limiter = new FTPConcurrencyLimiter(2, 1, 8, clock::get);
+
+            limiter.acquire();
+            limiter.acquire();
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            limiter.release(1000);
+            limiter.release(1000);
+            assertThat(limiter.getLimit()).isEqualTo(3);
+
+            for (int i = 0; i < 3; i++) limiter.acquire();
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            for (int i = 0; i < 3; i++) limiter.release(600);
+            assertThat(limiter.getLimit()).isEqualTo(2);
+
+            limiter.acquire();
+            limiter.acquire();
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            limiter.release(0);
+            limiter.release(0);
+            assertThat(limiter.getLimit()).isEqualTo(2);
+
+        } catch (Exception e) {
+            fail("release_plateau", e);
+        }
+    }
+
+    @Test
+    void release_saturation() {
+        try {
+
+            var clock = new AtomicLong();
+            var limiter = new FTPConcurrencyLimiter(2, 1, 32, clock::get);
+            int saturation = 8;
+
+            int lowest = Integer.MAX_VALUE;
+            for (int window = 0; window < 60; window++) {
+                int limit = limiter.getLimit();
+                if (window >= 20) lowest = Math.min(lowest, limit);
+                for (int i = 0; i < limit; i++) limiter.acquire();
+                clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+                for (int i = 0; i < limit; i++) limiter.release(Math.min(limit, saturation) * 1000L / limit);
+            }
+
+            assertThat(lowest).isGreaterThanOrEqualTo(saturation - 1);
+            assertThat(limiter.getLimit()).isBetween(saturation - 1, saturation + 1);
+            assertThat(limiter.getInFlight()).isZero();
+
+        } catch (Exception e) {
+            fail("release_saturation", e);
+        }
+    }
+
+    @Test
+    void releaseOverloaded() {
+        try {
+
+            var limiter = new FTPConcurrencyLimiter(8, 1, 8);
+            limiter.acquire();
+            limiter.releaseOverloaded();
+            assertThat(limiter.getLimit()).isEqualTo(4);
+            assertThat(limiter.getOverloads()).isEqualTo(1);
+            assertThat(limiter.getThroughput()).isZero();
+
+            var response = new FTPResponse();
+            response.asError(FTPReplyCode.SERVICE_NOT_AVAILABLE.getCode(), "Too many users");
+            limiter.acquire();
+            limiter.release(response, 1000);
+            assertThat(limiter.getLimit()).isEqualTo(2);
+
+            for (int i = 0; i < 3; i++) {
+                limiter.acquire();
+                limiter.releaseOverloaded();
+            }
+            assertThat(limiter.getLimit()).isEqualTo(limiter.getMinLimit());
+            assertThat(limiter.getOverloads()).isEqualTo(5);
+            assertThat(limiter.getInFlight()).isZero();
+
+        } catch (Exception e) {
+            fail("releaseOverloaded", e);
+        }
+    }
+
+    @Test
+    void release_negativeReply() {
+        try {
+
+            var clock = new AtomicLong();
+            var limiter = new FTPConcurrencyLimiter(1, 1, 4, clock::get);
+
+            var response = new FTPResponse();
+            response.asError(FTPReplyCode.FILE_UNAVAILABLE.getCode(), "File non trovato");
+            limiter.acquire();
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            limiter.release(response, 1000);
+
+            assertThat(limiter.getLimit()).isEqualTo(1);
+            assertThat(limiter.getThroughput()).isZero();
+            assertThat(limiter.getOverloads()).isZero();
+            assertThat(limiter.getInFlight()).isZero();
+
+        } catch (Exception e) {
+            fail("release_negativeReply", e);
+        }
+    }
+
+    @Test
+    void isOverloaded() {
+        assertThat(FTPConcurrencyLimiter.isOverloaded((Throwable) null)).isFalse();
+        assertThat(FTPConcurrencyLimiter.isOverloaded(new IOException("(421) Too many users"))).isFalse();
+        assertThat(FTPConcurrencyLimiter.isOverloaded(new FTPReplyException("(550) File non trovato", 550))).isFalse();
+        assertThat(FTPConcurrencyLimiter.isOverloaded(new FTPReplyException("Too many users", 421))).isTrue();
+        assertThat(FTPConcurrencyLimiter.isOverloaded(
+                new UncheckedIOException("Connessione fallita", new FTPReplyException("Too many users", 421))
+        )).isTrue();
+        assertThat(FTPConcurrencyLimiter.isOverloaded(new IOException(new SocketTimeoutException()))).isTrue();
+
+        var response = new FTPResponse();
+        response.asSuccess(FTPReplyCode.FILE_ACTION_OK.getCode(), "ok");
+        assertThat(FTPConcurrencyLimiter.isOverloaded(response)).isFalse();
+    }
+
+}
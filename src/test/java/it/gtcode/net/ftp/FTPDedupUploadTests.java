@@ -0,0 +1,251 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPDedupResponse;
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockftpserver.core.command.StaticReplyCommandHandler;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPDedupUploadTests {
+
+    public static final String CONTENT = "toUpload-1234567890";
+    public static final String OTHER_CONTENT = "otherToUpload-0987654321";
+
+    public static FakeFtpServer fakeFtpServer;
+
+    @TempDir
+    Path directory;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    static String sha256(String content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content.getBytes()));
+    }
+
+    @BeforeAll
+    public static void beforeAll() throws Exception {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2152);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fileSystem.add(new FileEntry("/share/existing/toUpload.txt", CONTENT));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.setCommandHandler("HASH", new StaticReplyCommandHandler(
+                213, "SHA-256 0-" + (CONTENT.length() - 1) + " " + sha256(CONTENT) + " toUpload.txt"));
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    @Test
+    void FTPDedupUpload_fail() {
+        try {
+
+            assertThrows(NullPointerException.class, () -> new FTPDedupUpload(null));
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2152));
+            assertThrows(
+                    FileNotFoundException.class,
+                    () -> new FTPDedupUpload(new FTPContentIndex()).upload(session, directory.resolve("unknown.txt"), Path.of("dedup"))
+            );
+
+        } catch (Exception e) {
+            fail("FTPDedupUpload_fail", e);
+        }
+    }
+
+    @Test
+    void upload() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2152));
+            var file = Files.writeString(directory.resolve("toUpload.txt"), CONTENT);
+            var dedup = new FTPDedupUpload(new FTPContentIndex());
+
+            FTPDedupResponse first = dedup.upload(session, file, Path.of("dedup"));
+            assertThat(first)
+                    .returns(null, FTPDedupResponse::getException)
+                    .returns(false, FTPDedupResponse::isDeduplicated)
+                    .returns(sha256(CONTENT), FTPDedupResponse::getDigest)
+                    .returns(Status.SUCCESS, FTPDedupResponse::getStatus);
+
+            FTPDedupResponse second = dedup.upload(session, file, Path.of("dedup"));
+            assertThat(second)
+                    .returns(null, FTPDedupResponse::getException)
+                    .returns(true, FTPDedupResponse::isDeduplicated)
+                    .returns(FTPReplyCode.FILE_STATUS, FTPDedupResponse::getReplyCode)
+                    .returns(Status.SUCCESS, FTPDedupResponse::getStatus);
+
+            assertThat(dedup)
+                    .returns(1L, FTPDedupUpload::getHits)
+                    .returns(1L, FTPDedupUpload::getMisses)
+                    .returns((long) CONTENT.length(), FTPDedupUpload::getSkippedBytes);
+
+        } catch (Exception e) {
+            fail("upload", e);
+        }
+    }
+
+    @Test
+    void upload_localModified() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2152));
+            var file = Files.writeString(directory.resolve("toModify.txt"), CONTENT);
+            var dedup = new FTPDedupUpload(new FTPContentIndex());
+
+            dedup.upload(session, file, Path.of("dedup"));
+            Files.writeString(file, CONTENT.toUpperCase());
+
+            assertThat(dedup.upload(session, file, Path.of("dedup")))
+                    .returns(false, FTPDedupResponse::isDeduplicated)
+                    .returns(Status.SUCCESS, FTPDedupResponse::getStatus);
+            var stored = (FileEntry) fakeFtpServer.getFileSystem().getEntry("/share/dedup/toModify.txt");
+            assertThat(stored.createInputStream()).hasBinaryContent(CONTENT.toUpperCase().getBytes());
+            assertThat(dedup).returns(0L, FTPDedupUpload::getHits);
+
+        } catch (Exception e) {
+            fail("upload_localModified", e);
+        }
+    }
+
+    @Test
+    void upload_remoteModified() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2152));
+            var file = Files.writeString(directory.resolve("toReplace.txt"), CONTENT);
+            var dedup = new FTPDedupUpload(new FTPContentIndex());
+
+            dedup.upload(session, file, Path.of("dedup"));
+            var stored = (FileEntry) fakeFtpServer.getFileSystem().getEntry("/share/dedup/toReplace.txt");
+            stored.setContents(OTHER_CONTENT);
+
+            assertThat(dedup.upload(session, file, Path.of("dedup")))
+                    .returns(false, FTPDedupResponse::isDeduplicated)
+                    .returns(Status.SUCCESS, FTPDedupResponse::getStatus);
+            stored = (FileEntry) fakeFtpServer.getFileSystem().getEntry("/share/dedup/toReplace.txt");
+            assertThat(stored.createInputStream()).hasBinaryContent(CONTENT.getBytes());
+
+        } catch (Exception e) {
+            fail("upload_remoteModified", e);
+        }
+    }
+
+    @Test
+    void upload_serverHash() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2152));
+            var file = Files.writeString(directory.resolve("toUpload.txt"), CONTENT);
+            var index = new FTPContentIndex();
+            var dedup = new FTPDedupUpload(index, true);
+
+            assertThat(dedup.upload(session, file, Path.of("existing")))
+                    .returns(true, FTPDedupResponse::isDeduplicated)
+                    .returns(sha256(CONTENT), FTPDedupResponse::getDigest)
+                    .returns(Status.SUCCESS, FTPDedupResponse::getStatus);
+            assertThat(index.get(session, Path.of("existing/toUpload.txt"))).isPresent();
+
+        } catch (Exception e) {
+            fail("upload_serverHash", e);
+        }
+    }
+
+    @Test
+    void upload_serverHashDecorated() {
+        try {
+
+            @Cleanup var session = new FTPSession_Shared(new FTPSession_ApacheFTPClient(this.getConfiguration(2152)));
+            var file = Files.writeString(directory.resolve("toUpload.txt"), CONTENT);
+            var dedup = new FTPDedupUpload(new FTPContentIndex(), true);
+
+            assertThat(dedup.upload(session, file, Path.of("existing")))
+                    .returns(true, FTPDedupResponse::isDeduplicated)
+                    .returns(sha256(CONTENT), FTPDedupResponse::getDigest)
+                    .returns(Status.SUCCESS, FTPDedupResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("upload_serverHashDecorated", e);
+        }
+    }
+
+    @Test
+    void upload_stream() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2152));
+            var index = new FTPContentIndex();
+            var dedup = new FTPDedupUpload(index);
+
+            FTPDedupResponse response = dedup.upload(
+                    session, Path.of("toStream.txt"), new ByteArrayInputStream(CONTENT.getBytes()), Path.of("dedup")
+            );
+
+            assertThat(response)
+                    .returns(sha256(CONTENT), FTPDedupResponse::getDigest)
+                    .returns(Status.SUCCESS, FTPDedupResponse::getStatus);
+            var digest = sha256(CONTENT);
+            assertThat(index.get(session, Path.of("dedup/toStream.txt")))
+                    .hasValueSatisfying(entry -> assertThat(entry)
+                            .returns(digest, FTPContentIndex.Entry::digest)
+                            .returns((long) CONTENT.length(), FTPContentIndex.Entry::size));
+
+        } catch (Exception e) {
+            fail("upload_stream", e);
+        }
+    }
+
+    @Test
+    void FTPContentIndex_save() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2152));
+            var file = directory.resolve("index.properties");
+            var index = new FTPContentIndex(file);
+            index.put(session, Path.of("dedup/saved.txt"), new FTPContentIndex.Entry(sha256(CONTENT), CONTENT.length(), null));
+            index.save();
+
+            var loaded = new FTPContentIndex(file);
+            assertThat(loaded.size()).isEqualTo(1);
+            assertThat(loaded.get(session, Path.of("dedup/saved.txt")))
+                    .contains(new FTPContentIndex.Entry(sha256(CONTENT), CONTENT.length(), null));
+
+        } catch (Exception e) {
+            fail("FTPContentIndex_save", e);
+        }
+    }
+
+}
@@ -0,0 +1,200 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPTransferResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPRelayTests {
+
+    public static final byte[] CONTENT = new byte[200 * 1024];
+
+    public static FakeFtpServer sourceServer;
+    public static FakeFtpServer targetServer;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    static FakeFtpServer createServer(int port) {
+        var server = new FakeFtpServer();
+        server.setServerControlPort(port);
+        server.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        server.setFileSystem(fileSystem);
+        return server;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        new Random(42).nextBytes(CONTENT);
+
+        sourceServer = createServer(2131);
+        var entry = new FileEntry("/share/toRelay.bin");
+        entry.setContents(CONTENT);
+        sourceServer.getFileSystem().add(entry);
+        sourceServer.start();
+
+        targetServer = createServer(2132);
+        targetServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        sourceServer.stop();
+        targetServer.stop();
+    }
+
+    @Test
+    void FTPRelay_fail() {
+        try {
+
+            assertThrows(IllegalArgumentException.class, () -> new FTPRelay(0));
+            assertThrows(NullPointerException.class, () -> new FTPRelay(1024, null));
+
+        } catch (Exception e) {
+            fail("FTPRelay_fail", e);
+        }
+    }
+
+    @Test
+    void relay() {
+        try {
+
+            @Cleanup var source = new FTPSession_ApacheFTPClient(this.getConfiguration(2131));
+            @Cleanup var target = new FTPSession_ApacheFTPClient(this.getConfiguration(2132));
+
+            FTPTransferResponse response = new FTPRelay(4 * 1024)
+                    .relay(source, Path.of("toRelay.bin"), target, Path.of("relayed"));
+
+            assertThat(response)
+                    .returns(null, FTPTransferResponse::getException)
+                    .returns(FTPReplyCode.Status.POSITIVE_COMPLETION, (item) -> item.getReplyCode().getStatus())
+                    .returns(FTPTransferResponse.Mode.RELAY, FTPTransferResponse::getMode)
+                    .returns(Status.SUCCESS, FTPTransferResponse::getStatus);
+
+            var stored = (FileEntry) targetServer.getFileSystem().getEntry("/share/relayed/toRelay.bin");
+            assertThat(stored.createInputStream()).hasBinaryContent(CONTENT);
+
+        } catch (Exception e) {
+            fail("relay", e);
+        }
+    }
+
+    @Test
+    void relay_interrupted() {
+        try {
+
+            var source = new FTPSession_ApacheFTPClient(this.getConfiguration(2131));
+            @Cleanup var target = new FTPSession_ApacheFTPClient(this.getConfiguration(2132));
+            var threads = new CopyOnWriteArrayList<Thread>();
+            var writerStart = new CountDownLatch(1);
+            var relay = new FTPRelay(4 * 1024, task -> {
+                Runnable delayed = threads.isEmpty() ? task : () -> {
+                    try {
+                        writerStart.await();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                    task.run();
+                };
+                var thread = new Thread(delayed);
+                threads.add(thread);
+                return thread;
+            });
+
+            var response = new AtomicReference<FTPTransferResponse>();
+            var caller = new Thread(() -> response.set(
+                    relay.relay(source, Path.of("toRelay.bin"), target, Path.of("interrupted"))
+            ));
+            caller.start();
+            while (threads.size() < 2 || caller.getState() != Thread.State.WAITING) Thread.onSpinWait();
+            caller.interrupt();
+            caller.join();
+            assertThat(threads.get(1).isAlive()).isTrue();
+            writerStart.countDown();
+            for (var thread : threads) thread.join();
+
+            assertThat(response.get())
+                    .returns(FTPTransferResponse.Mode.RELAY, FTPTransferResponse::getMode)
+                    .returns(Status.ERROR, FTPTransferResponse::getStatus);
+            assertThat(response.get().getException()).isInstanceOf(InterruptedIOException.class);
+            try {
+                source.close();
+            } catch (UncheckedIOException expected) {
+                // il server di test chiude la connessione di controllo dopo un download interrotto
+            }
+
+        } catch (Exception e) {
+            fail("relay_interrupted", e);
+        }
+    }
+
+    @Test
+    void relay_fileNotFound() {
+        try {
+
+            @Cleanup var source = new FTPSession_ApacheFTPClient(this.getConfiguration(2131));
+            @Cleanup var target = new FTPSession_ApacheFTPClient(this.getConfiguration(2132));
+
+            FTPTransferResponse response = new FTPRelay()
+                    .relay(source, Path.of("unknown.bin"), target, Path.of("relayed"));
+
+            assertThat(response)
+                    .returns(FTPReplyCode.Status.NEGATIVE_PERMANENT, (item) -> item.getReplyCode().getStatus())
+                    .returns(FTPTransferResponse.Mode.RELAY, FTPTransferResponse::getMode)
+                    .returns(Status.ERROR, FTPTransferResponse::getStatus);
+
+            assertThat(targetServer.getFileSystem().exists("/share/relayed/unknown.bin")).isFalse();
+
+        } catch (Exception e) {
+            fail("relay_fileNotFound", e);
+        }
+    }
+
+    @Test
+    void relay_closedSession() {
+        try {
+
+            @Cleanup var source = new FTPSession_ApacheFTPClient(this.getConfiguration(2131));
+            var target = new FTPSession_ApacheFTPClient(this.getConfiguration(2132));
+            target.close();
+
+            assertThrows(
+                    IllegalStateException.class,
+                    () -> new FTPRelay().relay(source, Path.of("toRelay.bin"), target, Path.of("relayed"))
+            );
+
+        } catch (Exception e) {
+            fail("relay_closedSession", e);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package it.gtcode.net.ftp;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPRingBufferTests {
+
+    @Test
+    void FTPRingBuffer_fail() {
+        try {
+
+            assertThrows(IllegalArgumentException.class, () -> new FTPRingBuffer(0));
+
+        } catch (Exception e) {
+            fail("FTPRingBuffer_fail", e);
+        }
+    }
+
+    @Test
+    void readWrite() {
+        try {
+
+            var expected = new byte[64 * 1024];
+            new Random(7).nextBytes(expected);
+            var ring = new FTPRingBuffer(1000);
+
+            var producer = CompletableFuture.runAsync(() -> {
+                try (var out = ring.outputStream()) {
+                    for (int offset = 0; offset < expected.length; offset += 333)
+                        out.write(expected, offset, Math.min(333, expected.length - offset));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            var actual = new ByteArrayOutputStream();
+            ring.inputStream().transferTo(actual);
+            producer.join();
+
+            assertThat(actual.toByteArray()).isEqualTo(expected);
+
+        } catch (Exception e) {
+            fail("readWrite", e);
+        }
+    }
+
+    @Test
+    void fail_propagatesToWriter() {
+        try {
+
+            var ring = new FTPRingBuffer(8);
+            var cause = new IOException("fail_propagatesToWriter");
+
+            var producer = CompletableFuture.runAsync(() -> {
+                try {
+                    ring.write(new byte[64], 0, 64);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            ring.fail(cause);
+
+            assertThat(producer).failsWithin(Duration.ofSeconds(5))
+                    .withThrowableOfType(ExecutionException.class)
+                    .havingRootCause().isSameAs(cause);
+
+        } catch (Exception e) {
+            fail("fail_propagatesToWriter", e);
+        }
+    }
+
+    @Test
+    void fail_propagatesToReader() {
+        try {
+
+            var ring = new FTPRingBuffer(8);
+            ring.fail(new IOException("fail_propagatesToReader"));
+
+            assertThrows(IOException.class, () -> ring.inputStream().read());
+
+        } catch (Exception e) {
+            fail("fail_propagatesToReader", e);
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPSClient;
+import org.junit.jupiter.api.*;
+
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.cert.CertificateException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPSSessionApacheFTPClientTests {
+
+    public static final String CONTENT = "toDownload-1234567890";
+    public static final int TRANSFERS = 20;
+
+    public static FTPSStandInServer server;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    FTPOptionsApache getOptions(SSLContext sslContext) {
+        var options = new FTPOptionsApache();
+        options.setSslContext(sslContext);
+        return options;
+    }
+
+    @BeforeAll
+    public static void beforeAll() throws Exception {
+        server = new FTPSStandInServer(2154);
+        server.getFiles().put("toDownload.txt", CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterAll
+    public static void afterAll() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void FTPSessionFactoryApache_fail() {
+        try {
+
+            assertThrows(NullPointerException.class, () -> new FTPSessionFactoryApache(this.getConfiguration(2154), null));
+            assertThrows(NullPointerException.class, () -> new FTPTransportApache(null));
+
+        } catch (Exception e) {
+            fail("FTPSessionFactoryApache_fail", e);
+        }
+    }
+
+    @Test
+    void download() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2154), this.getOptions(FTPSStandInServer.clientContext()));
+            int handshakes = server.getHandshakes();
+            int fullHandshakes = server.getFullHandshakes();
+
+            FTPStreamResponse response = session.download(Path.of("toDownload.txt"));
+            assertThat(response)
+                    .returns(null, FTPStreamResponse::getException)
+                    .returns(Status.SUCCESS, FTPStreamResponse::getStatus);
+            response.consume(stream -> assertThat(stream).hasContent(CONTENT));
+
+            assertThat(server.getHandshakes()).isEqualTo(handshakes + 1);
+            assertThat(server.getFullHandshakes()).isEqualTo(fullHandshakes);
+
+        } catch (Exception e) {
+            fail("download", e);
+        }
+    }
+
+    @Test
+    void upload() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2154), this.getOptions(FTPSStandInServer.clientContext()));
+
+            FTPResponse response = session.upload(
+                    Path.of("toUpload.txt"), new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8))
+            );
+            assertThat(response)
+                    .returns(null, FTPResponse::getException)
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(server.getFiles().get("toUpload.txt")).isEqualTo(CONTENT.getBytes(StandardCharsets.UTF_8));
+
+        } catch (Exception e) {
+            fail("upload", e);
+        }
+    }
+
+    @Test
+    void hostnameVerification() {
+        try {
+
+            @Cleanup var mismatched = new FTPSStandInServer(2171, FTPSStandInServer.MISMATCHED_KEYSTORE);
+            var context = FTPSStandInServer.clientContext(FTPSStandInServer.MISMATCHED_KEYSTORE);
+            var configuration = this.getConfiguration(2171);
+
+            var exception = assertThrows(UncheckedIOException.class, () -> new FTPSession_ApacheFTPClient(configuration, this.getOptions(context)));
+            assertThat(exception).hasRootCauseInstanceOf(CertificateException.class);
+
+            configuration.setHostnameVerification(false);
+            @Cleanup var session = new FTPSession_ApacheFTPClient(configuration, this.getOptions(context));
+            assertThat(session).returns(true, FTPSession::isOpen);
+
+        } catch (Exception e) {
+            fail("hostnameVerification", e);
+        }
+    }
+
+    @Test
+    void openSession_sharedContext() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2154), this.getOptions(FTPSStandInServer.clientContext()));
+            int fullHandshakes = server.getFullHandshakes();
+
+            for (int i = 0; i < 3; i++) {
+                @Cleanup var session = factory.openSession();
+                assertThat(session.download(Path.of("toDownload.txt")))
+                        .returns(Status.SUCCESS, FTPStreamResponse::getStatus);
+            }
+
+            assertThat(server.getFullHandshakes()).isEqualTo(fullHandshakes + 1);
+
+        } catch (Exception e) {
+            fail("openSession_sharedContext", e);
+        }
+    }
+
+    @Test
+    void resumption() {
+        try {
+
+            assertThat(this.fullHandshakes(new FTPSClientResumable(FTPSStandInServer.clientContext()))).isEqualTo(1);
+            assertThat(this.fullHandshakes(new NoDelayFTPSClient())).isEqualTo(1 + TRANSFERS);
+
+        } catch (Exception e) {
+            fail("resumption", e);
+        }
+    }
+
+    /**
+     * Esegue {@link #TRANSFERS} download con il client fornito.
+     * @return il numero di handshake completi richiesti al server
+     */
+    int fullHandshakes(FTPSClient client) throws Exception {
+        int fullHandshakes = server.getFullHandshakes();
+        client.connect("localhost", 2154);
+        client.login("username", "password");
+        client.execPBSZ(0);
+        client.execPROT("P");
+        client.enterLocalPassiveMode();
+        client.setFileType(FTP.BINARY_FILE_TYPE);
+        for (int i = 0; i < TRANSFERS; i++) {
+            var content = new ByteArrayOutputStream();
+            assertThat(client.retrieveFile("toDownload.txt", content)).isTrue();
+            assertThat(content.toString(StandardCharsets.UTF_8)).isEqualTo(CONTENT);
+        }
+        client.logout();
+        client.disconnect();
+        return server.getFullHandshakes() - fullHandshakes;
+    }
+
+    /**
+     * {@link FTPSClient} standard, con un handshake completo per ogni connessione dati, che disabilita l'algoritmo
+     * di Nagle sulle connessioni dati come {@link FTPSClientResumable} così da confrontare i soli handshake.
+     */
+    static class NoDelayFTPSClient extends FTPSClient {
+
+        NoDelayFTPSClient() throws Exception {
+            super(false, FTPSStandInServer.clientContext());
+        }
+
+        @Override
+        protected void _prepareDataSocket_(Socket socket) throws IOException {
+            socket.setTcpNoDelay(true);
+        }
+
+    }
+
+}
@@ -0,0 +1,269 @@
+package it.gtcode.net.ftp;
+
+import javax.net.ssl.*;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server FTPS esplicito minimale utilizzato dai test, non supportato da {@code MockFtpServer}.<br>
+ * Gestisce i soli comandi necessari a login, caricamento e scaricamento in modalità passiva con canali dati
+ * protetti, contando gli handshake TLS conclusi e quelli completi così da verificare la ripresa delle sessioni.
+ */
+public class FTPSStandInServer implements Closeable {
+
+    public static final String KEYSTORE = "/ftps/server.p12";
+    /** Certificato emesso per {@code other.example}, che non corrisponde al nome con il quale i test si connettono. */
+    public static final String MISMATCHED_KEYSTORE = "/ftps/mismatch.p12";
+    public static final char[] KEYSTORE_PASSWORD = "password".toCharArray();
+    /**
+     * Come molti server FTPS (ad esempio {@code vsftpd} con {@code require_ssl_reuse}) la ripresa avviene tramite
+     * l'identificativo della sessione TLS 1.2.
+     */
+    public static final String PROTOCOL = "TLSv1.2";
+
+    private final SSLContext context;
+    private final ServerSocket serverSocket;
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final AtomicInteger handshakes = new AtomicInteger();
+    private final AtomicInteger fullHandshakes = new AtomicInteger();
+
+    public FTPSStandInServer(int port) throws Exception {
+        this(port, KEYSTORE);
+    }
+
+    public FTPSStandInServer(int port, String keystore) throws Exception {
+        var keyStore = KeyStore.getInstance("PKCS12");
+        try (var stream = FTPSStandInServer.class.getResourceAsStream(keystore)) {
+            keyStore.load(stream, KEYSTORE_PASSWORD);
+        }
+        var keyManager = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManager.init(keyStore, KEYSTORE_PASSWORD);
+        this.context = SSLContext.getInstance("TLS");
+        var delegate = (X509ExtendedKeyManager) keyManager.getKeyManagers()[0];
+        context.init(new KeyManager[]{new CountingKeyManager(delegate)}, null, null);
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.daemon(this::accept, "ftps-stand-in-" + port).start();
+    }
+
+    /**
+     * Crea un contesto TLS client che considera attendibile il solo certificato del server.
+     */
+    public static SSLContext clientContext() throws Exception {
+        return clientContext(KEYSTORE);
+    }
+
+    /**
+     * Crea un contesto TLS client che considera attendibile il solo certificato contenuto nel keystore indicato.
+     */
+    public static SSLContext clientContext(String keystore) throws Exception {
+        var keyStore = KeyStore.getInstance("PKCS12");
+        try (var stream = FTPSStandInServer.class.getResourceAsStream(keystore)) {
+            keyStore.load(stream, KEYSTORE_PASSWORD);
+        }
+        Certificate certificate = keyStore.getCertificate("server");
+        var trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("server", certificate);
+        var trustManager = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManager.init(trustStore);
+        var context = SSLContext.getInstance("TLS");
+        context.init(null, trustManager.getTrustManagers(), null);
+        return context;
+    }
+
+    public Map<String, byte[]> getFiles() {
+        return files;
+    }
+
+    /**
+     * Numero di handshake TLS conclusi, su canali di controllo e dati.
+     */
+    public int getHandshakes() {
+        return handshakes.get();
+    }
+
+    /**
+     * Numero di handshake TLS completi, ovvero che non hanno ripreso una sessione esistente.
+     */
+    public int getFullHandshakes() {
+        return fullHandshakes.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                this.daemon(() -> this.serve(socket), "ftps-stand-in-control").start();
+            } catch (IOException ignored) {
+                // server chiuso
+            }
+        }
+    }
+
+    private void serve(Socket plain) {
+        try (plain) {
+            Socket socket = plain;
+            var reader = this.reader(socket);
+            var writer = this.writer(socket);
+            var secured = false;
+            ServerSocket passive = null;
+            this.reply(writer, "220 FTPS stand-in ready");
+            String line;
+            while ((line = reader.readLine()) != null) {
+                var separator = line.indexOf(' ');
+                var command = (separator < 0 ? line : line.substring(0, separator)).toUpperCase();
+                var argument = separator < 0 ? "" : line.substring(separator + 1);
+                switch (command) {
+                    case "AUTH" -> {
+                        this.reply(writer, "234 AUTH TLS successful");
+                        socket = this.secure(socket);
+                        secured = true;
+                        reader = this.reader(socket);
+                        writer = this.writer(socket);
+                    }
+                    case "USER" -> this.reply(writer, "331 Password required");
+                    case "PASS" -> this.reply(writer, "230 Logged in");
+                    case "PBSZ", "PROT", "TYPE", "NOOP" -> this.reply(writer, "200 OK");
+                    case "CWD" -> this.reply(writer, "250 Directory changed");
+                    case "MKD" -> this.reply(writer, "257 \"" + argument + "\" created");
+                    case "PWD" -> this.reply(writer, "257 \"/\"");
+                    case "PASV" -> {
+                        if (passive != null) passive.close();
+                        passive = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+                        var port = passive.getLocalPort();
+                        this.reply(writer, "227 Entering Passive Mode (127,0,0,1," + (port >> 8) + "," + (port & 0xFF) + ")");
+                    }
+                    case "RETR", "STOR" -> {
+                        if (passive == null || !secured) {
+                            this.reply(writer, "425 Data connection not available");
+                            continue;
+                        }
+                        var name = argument.substring(argument.lastIndexOf('/') + 1);
+                        if (command.equals("RETR") && !files.containsKey(name)) {
+                            this.reply(writer, "550 File not found");
+                            continue;
+                        }
+                        this.reply(writer, "150 Opening data connection");
+                        try (var data = this.secure(passive.accept())) {
+                            if (command.equals("RETR")) {
+                                data.getOutputStream().write(files.get(name));
+                            } else {
+                                files.put(name, data.getInputStream().readAllBytes());
+                            }
+                            this.reply(writer, "226 Transfer complete");
+                        } catch (IOException ioe) {
+                            this.reply(writer, "426 Transfer aborted");
+                        } finally {
+                            passive.close();
+                            passive = null;
+                        }
+                    }
+                    case "QUIT" -> {
+                        this.reply(writer, "221 Bye");
+                        return;
+                    }
+                    default -> this.reply(writer, "502 Command not implemented");
+                }
+            }
+        } catch (IOException ignored) {
+            // connessione chiusa dal client
+        }
+    }
+
+    private SSLSocket secure(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        var secure = (SSLSocket) context.getSocketFactory().createSocket(socket, null, socket.getPort(), true);
+        secure.setUseClientMode(false);
+        secure.setEnabledProtocols(new String[]{PROTOCOL});
+        secure.startHandshake();
+        handshakes.incrementAndGet();
+        return secure;
+    }
+
+    private BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private Writer writer(Socket socket) throws IOException {
+        return new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+    }
+
+    private void reply(Writer writer, String reply) throws IOException {
+        writer.write(reply + "\r\n");
+        writer.flush();
+    }
+
+    private Thread daemon(Runnable task, String name) {
+        var thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Il certificato del server viene selezionato solamente durante un handshake completo, non durante la ripresa
+     * di una sessione: contare le selezioni equivale a contare gli handshake completi.
+     */
+    private class CountingKeyManager extends X509ExtendedKeyManager {
+
+        private final X509ExtendedKeyManager delegate;
+
+        CountingKeyManager(X509ExtendedKeyManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+            fullHandshakes.incrementAndGet();
+            return delegate.chooseServerAlias(keyType, issuers, socket);
+        }
+
+        @Override
+        public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+            fullHandshakes.incrementAndGet();
+            return delegate.chooseEngineServerAlias(keyType, issuers, engine);
+        }
+
+        @Override
+        public String[] getServerAliases(String keyType, Principal[] issuers) {
+            return delegate.getServerAliases(keyType, issuers);
+        }
+
+        @Override
+        public String[] getClientAliases(String keyType, Principal[] issuers) {
+            return delegate.getClientAliases(keyType, issuers);
+        }
+
+        @Override
+        public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+            return delegate.chooseClientAlias(keyType, issuers, socket);
+        }
+
+        @Override
+        public X509Certificate[] getCertificateChain(String alias) {
+            return delegate.getCertificateChain(alias);
+        }
+
+        @Override
+        public PrivateKey getPrivateKey(String alias) {
+            return delegate.getPrivateKey(alias);
+        }
+
+    }
+
+}
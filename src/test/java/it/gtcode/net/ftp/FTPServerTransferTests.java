@@ -0,0 +1,197 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPTransferResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.mockftpserver.core.command.StaticReplyCommandHandler;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPServerTransferTests {
+
+    public static final String CONTENT = "toTransfer-1234567890";
+
+    public static FakeFtpServer sourceServer;
+    public static FakeFtpServer targetServer;
+    public static FakeFtpServer noFxpServer;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    static FakeFtpServer createServer(int port) {
+        var server = new FakeFtpServer();
+        server.setServerControlPort(port);
+        server.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        server.setFileSystem(fileSystem);
+        return server;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        sourceServer = createServer(2121);
+        sourceServer.getFileSystem().add(new FileEntry("/share/internal/toTransfer.txt", CONTENT));
+        sourceServer.start();
+
+        targetServer = createServer(2122);
+        targetServer.start();
+
+        noFxpServer = createServer(2123);
+        noFxpServer.setCommandHandler("PORT", new StaticReplyCommandHandler(500, "Illegal PORT command"));
+        noFxpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        sourceServer.stop();
+        targetServer.stop();
+        noFxpServer.stop();
+    }
+
+    @Test
+    void FTPServerTransfer_fail() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2121));
+
+            assertThrows(NullPointerException.class, () -> new FTPServerTransfer(null, session));
+            assertThrows(NullPointerException.class, () -> new FTPServerTransfer(session, null));
+
+        } catch (Exception e) {
+            fail("FTPServerTransfer_fail", e);
+        }
+    }
+
+    @Test
+    void transfer() {
+        try {
+
+            @Cleanup var source = new FTPSession_ApacheFTPClient(this.getConfiguration(2121));
+            @Cleanup var target = new FTPSession_ApacheFTPClient(this.getConfiguration(2122));
+
+            FTPTransferResponse response = new FTPServerTransfer(source, target)
+                    .transfer(Path.of("internal/toTransfer.txt"), Path.of("fxp"));
+
+            assertThat(response)
+                    .returns(null, FTPTransferResponse::getException)
+                    .returns(FTPReplyCode.Status.POSITIVE_COMPLETION, (item) -> item.getReplyCode().getStatus())
+                    .returns(FTPTransferResponse.Mode.SERVER_TO_SERVER, FTPTransferResponse::getMode)
+                    .returns(null, FTPTransferResponse::getFallbackReason)
+                    .returns(Status.SUCCESS, FTPTransferResponse::getStatus);
+
+            var stored = (FileEntry) targetServer.getFileSystem().getEntry("/share/fxp/toTransfer.txt");
+            assertThat(stored.createInputStream()).hasBinaryContent(CONTENT.getBytes());
+
+        } catch (Exception e) {
+            fail("transfer", e);
+        }
+    }
+
+    @Test
+    void transfer_decorated() {
+        try {
+
+            @Cleanup var source = new FTPSession_Shared(new FTPSession_ApacheFTPClient(this.getConfiguration(2121)));
+            @Cleanup var target = new FTPSessionFactoryApache(this.getConfiguration(2122)).openLazySession();
+
+            FTPTransferResponse response = new FTPServerTransfer(source, target)
+                    .transfer(Path.of("internal/toTransfer.txt"), Path.of("decorated"));
+
+            assertThat(response)
+                    .returns(FTPTransferResponse.Mode.SERVER_TO_SERVER, FTPTransferResponse::getMode)
+                    .returns(Status.SUCCESS, FTPTransferResponse::getStatus);
+
+            var stored = (FileEntry) targetServer.getFileSystem().getEntry("/share/decorated/toTransfer.txt");
+            assertThat(stored.createInputStream()).hasBinaryContent(CONTENT.getBytes());
+
+        } catch (Exception e) {
+            fail("transfer_decorated", e);
+        }
+    }
+
+    @Test
+    void transfer_relay() {
+        try {
+
+            @Cleanup var source = new FTPSession_ApacheFTPClient(this.getConfiguration(2121));
+            @Cleanup var target = new FTPSession_ApacheFTPClient(this.getConfiguration(2123));
+
+            FTPTransferResponse response = new FTPServerTransfer(source, target)
+                    .transfer(Path.of("internal/toTransfer.txt"), Path.of("relay"));
+
+            assertThat(response)
+                    .returns(null, FTPTransferResponse::getException)
+                    .returns(FTPReplyCode.Status.POSITIVE_COMPLETION, (item) -> item.getReplyCode().getStatus())
+                    .returns(FTPTransferResponse.Mode.RELAY, FTPTransferResponse::getMode)
+                    .returns(Status.SUCCESS, FTPTransferResponse::getStatus);
+            assertThat(response.getFallbackReason()).contains("500");
+
+            var stored = (FileEntry) noFxpServer.getFileSystem().getEntry("/share/relay/toTransfer.txt");
+            assertThat(stored.createInputStream()).hasBinaryContent(CONTENT.getBytes());
+
+        } catch (Exception e) {
+            fail("transfer_relay", e);
+        }
+    }
+
+    @Test
+    void transfer_fileNotFound() {
+        try {
+
+            @Cleanup var source = new FTPSession_ApacheFTPClient(this.getConfiguration(2121));
+            @Cleanup var target = new FTPSession_ApacheFTPClient(this.getConfiguration(2122));
+
+            FTPTransferResponse response = new FTPServerTransfer(source, target)
+                    .transfer(Path.of("internal/unknown.txt"));
+
+            assertThat(response)
+                    .returns(FTPReplyCode.Status.NEGATIVE_PERMANENT, (item) -> item.getReplyCode().getStatus())
+                    .returns(Status.ERROR, FTPTransferResponse::getStatus);
+
+            assertThat(targetServer.getFileSystem().exists("/share/unknown.txt")).isFalse();
+
+        } catch (Exception e) {
+            fail("transfer_fileNotFound", e);
+        }
+    }
+
+    @Test
+    void transfer_closedSession() {
+        try {
+
+            @Cleanup var source = new FTPSession_ApacheFTPClient(this.getConfiguration(2121));
+            var target = new FTPSession_ApacheFTPClient(this.getConfiguration(2122));
+            target.close();
+
+            assertThrows(
+                    IllegalStateException.class,
+                    () -> new FTPServerTransfer(source, target).transfer(Path.of("internal/toTransfer.txt"))
+            );
+
+        } catch (Exception e) {
+            fail("transfer_closedSession", e);
+        }
+    }
+
+}
@@ -251,7 +251,7 @@ class FTPSessionApacheFTPClientTests {
             FTPStreamResponse response = session.download(Path.of("unknown/unknownFileToDownload.txt"));
 
             assertThat(response)
-                    .returns(IOException.class, (item) -> item.getException().getClass())
+                    .returns(null, FTPStreamResponse::getException)
                     .returns(FTPReplyCode.Status.NEGATIVE_PERMANENT, (item) -> item.getReplyCode().getStatus())
                     .returns(Status.ERROR, FTPStreamResponse::getStatus);
 
@@ -591,7 +591,7 @@ class FTPSessionApacheFTPClientTests {
             FTPResponse response = session.delete(Path.of("notFoundToDelete.txt"));
 
             assertThat(response)
-                    .returns(IOException.class, (item) -> item.getException().getClass())
+                    .returns(null, FTPResponse::getException)
                     .returns(FTPReplyCode.Status.NEGATIVE_PERMANENT, (item) -> item.getReplyCode().getStatus())
                     .returns(Status.ERROR, FTPResponse::getStatus);
 
@@ -0,0 +1,174 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPSessionPrewarmTests {
+
+    public static FakeFtpServer fakeFtpServer;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2166);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fileSystem.add(new FileEntry("/share/file.txt", "contenuto"));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    @Test
+    void openLazySession() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2166));
+            @Cleanup var session = (FTPSession_Lazy) factory.openLazySession();
+            assertThat(session.isConnected()).isFalse();
+            assertThat(session.isOpen()).isTrue();
+            assertThat(session.getConfiguration()).isEqualTo(this.getConfiguration(2166));
+            assertThat(session.isConnected()).isFalse();
+
+            assertThat(session.stat(Path.of("file.txt")))
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(session.isConnected()).isTrue();
+            assertThat(session.isOpen()).isTrue();
+
+            session.close();
+            assertThat(session.isOpen()).isFalse();
+
+        } catch (Exception e) {
+            fail("openLazySession", e);
+        }
+    }
+
+    @Test
+    void openLazySession_closedBeforeUse() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2166));
+            var session = (FTPSession_Lazy) factory.openLazySession();
+            session.close();
+            assertThat(session.isOpen()).isFalse();
+            assertThat(session.isConnected()).isFalse();
+            assertThatThrownBy(() -> session.stat(Path.of("file.txt"))).isInstanceOf(IllegalStateException.class);
+
+        } catch (Exception e) {
+            fail("openLazySession_closedBeforeUse", e);
+        }
+    }
+
+    @Test
+    void openLazySession_connectionRefused() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2199));
+            @Cleanup var session = (FTPSession_Lazy) factory.openLazySession();
+            assertThat(session.isOpen()).isTrue();
+            assertThatThrownBy(() -> session.stat(Path.of("file.txt"))).isInstanceOf(UncheckedIOException.class);
+            assertThat(session.isConnected()).isFalse();
+
+        } catch (Exception e) {
+            fail("openLazySession_connectionRefused", e);
+        }
+    }
+
+    @Test
+    void prewarm() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2166));
+            @Cleanup var prewarm = factory.prewarm(3);
+            assertThat(prewarm.getRequested()).isEqualTo(3);
+            assertThat(prewarm.getReady().get(10, TimeUnit.SECONDS)).isEqualTo(3);
+            assertThat(prewarm.isReady()).isTrue();
+            assertThat(prewarm.getOpened()).isEqualTo(3);
+            assertThat(prewarm.getFailed()).isZero();
+            assertThat(prewarm.getAvailable()).isEqualTo(3);
+
+            @Cleanup var session = prewarm.take();
+            assertThat(session.isOpen()).isTrue();
+            assertThat(session.stat(Path.of("file.txt"))).returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(prewarm.getAvailable()).isEqualTo(2);
+
+            prewarm.close();
+            assertThat(prewarm.getAvailable()).isZero();
+            assertThatThrownBy(prewarm::take).isInstanceOf(IllegalStateException.class);
+
+        } catch (Exception e) {
+            fail("prewarm", e);
+        }
+    }
+
+    @Test
+    void prewarm_exhausted() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2166));
+            @Cleanup var prewarm = factory.prewarm(1);
+            prewarm.getReady().get(10, TimeUnit.SECONDS);
+
+            @Cleanup var first = prewarm.take();
+            @Cleanup var second = prewarm.take();
+            assertThat(first.isOpen()).isTrue();
+            assertThat(second.isOpen()).isTrue();
+            assertThat(second).isNotSameAs(first);
+            assertThat(prewarm.getOpened()).isEqualTo(1);
+
+        } catch (Exception e) {
+            fail("prewarm_exhausted", e);
+        }
+    }
+
+    @Test
+    void prewarm_failed() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2199));
+            @Cleanup var prewarm = factory.prewarm(2);
+            assertThat(prewarm.getReady().get(30, TimeUnit.SECONDS)).isZero();
+            assertThat(prewarm.getFailed()).isEqualTo(2);
+            assertThat(prewarm.getAvailable()).isZero();
+
+            assertThatThrownBy(() -> new FTPSessionPrewarm(factory, -1)).isInstanceOf(IllegalArgumentException.class);
+            assertThat(factory.prewarm(0).isReady()).isTrue();
+
+        } catch (Exception e) {
+            fail("prewarm_failed", e);
+        }
+    }
+
+}
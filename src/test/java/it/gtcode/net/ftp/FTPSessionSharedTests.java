@@ -0,0 +1,152 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPSessionSharedTests {
+
+    public static final String CONTENT = "toDownload-1234567890";
+
+    public static FakeFtpServer fakeFtpServer;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2160);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fileSystem.add(new FileEntry("/share/toDownload.txt", CONTENT));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    @Test
+    void concurrentOperations() {
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+
+            @Cleanup var session = new FTPSession_Shared(new FTPSession_ApacheFTPClient(this.getConfiguration(2160)));
+            var start = new CountDownLatch(1);
+            var results = new ArrayList<CompletableFuture<Void>>();
+            for (int i = 0; i < 4; i++) {
+                int worker = i;
+                results.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        start.await();
+                        for (int round = 0; round < 3; round++) {
+                            var name = "worker" + worker + "-" + round + ".txt";
+                            assertThat(session.upload(Path.of(name), new ByteArrayInputStream(name.getBytes()), Path.of("shared")))
+                                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+                            session.download(Path.of("toDownload.txt")).consume(stream -> {
+                                try {
+                                    assertThat(stream).hasContent(CONTENT);
+                                } catch (Exception e) {
+                                    throw new IllegalStateException(e);
+                                }
+                            });
+                            assertThat(session.stat(Path.of("shared/" + name)).getSize()).isEqualTo(name.length());
+                        }
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException(ie);
+                    }
+                }, executor));
+            }
+            start.countDown();
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+            assertThat(session.isOpen()).isTrue();
+            assertThat(session.execute("NOOP")).returns(Status.SUCCESS, FTPResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("concurrentOperations", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void download_holdsConnection() {
+        try {
+
+            @Cleanup var session = new FTPSession_Shared(new FTPSession_ApacheFTPClient(this.getConfiguration(2160)));
+
+            var download = session.download(Path.of("toDownload.txt"));
+            assertThat(download).returns(Status.SUCCESS, FTPResponse::getStatus);
+
+            var noop = CompletableFuture.supplyAsync(() -> session.execute("NOOP"));
+            TimeUnit.MILLISECONDS.sleep(200);
+            assertThat(noop).isNotDone();
+
+            assertThat(download.getStream().orElseThrow()).hasContent(CONTENT);
+            download.close();
+            download.close();
+            assertThat(noop.get(5, TimeUnit.SECONDS)).returns(Status.SUCCESS, FTPResponse::getStatus);
+
+            var missing = session.download(Path.of("missing.txt"));
+            assertThat(missing).returns(Status.ERROR, FTPResponse::getStatus);
+            assertThat(session.execute("NOOP")).returns(Status.SUCCESS, FTPResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("download_holdsConnection", e);
+        }
+    }
+
+    @Test
+    void openUploadStream_holdsConnection() {
+        try {
+
+            @Cleanup var session = new FTPSession_Shared(new FTPSession_ApacheFTPClient(this.getConfiguration(2160)));
+
+            var upload = session.openUploadStream(Path.of("streamed.txt"), Path.of("shared"));
+            var noop = CompletableFuture.supplyAsync(() -> session.execute("NOOP"));
+            TimeUnit.MILLISECONDS.sleep(200);
+            assertThat(noop).isNotDone();
+
+            upload.getStream().orElseThrow().write(CONTENT.getBytes());
+            assertThat(upload.close()).returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(noop.get(5, TimeUnit.SECONDS)).returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(fakeFtpServer.getFileSystem().exists("/share/shared/streamed.txt")).isTrue();
+
+        } catch (Exception e) {
+            fail("openUploadStream_holdsConnection", e);
+        }
+    }
+
+}
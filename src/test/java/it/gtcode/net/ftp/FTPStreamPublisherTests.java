@@ -0,0 +1,256 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPStreamPublisherTests {
+
+    public static final byte[] CONTENT = new byte[10 * 1024 + 17];
+
+    public static FakeFtpServer fakeFtpServer;
+    public static ExecutorService executor;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        new Random(7).nextBytes(CONTENT);
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2158);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        var file = new FileEntry("/share/toDownload.bin");
+        file.setContents(CONTENT);
+        fileSystem.add(file);
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        executor.shutdownNow();
+        fakeFtpServer.stop();
+    }
+
+    @Test
+    void FTPBufferPool() {
+        try {
+
+            assertThatThrownBy(() -> new FTPBufferPool(0, 1)).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> new FTPBufferPool(1, -1)).isInstanceOf(IllegalArgumentException.class);
+
+            var pool = new FTPBufferPool(16, 1);
+            var first = pool.acquire();
+            var second = pool.acquire();
+            assertThat(first.capacity()).isEqualTo(16);
+            first.put((byte) 1).flip();
+
+            assertThat(pool.release(first)).isTrue();
+            assertThat(pool.release(second)).isTrue();
+            assertThat(pool.release(ByteBuffer.allocate(8))).isFalse();
+            assertThat(pool.getPooled()).isEqualTo(1);
+
+            var reused = pool.acquire();
+            assertThat(reused).isSameAs(first);
+            assertThat(reused.position()).isZero();
+            assertThat(reused.limit()).isEqualTo(16);
+            assertThat(pool.getPooled()).isZero();
+
+        } catch (Exception e) {
+            fail("FTPBufferPool", e);
+        }
+    }
+
+    @Test
+    void FTPBufferPool_rejectedRelease() {
+        try {
+
+            var pool = new FTPBufferPool(16, 4);
+            var buffer = pool.acquire();
+
+            assertThat(pool.release(ByteBuffer.allocate(16))).isFalse();
+            assertThat(pool.release(buffer)).isTrue();
+            assertThat(pool.release(buffer)).isFalse();
+            assertThat(pool.getPooled()).isEqualTo(1);
+
+            var first = pool.acquire();
+            var second = pool.acquire();
+            assertThat(first).isSameAs(buffer);
+            assertThat(second).isNotSameAs(first);
+
+        } catch (Exception e) {
+            fail("FTPBufferPool_rejectedRelease", e);
+        }
+    }
+
+    @Test
+    void downloadPublisher() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2158));
+            var pool = new FTPBufferPool(1024, 4);
+
+            var subscriber = new CollectingSubscriber(pool, 1);
+            session.downloadPublisher(Path.of("toDownload.bin"), executor, pool).subscribe(subscriber);
+
+            subscriber.done.get(5, TimeUnit.SECONDS);
+            assertThat(subscriber.content.toByteArray()).isEqualTo(CONTENT);
+            assertThat(subscriber.received.get()).isGreaterThanOrEqualTo(11);
+            assertThat(pool.getPooled()).isPositive();
+
+            assertThat(session.download(Path.of("toDownload.bin")))
+                    .returns(Status.SUCCESS, FTPResponse::getStatus)
+                    .satisfies(response -> response.consume(stream -> {
+                        try {
+                            assertThat(stream.readAllBytes()).isEqualTo(CONTENT);
+                        } catch (IOException ioe) {
+                            fail("downloadPublisher", ioe);
+                        }
+                    }));
+
+        } catch (Exception e) {
+            fail("downloadPublisher", e);
+        }
+    }
+
+    @Test
+    void downloadPublisher_backpressure() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2158));
+            var pool = new FTPBufferPool(1024, 4);
+
+            var subscriber = new CollectingSubscriber(pool, 0);
+            session.downloadPublisher(Path.of("toDownload.bin"), executor, pool).subscribe(subscriber);
+            subscriber.subscription.request(2);
+
+            TimeUnit.MILLISECONDS.sleep(200);
+            assertThat(subscriber.received.get()).isEqualTo(2);
+            assertThat(subscriber.done).isNotDone();
+
+            subscriber.subscription.cancel();
+            TimeUnit.MILLISECONDS.sleep(200);
+            assertThat(subscriber.received.get()).isEqualTo(2);
+            assertThat(subscriber.done).isNotDone();
+
+            assertThat(session.execute("NOOP")).returns(Status.SUCCESS, FTPResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("downloadPublisher_backpressure", e);
+        }
+    }
+
+    @Test
+    void downloadPublisher_fail() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2158));
+
+            var missing = new CollectingSubscriber(null, 1);
+            session.downloadPublisher(Path.of("missing.bin"), executor).subscribe(missing);
+            assertThat(missing.done).failsWithin(5, TimeUnit.SECONDS)
+                    .withThrowableOfType(ExecutionException.class)
+                    .withCauseInstanceOf(IOException.class);
+
+            var publisher = session.downloadPublisher(Path.of("toDownload.bin"), executor);
+            var invalid = new CollectingSubscriber(null, 0);
+            publisher.subscribe(invalid);
+            invalid.subscription.request(0);
+            assertThat(invalid.done).failsWithin(5, TimeUnit.SECONDS)
+                    .withThrowableOfType(ExecutionException.class)
+                    .withCauseInstanceOf(IllegalArgumentException.class);
+
+            var second = new CollectingSubscriber(null, 1);
+            publisher.subscribe(second);
+            assertThat(second.done).failsWithin(5, TimeUnit.SECONDS)
+                    .withThrowableOfType(ExecutionException.class)
+                    .withCauseInstanceOf(IllegalStateException.class);
+
+            assertThat(session.execute("NOOP")).returns(Status.SUCCESS, FTPResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("downloadPublisher_fail", e);
+        }
+    }
+
+    /**
+     * Subscriber che raccoglie il contenuto pubblicato richiedendo un elemento alla volta, restituendo i buffer al
+     * pool fornito.
+     */
+    static class CollectingSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final AtomicInteger received = new AtomicInteger();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final FTPBufferPool pool;
+        private final int batch;
+        volatile Flow.Subscription subscription;
+
+        CollectingSubscriber(FTPBufferPool pool, int batch) {
+            this.pool = pool;
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (batch > 0) subscription.request(batch);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            received.incrementAndGet();
+            content.write(item.array(), item.arrayOffset() + item.position(), item.remaining());
+            if (pool != null) pool.release(item);
+            if (batch > 0) subscription.request(batch);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+
+    }
+
+}
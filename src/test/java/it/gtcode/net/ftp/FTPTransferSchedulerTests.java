@@ -0,0 +1,238 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPTransferSchedulerTests {
+
+    public static FakeFtpServer fakeFtpServer;
+
+    @TempDir
+    Path tempDir;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2161);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fileSystem.add(new DirectoryEntry("/share/upload"));
+        fileSystem.add(new FileEntry("/share/download/file.txt", "contenuto remoto"));
+        fileSystem.add(new FileEntry("/share/delete/file.txt", "da eliminare"));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    FTPTransferScheduler newScheduler(int maxConnections, Map<FTPTransferPriority, Integer> reservations,
+                                      Duration aging, AtomicLong clock) {
+        return new FTPTransferScheduler(
+                new FTPSessionFactoryApache(this.getConfiguration(2161)),
+                maxConnections,
+                reservations,
+                aging,
+                task -> {
+                    var thread = new Thread(task);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                clock::get
+        );
+    }
+
+    CompletableFuture<Object> record(FTPTransferScheduler scheduler, FTPTransferPriority priority,
+                                     List<String> order, String name) {
+        return scheduler.submit(priority, session -> order.add(name));
+    }
+
+    @Test
+    void upload_download_delete() {
+        try {
+
+            @Cleanup var scheduler = new FTPTransferScheduler(new FTPSessionFactoryApache(this.getConfiguration(2161)), 2);
+            var file = Files.writeString(tempDir.resolve("local.txt"), "contenuto locale");
+            var upload = scheduler.upload(FTPTransferPriority.BULK, file, Path.of("upload")).get(10, TimeUnit.SECONDS);
+            assertThat(upload.getStatus()).isEqualTo(Status.SUCCESS);
+            assertThat(fakeFtpServer.getFileSystem().exists("/share/upload/local.txt")).isTrue();
+
+            var download = scheduler.download(FTPTransferPriority.INTERACTIVE, Path.of("download/file.txt"))
+                    .get(10, TimeUnit.SECONDS);
+            assertThat(download.getStatus()).isEqualTo(Status.SUCCESS);
+            assertThat(scheduler.getRunning(FTPTransferPriority.INTERACTIVE)).isOne();
+            assertThat(new String(download.getStream().orElseThrow().readAllBytes(), StandardCharsets.UTF_8))
+                    .isEqualTo("contenuto remoto");
+            download.close();
+            assertThat(scheduler.getRunning(FTPTransferPriority.INTERACTIVE)).isZero();
+
+            var delete = scheduler.delete(FTPTransferPriority.NORMAL, Path.of("delete/file.txt")).get(10, TimeUnit.SECONDS);
+            assertThat(delete.getStatus()).isEqualTo(Status.SUCCESS);
+            assertThat(fakeFtpServer.getFileSystem().exists("/share/delete/file.txt")).isFalse();
+
+            var missing = scheduler.download(FTPTransferPriority.NORMAL, Path.of("download/missing.txt"))
+                    .get(10, TimeUnit.SECONDS);
+            assertThat(missing.getStatus()).isEqualTo(Status.ERROR);
+            assertThat(scheduler.getRunning(FTPTransferPriority.NORMAL)).isZero();
+
+        } catch (Exception e) {
+            fail("upload_download_delete", e);
+        }
+    }
+
+    @Test
+    void priorityOrder() {
+        try {
+
+            @Cleanup var scheduler = this.newScheduler(1, Map.of(), Duration.ofSeconds(30), new AtomicLong());
+            var blocked = new CountDownLatch(1);
+            var order = new CopyOnWriteArrayList<String>();
+            var blocker = scheduler.submit(FTPTransferPriority.BULK, session -> this.await(blocked));
+            var bulk = this.record(scheduler, FTPTransferPriority.BULK, order, "bulk");
+            var normal = this.record(scheduler, FTPTransferPriority.NORMAL, order, "normal");
+            var interactive = this.record(scheduler, FTPTransferPriority.INTERACTIVE, order, "interactive");
+            assertThat(scheduler.getQueued(FTPTransferPriority.BULK)).isOne();
+            assertThat(scheduler.getQueued(FTPTransferPriority.INTERACTIVE)).isOne();
+
+            blocked.countDown();
+            CompletableFuture.allOf(blocker, bulk, normal, interactive).get(10, TimeUnit.SECONDS);
+            assertThat(order).containsExactly("interactive", "normal", "bulk");
+
+        } catch (Exception e) {
+            fail("priorityOrder", e);
+        }
+    }
+
+    @Test
+    void reservation() {
+        try {
+
+            @Cleanup var scheduler = this.newScheduler(2, Map.of(FTPTransferPriority.INTERACTIVE, 1), Duration.ofSeconds(30), new AtomicLong());
+            var blocked = new CountDownLatch(1);
+            var bulk = List.of(
+                    scheduler.submit(FTPTransferPriority.BULK, session -> this.await(blocked)),
+                    scheduler.submit(FTPTransferPriority.BULK, session -> this.await(blocked))
+            );
+            assertThat(scheduler.getRunning(FTPTransferPriority.BULK)).isOne();
+            assertThat(scheduler.getQueued(FTPTransferPriority.BULK)).isOne();
+
+            var interactive = scheduler.submit(FTPTransferPriority.INTERACTIVE, FTPSession::isOpen);
+            assertThat(interactive.get(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(scheduler.getQueued(FTPTransferPriority.BULK)).isOne();
+
+            blocked.countDown();
+            CompletableFuture.allOf(bulk.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+            assertThat(scheduler.getRunning(FTPTransferPriority.BULK)).isZero();
+
+        } catch (Exception e) {
+            fail("reservation", e);
+        }
+    }
+
+    @Test
+    void aging() {
+        try {
+
+            var clock = new AtomicLong();
+            @Cleanup var scheduler = this.newScheduler(1, Map.of(), Duration.ofSeconds(1), clock);
+            var blocked = new CountDownLatch(1);
+            var order = new CopyOnWriteArrayList<String>();
+            var blocker = scheduler.submit(FTPTransferPriority.NORMAL, session -> this.await(blocked));
+            var bulk = this.record(scheduler, FTPTransferPriority.BULK, order, "bulk");
+            clock.addAndGet(Duration.ofSeconds(3).toNanos());
+            var interactive = this.record(scheduler, FTPTransferPriority.INTERACTIVE, order, "interactive");
+
+            blocked.countDown();
+            CompletableFuture.allOf(blocker, bulk, interactive).get(10, TimeUnit.SECONDS);
+            assertThat(order).containsExactly("bulk", "interactive");
+
+        } catch (Exception e) {
+            fail("aging", e);
+        }
+    }
+
+    @Test
+    void close() {
+        try {
+
+            var blocked = new CountDownLatch(1);
+            var scheduler = this.newScheduler(1, Map.of(), Duration.ofSeconds(30), new AtomicLong());
+            var blocker = scheduler.submit(FTPTransferPriority.NORMAL, session -> this.await(blocked));
+            var pending = scheduler.delete(FTPTransferPriority.NORMAL, Path.of("delete/file.txt"));
+
+            scheduler.close();
+            assertThat(pending).isCompletedExceptionally();
+            assertThatThrownBy(() -> scheduler.delete(FTPTransferPriority.NORMAL, Path.of("delete/file.txt")))
+                    .isInstanceOf(IllegalStateException.class);
+            blocked.countDown();
+            assertThat(blocker.get(10, TimeUnit.SECONDS)).isTrue();
+
+        } catch (Exception e) {
+            fail("close", e);
+        }
+    }
+
+    @Test
+    void constructor_invalid() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2161));
+            assertThatThrownBy(() -> new FTPTransferScheduler(factory, 0))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> new FTPTransferScheduler(factory, 2, Map.of(FTPTransferPriority.INTERACTIVE, 3), Duration.ofSeconds(1)))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> new FTPTransferScheduler(factory, 2, Map.of(), Duration.ZERO))
+                    .isInstanceOf(IllegalArgumentException.class);
+
+        } catch (Exception e) {
+            fail("constructor_invalid", e);
+        }
+    }
+
+    boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ie) {
+            throw new IllegalStateException(ie);
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+package it.gtcode.net.ftp;
+
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPUploadStreamTests {
+
+    public static final byte[] CONTENT = new byte[100 * 1024 + 3];
+
+    public static FakeFtpServer fakeFtpServer;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        new Random(3).nextBytes(CONTENT);
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2159);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fileSystem.add(new FileEntry("/share/blocked", "not a directory"));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    byte[] stored(String path) throws Exception {
+        return ((FileEntry) fakeFtpServer.getFileSystem().getEntry(path)).createInputStream().readAllBytes();
+    }
+
+    @Test
+    void openUploadStream() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2159));
+
+            var upload = session.openUploadStream(Path.of("stream.bin"), Path.of("streams"));
+            assertThat(upload).returns(Status.SUCCESS, FTPResponse::getStatus);
+            var stream = upload.getStream().orElseThrow();
+            for (int offset = 0; offset < CONTENT.length; offset += 1000)
+                stream.write(CONTENT, offset, Math.min(1000, CONTENT.length - offset));
+
+            var outcome = upload.close();
+            assertThat(outcome)
+                    .returns(null, FTPResponse::getException)
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(upload.close()).isSameAs(outcome);
+            assertThat(this.stored("/share/streams/stream.bin")).isEqualTo(CONTENT);
+
+            assertThat(session.execute("NOOP")).returns(Status.SUCCESS, FTPResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("openUploadStream", e);
+        }
+    }
+
+    @Test
+    void openUploadStream_channel() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2159));
+
+            var upload = session.openUploadStream(Path.of("channel.bin"), Path.of("streams"));
+            var channel = upload.getChannel().orElseThrow();
+            var data = ByteBuffer.allocateDirect(CONTENT.length).put(CONTENT).flip();
+            while (data.hasRemaining()) channel.write(data);
+
+            assertThat(upload.close()).returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(this.stored("/share/streams/channel.bin")).isEqualTo(CONTENT);
+
+        } catch (Exception e) {
+            fail("openUploadStream_channel", e);
+        }
+    }
+
+    @Test
+    void openUploadStream_produce() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2159));
+
+            var outcome = session.openUploadStream(Path.of("produced.txt"), Path.of("streams")).produce(stream -> {
+                try {
+                    stream.write("contenuto generato".getBytes());
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            });
+
+            assertThat(outcome).returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(this.stored("/share/streams/produced.txt")).isEqualTo("contenuto generato".getBytes());
+
+        } catch (Exception e) {
+            fail("openUploadStream_produce", e);
+        }
+    }
+
+    @Test
+    void openUploadStream_rejected() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2159));
+
+            var upload = session.openUploadStream(Path.of("rejected.txt"), Path.of("blocked"));
+            assertThat(upload)
+                    .returns(Status.ERROR, FTPResponse::getStatus)
+                    .returns(true, response -> response.getStream().isEmpty())
+                    .returns(true, response -> response.getChannel().isEmpty());
+            assertThat(upload.close()).isSameAs(upload);
+
+            assertThat(session.execute("NOOP")).returns(Status.SUCCESS, FTPResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("openUploadStream_rejected", e);
+        }
+    }
+
+    @Test
+    void uploadSubscriber() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2159));
+
+            var subscriber = session.uploadSubscriber(Path.of("subscriber.bin"), Path.of("streams"));
+            try (var publisher = new SubmissionPublisher<ByteBuffer>()) {
+                publisher.subscribe(subscriber);
+                for (int offset = 0; offset < CONTENT.length; offset += 4096)
+                    publisher.submit(ByteBuffer.wrap(Arrays.copyOfRange(CONTENT, offset, Math.min(offset + 4096, CONTENT.length))));
+            }
+
+            assertThat(subscriber.getResult().get(5, TimeUnit.SECONDS))
+                    .returns(null, FTPResponse::getException)
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(this.stored("/share/streams/subscriber.bin")).isEqualTo(CONTENT);
+
+        } catch (Exception e) {
+            fail("uploadSubscriber", e);
+        }
+    }
+
+    @Test
+    void uploadSubscriber_fail() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2159));
+
+            var subscriber = session.uploadSubscriber(Path.of("failed.bin"), Path.of("streams"));
+            var publisher = new SubmissionPublisher<ByteBuffer>();
+            publisher.subscribe(subscriber);
+            publisher.submit(ByteBuffer.wrap(CONTENT, 0, 1024));
+            publisher.closeExceptionally(new IllegalStateException("generazione fallita"));
+
+            assertThat(subscriber.getResult().get(5, TimeUnit.SECONDS))
+                    .returns(Status.ERROR, FTPResponse::getStatus)
+                    .satisfies(response -> assertThat(response.getException()).hasCauseInstanceOf(IllegalStateException.class));
+            assertThat(session.execute("NOOP")).returns(Status.SUCCESS, FTPResponse::getStatus);
+
+            var rejected = session.uploadSubscriber(Path.of("rejected.bin"), Path.of("blocked"));
+            try (var other = new SubmissionPublisher<ByteBuffer>()) {
+                other.subscribe(rejected);
+            }
+            assertThat(rejected.getResult().get(5, TimeUnit.SECONDS)).returns(Status.ERROR, FTPResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("uploadSubscriber_fail", e);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package it.gtcode.net.ftp;
+
+import org.mockftpserver.core.command.Command;
+import org.mockftpserver.core.session.Session;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.command.AbstractFakeCommandHandler;
+import org.mockftpserver.fake.filesystem.FileEntry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Gestore del comando {@code RETR} che, a differenza di quello di MockFtpServer, rispetta la posizione indicata dal
+ * precedente comando {@code REST}.
+ */
+public class RestartableRetrCommandHandler extends AbstractFakeCommandHandler {
+
+    private static final String RESTART_OFFSET = "restartOffset";
+
+    /**
+     * Installa i gestori di {@code REST} e {@code RETR} sul server fornito.
+     * @param server server sul quale installare i gestori
+     */
+    public static void install(FakeFtpServer server) {
+        server.setCommandHandler("REST", new AbstractFakeCommandHandler() {
+            @Override
+            protected void handle(Command command, Session session) {
+                this.verifyLoggedIn(session);
+                var offset = Long.parseLong(command.getRequiredParameter(0));
+                session.setAttribute(RESTART_OFFSET, offset);
+                session.sendReply(350, "Restarting at " + offset);
+            }
+        });
+        server.setCommandHandler("RETR", new RestartableRetrCommandHandler());
+    }
+
+    @Override
+    protected void handle(Command command, Session session) {
+        this.verifyLoggedIn(session);
+        var offset = (Long) session.getAttribute(RESTART_OFFSET);
+        session.removeAttribute(RESTART_OFFSET);
+        var path = this.getRealPath(session, command.getRequiredParameter(0));
+        if (!(this.getFileSystem().getEntry(path) instanceof FileEntry file)) {
+            session.sendReply(550, path + ": no such file");
+            return;
+        }
+        byte[] content;
+        try (var stream = file.createInputStream()) {
+            content = stream.readAllBytes();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        var data = Arrays.copyOfRange(content, (int) Math.min(offset == null ? 0 : offset, content.length), content.length);
+        session.sendReply(150, "Opening data connection");
+        session.openDataConnection();
+        session.sendData(data, data.length);
+        session.closeDataConnection();
+        session.sendReply(226, "Transfer complete");
+    }
+
+}
@@ -0,0 +1,256 @@
+package it.gtcode.net.ftp.cache;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPSession_ApacheFTPClient;
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPDownloadCacheTests {
+
+    public static final String CONTENT = "toDownload-1234567890";
+    public static final String OTHER_CONTENT = "otherToDownload-0987654321";
+
+    public static FakeFtpServer fakeFtpServer;
+
+    @TempDir
+    Path directory;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2151);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fileSystem.add(new FileEntry("/share/internal/toDownload.txt", CONTENT));
+        fileSystem.add(new FileEntry("/share/internal/other.txt", OTHER_CONTENT));
+        fileSystem.add(new FileEntry("/share/internal/toModify.txt", CONTENT));
+        fileSystem.add(new FileEntry("/share/internal/toDelete.txt", CONTENT));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    @Test
+    void FTPDownloadCache_fail() {
+        try {
+
+            assertThrows(NullPointerException.class, () -> new FTPDownloadCache(null, 1024));
+            assertThrows(IllegalArgumentException.class, () -> new FTPDownloadCache(directory, 0));
+
+        } catch (Exception e) {
+            fail("FTPDownloadCache_fail", e);
+        }
+    }
+
+    @Test
+    void download() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2151));
+            var cache = new FTPDownloadCache(directory, 1024);
+
+            FTPStreamResponse miss = cache.download(session, Path.of("internal/toDownload.txt"));
+            assertThat(miss)
+                    .returns(null, FTPStreamResponse::getException)
+                    .returns(Status.SUCCESS, FTPStreamResponse::getStatus);
+            miss.consume(stream -> assertThat(stream).hasBinaryContent(CONTENT.getBytes()));
+
+            FTPStreamResponse hit = cache.download(session, Path.of("internal/toDownload.txt"));
+            assertThat(hit)
+                    .returns(null, FTPStreamResponse::getException)
+                    .returns(FTPReplyCode.FILE_STATUS, FTPStreamResponse::getReplyCode)
+                    .returns(Status.SUCCESS, FTPStreamResponse::getStatus);
+            hit.consume(stream -> assertThat(stream).hasBinaryContent(CONTENT.getBytes()));
+
+            assertThat(cache)
+                    .returns(1L, FTPDownloadCache::getHits)
+                    .returns(1L, FTPDownloadCache::getMisses)
+                    .returns((long) CONTENT.length(), FTPDownloadCache::getUsedBytes);
+
+        } catch (Exception e) {
+            fail("download", e);
+        }
+    }
+
+    @Test
+    void download_modified() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2151));
+            var cache = new FTPDownloadCache(directory, 1024);
+
+            cache.download(session, Path.of("internal/toModify.txt")).close();
+            var entry = (FileEntry) fakeFtpServer.getFileSystem().getEntry("/share/internal/toModify.txt");
+            entry.setContents(OTHER_CONTENT);
+
+            cache.download(session, Path.of("internal/toModify.txt"))
+                    .consume(stream -> assertThat(stream).hasBinaryContent(OTHER_CONTENT.getBytes()));
+
+            assertThat(cache)
+                    .returns(0L, FTPDownloadCache::getHits)
+                    .returns(2L, FTPDownloadCache::getMisses)
+                    .returns((long) OTHER_CONTENT.length(), FTPDownloadCache::getUsedBytes);
+
+        } catch (Exception e) {
+            fail("download_modified", e);
+        }
+    }
+
+    @Test
+    void download_fileNotFound() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2151));
+            var cache = new FTPDownloadCache(directory, 1024);
+
+            FTPStreamResponse response = cache.download(session, Path.of("internal/unknown.txt"));
+
+            assertThat(response)
+                    .returns(null, FTPStreamResponse::getException)
+                    .returns(FTPReplyCode.Status.NEGATIVE_PERMANENT, (item) -> item.getReplyCode().getStatus())
+                    .returns(Status.ERROR, FTPStreamResponse::getStatus);
+            assertThat(cache).returns(0L, FTPDownloadCache::getUsedBytes);
+
+        } catch (Exception e) {
+            fail("download_fileNotFound", e);
+        }
+    }
+
+    @Test
+    void download_evicted() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2151));
+            var cache = new FTPDownloadCache(directory, CONTENT.length() + OTHER_CONTENT.length() - 1);
+
+            cache.download(session, Path.of("internal/toDownload.txt")).close();
+            cache.download(session, Path.of("internal/other.txt")).close();
+            cache.download(session, Path.of("internal/other.txt")).close();
+            cache.download(session, Path.of("internal/toDownload.txt"))
+                    .consume(stream -> assertThat(stream).hasBinaryContent(CONTENT.getBytes()));
+
+            assertThat(cache)
+                    .returns(1L, FTPDownloadCache::getHits)
+                    .returns(3L, FTPDownloadCache::getMisses)
+                    .returns((long) CONTENT.length(), FTPDownloadCache::getUsedBytes);
+
+        } catch (Exception e) {
+            fail("download_evicted", e);
+        }
+    }
+
+    @Test
+    void download_tooLarge() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2151));
+            var cache = new FTPDownloadCache(directory, 4);
+
+            cache.download(session, Path.of("internal/toDownload.txt"))
+                    .consume(stream -> assertThat(stream).hasBinaryContent(CONTENT.getBytes()));
+
+            assertThat(cache)
+                    .returns(1L, FTPDownloadCache::getMisses)
+                    .returns(0L, FTPDownloadCache::getUsedBytes);
+
+        } catch (Exception e) {
+            fail("download_tooLarge", e);
+        }
+    }
+
+    @Test
+    void download_reloaded() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2151));
+            new FTPDownloadCache(directory, 1024).download(session, Path.of("internal/toDownload.txt")).close();
+
+            var cache = new FTPDownloadCache(directory, 1024);
+            assertThat(cache).returns((long) CONTENT.length(), FTPDownloadCache::getUsedBytes);
+
+            cache.download(session, Path.of("internal/toDownload.txt"))
+                    .consume(stream -> assertThat(stream).hasBinaryContent(CONTENT.getBytes()));
+            assertThat(cache).returns(1L, FTPDownloadCache::getHits);
+
+        } catch (Exception e) {
+            fail("download_reloaded", e);
+        }
+    }
+
+    @Test
+    void prefetch() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2151));
+            var cache = new FTPDownloadCache(directory, 1024);
+
+            var known = Path.of("internal/toDownload.txt");
+            var unknown = Path.of("internal/unknown.txt");
+            var responses = cache.prefetch(session, List.of(known, unknown));
+
+            assertThat(responses.get(known)).returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(responses.get(unknown)).returns(Status.ERROR, FTPResponse::getStatus);
+
+            cache.download(session, known)
+                    .consume(stream -> assertThat(stream).hasBinaryContent(CONTENT.getBytes()));
+            assertThat(cache).returns(1L, FTPDownloadCache::getHits);
+
+        } catch (Exception e) {
+            fail("prefetch", e);
+        }
+    }
+
+    @Test
+    void wrap() {
+        try {
+
+            var cache = new FTPDownloadCache(directory, 1024);
+            @Cleanup var session = cache.wrap(new FTPSession_ApacheFTPClient(this.getConfiguration(2151)));
+
+            session.download(Path.of("internal/toDelete.txt")).close();
+            assertThat(cache).returns((long) CONTENT.length(), FTPDownloadCache::getUsedBytes);
+
+            assertThat(session.delete(Path.of("internal/toDelete.txt")))
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(cache).returns(0L, FTPDownloadCache::getUsedBytes);
+
+        } catch (Exception e) {
+            fail("wrap", e);
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package it.gtcode.net.ftp.jfr;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPSession_ApacheFTPClient;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPJfrEventsTests {
+
+    public static final String CONTENT = "contenuto remoto";
+
+    public static FakeFtpServer fakeFtpServer;
+
+    @TempDir
+    Path tempDir;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2165);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fileSystem.add(new FileEntry("/share/download/file.txt", CONTENT));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    List<RecordedEvent> record(Runnable activity) throws Exception {
+        var dump = tempDir.resolve("ftp.jfr");
+        try (var recording = new Recording()) {
+            recording.enable(FTPSessionOpenEvent.class);
+            recording.enable(FTPSessionCloseEvent.class);
+            recording.enable(FTPCommandEvent.class);
+            recording.enable(FTPTransferEvent.class);
+            recording.start();
+            activity.run();
+            recording.stop();
+            recording.dump(dump);
+        }
+        return RecordingFile.readAllEvents(dump);
+    }
+
+    List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+    }
+
+    @Test
+    void disabled() {
+        try {
+
+            var event = new FTPTransferEvent();
+            assertThat(event.isEnabled()).isFalse();
+            var stream = new ByteArrayInputStream(new byte[0]);
+            assertThat(FTPTransferEvent.start(FTPTransferEvent.DOWNLOAD, "localhost", Path.of("file")).count(stream)).isSameAs(stream);
+
+        } catch (Exception e) {
+            fail("disabled", e);
+        }
+    }
+
+    @Test
+    void session() {
+        try {
+
+            var file = Files.writeString(tempDir.resolve("local.txt"), "contenuto locale");
+            var events = this.record(() -> {
+                try (var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2165))) {
+                    session.download(Path.of("download/file.txt")).consume(stream -> {
+                        try {
+                            stream.readAllBytes();
+                        } catch (Exception e) {
+                            fail("session", e);
+                        }
+                    });
+                    session.upload(file, Path.of("upload"));
+                } catch (Exception e) {
+                    fail("session", e);
+                }
+            });
+
+            assertThat(this.ofType(events, "it.gtcode.net.ftp.SessionOpen")).singleElement()
+                    .satisfies(event -> {
+                        assertThat(event.getString("server")).isEqualTo("localhost");
+                        assertThat(event.getInt("port")).isEqualTo(2165);
+                        assertThat(event.getBoolean("success")).isTrue();
+                    });
+            assertThat(this.ofType(events, "it.gtcode.net.ftp.SessionClose")).singleElement()
+                    .satisfies(event -> assertThat(event.getBoolean("lost")).isFalse());
+            assertThat(this.ofType(events, "it.gtcode.net.ftp.Command"))
+                    .extracting(event -> event.getString("command"))
+                    .contains("USER", "PASS", "CWD", "RETR", "STOR", "QUIT");
+            assertThat(this.ofType(events, "it.gtcode.net.ftp.Command"))
+                    .filteredOn(event -> event.getString("command").equals("PASS"))
+                    .singleElement()
+                    .satisfies(event -> assertThat(event.getInt("replyCode")).isEqualTo(230));
+
+            var transfers = this.ofType(events, "it.gtcode.net.ftp.Transfer");
+            assertThat(transfers).hasSize(2);
+            assertThat(transfers.get(0).getString("direction")).isEqualTo(FTPTransferEvent.DOWNLOAD);
+            assertThat(transfers.get(0).getLong("bytes")).isEqualTo(CONTENT.length());
+            assertThat(transfers.get(0).getBoolean("success")).isTrue();
+            assertThat(transfers.get(0).getLong("throughput")).isPositive();
+            assertThat(transfers.get(1).getString("direction")).isEqualTo(FTPTransferEvent.UPLOAD);
+            assertThat(transfers.get(1).getLong("bytes")).isEqualTo(Files.size(file));
+
+        } catch (Exception e) {
+            fail("session", e);
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package it.gtcode.net.ftp.nio;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.response.Status;
+import org.junit.jupiter.api.*;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPAsyncSessionNioSocketChannelTests {
+
+    public static final String CONTENT = "toDownload-1234567890";
+    public static final int SESSIONS = 100;
+
+    public static FakeFtpServer fakeFtpServer;
+    public static FakeFtpServer silentFtpServer;
+    public static FTPEventLoopGroup group;
+    public static FTPTransportNio transport;
+
+    FTPConfiguration getConfiguration() {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(2143);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2143);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fileSystem.add(new FileEntry("/share/internal/toDownload.txt", CONTENT));
+        for (int i = 0; i < SESSIONS; i++) fileSystem.add(new FileEntry("/share/many/toDelete" + i + ".txt", CONTENT));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+
+        silentFtpServer = new FakeFtpServer();
+        silentFtpServer.setServerControlPort(2144);
+        silentFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem silentFileSystem = new UnixFakeFileSystem();
+        silentFileSystem.add(new DirectoryEntry("/share"));
+        silentFtpServer.setFileSystem(silentFileSystem);
+        silentFtpServer.setCommandHandler("SITE", (command, session) -> { });
+        silentFtpServer.start();
+
+        group = new FTPEventLoopGroup(2);
+        transport = new FTPTransportNio(group);
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        transport.close();
+        group.close();
+        fakeFtpServer.stop();
+        silentFtpServer.stop();
+    }
+
+    @Test
+    void connectAsync() {
+        try {
+
+            var session = transport.connectAsync(this.getConfiguration()).join();
+
+            assertThat(session)
+                    .returns(true, FTPAsyncSession::isOpen)
+                    .returns(Path.of("/share"), FTPAsyncSession::getRoot);
+
+            session.close().join();
+
+            assertThat(session).returns(false, FTPAsyncSession::isOpen);
+            assertThrows(IllegalStateException.class, () -> session.delete(Path.of("toDelete.txt")));
+
+        } catch (Exception e) {
+            fail("connectAsync", e);
+        }
+    }
+
+    @Test
+    void connectAsync_fail() {
+        try {
+
+            var configuration = this.getConfiguration();
+            configuration.setPassword("wrong");
+
+            var future = transport.connectAsync(configuration);
+
+            var exception = assertThrows(CompletionException.class, future::join);
+            assertThat(exception).hasCauseInstanceOf(UncheckedIOException.class);
+
+        } catch (Exception e) {
+            fail("connectAsync_fail", e);
+        }
+    }
+
+    @Test
+    void delete_fileNotFound() {
+        try {
+
+            var session = transport.connectAsync(this.getConfiguration()).join();
+
+            var response = session.delete(Path.of("unknown/notFoundToDelete.txt")).join();
+
+            assertThat(response)
+                    .returns(null, FTPResponse::getException)
+                    .returns(FTPReplyCode.Status.NEGATIVE_PERMANENT, (item) -> item.getReplyCode().getStatus())
+                    .returns(Status.ERROR, FTPResponse::getStatus);
+            assertThat(session).returns(true, FTPAsyncSession::isOpen);
+
+            assertThat(session.execute("chmod 777 internal/toDownload.txt").join())
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+
+            session.close().join();
+
+        } catch (Exception e) {
+            fail("delete_fileNotFound", e);
+        }
+    }
+
+    @Test
+    void execute_replyTimeout() {
+        try {
+
+            var configuration = this.getConfiguration();
+            configuration.setPort(2144);
+            configuration.setReplyTimeout(Duration.ofMillis(300));
+
+            var session = transport.connectAsync(configuration).join();
+
+            var response = session.execute("chmod 777 toDownload.txt").join();
+
+            assertThat(response)
+                    .returns(FTPReplyCode.SERVICE_NOT_AVAILABLE, FTPResponse::getReplyCode)
+                    .returns(Status.ERROR, FTPResponse::getStatus);
+            assertThat(response.getException()).isInstanceOf(SocketTimeoutException.class);
+            assertThat(session).returns(false, FTPAsyncSession::isOpen);
+
+        } catch (Exception e) {
+            fail("execute_replyTimeout", e);
+        }
+    }
+
+    @Test
+    void queuedOperations() {
+        try {
+
+            var session = transport.connectAsync(this.getConfiguration()).join();
+
+            CompletableFuture<FTPResponse> upload = session.upload(
+                    Path.of("queued.txt"), new ByteArrayInputStream(CONTENT.getBytes()), Path.of("queue")
+            );
+            CompletableFuture<FTPStreamResponse> download = session.download(Path.of("queue/queued.txt"));
+            CompletableFuture<FTPResponse> delete = session.delete(Path.of("queue/queued.txt"));
+
+            assertThat(upload.join()).returns(Status.SUCCESS, FTPResponse::getStatus);
+            var response = download.join();
+            assertThat(response).returns(Status.SUCCESS, FTPStreamResponse::getStatus);
+            assertThat(delete).isNotDone();
+
+            response.consume(stream -> assertThat(stream).hasBinaryContent(CONTENT.getBytes()));
+
+            assertThat(delete.join()).returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(fakeFtpServer.getFileSystem().exists("/share/queue/queued.txt")).isFalse();
+
+            session.close().join();
+
+        } catch (Exception e) {
+            fail("queuedOperations", e);
+        }
+    }
+
+    @Test
+    void concurrentSessions() {
+        try {
+
+            var sessions = new ArrayList<CompletableFuture<FTPAsyncSession>>();
+            for (int i = 0; i < SESSIONS; i++) sessions.add(transport.connectAsync(this.getConfiguration()));
+
+            var deletes = new ArrayList<CompletableFuture<FTPResponse>>();
+            for (int i = 0; i < SESSIONS; i++) {
+                var file = Path.of("many/toDelete" + i + ".txt");
+                deletes.add(sessions.get(i).thenCompose(session -> session.delete(file)));
+            }
+
+            for (var delete : deletes) assertThat(delete.join()).returns(Status.SUCCESS, FTPResponse::getStatus);
+            for (var session : sessions) session.join().close().join();
+
+            assertThat(fakeFtpServer.getFileSystem().listFiles("/share/many").isEmpty()).isTrue();
+
+        } catch (Exception e) {
+            fail("concurrentSessions", e);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package it.gtcode.net.ftp.nio;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPReplyParserTests {
+
+    ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void parse() {
+        try {
+
+            var parser = new FTPReplyParser();
+
+            var reply = parser.parse(this.bytes("250 CWD completed\r\n"));
+
+            assertThat(reply)
+                    .returns(250, FTPReply::getCode)
+                    .returns("250 CWD completed\r\n", FTPReply::getText);
+
+        } catch (Exception e) {
+            fail("parse", e);
+        }
+    }
+
+    @Test
+    void parse_multiLine() {
+        try {
+
+            var parser = new FTPReplyParser();
+
+            var reply = parser.parse(this.bytes("211-Features:\r\n SIZE\r\n211-not the end\r\n211 End\r\n"));
+
+            assertThat(reply)
+                    .returns(211, FTPReply::getCode)
+                    .returns("211-Features:\r\n SIZE\r\n211-not the end\r\n211 End\r\n", FTPReply::getText);
+
+        } catch (Exception e) {
+            fail("parse_multiLine", e);
+        }
+    }
+
+    @Test
+    void parse_fragmented() {
+        try {
+
+            var parser = new FTPReplyParser();
+
+            assertThat(parser.parse(this.bytes("22"))).isNull();
+            assertThat(parser.parse(this.bytes("0 Ready\r"))).isNull();
+
+            var buffer = this.bytes("\n331 Password\r\n");
+            assertThat(parser.parse(buffer)).returns(220, FTPReply::getCode);
+            assertThat(parser.parse(buffer)).returns(331, FTPReply::getCode);
+            assertThat(buffer.hasRemaining()).isFalse();
+
+        } catch (Exception e) {
+            fail("parse_fragmented", e);
+        }
+    }
+
+    @Test
+    void parse_fail() {
+        try {
+
+            var parser = new FTPReplyParser();
+
+            assertThrows(ProtocolException.class, () -> parser.parse(this.bytes("hello\r\n")));
+
+            var longParser = new FTPReplyParser();
+            var longReply = this.bytes("200-" + "x".repeat(FTPReplyParser.MAX_REPLY_LENGTH));
+
+            assertThrows(ProtocolException.class, () -> longParser.parse(longReply));
+
+        } catch (Exception e) {
+            fail("parse_fail", e);
+        }
+    }
+
+}
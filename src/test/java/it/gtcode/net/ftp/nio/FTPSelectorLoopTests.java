@@ -0,0 +1,121 @@
+package it.gtcode.net.ftp.nio;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPSelectorLoopTests {
+
+    @Test
+    void ready_unexpectedFailure() {
+        try (var loop = new FTPSelectorLoop("ftp-nio-test")) {
+
+            var pipe = Pipe.open();
+            pipe.source().configureBlocking(false);
+            var failure = new CompletableFuture<IOException>();
+            loop.execute(() -> {
+                try {
+                    loop.register(pipe.source(), SelectionKey.OP_READ, new FTPSelectorLoop.Handler() {
+                        @Override
+                        public void ready(SelectionKey key) {
+                            throw new IllegalStateException("handler broken");
+                        }
+
+                        @Override
+                        public void failed(IOException cause) {
+                            failure.complete(cause);
+                        }
+                    });
+                } catch (IOException ioe) {
+                    failure.completeExceptionally(ioe);
+                }
+            }, failure::completeExceptionally);
+            pipe.sink().write(ByteBuffer.wrap(new byte[] { 1 }));
+
+            assertThat(failure.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+
+            var alive = new CompletableFuture<Boolean>();
+            loop.execute(() -> alive.complete(loop.inLoop()), alive::completeExceptionally);
+            assertThat(alive.get(5, TimeUnit.SECONDS)).isTrue();
+
+            pipe.sink().close();
+            pipe.source().close();
+
+        } catch (Exception e) {
+            fail("ready_unexpectedFailure", e);
+        }
+    }
+
+    @Test
+    void execute_closed() {
+        try {
+
+            var loop = new FTPSelectorLoop("ftp-nio-test");
+            loop.close();
+            var closed = new CompletableFuture<Void>();
+            loop.execute(() -> closed.complete(null), closed::completeExceptionally);
+            var caller = Thread.currentThread();
+            var executed = new CompletableFuture<Thread>();
+            loop.execute(() -> executed.complete(Thread.currentThread()), cause -> executed.complete(caller));
+
+            assertThatThrownBy(() -> closed.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IOException.class);
+            assertThat(executed.get(5, TimeUnit.SECONDS)).isSameAs(caller);
+
+        } catch (Exception e) {
+            fail("execute_closed", e);
+        }
+    }
+
+    @Test
+    void execute_failed() {
+        try (var loop = new FTPSelectorLoop("ftp-nio-test")) {
+
+            var broken = new CompletableFuture<Void>();
+            loop.execute(() -> { throw new IllegalStateException("task broken"); }, broken::completeExceptionally);
+
+            assertThatThrownBy(() -> broken.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                    .cause().isInstanceOf(IOException.class).hasCauseInstanceOf(IllegalStateException.class);
+
+            var alive = new CompletableFuture<Boolean>();
+            loop.execute(() -> alive.complete(loop.inLoop()), alive::completeExceptionally);
+            assertThat(alive.get(5, TimeUnit.SECONDS)).isTrue();
+
+        } catch (Exception e) {
+            fail("execute_failed", e);
+        }
+    }
+
+    @Test
+    void execute_whileClosing() {
+        try {
+
+            var loop = new FTPSelectorLoop("ftp-nio-test");
+            var followUp = new CompletableFuture<Void>();
+            loop.execute(() -> {
+                loop.close();
+                loop.execute(() -> followUp.complete(null), followUp::completeExceptionally);
+            }, followUp::completeExceptionally);
+
+            assertThatThrownBy(() -> followUp.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IOException.class);
+
+        } catch (Exception e) {
+            fail("execute_whileClosing", e);
+        }
+    }
+
+}
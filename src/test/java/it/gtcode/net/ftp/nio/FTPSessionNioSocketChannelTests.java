@@ -0,0 +1,451 @@
+package it.gtcode.net.ftp.nio;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPSession;
+import it.gtcode.net.ftp.FTPSessionFactoryTransport;
+import it.gtcode.net.ftp.RestartableRetrCommandHandler;
+import it.gtcode.net.ftp.response.FTPReplyCode;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
+import it.gtcode.net.ftp.response.FTPStreamResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.mockftpserver.core.command.StaticReplyCommandHandler;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.UncheckedIOException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPSessionNioSocketChannelTests {
+
+    public static final String CONTENT = "toDownload-1234567890";
+
+    public static FakeFtpServer fakeFtpServer;
+    public static FTPTransportNio transport;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    static FakeFtpServer createServer(int port) {
+        var server = new FakeFtpServer();
+        server.setServerControlPort(port);
+        server.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        server.setFileSystem(fileSystem);
+        return server;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = createServer(2141);
+        fakeFtpServer.getFileSystem().add(new FileEntry("/share/internal/toDownload.txt", CONTENT));
+        fakeFtpServer.getFileSystem().add(new FileEntry("/share/toDelete.txt", CONTENT));
+        fakeFtpServer.setCommandHandler("MDTM", new StaticReplyCommandHandler(213, "20240102030405"));
+        RestartableRetrCommandHandler.install(fakeFtpServer);
+        fakeFtpServer.start();
+
+        transport = new FTPTransportNio();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        transport.close();
+        fakeFtpServer.stop();
+    }
+
+    @Test
+    void FTPSession_NioSocketChannel__configuration() {
+        try {
+
+            var configuration = this.getConfiguration(2141);
+
+            @Cleanup var session = transport.connect(configuration);
+
+            assertThat(session)
+                    .returns(true, FTPSession::isOpen)
+                    .returns(configuration, FTPSession::getConfiguration)
+                    .returns(Path.of("/share"), FTPSession::getRoot);
+
+        } catch (Exception e) {
+            fail("FTPSession_NioSocketChannel__configuration", e);
+        }
+    }
+
+    @Test
+    void FTPSession_NioSocketChannel__configuration_fail() {
+        try {
+
+            var configuration = this.getConfiguration(2141);
+            configuration.setPassword("wrong");
+
+            assertThrows(UncheckedIOException.class, () -> transport.connect(configuration));
+
+            var directoryConfiguration = this.getConfiguration(2141);
+            directoryConfiguration.setDirectory(Path.of("/unknown"));
+
+            assertThrows(UncheckedIOException.class, () -> transport.connect(directoryConfiguration));
+
+        } catch (Exception e) {
+            fail("FTPSession_NioSocketChannel__configuration_fail", e);
+        }
+    }
+
+    @Test
+    void FTPSessionFactoryTransport() {
+        try {
+
+            var factory = new FTPSessionFactoryTransport<>(this.getConfiguration(2141), transport);
+
+            @Cleanup var session = factory.openSession();
+
+            assertThat(session)
+                    .isInstanceOf(FTPSession_NioSocketChannel.class)
+                    .returns(true, FTPSession::isOpen);
+
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () -> factory.openSession(this.getConfiguration(2141), new Object())
+            );
+
+        } catch (Exception e) {
+            fail("FTPSessionFactoryTransport", e);
+        }
+    }
+
+    @Test
+    void download() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            FTPStreamResponse response = session.download(Path.of("internal/toDownload.txt"));
+
+            assertThat(response)
+                    .returns(null, FTPStreamResponse::getException)
+                    .returns(FTPReplyCode.Status.POSITIVE_PRELIMINARY, (item) -> item.getReplyCode().getStatus())
+                    .returns(Status.SUCCESS, FTPStreamResponse::getStatus);
+
+            response.consume(stream -> assertThat(stream).hasBinaryContent(CONTENT.getBytes()));
+
+            assertThat(session.delete(Path.of("internal/unknown.txt")))
+                    .returns(FTPReplyCode.Status.NEGATIVE_PERMANENT, (item) -> item.getReplyCode().getStatus());
+
+        } catch (Exception e) {
+            fail("download", e);
+        }
+    }
+
+    @Test
+    void download_offset() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            FTPStreamResponse response = session.download(Path.of("internal/toDownload.txt"), 11);
+
+            assertThat(response)
+                    .returns(null, FTPStreamResponse::getException)
+                    .returns(Status.SUCCESS, FTPStreamResponse::getStatus);
+
+            response.consume(stream -> assertThat(stream).hasBinaryContent(CONTENT.substring(11).getBytes()));
+
+            assertThrows(IllegalArgumentException.class, () -> session.download(Path.of("internal/toDownload.txt"), -1));
+
+        } catch (Exception e) {
+            fail("download_offset", e);
+        }
+    }
+
+    @Test
+    void download_fileNotFound() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            FTPStreamResponse response = session.download(Path.of("unknown/unknownFileToDownload.txt"));
+
+            assertThat(response)
+                    .returns(null, FTPStreamResponse::getException)
+                    .returns(FTPReplyCode.Status.NEGATIVE_PERMANENT, (item) -> item.getReplyCode().getStatus())
+                    .returns(Status.ERROR, FTPStreamResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("download_fileNotFound", e);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("resource")
+    void download_closedConnection() {
+        try {
+
+            var server = createServer(2142);
+            server.start();
+
+            var session = transport.connect(this.getConfiguration(2142));
+
+            server.stop();
+
+            FTPStreamResponse response = session.download(Path.of("internal/toDownload.txt"));
+
+            assertThat(response)
+                    .returns(true, (item) -> item.getException() instanceof SocketException)
+                    .returns(Status.ERROR, FTPStreamResponse::getStatus);
+            assertThat(session).returns(false, FTPSession::isOpen);
+
+        } catch (Exception e) {
+            fail("download_closedConnection", e);
+        }
+    }
+
+    @Test
+    void download_closedSession() {
+        try {
+
+            var session = transport.connect(this.getConfiguration(2141));
+            session.close();
+
+            assertThrows(
+                    IllegalStateException.class,
+                    () -> session.download(Path.of("internal/toDownload.txt"))
+            );
+
+        } catch (Exception e) {
+            fail("download_closedSession", e);
+        }
+    }
+
+    @Test
+    void upload_target() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            FTPResponse response = session.upload(Path.of("src/test/resources/ftp/toUpload.txt"), Path.of("nio/sub"));
+
+            assertThat(response)
+                    .returns(null, FTPResponse::getException)
+                    .returns(FTPReplyCode.Status.POSITIVE_COMPLETION, (item) -> item.getReplyCode().getStatus())
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+
+            assertThat(fakeFtpServer.getFileSystem().exists("/share/nio/sub/toUpload.txt")).isTrue();
+
+        } catch (Exception e) {
+            fail("upload_target", e);
+        }
+    }
+
+    @Test
+    void upload_targetStream() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            FTPResponse response = session.upload(
+                    Path.of("stream.txt"), new ByteArrayInputStream(CONTENT.getBytes()), Path.of("nio")
+            );
+
+            assertThat(response)
+                    .returns(null, FTPResponse::getException)
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+
+            var stored = (FileEntry) fakeFtpServer.getFileSystem().getEntry("/share/nio/stream.txt");
+            assertThat(stored.createInputStream()).hasBinaryContent(CONTENT.getBytes());
+
+        } catch (Exception e) {
+            fail("upload_targetStream", e);
+        }
+    }
+
+    @Test
+    void upload_targetByteBuffer() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            var data = ByteBuffer.allocateDirect(CONTENT.length());
+            data.put(CONTENT.getBytes()).flip();
+            FTPResponse response = session.upload(Path.of("buffer.txt"), data, Path.of("nio"));
+
+            assertThat(response)
+                    .returns(null, FTPResponse::getException)
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(data.remaining()).isEqualTo(CONTENT.length());
+
+            var stored = (FileEntry) fakeFtpServer.getFileSystem().getEntry("/share/nio/buffer.txt");
+            assertThat(stored.createInputStream()).hasBinaryContent(CONTENT.getBytes());
+
+        } catch (Exception e) {
+            fail("upload_targetByteBuffer", e);
+        }
+    }
+
+    @Test
+    void uploadMapped() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            FTPResponse response = session.uploadMapped(Path.of("src/test/resources/ftp/toUpload.txt"), Path.of("nio/mapped"));
+
+            assertThat(response)
+                    .returns(null, FTPResponse::getException)
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+
+            var stored = (FileEntry) fakeFtpServer.getFileSystem().getEntry("/share/nio/mapped/toUpload.txt");
+            assertThat(stored.createInputStream()).hasSameContentAs(Files.newInputStream(Path.of("src/test/resources/ftp/toUpload.txt")));
+
+        } catch (Exception e) {
+            fail("uploadMapped", e);
+        }
+    }
+
+    @Test
+    void openUploadStream() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            var upload = session.openUploadStream(Path.of("opened.txt"), Path.of("nio"));
+            assertThat(upload).returns(Status.SUCCESS, FTPResponse::getStatus);
+            upload.getStream().orElseThrow().write(CONTENT.getBytes());
+
+            assertThat(upload.close())
+                    .returns(null, FTPResponse::getException)
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+
+            var stored = (FileEntry) fakeFtpServer.getFileSystem().getEntry("/share/nio/opened.txt");
+            assertThat(stored.createInputStream()).hasBinaryContent(CONTENT.getBytes());
+            assertThat(session.execute("NOOP")).returns(Status.SUCCESS, FTPResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("openUploadStream", e);
+        }
+    }
+
+    @Test
+    void delete() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            FTPResponse response = session.delete(Path.of("toDelete.txt"));
+
+            assertThat(response)
+                    .returns(null, FTPResponse::getException)
+                    .returns(FTPReplyCode.Status.POSITIVE_COMPLETION, (item) -> item.getReplyCode().getStatus())
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+
+            assertThat(fakeFtpServer.getFileSystem().exists("/share/toDelete.txt")).isFalse();
+
+        } catch (Exception e) {
+            fail("delete", e);
+        }
+    }
+
+    @Test
+    void execute() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            FTPResponse response = session.execute("chmod 777 internal/toDownload.txt");
+
+            assertThat(response)
+                    .returns(null, FTPResponse::getException)
+                    .returns(FTPReplyCode.Status.POSITIVE_COMPLETION, (item) -> item.getReplyCode().getStatus())
+                    .returns(Status.SUCCESS, FTPResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("execute", e);
+        }
+    }
+
+    @Test
+    void close() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            session.close();
+
+            assertThat(session).returns(false, FTPSession::isOpen);
+
+            session.close();
+
+        } catch (Exception e) {
+            fail("close", e);
+        }
+    }
+
+    @Test
+    void stat() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            FTPStatResponse response = session.stat(Path.of("internal/toDownload.txt"));
+
+            assertThat(response)
+                    .returns(null, FTPStatResponse::getException)
+                    .returns(FTPReplyCode.FILE_STATUS, FTPStatResponse::getReplyCode)
+                    .returns((long) CONTENT.length(), FTPStatResponse::getSize)
+                    .returns(Instant.parse("2024-01-02T03:04:05Z"), FTPStatResponse::getLastModified)
+                    .returns(Status.SUCCESS, FTPStatResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("stat", e);
+        }
+    }
+
+    @Test
+    void stat_batch() {
+        try {
+
+            @Cleanup var session = transport.connect(this.getConfiguration(2141));
+
+            var known = Path.of("internal/toDownload.txt");
+            var unknown = Path.of("internal/unknown.txt");
+            var responses = session.stat(List.of(known, unknown));
+
+            assertThat(responses).containsOnlyKeys(known, unknown);
+            assertThat(responses.get(known))
+                    .returns((long) CONTENT.length(), FTPStatResponse::getSize)
+                    .returns(Status.SUCCESS, FTPStatResponse::getStatus);
+            assertThat(responses.get(unknown))
+                    .returns(null, FTPStatResponse::getException)
+                    .returns(-1L, FTPStatResponse::getSize)
+                    .returns(FTPReplyCode.Status.NEGATIVE_PERMANENT, (item) -> item.getReplyCode().getStatus())
+                    .returns(Status.ERROR, FTPStatResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("stat_batch", e);
+        }
+    }
+
+}
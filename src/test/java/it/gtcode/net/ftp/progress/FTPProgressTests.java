@@ -0,0 +1,196 @@
+package it.gtcode.net.ftp.progress;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPSessionFactoryApache;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPProgressTests {
+
+    public static final String CONTENT = "0123456789".repeat(100);
+
+    public static FakeFtpServer fakeFtpServer;
+
+    @TempDir
+    Path tempDir;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2162);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fileSystem.add(new DirectoryEntry("/share/upload"));
+        fileSystem.add(new FileEntry("/share/download/file.txt", CONTENT));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    @Test
+    void sampling_bytes() {
+        try {
+
+            var samples = new ArrayList<FTPProgress>();
+            var clock = new AtomicLong();
+            @Cleanup var stream = new FTPProgressInputStream(
+                    new ByteArrayInputStream(CONTENT.getBytes()),
+                    CONTENT.length(),
+                    samples::add,
+                    FTPProgressSampling.everyBytes(300),
+                    () -> clock.addAndGet(Duration.ofMillis(100).toNanos())
+            );
+            var buffer = new byte[100];
+            while (stream.read(buffer) >= 0) ;
+
+            assertThat(samples).extracting(FTPProgress::transferred).containsExactly(300L, 600L, 900L, 1000L);
+            assertThat(samples).extracting(FTPProgress::completed).containsExactly(false, false, false, true);
+            var first = samples.get(0);
+            assertThat(first.getPercentage()).hasValue(30d);
+            assertThat(first.rate()).isPositive();
+            assertThat(first.getEta()).isPresent();
+            assertThat(samples.get(3).getEta()).hasValue(Duration.ZERO);
+            assertThat(stream.getTransferred()).isEqualTo(CONTENT.length());
+
+            stream.close();
+            assertThat(samples).hasSize(4);
+
+        } catch (Exception e) {
+            fail("sampling_bytes", e);
+        }
+    }
+
+    @Test
+    void sampling_interval() {
+        try {
+
+            var samples = new ArrayList<FTPProgress>();
+            var clock = new AtomicLong();
+            var stream = new FTPProgressInputStream(
+                    new ByteArrayInputStream(CONTENT.getBytes()),
+                    -1,
+                    samples::add,
+                    FTPProgressSampling.every(Duration.ofSeconds(1)),
+                    clock::get
+            );
+            var buffer = new byte[100];
+            for (int i = 0; i < 5; i++) {
+                clock.addAndGet(Duration.ofMillis(400).toNanos());
+                stream.read(buffer);
+            }
+            stream.close();
+
+            assertThat(samples).extracting(FTPProgress::transferred).containsExactly(300L, 500L);
+            assertThat(samples.get(0).rate()).isEqualTo(250d);
+            assertThat(samples.get(0).getPercentage()).isEmpty();
+            assertThat(samples.get(0).getEta()).isEmpty();
+            assertThat(samples.get(1).completed()).isTrue();
+            assertThat(samples.get(1).elapsed()).isEqualTo(Duration.ofSeconds(2));
+
+        } catch (Exception e) {
+            fail("sampling_interval", e);
+        }
+    }
+
+    @Test
+    void sampling_invalid() {
+        try {
+
+            assertThatThrownBy(() -> new FTPProgressSampling(0, Duration.ZERO))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> FTPProgressSampling.everyBytes(-1))
+                    .isInstanceOf(IllegalArgumentException.class);
+
+        } catch (Exception e) {
+            fail("sampling_invalid", e);
+        }
+    }
+
+    @Test
+    void upload() {
+        try {
+
+            var file = Files.writeString(tempDir.resolve("local.txt"), CONTENT);
+            var samples = new ArrayList<FTPProgress>();
+            @Cleanup var session = new FTPSessionFactoryApache(this.getConfiguration(2162)).openSession();
+
+            var response = session.upload(file, Path.of("upload"), samples::add, FTPProgressSampling.everyBytes(256));
+            assertThat(response.getStatus()).isEqualTo(Status.SUCCESS);
+            assertThat(fakeFtpServer.getFileSystem().exists("/share/upload/local.txt")).isTrue();
+            assertThat(samples).isNotEmpty();
+            assertThat(samples).allMatch(progress -> progress.total() == CONTENT.length());
+            assertThat(samples.get(samples.size() - 1))
+                    .returns((long) CONTENT.length(), FTPProgress::transferred)
+                    .returns(true, FTPProgress::completed);
+
+        } catch (Exception e) {
+            fail("upload", e);
+        }
+    }
+
+    @Test
+    void download() {
+        try {
+
+            var samples = new ArrayList<FTPProgress>();
+            @Cleanup var session = new FTPSessionFactoryApache(this.getConfiguration(2162)).openSession();
+
+            var response = session.download(Path.of("download/file.txt"), samples::add, FTPProgressSampling.everyBytes(256));
+            assertThat(response.getStatus()).isEqualTo(Status.SUCCESS);
+            response.consume(stream -> {
+                try {
+                    assertThat(new String(stream.readAllBytes())).isEqualTo(CONTENT);
+                } catch (Exception e) {
+                    fail("download", e);
+                }
+            });
+            assertThat(samples).isNotEmpty();
+            assertThat(samples).allMatch(progress -> progress.total() == CONTENT.length());
+            assertThat(samples.get(samples.size() - 1))
+                    .returns((long) CONTENT.length(), FTPProgress::transferred)
+                    .returns(true, FTPProgress::completed);
+
+            var missing = session.download(Path.of("download/missing.txt"), samples::add, FTPProgressSampling.DEFAULT);
+            assertThat(missing.getStatus()).isEqualTo(Status.ERROR);
+
+        } catch (Exception e) {
+            fail("download", e);
+        }
+    }
+
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -74,4 +75,56 @@ class FTPResponseTests {
         }
     }
 
+    @Test
+    void asSuccess_codeDeferredMessage() {
+        try {
+
+            var expected = new FTPResponse();
+            expected.setStatus(Status.SUCCESS);
+            expected.setReplyCode(FTPReplyCode.FILE_ACTION_OK);
+            expected.setMessage("FILE ACTION OK");
+
+            var materialized = new AtomicInteger();
+            var response = new FTPResponse();
+
+            response.asSuccess(expected.getReplyCode().getCode(), () -> {
+                materialized.incrementAndGet();
+                return "FILE ACTION OK";
+            });
+
+            assertThat(materialized).hasValue(0);
+            assertThat(response).isEqualTo(expected);
+            assertThat(response.getMessage()).isEqualTo("FILE ACTION OK");
+            assertThat(materialized).hasValue(1);
+
+        } catch (Exception e) {
+            fail("asSuccess_codeDeferredMessage", e);
+        }
+    }
+
+    @Test
+    void asError_codeDeferredMessageException() {
+        try {
+
+            var expected = new FTPResponse();
+            expected.setStatus(Status.ERROR);
+            expected.setReplyCode(FTPReplyCode.FILE_UNAVAILABLE);
+            expected.setMessage("FILE UNAVAILABLE");
+            expected.setException(new IOException("asError_codeDeferredMessageException"));
+
+            var response = new FTPResponse();
+
+            response.asError(expected.getReplyCode().getCode(), () -> "FILE UNAVAILABLE", expected.getException());
+
+            assertThat(response).isEqualTo(expected);
+
+            response.setMessage("OVERRIDDEN");
+
+            assertThat(response.getMessage()).isEqualTo("OVERRIDDEN");
+
+        } catch (Exception e) {
+            fail("asError_codeDeferredMessageException", e);
+        }
+    }
+
 }
\ No newline at end of file
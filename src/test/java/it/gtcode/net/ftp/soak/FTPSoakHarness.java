@@ -0,0 +1,194 @@
+package it.gtcode.net.ftp.soak;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import it.gtcode.net.ftp.FTPSession;
+import it.gtcode.net.ftp.FTPSessionFactory;
+import it.gtcode.net.ftp.soak.FTPSoakWorkload.Operation;
+import it.gtcode.net.response.Status;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Genera un carico prolungato di caricamenti, scaricamenti ed eliminazioni con le sessioni create da una factory,
+ * così da evidenziare nel tempo connessioni non rilasciate, esaurimento delle risorse e crescita della memoria.<br>
+ * Ogni worker utilizza una propria sessione, rinnovata periodicamente e dopo ogni errore; le latenze vengono
+ * registrate in microsecondi con HdrHistogram e a ogni intervallo vengono campionati throughput, connessioni aperte
+ * sul server, descrittori aperti dal processo e memoria heap occupata.
+ */
+public class FTPSoakHarness {
+
+    private static final long HIGHEST_LATENCY = TimeUnit.HOURS.toMicros(1);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final FTPSessionFactory factory;
+    private final FTPSoakWorkload workload;
+    private final IntSupplier openConnections;
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final LongAdder bytes = new LongAdder();
+    private final Queue<String> uploaded = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final ByteBuffer data;
+
+    /**
+     * @param factory factory con la quale creare le sessioni dei worker
+     * @param workload carico di lavoro da eseguire
+     * @param openConnections connessioni di controllo aperte sul server, ad esempio
+     *                        {@link it.gtcode.net.ftp.standin.FTPStandInServer#getOpenConnections()}; {@code null}
+     *                        se non disponibile
+     */
+    public FTPSoakHarness(FTPSessionFactory factory, FTPSoakWorkload workload, IntSupplier openConnections) {
+        if (workload.getMaxSize() <= 0) throw new IllegalArgumentException("Nessuna dimensione dei file configurata");
+        this.factory = factory;
+        this.workload = workload;
+        this.openConnections = openConnections != null ? openConnections : () -> -1;
+        for (var operation : Operation.values()) {
+            recorders.put(operation, new Recorder(HIGHEST_LATENCY, 3));
+            errors.put(operation, new LongAdder());
+        }
+        var content = new byte[(int) workload.getMaxSize()];
+        new Random(0).nextBytes(content);
+        this.data = ByteBuffer.wrap(content).asReadOnlyBuffer();
+    }
+
+    /**
+     * Esegue il carico di lavoro per la durata configurata e ne restituisce il report.
+     */
+    public FTPSoakReport run() throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + workload.getDuration().toNanos();
+        var done = new CountDownLatch(workload.getConcurrency());
+        for (int i = 0; i < workload.getConcurrency(); i++) {
+            var random = new Random(i);
+            var thread = new Thread(() -> {
+                try {
+                    this.work(random, deadline);
+                } finally {
+                    done.countDown();
+                }
+            }, "ftp-soak-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            thread.start();
+        }
+        var totals = new EnumMap<Operation, Histogram>(Operation.class);
+        for (var operation : Operation.values()) totals.put(operation, new Histogram(HIGHEST_LATENCY, 3));
+        var samples = new ArrayList<FTPSoakReport.Sample>();
+        while (!done.await(workload.getInterval().toNanos(), TimeUnit.NANOSECONDS))
+            samples.add(this.sample(start, totals));
+        samples.add(this.sample(start, totals));
+        var failures = new EnumMap<Operation, Long>(Operation.class);
+        errors.forEach((operation, count) -> failures.put(operation, count.sum()));
+        return new FTPSoakReport(Duration.ofNanos(System.nanoTime() - start), totals, failures, samples);
+    }
+
+    private void work(Random random, long deadline) {
+        FTPSession session = null;
+        int operations = 0;
+        try {
+            while (System.nanoTime() - deadline < 0) {
+                var operation = workload.nextOperation(random);
+                long started = System.nanoTime();
+                boolean success;
+                try {
+                    if (session == null) session = factory.openSession();
+                    success = this.execute(session, operation, random);
+                } catch (IOException | RuntimeException e) {
+                    success = false;
+                }
+                recorders.get(operation).recordValue(
+                        Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started), HIGHEST_LATENCY)
+                );
+                operations++;
+                if (!success) errors.get(operation).increment();
+                boolean renew = workload.getSessionOperations() > 0
+                        && operations % workload.getSessionOperations() == 0;
+                if (session != null && (!success || renew || !session.isOpen())) {
+                    closeQuietly(session);
+                    session = null;
+                }
+            }
+        } finally {
+            if (session != null) closeQuietly(session);
+        }
+    }
+
+    private boolean execute(FTPSession session, Operation operation, Random random) throws IOException {
+        var directory = Path.of(workload.getUploadDirectory());
+        switch (operation) {
+            case UPLOAD -> {
+                var size = (int) workload.nextSize(random);
+                var name = "soak-" + sequence.incrementAndGet() + ".bin";
+                var response = session.upload(Path.of(name), data.duplicate().limit(size), directory);
+                if (response.getStatus() != Status.SUCCESS) return false;
+                uploaded.add(name);
+                bytes.add(size);
+                return true;
+            }
+            case DOWNLOAD -> {
+                var files = workload.getDownloadFiles();
+                var response = session.download(Path.of(files.get(random.nextInt(files.size()))));
+                if (response.getStatus() != Status.SUCCESS) return false;
+                try {
+                    bytes.add(response.getStream().orElseThrow().transferTo(OutputStream.nullOutputStream()));
+                } finally {
+                    response.close();
+                }
+                return true;
+            }
+            default -> {
+                var name = uploaded.poll();
+                if (name == null) return true;
+                return session.delete(directory.resolve(name)).getStatus() == Status.SUCCESS;
+            }
+        }
+    }
+
+    private FTPSoakReport.Sample sample(long start, Map<Operation, Histogram> totals) {
+        var interval = new Histogram(HIGHEST_LATENCY, 3);
+        recorders.forEach((operation, recorder) -> {
+            var histogram = recorder.getIntervalHistogram();
+            totals.get(operation).add(histogram);
+            interval.add(histogram);
+        });
+        return new FTPSoakReport.Sample(
+                Duration.ofNanos(System.nanoTime() - start),
+                interval.getTotalCount(),
+                bytes.sumThenReset(),
+                interval.getValueAtPercentile(99),
+                openConnections.getAsInt(),
+                openFiles(),
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed()
+        );
+    }
+
+    /**
+     * Restituisce i descrittori aperti dal processo, {@code -1} se la piattaforma non li espone.
+     */
+    private static long openFiles() {
+        var system = ManagementFactory.getOperatingSystemMXBean();
+        return system instanceof UnixOperatingSystemMXBean unix ? unix.getOpenFileDescriptorCount() : -1;
+    }
+
+    private static void closeQuietly(FTPSession session) {
+        try {
+            session.close();
+        } catch (RuntimeException ignored) {
+            // la sessione viene comunque abbandonata
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package it.gtcode.net.ftp.soak;
+
+import it.gtcode.net.ftp.soak.FTPSoakWorkload.Operation;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Esito di un'esecuzione di {@link FTPSoakHarness}: percentili delle latenze per operazione, errori e andamento nel
+ * tempo di throughput, connessioni aperte e memoria.
+ * @param duration durata effettiva dell'esecuzione
+ * @param latencies latenze in microsecondi di ogni operazione
+ * @param errors numero di operazioni fallite per tipo
+ * @param samples campioni raccolti a ogni intervallo
+ */
+public record FTPSoakReport(Duration duration, Map<Operation, Histogram> latencies, Map<Operation, Long> errors,
+                            List<Sample> samples) {
+
+    /**
+     * Campione raccolto al termine di un intervallo.
+     * @param elapsed tempo trascorso dall'avvio
+     * @param operations operazioni concluse nell'intervallo
+     * @param bytes byte trasferiti nell'intervallo
+     * @param p99 99° percentile in microsecondi delle latenze dell'intervallo, di tutte le operazioni
+     * @param openConnections connessioni di controllo aperte sul server, {@code -1} se non disponibile
+     * @param openFiles descrittori aperti dal processo, {@code -1} se non disponibile
+     * @param heapUsed memoria heap occupata in byte
+     */
+    public record Sample(Duration elapsed, long operations, long bytes, long p99, int openConnections, long openFiles,
+                         long heapUsed) { }
+
+    /**
+     * Numero complessivo di operazioni concluse, incluse quelle fallite.
+     */
+    public long getOperations() {
+        return latencies.values().stream().mapToLong(Histogram::getTotalCount).sum();
+    }
+
+    /**
+     * Numero complessivo di operazioni fallite.
+     */
+    public long getErrors() {
+        return errors.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Byte trasferiti complessivamente.
+     */
+    public long getBytes() {
+        return samples.stream().mapToLong(Sample::bytes).sum();
+    }
+
+    /**
+     * Formatta il report in forma tabellare.
+     */
+    @Override
+    public String toString() {
+        var report = new StringBuilder();
+        double seconds = Math.max(duration.toMillis(), 1) / 1000.0;
+        report.append(String.format("Durata %.1f s, %d operazioni (%d errori), %.1f op/s, %.2f MiB/s%n",
+                seconds, this.getOperations(), this.getErrors(), this.getOperations() / seconds,
+                this.getBytes() / seconds / (1024 * 1024)));
+        report.append(String.format("%-9s %8s %10s %10s %10s %10s %10s %8s%n",
+                "op", "count", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "errors"));
+        latencies.forEach((operation, histogram) -> report.append(String.format(
+                "%-9s %8d %10d %10d %10d %10d %10d %8d%n",
+                operation, histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue(), errors.getOrDefault(operation, 0L)
+        )));
+        report.append(String.format("%9s %8s %10s %10s %10s %10s %10s%n",
+                "elapsed s", "ops", "MiB", "p99 us", "conn", "fd", "heap MiB"));
+        for (var sample : samples) {
+            report.append(String.format("%9.1f %8d %10.2f %10d %10d %10d %10d%n",
+                    sample.elapsed().toMillis() / 1000.0, sample.operations(), sample.bytes() / (1024.0 * 1024),
+                    sample.p99(), sample.openConnections(), sample.openFiles(), sample.heapUsed() / (1024 * 1024)));
+        }
+        return report.toString();
+    }
+
+}
@@ -0,0 +1,128 @@
+package it.gtcode.net.ftp.soak;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPSessionFactoryApache;
+import it.gtcode.net.ftp.soak.FTPSoakWorkload.Operation;
+import it.gtcode.net.ftp.standin.FTPStandInServer;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Esecuzione breve del carico prolungato, da allungare per le prove di durata con ad esempio
+ * {@code -Dsoak.duration=PT2H -Dsoak.concurrency=16}. Il report dell'esecuzione viene scritto in
+ * {@code target/soak-report.txt}.
+ */
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPSoakTests {
+
+    public static FTPStandInServer server;
+
+    @TempDir
+    static Path root;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() throws Exception {
+        server = new FTPStandInServer(0, root);
+        Files.createDirectories(root.resolve("share/soak"));
+        server.addGenerated("/share/download/small.bin", 16 * 1024);
+        server.addGenerated("/share/download/medium.bin", 512 * 1024);
+        server.addGenerated("/share/download/large.bin", 4 * 1024 * 1024);
+    }
+
+    @AfterAll
+    public static void afterAll() throws Exception {
+        server.close();
+    }
+
+    FTPSoakWorkload getWorkload() {
+        var workload = new FTPSoakWorkload();
+        workload.setDuration(Duration.parse(System.getProperty("soak.duration", "PT3S")));
+        workload.setConcurrency(Integer.getInteger("soak.concurrency", 4));
+        workload.setInterval(Duration.ofMillis(500));
+        workload.setSessionOperations(20);
+        workload.setDownloadFiles(List.of("download/small.bin", "download/medium.bin", "download/large.bin"));
+        workload.addSize(4 * 1024, 6).addSize(256 * 1024, 3).addSize(2 * 1024 * 1024, 1);
+        return workload;
+    }
+
+    @Test
+    void run() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(server.getPort()));
+            var report = new FTPSoakHarness(factory, this.getWorkload(), server::getOpenConnections).run();
+            var output = Files.createDirectories(Path.of("target"));
+            Files.writeString(output.resolve("soak-report.txt"), report.toString());
+
+            assertThat(report.getErrors()).isZero();
+            assertThat(report.latencies().get(Operation.UPLOAD).getTotalCount()).isPositive();
+            assertThat(report.latencies().get(Operation.DOWNLOAD).getTotalCount()).isPositive();
+            assertThat(report.getBytes()).isPositive();
+            assertThat(report.samples()).hasSizeGreaterThanOrEqualTo(2)
+                    .allSatisfy(sample -> assertThat(sample.heapUsed()).isPositive());
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (server.getOpenConnections() > 0 && System.nanoTime() < deadline) Thread.sleep(50);
+            assertThat(server.getOpenConnections()).isZero();
+
+        } catch (Exception e) {
+            fail("run", e);
+        }
+    }
+
+    @Test
+    void run_degraded() {
+        try {
+
+            server.getEmulation().setLatency(Duration.ofMillis(5));
+            server.getEmulation().refuseTransfers(2);
+            var workload = this.getWorkload();
+            workload.setDuration(Duration.ofSeconds(2));
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(server.getPort()));
+            var report = new FTPSoakHarness(factory, workload, server::getOpenConnections).run();
+
+            assertThat(report.getErrors()).isEqualTo(2);
+            assertThat(report.getOperations()).isGreaterThan(2);
+            assertThat(report.toString()).contains("UPLOAD", "DOWNLOAD", "p99 us");
+
+        } catch (Exception e) {
+            fail("run_degraded", e);
+        } finally {
+            server.getEmulation().reset();
+        }
+    }
+
+    @Test
+    void workload_withoutSizes() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(server.getPort()));
+            assertThatThrownBy(() -> new FTPSoakHarness(factory, new FTPSoakWorkload(), null))
+                    .isInstanceOf(IllegalArgumentException.class);
+
+        } catch (Exception e) {
+            fail("workload_withoutSizes", e);
+        }
+    }
+
+}
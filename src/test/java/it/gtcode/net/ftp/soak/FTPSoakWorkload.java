@@ -0,0 +1,86 @@
+package it.gtcode.net.ftp.soak;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Carico di lavoro eseguito da {@link FTPSoakHarness}: proporzione tra le operazioni, distribuzione delle dimensioni
+ * dei file caricati, parallelismo e durata.
+ */
+@Getter@Setter
+public class FTPSoakWorkload {
+
+    /** Operazioni eseguite dal carico di lavoro. */
+    public enum Operation { UPLOAD, DOWNLOAD, DELETE }
+
+    /** Peso relativo dei caricamenti. */
+    private int uploadWeight = 4;
+    /** Peso relativo degli scaricamenti. */
+    private int downloadWeight = 5;
+    /** Peso relativo delle eliminazioni, eseguite sui file caricati in precedenza. */
+    private int deleteWeight = 1;
+    /** Numero di worker concorrenti, ognuno con una propria sessione. */
+    private int concurrency = 4;
+    /** Operazioni dopo le quali un worker chiude la sessione e ne apre una nuova, {@code 0} per non rinnovarla. */
+    private int sessionOperations = 50;
+    /** Durata complessiva del carico di lavoro. */
+    private Duration duration = Duration.ofSeconds(10);
+    /** Intervallo di campionamento di throughput, connessioni e memoria. */
+    private Duration interval = Duration.ofSeconds(1);
+    /** Directory del server nella quale caricare i file. */
+    private String uploadDirectory = "soak";
+    /** File del server tra i quali scegliere gli scaricamenti. */
+    private List<String> downloadFiles = new ArrayList<>();
+
+    @Getter(AccessLevel.NONE)@Setter(AccessLevel.NONE)
+    private final List<Size> sizes = new ArrayList<>();
+
+    /**
+     * Aggiunge una dimensione dei file caricati con il peso relativo indicato.
+     * @return questo carico di lavoro
+     */
+    public FTPSoakWorkload addSize(long size, int weight) {
+        sizes.add(new Size(size, weight));
+        return this;
+    }
+
+    /**
+     * Restituisce la dimensione massima dei file caricati.
+     */
+    public long getMaxSize() {
+        return sizes.stream().mapToLong(Size::bytes).max().orElse(0);
+    }
+
+    /**
+     * Sceglie la prossima operazione secondo i pesi configurati.
+     */
+    Operation nextOperation(Random random) {
+        int pick = random.nextInt(uploadWeight + downloadWeight + deleteWeight);
+        if (pick < uploadWeight) return Operation.UPLOAD;
+        if (pick < uploadWeight + downloadWeight)
+            return downloadFiles.isEmpty() ? Operation.UPLOAD : Operation.DOWNLOAD;
+        return Operation.DELETE;
+    }
+
+    /**
+     * Sceglie la dimensione del prossimo file caricato secondo la distribuzione configurata.
+     */
+    long nextSize(Random random) {
+        long total = sizes.stream().mapToLong(Size::weight).sum();
+        long pick = (long) (random.nextDouble() * total);
+        for (var size : sizes) {
+            if (pick < size.weight()) return size.bytes();
+            pick -= size.weight();
+        }
+        return sizes.get(sizes.size() - 1).bytes();
+    }
+
+    private record Size(long bytes, int weight) { }
+
+}
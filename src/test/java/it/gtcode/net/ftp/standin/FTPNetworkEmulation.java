@@ -0,0 +1,89 @@
+package it.gtcode.net.ftp.standin;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Condizioni di rete emulate da {@link FTPStandInServer}.<br>
+ * I valori possono essere modificati mentre il server è in esecuzione: latenza e rifiuti si applicano ai comandi
+ * successivi, banda, pause e interruzioni ai trasferimenti avviati successivamente. I valori a zero disattivano la
+ * relativa emulazione.
+ */
+public class FTPNetworkEmulation {
+
+    /** Ritardo applicato a ogni risposta del canale di controllo, emula il tempo di andata e ritorno. */
+    @Getter@Setter
+    private volatile Duration latency = Duration.ZERO;
+    /** Banda massima in byte al secondo di ogni connessione dati. */
+    @Getter@Setter
+    private volatile long bandwidth;
+    /** Ogni quanti byte trasferiti una connessione dati si blocca, emula la perdita di pacchetti. */
+    @Getter@Setter
+    private volatile long stallEvery;
+    /** Durata di ogni blocco della connessione dati. */
+    @Getter@Setter
+    private volatile Duration stallDuration = Duration.ZERO;
+    /** Byte trasferiti dopo i quali una connessione dati viene interrotta, se sono previste interruzioni. */
+    @Getter@Setter
+    private volatile long dropAfter;
+
+    private final AtomicInteger drops = new AtomicInteger();
+    private final AtomicInteger refusedConnections = new AtomicInteger();
+    private final AtomicInteger refusedTransfers = new AtomicInteger();
+
+    /**
+     * Interrompe bruscamente i prossimi trasferimenti indicati dopo {@link #getDropAfter()} byte, chiudendo sia la
+     * connessione dati che quella di controllo.
+     */
+    public void drop(int transfers) {
+        drops.set(transfers);
+    }
+
+    /**
+     * Risponde {@code 421} al benvenuto delle prossime connessioni indicate, chiudendole.
+     */
+    public void refuseConnections(int connections) {
+        refusedConnections.set(connections);
+    }
+
+    /**
+     * Risponde {@code 421} ai prossimi {@code RETR}/{@code STOR} indicati, chiudendo la connessione di controllo.
+     */
+    public void refuseTransfers(int transfers) {
+        refusedTransfers.set(transfers);
+    }
+
+    /**
+     * Ripristina una rete senza degradi.
+     */
+    public void reset() {
+        latency = Duration.ZERO;
+        bandwidth = 0;
+        stallEvery = 0;
+        stallDuration = Duration.ZERO;
+        dropAfter = 0;
+        drops.set(0);
+        refusedConnections.set(0);
+        refusedTransfers.set(0);
+    }
+
+    boolean consumeDrop() {
+        return consume(drops);
+    }
+
+    boolean consumeRefusedConnection() {
+        return consume(refusedConnections);
+    }
+
+    boolean consumeRefusedTransfer() {
+        return consume(refusedTransfers);
+    }
+
+    private static boolean consume(AtomicInteger counter) {
+        return counter.getAndUpdate(value -> Math.max(value - 1, 0)) > 0;
+    }
+
+}
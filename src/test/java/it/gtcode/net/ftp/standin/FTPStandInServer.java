@@ -0,0 +1,632 @@
+package it.gtcode.net.ftp.standin;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server FTP incorporabile nei test e nei benchmark, alternativo a {@code FakeFtpServer} quando servono volumi
+ * realistici.<br>
+ * I file vengono letti e scritti su disco, sotto la directory radice fornita, oppure generati al volo con un
+ * contenuto deterministico ({@link #addGenerated(String, long)}) senza occupare memoria né disco: in assenza di
+ * emulazione i file su disco vengono inviati con {@code FileChannel.transferTo} e quelli generati da un unico
+ * buffer condiviso, così da non limitare la velocità dei trasferimenti.<br>
+ * Supporta la modalità passiva ({@code PASV}, {@code EPSV}), la ripresa ({@code REST}), {@code SIZE}, {@code MDTM},
+ * {@code MLSD} e {@code HASH} (SHA-256); qualsiasi utente viene accettato. Latenza, banda, pause, interruzioni e
+ * risposte {@code 421} vengono emulate secondo {@link #getEmulation()}.
+ */
+public class FTPStandInServer implements Closeable {
+
+    /** Periodo del contenuto dei file generati: il byte in posizione {@code p} vale {@code p % 251}. */
+    public static final int PATTERN_PERIOD = 251;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ByteBuffer PATTERN;
+    private static final DateTimeFormatter MDTM =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+
+    static {
+        var pattern = ByteBuffer.allocateDirect(PATTERN_PERIOD * 256);
+        for (int i = 0; i < pattern.capacity(); i++) pattern.put((byte) (i % PATTERN_PERIOD));
+        PATTERN = pattern.flip().asReadOnlyBuffer();
+    }
+
+    private final Path root;
+    private final ServerSocket serverSocket;
+    private final FTPNetworkEmulation emulation = new FTPNetworkEmulation();
+    private final Map<String, Long> generated = new ConcurrentHashMap<>();
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final Instant started = Instant.now();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private volatile boolean discardUploads;
+
+    /**
+     * Avvia il server sulla porta indicata dell'interfaccia di loopback.
+     * @param port porta di controllo, {@code 0} per sceglierne una libera
+     * @param root directory locale che fa da radice del server
+     */
+    public FTPStandInServer(int port, Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        Files.createDirectories(this.root);
+        this.serverSocket = new ServerSocket(port, 200, InetAddress.getLoopbackAddress());
+        this.daemon(this::accept, "ftp-stand-in-" + serverSocket.getLocalPort()).start();
+    }
+
+    /**
+     * Restituisce il byte in posizione fornita di un file generato.
+     */
+    public static byte generatedByte(long position) {
+        return (byte) (position % PATTERN_PERIOD);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public FTPNetworkEmulation getEmulation() {
+        return emulation;
+    }
+
+    /**
+     * Registra un file generato della dimensione indicata, creandone la directory su disco.
+     * @param path percorso assoluto del file sul server
+     * @param size dimensione in byte
+     */
+    public void addGenerated(String path, long size) throws IOException {
+        var normalized = normalize("/", path);
+        Files.createDirectories(this.disk(parent(normalized)));
+        generated.put(normalized, size);
+    }
+
+    /**
+     * Se attivo, i file caricati vengono letti e conteggiati ma non scritti su disco.
+     */
+    public void setDiscardUploads(boolean discardUploads) {
+        this.discardUploads = discardUploads;
+    }
+
+    /**
+     * Numero di connessioni di controllo attualmente aperte.
+     */
+    public int getOpenConnections() {
+        return sockets.size();
+    }
+
+    /**
+     * Numero di connessioni di controllo accettate dall'avvio.
+     */
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (var socket : sockets) closeQuietly(socket);
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                connections.incrementAndGet();
+                sockets.add(socket);
+                this.daemon(() -> this.serve(socket), "ftp-stand-in-control").start();
+            } catch (IOException ignored) {
+                // server chiuso
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        var session = new Session(socket);
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            if (emulation.consumeRefusedConnection()) {
+                session.reply("421 Too many users");
+                return;
+            }
+            session.reply("220 FTP stand-in ready");
+            try {
+                String line;
+                while ((line = session.reader.readLine()) != null) {
+                    var separator = line.indexOf(' ');
+                    var command = (separator < 0 ? line : line.substring(0, separator)).toUpperCase(Locale.ROOT);
+                    var argument = separator < 0 ? "" : line.substring(separator + 1).trim();
+                    if (!this.handle(session, command, argument)) return;
+                }
+            } catch (Dropped dropped) {
+                socket.setSoLinger(true, 0);
+            }
+        } catch (IOException ignored) {
+            // connessione chiusa dal client
+        } finally {
+            session.closePassive();
+            sockets.remove(socket);
+        }
+    }
+
+    /**
+     * Esegue un comando del canale di controllo.
+     * @return {@code false} se la connessione di controllo deve essere chiusa
+     */
+    private boolean handle(Session session, String command, String argument) throws IOException {
+        switch (command) {
+            case "USER" -> session.reply("331 Password required");
+            case "PASS" -> session.reply("230 Logged in");
+            case "SYST" -> session.reply("215 UNIX Type: L8");
+            case "FEAT" -> session.reply(
+                    "211-Features:\r\n SIZE\r\n MDTM\r\n REST STREAM\r\n MLST type*;size*;modify*;\r\n"
+                            + " HASH SHA-256*\r\n EPSV\r\n211 End"
+            );
+            case "TYPE", "MODE", "STRU", "OPTS", "ALLO", "SITE", "NOOP" -> session.reply("200 OK");
+            case "PWD", "XPWD" -> session.reply("257 \"" + session.cwd + "\" is the current directory");
+            case "CWD", "CDUP" -> {
+                var path = normalize(session.cwd, command.equals("CDUP") ? ".." : argument);
+                if (Files.isDirectory(this.disk(path))) {
+                    session.cwd = path;
+                    session.reply("250 Directory changed");
+                } else {
+                    session.reply("550 No such directory");
+                }
+            }
+            case "MKD" -> {
+                var path = normalize(session.cwd, argument);
+                Files.createDirectories(this.disk(path));
+                session.reply("257 \"" + path + "\" created");
+            }
+            case "DELE" -> {
+                var path = normalize(session.cwd, argument);
+                boolean deleted = generated.remove(path) != null | Files.deleteIfExists(this.disk(path));
+                session.reply(deleted ? "250 File deleted" : "550 No such file");
+            }
+            case "SIZE" -> {
+                var size = this.size(normalize(session.cwd, argument));
+                session.reply(size < 0 ? "550 No such file" : "213 " + size);
+            }
+            case "MDTM" -> {
+                var path = normalize(session.cwd, argument);
+                if (this.size(path) < 0) session.reply("550 No such file");
+                else session.reply("213 " + MDTM.format(this.modified(path)));
+            }
+            case "HASH" -> this.hash(session, normalize(session.cwd, argument));
+            case "REST" -> {
+                long offset = parseOffset(argument);
+                if (offset < 0) {
+                    session.reply("501 Invalid restart offset");
+                } else {
+                    session.restart = offset;
+                    session.reply("350 Restarting at " + offset);
+                }
+            }
+            case "PASV" -> {
+                var port = session.openPassive();
+                session.reply("227 Entering Passive Mode (127,0,0,1," + (port >> 8) + "," + (port & 0xFF) + ")");
+            }
+            case "EPSV" -> session.reply("229 Entering Extended Passive Mode (|||" + session.openPassive() + "|)");
+            case "RETR" -> {
+                return this.retrieve(session, normalize(session.cwd, argument));
+            }
+            case "STOR", "APPE" -> {
+                return this.store(session, normalize(session.cwd, argument), command.equals("APPE"));
+            }
+            case "MLSD" -> this.list(session, normalize(session.cwd, argument));
+            case "ABOR" -> session.reply("226 Abort successful");
+            case "QUIT" -> {
+                session.reply("221 Bye");
+                return false;
+            }
+            default -> session.reply("502 Command not implemented");
+        }
+        return true;
+    }
+
+    /**
+     * Interpreta l'argomento di {@code REST}.
+     * @return la posizione indicata, {@code -1} se l'argomento non è un numero non negativo
+     */
+    private static long parseOffset(String argument) {
+        if (argument == null) return -1;
+        try {
+            long offset = Long.parseLong(argument.trim());
+            return offset < 0 ? -1 : offset;
+        } catch (NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    private boolean retrieve(Session session, String path) throws IOException {
+        long offset = session.restart;
+        session.restart = 0;
+        if (emulation.consumeRefusedTransfer()) {
+            session.reply("421 Too many users");
+            return false;
+        }
+        long size = this.size(path);
+        if (size < 0 || offset > size) {
+            session.reply("550 No such file");
+            return true;
+        }
+        try (var data = session.acceptData("150 Opening BINARY mode data connection for " + path)) {
+            if (data == null) return true;
+            var pacer = new Pacer(data);
+            if (generated.containsKey(path)) {
+                this.sendGenerated(data, offset, size, pacer);
+            } else {
+                try (var file = FileChannel.open(this.disk(path), StandardOpenOption.READ)) {
+                    this.sendFile(data, file, offset, size, pacer);
+                }
+            }
+            session.reply("226 Transfer complete");
+        } catch (Dropped dropped) {
+            throw dropped;
+        } catch (IOException ioe) {
+            session.reply("426 Transfer aborted");
+        }
+        return true;
+    }
+
+    private boolean store(Session session, String path, boolean append) throws IOException {
+        long offset = session.restart;
+        session.restart = 0;
+        if (emulation.consumeRefusedTransfer()) {
+            session.reply("421 Too many users");
+            return false;
+        }
+        var target = this.disk(path);
+        if (!Files.isDirectory(target.getParent())) {
+            session.reply("553 No such directory");
+            return true;
+        }
+        try (var data = session.acceptData("150 Opening BINARY mode data connection for " + path)) {
+            if (data == null) return true;
+            var pacer = new Pacer(data);
+            if (discardUploads) {
+                this.receive(data, null, pacer);
+            } else {
+                generated.remove(path);
+                var options = EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                if (!append && offset == 0) options.add(StandardOpenOption.TRUNCATE_EXISTING);
+                try (var file = FileChannel.open(target, options)) {
+                    file.position(append ? file.size() : offset);
+                    this.receive(data, file, pacer);
+                }
+            }
+            session.reply("226 Transfer complete");
+        } catch (Dropped dropped) {
+            throw dropped;
+        } catch (IOException ioe) {
+            session.reply("426 Transfer aborted");
+        }
+        return true;
+    }
+
+    private void list(Session session, String path) throws IOException {
+        var directory = this.disk(path);
+        if (!Files.isDirectory(directory)) {
+            session.reply("550 No such directory");
+            return;
+        }
+        var listing = new StringBuilder();
+        var names = new TreeSet<String>();
+        try (var entries = Files.list(directory)) {
+            entries.forEach(entry -> names.add(entry.getFileName().toString()));
+        }
+        generated.keySet().stream().filter(file -> parent(file).equals(path)).forEach(file -> names.add(name(file)));
+        for (var name : names) {
+            var file = path.equals("/") ? "/" + name : path + "/" + name;
+            boolean isDirectory = !generated.containsKey(file) && Files.isDirectory(this.disk(file));
+            listing.append("type=").append(isDirectory ? "dir" : "file").append(';');
+            if (!isDirectory) listing.append("size=").append(this.size(file)).append(';');
+            listing.append("modify=").append(MDTM.format(this.modified(file))).append("; ").append(name).append("\r\n");
+        }
+        try (var data = session.acceptData("150 Opening ASCII mode data connection for MLSD")) {
+            if (data == null) return;
+            var bytes = ByteBuffer.wrap(listing.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) data.write(bytes);
+            session.reply("226 Transfer complete");
+        } catch (IOException ioe) {
+            session.reply("426 Transfer aborted");
+        }
+    }
+
+    private void hash(Session session, String path) throws IOException {
+        long size = this.size(path);
+        if (size < 0) {
+            session.reply("550 No such file");
+            return;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            session.reply("504 Algorithm not supported");
+            return;
+        }
+        if (generated.containsKey(path)) {
+            for (long position = 0; position < size; ) {
+                var chunk = pattern(position, (int) Math.min(BUFFER_SIZE, size - position));
+                position += chunk.remaining();
+                digest.update(chunk);
+            }
+        } else {
+            try (var stream = Files.newInputStream(this.disk(path))) {
+                var buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = stream.read(buffer)) >= 0) digest.update(buffer, 0, read);
+            }
+        }
+        var hex = HexFormat.of().formatHex(digest.digest());
+        session.reply("213 SHA-256 0-" + Math.max(size - 1, 0) + " " + hex + " " + path);
+    }
+
+    private void sendGenerated(SocketChannel data, long offset, long size, Pacer pacer) throws IOException {
+        for (long position = offset; position < size; ) {
+            var chunk = pattern(position, pacer.chunk((int) Math.min(BUFFER_SIZE, size - position)));
+            int written = chunk.remaining();
+            while (chunk.hasRemaining()) data.write(chunk);
+            position += written;
+            bytesSent.add(written);
+            pacer.advance(written);
+        }
+    }
+
+    private void sendFile(SocketChannel data, FileChannel file, long offset, long size, Pacer pacer)
+            throws IOException {
+        if (pacer.isTransparent()) {
+            for (long position = offset; position < size; ) {
+                long sent = file.transferTo(position, size - position, data);
+                position += sent;
+                bytesSent.add(sent);
+            }
+            return;
+        }
+        var buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        for (long position = offset; position < size; ) {
+            buffer.clear().limit(pacer.chunk((int) Math.min(BUFFER_SIZE, size - position)));
+            int read = file.read(buffer, position);
+            if (read < 0) break;
+            buffer.flip();
+            while (buffer.hasRemaining()) data.write(buffer);
+            position += read;
+            bytesSent.add(read);
+            pacer.advance(read);
+        }
+    }
+
+    private void receive(SocketChannel data, FileChannel file, Pacer pacer) throws IOException {
+        var buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        while (true) {
+            buffer.clear().limit(pacer.chunk(BUFFER_SIZE));
+            int read = data.read(buffer);
+            if (read < 0) return;
+            buffer.flip();
+            if (file != null) while (buffer.hasRemaining()) file.write(buffer);
+            bytesReceived.add(read);
+            pacer.advance(read);
+        }
+    }
+
+    private long size(String path) throws IOException {
+        var size = generated.get(path);
+        if (size != null) return size;
+        var file = this.disk(path);
+        return Files.isRegularFile(file) ? Files.size(file) : -1;
+    }
+
+    private Instant modified(String path) throws IOException {
+        if (generated.containsKey(path)) return started;
+        return Files.getLastModifiedTime(this.disk(path)).toInstant();
+    }
+
+    private Path disk(String path) {
+        var file = root.resolve(path.substring(1)).normalize();
+        return file.startsWith(root) ? file : root;
+    }
+
+    /**
+     * Restituisce una vista del contenuto generato a partire dalla posizione fornita.
+     */
+    private static ByteBuffer pattern(long position, int length) {
+        int offset = (int) (position % PATTERN_PERIOD);
+        return PATTERN.duplicate().position(offset).limit(offset + Math.min(length, PATTERN.capacity() - offset));
+    }
+
+    private static String normalize(String cwd, String path) {
+        var segments = new ArrayDeque<String>();
+        var full = path.startsWith("/") ? path : cwd + "/" + path;
+        for (var segment : full.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) continue;
+            if (segment.equals("..")) segments.pollLast();
+            else segments.addLast(segment);
+        }
+        return "/" + String.join("/", segments);
+    }
+
+    private static String parent(String path) {
+        int separator = path.lastIndexOf('/');
+        return separator <= 0 ? "/" : path.substring(0, separator);
+    }
+
+    private static String name(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // la risorsa viene comunque abbandonata
+        }
+    }
+
+    private Thread daemon(Runnable task, String name) {
+        var thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Stato di una connessione di controllo.
+     */
+    private class Session {
+
+        private final BufferedReader reader;
+        private final Writer writer;
+        private String cwd = "/";
+        private long restart;
+        private ServerSocketChannel passive;
+
+        Session(Socket socket) {
+            try {
+                var input = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
+                this.reader = new BufferedReader(input);
+                this.writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }
+
+        void reply(String reply) throws IOException {
+            sleep(emulation.getLatency().toNanos());
+            writer.write(reply + "\r\n");
+            writer.flush();
+        }
+
+        int openPassive() throws IOException {
+            this.closePassive();
+            passive = ServerSocketChannel.open();
+            passive.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+            passive.socket().setSoTimeout(10_000);
+            return passive.socket().getLocalPort();
+        }
+
+        /**
+         * Invia la risposta preliminare e accetta la connessione dati aperta dal client.
+         * @return la connessione dati, {@code null} se non è stata richiesta la modalità passiva
+         */
+        SocketChannel acceptData(String preliminary) throws IOException {
+            if (passive == null) {
+                this.reply("425 Use PASV or EPSV first");
+                return null;
+            }
+            this.reply(preliminary);
+            try {
+                var data = passive.socket().accept().getChannel();
+                data.socket().setSendBufferSize(1024 * 1024);
+                return data;
+            } finally {
+                this.closePassive();
+            }
+        }
+
+        void closePassive() {
+            if (passive != null) closeQuietly(passive);
+            passive = null;
+        }
+
+    }
+
+    /**
+     * Regola un trasferimento secondo l'emulazione in vigore al suo avvio.
+     */
+    private class Pacer {
+
+        private final SocketChannel data;
+        private final long bandwidth = emulation.getBandwidth();
+        private final long stallEvery = emulation.getStallEvery();
+        private final long stallNanos = emulation.getStallDuration().toNanos();
+        private final long dropAfter = emulation.getDropAfter();
+        private final boolean drop = emulation.consumeDrop();
+        private final long start = System.nanoTime();
+        private long bytes;
+
+        Pacer(SocketChannel data) {
+            this.data = data;
+        }
+
+        boolean isTransparent() {
+            return bandwidth <= 0 && stallEvery <= 0 && !drop;
+        }
+
+        /**
+         * Restituisce quanti byte trasferire al prossimo passo, interrompendo il trasferimento se previsto.
+         */
+        int chunk(int wanted) throws IOException {
+            long chunk = wanted;
+            if (drop) {
+                if (bytes >= dropAfter) {
+                    data.socket().setSoLinger(true, 0);
+                    throw new Dropped();
+                }
+                chunk = Math.min(chunk, dropAfter - bytes);
+            }
+            if (stallEvery > 0) chunk = Math.min(chunk, stallEvery - bytes % stallEvery);
+            if (bandwidth > 0) chunk = Math.min(chunk, Math.max(1024, bandwidth / 50));
+            return (int) chunk;
+        }
+
+        /**
+         * Registra i byte trasferiti, attendendo quanto necessario a rispettare banda e pause.
+         */
+        void advance(int transferred) throws IOException {
+            bytes += transferred;
+            if (stallEvery > 0 && bytes % stallEvery == 0) sleep(stallNanos);
+            if (bandwidth > 0) sleep(start + bytes * 1_000_000_000L / bandwidth - System.nanoTime());
+        }
+
+    }
+
+    private static void sleep(long nanos) throws InterruptedIOException {
+        if (nanos <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Interruzione emulata di un trasferimento: connessione dati e di controllo vengono chiuse con un reset.
+     */
+    private static class Dropped extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+    }
+
+}
@@ -0,0 +1,279 @@
+package it.gtcode.net.ftp.standin;
+
+import it.gtcode.net.ftp.FTPConcurrencyLimiter;
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPSessionFactoryApache;
+import it.gtcode.net.ftp.response.FTPResponse;
+import it.gtcode.net.ftp.response.FTPStatResponse;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPStandInServerTests {
+
+    public static FTPStandInServer server;
+
+    @TempDir
+    static Path root;
+    @TempDir
+    Path tempDir;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() throws Exception {
+        server = new FTPStandInServer(2169, root);
+        Files.createDirectories(root.resolve("share/upload"));
+        server.addGenerated("/share/large.bin", 8 * 1024 * 1024);
+        server.addGenerated("/share/small.bin", 512 * 1024);
+    }
+
+    @AfterAll
+    public static void afterAll() throws Exception {
+        server.close();
+    }
+
+    @AfterEach
+    void afterEach() {
+        server.getEmulation().reset();
+    }
+
+    /**
+     * Legge lo stream fornito verificando che corrisponda al contenuto generato a partire dalla posizione indicata.
+     * @return il numero di byte letti
+     */
+    static long verifyGenerated(InputStream stream, long offset) throws IOException {
+        var buffer = new byte[64 * 1024];
+        long position = offset;
+        int read;
+        while ((read = stream.read(buffer)) >= 0) {
+            for (int i = 0; i < read; i++)
+                if (buffer[i] != FTPStandInServer.generatedByte(position + i))
+                    throw new AssertionError("Contenuto errato alla posizione " + (position + i));
+            position += read;
+        }
+        return position - offset;
+    }
+
+    @Test
+    void download_generated() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2169));
+            @Cleanup var session = factory.openSession();
+
+            assertThat(session.stat(Path.of("large.bin")))
+                    .returns(Status.SUCCESS, FTPResponse::getStatus)
+                    .returns(8L * 1024 * 1024, FTPStatResponse::getSize);
+
+            var response = session.download(Path.of("large.bin"));
+            assertThat(response.getStatus()).isEqualTo(Status.SUCCESS);
+            assertThat(verifyGenerated(response.getStream().orElseThrow(), 0)).isEqualTo(8L * 1024 * 1024);
+            response.close();
+
+            var resumed = session.download(Path.of("small.bin"), 1000);
+            assertThat(resumed.getStatus()).isEqualTo(Status.SUCCESS);
+            assertThat(verifyGenerated(resumed.getStream().orElseThrow(), 1000)).isEqualTo(512 * 1024 - 1000);
+            resumed.close();
+
+        } catch (Exception e) {
+            fail("download_generated", e);
+        }
+    }
+
+    @Test
+    void upload_disk() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2169));
+            @Cleanup var session = factory.openSession();
+            var local = Files.write(tempDir.resolve("local.bin"), new byte[300 * 1024]);
+
+            assertThat(session.upload(local, Path.of("upload"))).returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(root.resolve("share/upload/local.bin")).hasSize(300 * 1024);
+
+            var response = session.download(Path.of("upload", "local.bin"));
+            assertThat(response.getStream().orElseThrow().readAllBytes()).hasSize(300 * 1024);
+            response.close();
+
+            assertThat(session.delete(Path.of("upload", "local.bin"))).returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(root.resolve("share/upload/local.bin")).doesNotExist();
+
+        } catch (Exception e) {
+            fail("upload_disk", e);
+        }
+    }
+
+    @Test
+    void mlsd_hash() {
+        try {
+
+            var client = new FTPClient();
+            client.connect("localhost", 2169);
+            client.login("username", "password");
+            client.enterLocalPassiveMode();
+
+            var files = client.mlistDir("/share");
+            assertThat(files).extracting(FTPFile::getName).contains("large.bin", "small.bin", "upload");
+            assertThat(files).filteredOn(file -> file.getName().equals("small.bin"))
+                    .singleElement()
+                    .returns(512L * 1024, FTPFile::getSize)
+                    .returns(true, FTPFile::isFile);
+
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (long position = 0; position < 512 * 1024; position++)
+                digest.update(FTPStandInServer.generatedByte(position));
+            assertThat(client.sendCommand("HASH", "/share/small.bin")).isEqualTo(213);
+            assertThat(client.getReplyString()).contains(HexFormat.of().formatHex(digest.digest()));
+
+            client.logout();
+            client.disconnect();
+
+        } catch (Exception e) {
+            fail("mlsd_hash", e);
+        }
+    }
+
+    @Test
+    void rest_invalid() {
+        try {
+
+            var client = new FTPClient();
+            client.connect("localhost", 2169);
+            client.login("username", "password");
+
+            assertThat(client.sendCommand("REST", "abc")).isEqualTo(501);
+            assertThat(client.sendCommand("REST", "-1")).isEqualTo(501);
+            assertThat(client.sendCommand("REST")).isEqualTo(501);
+            assertThat(client.sendCommand("REST", "1024")).isEqualTo(350);
+
+            client.logout();
+            client.disconnect();
+
+        } catch (Exception e) {
+            fail("rest_invalid", e);
+        }
+    }
+
+    @Test
+    void emulation_bandwidth() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2169));
+            @Cleanup var session = factory.openSession();
+            server.getEmulation().setBandwidth(1024 * 1024);
+
+            long start = System.nanoTime();
+            var response = session.download(Path.of("small.bin"));
+            assertThat(verifyGenerated(response.getStream().orElseThrow(), 0)).isEqualTo(512 * 1024);
+            response.close();
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThan(Duration.ofMillis(400));
+
+        } catch (Exception e) {
+            fail("emulation_bandwidth", e);
+        }
+    }
+
+    @Test
+    void emulation_latency_stall() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2169));
+            @Cleanup var session = factory.openSession();
+            server.getEmulation().setLatency(Duration.ofMillis(50));
+            server.getEmulation().setStallEvery(128 * 1024);
+            server.getEmulation().setStallDuration(Duration.ofMillis(100));
+
+            long start = System.nanoTime();
+            assertThat(session.stat(Path.of("small.bin"))).returns(Status.SUCCESS, FTPResponse::getStatus);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+
+            start = System.nanoTime();
+            var response = session.download(Path.of("small.bin"));
+            assertThat(verifyGenerated(response.getStream().orElseThrow(), 0)).isEqualTo(512 * 1024);
+            response.close();
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(400));
+
+        } catch (Exception e) {
+            fail("emulation_latency_stall", e);
+        }
+    }
+
+    @Test
+    void emulation_drop() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2169));
+            var session = factory.openSession();
+            server.getEmulation().setDropAfter(64 * 1024);
+            server.getEmulation().drop(1);
+
+            var response = session.download(Path.of("large.bin"));
+            assertThat(response.getStatus()).isEqualTo(Status.SUCCESS);
+            long read = 0;
+            try (var stream = response.getStream().orElseThrow()) {
+                read = verifyGenerated(stream, 0);
+            } catch (IOException expected) {
+                // connessione interrotta
+            }
+            assertThat(read).isLessThan(8L * 1024 * 1024);
+            try {
+                session.close();
+            } catch (UncheckedIOException expected) {
+                // anche la connessione di controllo è stata interrotta
+            }
+
+            @Cleanup var recovered = factory.openSession();
+            assertThat(recovered.stat(Path.of("large.bin"))).returns(Status.SUCCESS, FTPResponse::getStatus);
+
+        } catch (Exception e) {
+            fail("emulation_drop", e);
+        }
+    }
+
+    @Test
+    void emulation_refused() {
+        try {
+
+            var factory = new FTPSessionFactoryApache(this.getConfiguration(2169));
+            server.getEmulation().refuseConnections(1);
+            assertThatThrownBy(factory::openSession).isInstanceOf(UncheckedIOException.class);
+
+            @Cleanup var session = factory.openSession();
+            server.getEmulation().refuseTransfers(1);
+            var local = Files.write(tempDir.resolve("refused.bin"), new byte[1024]);
+            assertThat(session.upload(local, Path.of("upload")))
+                    .returns(Status.ERROR, FTPResponse::getStatus)
+                    .returns(true, FTPConcurrencyLimiter::isOverloaded);
+
+        } catch (Exception e) {
+            fail("emulation_refused", e);
+        }
+    }
+
+}
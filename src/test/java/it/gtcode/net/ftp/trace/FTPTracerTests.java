@@ -0,0 +1,226 @@
+package it.gtcode.net.ftp.trace;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPOptionsApache;
+import it.gtcode.net.ftp.FTPSessionFactoryApache;
+import it.gtcode.net.ftp.FTPSession_ApacheFTPClient;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPTracerTests {
+
+    public static final String CONTENT = "contenuto remoto";
+
+    public static FakeFtpServer fakeFtpServer;
+
+    @TempDir
+    Path tempDir;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    FTPOptionsApache getOptions(FTPTracer tracer) {
+        var options = new FTPOptionsApache();
+        options.setTracer(tracer);
+        return options;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2163);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fileSystem.add(new FileEntry("/share/download/file.txt", CONTENT));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    @Test
+    void connect() {
+        try {
+
+            var tracer = new RecordingTracer();
+            @Cleanup var session = new FTPSessionFactoryApache(this.getConfiguration(2163), this.getOptions(tracer)).openSession();
+
+            var connect = tracer.root("FTP connect");
+            assertThat(connect.ended).isTrue();
+            assertThat(connect.attributes)
+                    .containsEntry(FTPTracer.SERVER_ADDRESS, "localhost")
+                    .containsEntry(FTPTracer.SERVER_PORT, 2163L);
+            assertThat(tracer.children(connect)).extracting(span -> span.name)
+                    .contains("FTP USER", "FTP PASS", "FTP CWD", "FTP TYPE");
+            assertThat(tracer.children(connect)).allMatch(span -> span.ended);
+            assertThat(tracer.children(connect).stream().filter(span -> span.name.equals("FTP PASS")).findFirst().orElseThrow().attributes)
+                    .containsEntry(FTPTracer.REPLY_CODE, 230L)
+                    .containsOnlyKeys(FTPTracer.COMMAND, FTPTracer.REPLY_CODE, FTPTracer.SERVER_ADDRESS, FTPTracer.SERVER_PORT);
+
+        } catch (Exception e) {
+            fail("connect", e);
+        }
+    }
+
+    @Test
+    void download() {
+        try {
+
+            var tracer = new RecordingTracer();
+            @Cleanup var session = new FTPSessionFactoryApache(this.getConfiguration(2163), this.getOptions(tracer)).openSession();
+
+            var response = session.download(Path.of("download/file.txt"));
+            assertThat(response.getStatus()).isEqualTo(Status.SUCCESS);
+            var download = tracer.root("FTP download");
+            assertThat(download.ended).isFalse();
+            response.consume(stream -> {
+                try {
+                    assertThat(new String(stream.readAllBytes())).isEqualTo(CONTENT);
+                } catch (Exception e) {
+                    fail("download", e);
+                }
+            });
+
+            assertThat(download.ended).isTrue();
+            assertThat(download.attributes)
+                    .containsEntry(FTPTracer.FILE, Path.of("download/file.txt").toString())
+                    .containsEntry(FTPTracer.BYTES, (long) CONTENT.length())
+                    .containsEntry(FTPTracer.REPLY_CODE, 150L);
+            var children = tracer.children(download);
+            assertThat(children).extracting(span -> span.name).containsSubsequence("FTP CWD", "FTP PASV", "FTP RETR", "FTP data");
+            var data = children.stream().filter(span -> span.name.equals("FTP data")).findFirst().orElseThrow();
+            assertThat(data.ended).isTrue();
+            assertThat(data.attributes).containsEntry(FTPTracer.REPLY_CODE, 226L);
+
+        } catch (Exception e) {
+            fail("download", e);
+        }
+    }
+
+    @Test
+    void upload_error() {
+        try {
+
+            var tracer = new RecordingTracer();
+            @Cleanup var session = new FTPSessionFactoryApache(this.getConfiguration(2163), this.getOptions(tracer)).openSession();
+
+            var file = Files.writeString(tempDir.resolve("local.txt"), "contenuto locale");
+            var upload = session.upload(file, Path.of("upload"));
+            assertThat(upload.getStatus()).isEqualTo(Status.SUCCESS);
+            var uploadSpan = tracer.root("FTP upload");
+            assertThat(uploadSpan.attributes).containsEntry(FTPTracer.BYTES, Files.size(file));
+            assertThat(tracer.children(uploadSpan)).extracting(span -> span.name).contains("FTP STOR", "FTP data");
+
+            var delete = session.delete(Path.of("missing.txt"));
+            assertThat(delete.getStatus()).isEqualTo(Status.ERROR);
+            var deleteSpan = tracer.root("FTP delete");
+            assertThat(deleteSpan.ended).isTrue();
+            assertThat(deleteSpan.attributes).containsEntry(FTPTracer.REPLY_CODE, 550L).doesNotContainKey(FTPTracer.BYTES);
+
+            session.close();
+            assertThat(tracer.children(tracer.root("FTP close"))).extracting(span -> span.name).contains("FTP QUIT");
+
+        } catch (Exception e) {
+            fail("upload_error", e);
+        }
+    }
+
+    @Test
+    void noop() {
+        try {
+
+            @Cleanup var session = new FTPSessionFactoryApache(this.getConfiguration(2163), this.getOptions(FTPTracer.NOOP)).openSession();
+            assertThat(session).isInstanceOf(FTPSession_ApacheFTPClient.class);
+
+        } catch (Exception e) {
+            fail("noop", e);
+        }
+    }
+
+    static class RecordingTracer implements FTPTracer {
+
+        final List<RecordedSpan> spans = new CopyOnWriteArrayList<>();
+
+        @Override
+        public FTPSpan startSpan(String name, FTPSpan parent) {
+            var span = new RecordedSpan(name, (RecordedSpan) parent);
+            spans.add(span);
+            return span;
+        }
+
+        RecordedSpan root(String name) {
+            return spans.stream().filter(span -> span.parent == null && span.name.equals(name)).reduce((a, b) -> b).orElseThrow();
+        }
+
+        List<RecordedSpan> children(RecordedSpan parent) {
+            return spans.stream().filter(span -> span.parent == parent).toList();
+        }
+
+    }
+
+    static class RecordedSpan implements FTPSpan {
+
+        final String name;
+        final RecordedSpan parent;
+        final Map<String, Object> attributes = new HashMap<>();
+        volatile Throwable exception;
+        volatile boolean ended;
+
+        RecordedSpan(String name, RecordedSpan parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        @Override
+        public void setAttribute(String key, String value) {
+            attributes.put(key, value);
+        }
+
+        @Override
+        public void setAttribute(String key, long value) {
+            attributes.put(key, value);
+        }
+
+        @Override
+        public void recordException(Throwable exception) {
+            this.exception = exception;
+        }
+
+        @Override
+        public void end() {
+            ended = true;
+        }
+
+    }
+
+}
@@ -0,0 +1,141 @@
+package it.gtcode.net.ftp.trace;
+
+import it.gtcode.net.ftp.FTPConfiguration;
+import it.gtcode.net.ftp.FTPSession_ApacheFTPClient;
+import it.gtcode.net.response.Status;
+import lombok.Cleanup;
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.junit.jupiter.api.*;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+class FTPWireLogTests {
+
+    public static FakeFtpServer fakeFtpServer;
+
+    FTPConfiguration getConfiguration(int port) {
+        var configuration = new FTPConfiguration();
+        configuration.setServer("localhost");
+        configuration.setDirectory(Path.of("/share"));
+        configuration.setPort(port);
+        configuration.setUsername("username");
+        configuration.setPassword("password");
+        return configuration;
+    }
+
+    @BeforeAll
+    public static void beforeAll() {
+        fakeFtpServer = new FakeFtpServer();
+        fakeFtpServer.setServerControlPort(2164);
+        fakeFtpServer.addUserAccount(new UserAccount("username", "password", "/share"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/share"));
+        fakeFtpServer.setFileSystem(fileSystem);
+        fakeFtpServer.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        fakeFtpServer.stop();
+    }
+
+    @Test
+    void getEntries_wrap() {
+        try {
+
+            var log = new FTPWireLog(4);
+            for (int i = 0; i < 6; i++) {
+                log.protocolCommandSent(new ProtocolCommandEvent(this, "NOOP", "NOOP " + i + "\r\n"));
+                log.protocolReplyReceived(new ProtocolCommandEvent(this, 200, "200 OK " + i + "\r\n"));
+            }
+
+            var entries = log.getEntries();
+            assertThat(entries).extracting(FTPWireEntry::text).containsExactly("NOOP 4", "200 OK 4", "NOOP 5", "200 OK 5");
+            assertThat(entries).extracting(FTPWireEntry::sequence).containsExactly(8L, 9L, 10L, 11L);
+            assertThat(entries.get(0).command()).isTrue();
+            assertThat(entries.get(0).duration()).isNull();
+            assertThat(entries.get(1).command()).isFalse();
+            assertThat(entries.get(1).duration()).isNotNull();
+            assertThat(log.getEntries(1)).extracting(FTPWireEntry::text).containsExactly("200 OK 5");
+            assertThat(new FTPWireLog().getEntries()).isEmpty();
+            assertThatThrownBy(() -> new FTPWireLog(0)).isInstanceOf(IllegalArgumentException.class);
+
+        } catch (Exception e) {
+            fail("getEntries_wrap", e);
+        }
+    }
+
+    @Test
+    void getEntries_concurrent() {
+        try {
+
+            var log = new FTPWireLog(8);
+            var start = new CountDownLatch(1);
+            var writers = new ArrayList<Thread>();
+            for (int t = 0; t < 4; t++) {
+                var writer = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                    for (int i = 0; i < 1000; i++)
+                        log.protocolCommandSent(new ProtocolCommandEvent(this, "NOOP", "NOOP"));
+                });
+                writer.start();
+                writers.add(writer);
+            }
+            start.countDown();
+            while (writers.stream().anyMatch(Thread::isAlive)) {
+                var entries = log.getEntries();
+                assertThat(entries.size()).isLessThanOrEqualTo(8);
+                for (int i = 1; i < entries.size(); i++)
+                    assertThat(entries.get(i).sequence()).isGreaterThan(entries.get(i - 1).sequence());
+            }
+            for (var writer : writers) writer.join();
+            assertThat(log.getEntries()).extracting(FTPWireEntry::sequence).containsExactly(3992L, 3993L, 3994L, 3995L, 3996L, 3997L, 3998L, 3999L);
+
+        } catch (Exception e) {
+            fail("getEntries_concurrent", e);
+        }
+    }
+
+    @Test
+    void response_error() {
+        try {
+
+            @Cleanup var session = new FTPSession_ApacheFTPClient(this.getConfiguration(2164));
+
+            assertThat(session.getWireLog().getEntries()).extracting(FTPWireEntry::text)
+                    .contains("USER username", "PASS ****")
+                    .doesNotContain("PASS password");
+
+            var response = session.delete(Path.of("missing.txt"));
+            assertThat(response.getStatus()).isEqualTo(Status.ERROR);
+            assertThat(response.getWireLog()).isNotEmpty();
+            var last = response.getWireLog().get(response.getWireLog().size() - 1);
+            assertThat(last.command()).isFalse();
+            assertThat(last.text()).startsWith("550");
+            assertThat(response.getWireLog()).extracting(FTPWireEntry::text).contains("DELE missing.txt");
+
+            var success = session.execute("NOOP");
+            assertThat(success.getWireLog()).isEmpty();
+
+        } catch (Exception e) {
+            fail("response_error", e);
+        }
+    }
+
+}